@@ -0,0 +1,57 @@
+package com.analyzer.bench;
+
+import ch.qos.logback.classic.Level;
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+/**
+ * Synthetic graphs for the benchmarks, so results depend only on size and density.
+ *
+ * Classes are spread over packages of about 50 classes each, and every class has on average
+ * {@code density} outgoing dependencies to uniformly chosen other classes. The same arguments
+ * always give the same graph.
+ */
+public final class BenchmarkGraphs {
+
+    private BenchmarkGraphs() {
+    }
+
+    /**
+     * Create a graph with the given number of classes and average number of dependencies per class.
+     */
+    public static DependencyGraph create(int size, double density) {
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode[] classes = new ClassNode[size];
+        int packages = Math.max(1, size / 50);
+        for (int i = 0; i < size; i++) {
+            classes[i] = new ClassNode("C" + i, "com.bench.p" + (i % packages) + ".C" + i);
+            graph.addNode(classes[i]);
+        }
+        Random random = new Random(42);
+        long edges = Math.round(size * density);
+        for (long e = 0; e < edges && size > 1; e++) {
+            int source = random.nextInt(size);
+            int target = random.nextInt(size - 1);
+            if (target >= source) {
+                target++; // no self-references, as GraphBuilder skips them
+            }
+            graph.addEdge(new DependencyEdge(classes[source], classes[target], "f" + e));
+        }
+        return graph;
+    }
+
+    /**
+     * Raise the log level to WARN. The default configuration logs at DEBUG, which would dominate
+     * most measurements.
+     */
+    public static void quietLogging() {
+        for (String name : new String[] {Logger.ROOT_LOGGER_NAME, "com.analyzer"}) {
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(name)).setLevel(Level.WARN);
+        }
+    }
+}
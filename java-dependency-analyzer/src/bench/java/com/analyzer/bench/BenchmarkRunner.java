@@ -0,0 +1,45 @@
+package com.analyzer.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the JMH benchmarks and keeps each run's results as JSON, so runs can be compared.
+ *
+ * Run with {@code mvn -Pbench compile exec:exec@jmh}. JMH options are passed with
+ * {@code -Djmh.args="..."}, e.g. {@code -Djmh.args="GraphBenchmark -p size=10000"} to run one
+ * class with one graph size. Unless {@code -rff} names a result file, results go to
+ * {@code bench-results/jmh-<date>-<time>.json}; the JMH JSON format can be compared with
+ * standard tools or visualizers.
+ */
+public final class BenchmarkRunner {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResult().hasValue()) {
+            Path dir = Paths.get("bench-results");
+            Files.createDirectories(dir);
+            Path file = dir.resolve("jmh-" + LocalDateTime.now().format(TIMESTAMP) + ".json");
+            builder.result(file.toString());
+            if (!options.getResultFormat().hasValue()) {
+                builder.resultFormat(ResultFormatType.JSON);
+            }
+        }
+        new Runner(builder.build()).run();
+    }
+}
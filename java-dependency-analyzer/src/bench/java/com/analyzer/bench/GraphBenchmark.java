@@ -0,0 +1,80 @@
+package com.analyzer.bench;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and per-node queries of {@link DependencyGraph}.
+ *
+ * The per-node queries go round all classes of the graph, one per invocation. The adjacency
+ * index that {@link DependencyGraph#getDependencyCount} uses is built during setup, as it is
+ * cached per graph version in the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /** Average dependencies per class. */
+    @Param({"2", "8"})
+    public double density;
+
+    private DependencyGraph graph;
+    private ClassNode[] nodes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkGraphs.quietLogging();
+        graph = BenchmarkGraphs.create(size, density);
+        nodes = graph.getNodes().toArray(new ClassNode[0]);
+        graph.getAdjacencyIndex();
+        // Stamp the analytics once, as the analysis does, so toJson writes real values
+        graph.getComponents();
+        graph.getCentrality();
+        graph.getCommunities();
+    }
+
+    private ClassNode nextNode() {
+        ClassNode node = nodes[next];
+        next = next + 1 == nodes.length ? 0 : next + 1;
+        return node;
+    }
+
+    @Benchmark
+    public String toJson() {
+        return graph.toJson();
+    }
+
+    @Benchmark
+    public int getDependencyCount() {
+        return graph.getDependencyCount(nextNode());
+    }
+
+    @Benchmark
+    public List<DependencyEdge> getEdgesForNode() {
+        return graph.getEdgesForNode(nextNode());
+    }
+}
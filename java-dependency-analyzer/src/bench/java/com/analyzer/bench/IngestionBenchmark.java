@@ -0,0 +1,79 @@
+package com.analyzer.bench;
+
+import com.analyzer.concurrent.ThreadingMode;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.GraphBuilder;
+import com.analyzer.lsp.InProcessServer;
+import com.analyzer.lsp.JdtLsClient;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Measures how fast {@link GraphBuilder} ingests a workspace, without JDT LS: the workspace is a
+ * {@link SyntheticWorkspace} served by a {@link StubLanguageServer} in this process, and the
+ * graph is built once per concurrency level (the number of document symbol requests in flight).
+ *
+ * The test reports the build time, the classes analysed per second and whether the graph has
+ * the expected number of classes and dependencies.
+ *
+ * Run with {@code mvn -Pbench compile exec:java@ingest}; arguments (classes, fields per class,
+ * latency in ms, concurrency levels, distribution, package depth, qualified field types) are
+ * passed with {@code -Dexec.args="100000 8 2 1,16,256 power_law 3 true"}.
+ */
+public class IngestionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int fields = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        double latencyMillis = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        String[] levels = (args.length > 3 ? args[3] : "1,16,256").split(",");
+        SyntheticWorkspace.Distribution distribution = args.length > 4
+                ? SyntheticWorkspace.Distribution.valueOf(args[4].toUpperCase()) : SyntheticWorkspace.Distribution.UNIFORM;
+        int packageDepth = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+        // Simple names, as JDT LS reports them, make GraphBuilder scan all classes per field
+        boolean qualifiedTypes = args.length > 6 ? Boolean.parseBoolean(args[6]) : classes > 20000;
+
+        BenchmarkGraphs.quietLogging();
+        boolean virtual = ThreadingMode.isVirtualThreadSupported();
+        System.out.printf("Ingestion benchmark: %d classes, %d fields per class, %s types, %s, %.2f ms latency, "
+                        + "%s threads, Java %s%n", classes, fields, qualifiedTypes ? "qualified" : "simple",
+                distribution.name().toLowerCase(), latencyMillis, virtual ? "virtual" : "platform",
+                System.getProperty("java.version"));
+        SyntheticWorkspace workspace = new SyntheticWorkspace(classes, fields, packageDepth, distribution,
+                qualifiedTypes, 42);
+
+        for (String level : levels) {
+            run(workspace, Integer.parseInt(level.trim()), (long) (latencyMillis * 1_000_000), virtual);
+        }
+        System.exit(0);
+    }
+
+    private static void run(SyntheticWorkspace workspace, int concurrency, long latencyNanos, boolean virtual)
+            throws Exception {
+        StubLanguageServer server = new StubLanguageServer(workspace, latencyNanos);
+        ExecutorService messageExecutor = virtual ? ThreadingMode.newTaskExecutor(true, "lsp", 0) : null;
+        ExecutorService requestExecutor = ThreadingMode.newTaskExecutor(virtual, "lsp-request", concurrency);
+        JdtLsClient client = new JdtLsClient(SyntheticWorkspace.ROOT, "stub", messageExecutor);
+        try (InProcessServer pipe = InProcessServer.start(server, null)) {
+            try {
+                client.connect(pipe.getClientInput(), pipe.getClientOutput());
+                long start = System.nanoTime();
+                DependencyGraph graph = new GraphBuilder(client, requestExecutor, concurrency).buildGraph();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("concurrency %4d: %8.2f s, %9.0f classes/s, %d requests, %d nodes, %d edges%s%n",
+                        concurrency, seconds, graph.getNodeCount() / seconds, server.getRequestCount(),
+                        graph.getNodeCount(), graph.getEdgeCount(),
+                        graph.getNodeCount() == workspace.getClassCount()
+                                && graph.getEdgeCount() == workspace.getDependencyCount() ? "" : " (expected "
+                                + workspace.getClassCount() + " nodes, " + workspace.getDependencyCount() + " edges)");
+            } finally {
+                client.disconnect();
+            }
+        } finally {
+            requestExecutor.shutdown();
+            if (messageExecutor != null) {
+                messageExecutor.shutdown();
+            }
+        }
+    }
+}
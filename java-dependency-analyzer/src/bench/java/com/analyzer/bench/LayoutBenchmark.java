@@ -0,0 +1,58 @@
+package com.analyzer.bench;
+
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.layout.ForceDirectedLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ForceDirectedLayout#calculateLayout} from a random start. The layout resets all positions
+ * itself, so every invocation does the same work on the same graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param({"100", "1000"})
+    public int size;
+
+    /** Average dependencies per class. */
+    @Param({"2", "8"})
+    public double density;
+
+    /** Simulation steps per layout; the default of 1000 would make large graphs take minutes. */
+    @Param({"50"})
+    public int iterations;
+
+    private DependencyGraph graph;
+    private ForceDirectedLayout layout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkGraphs.quietLogging();
+        graph = BenchmarkGraphs.create(size, density);
+        layout = new ForceDirectedLayout(iterations, 100.0, 150.0, 1.0, 0.01);
+    }
+
+    @Benchmark
+    public DependencyGraph calculateLayout() {
+        layout.calculateLayout(graph);
+        return graph;
+    }
+}
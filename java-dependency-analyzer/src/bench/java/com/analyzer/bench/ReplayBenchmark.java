@@ -0,0 +1,74 @@
+package com.analyzer.bench;
+
+import com.analyzer.concurrent.ThreadingMode;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.GraphBuilder;
+import com.analyzer.lsp.InProcessServer;
+import com.analyzer.lsp.JdtLsClient;
+import com.analyzer.lsp.replay.LspRecording;
+import com.analyzer.lsp.replay.ReplayServer;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Measures how fast {@link GraphBuilder} ingests a recorded workspace: the JDT LS traffic
+ * recorded with {@code lsp.record.dir} is served by a {@link ReplayServer} in this process,
+ * and the graph is built once per concurrency level.
+ *
+ * Run with {@code mvn -Pbench compile exec:java@replay}; arguments (recording, speed,
+ * concurrency levels) are passed with
+ * {@code -Dexec.args="lsp-recordings/nifi-20260101-120000.jsonl.gz 0 1,16,256"}. Speed 0
+ * answers without delay, which leaves only the client's own cost.
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayBenchmark <recording> [speed] [concurrency levels]");
+            System.exit(2);
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        String[] levels = (args.length > 2 ? args[2] : "1,16,256").split(",");
+
+        BenchmarkGraphs.quietLogging();
+        LspRecording recording = LspRecording.read(Paths.get(args[0]));
+        boolean virtual = ThreadingMode.isVirtualThreadSupported();
+        System.out.printf("Replay benchmark: %s, %d requests %s over %.1f s, %s, %s threads, Java %s%n",
+                recording.getFile(), recording.getExchanges().size(), recording.countByMethod(),
+                recording.getDurationNanos() / 1e9, speed > 0 ? speed + "x speed" : "no delay",
+                virtual ? "virtual" : "platform", System.getProperty("java.version"));
+
+        for (String level : levels) {
+            run(recording, speed, Integer.parseInt(level.trim()), virtual);
+        }
+        System.exit(0);
+    }
+
+    private static void run(LspRecording recording, double speed, int concurrency, boolean virtual)
+            throws Exception {
+        ExecutorService messageExecutor = virtual ? ThreadingMode.newTaskExecutor(true, "lsp", 0) : null;
+        ExecutorService requestExecutor = ThreadingMode.newTaskExecutor(virtual, "lsp-request", concurrency);
+        JdtLsClient client = new JdtLsClient(".", "replay", messageExecutor);
+        try (ReplayServer server = new ReplayServer(recording, speed);
+             InProcessServer pipe = InProcessServer.start(server, null)) {
+            try {
+                client.connect(pipe.getClientInput(), pipe.getClientOutput());
+                long start = System.nanoTime();
+                DependencyGraph graph = new GraphBuilder(client, requestExecutor, concurrency).buildGraph();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("concurrency %4d: %8.2f s, %9.0f classes/s, %d requests (%d not recorded, "
+                                + "%d answered by method), %d nodes, %d edges%n", concurrency, seconds,
+                        graph.getNodeCount() / seconds, server.getRequestCount(), server.getUnmatchedCount(),
+                        server.getFallbackCount(), graph.getNodeCount(), graph.getEdgeCount());
+            } finally {
+                client.disconnect();
+            }
+        } finally {
+            requestExecutor.shutdown();
+            if (messageExecutor != null) {
+                messageExecutor.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.analyzer.bench;
+
+import org.eclipse.lsp4j.DidChangeConfigurationParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.DidSaveTextDocumentParams;
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.InitializeResult;
+import org.eclipse.lsp4j.ServerCapabilities;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.WorkspaceSymbol;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.lsp4j.services.TextDocumentService;
+import org.eclipse.lsp4j.services.WorkspaceService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A language server that answers workspace and document symbol requests from a
+ * {@link SyntheticWorkspace}, for running {@code GraphBuilder} without JDT LS. Connect it to a
+ * {@code JdtLsClient} with {@code InProcessServer}.
+ *
+ * Each request is answered after the configured latency. Answers are scheduled rather than
+ * computed on a sleeping thread, so requests in flight overlap fully, as if the server had
+ * unlimited parallelism; the measured throughput is then limited by the client and the latency.
+ */
+public class StubLanguageServer implements LanguageServer {
+
+    private final SyntheticWorkspace workspace;
+    private final long latencyNanos;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong requests = new AtomicLong();
+    private final TextDocumentService textDocumentService = new TextDocuments();
+    private final WorkspaceService workspaceService = new Workspace();
+
+    /**
+     * @param latencyNanos delay before each answer, 0 to answer at once
+     */
+    public StubLanguageServer(SyntheticWorkspace workspace, long latencyNanos) {
+        this.workspace = workspace;
+        this.latencyNanos = latencyNanos;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stub-lsp");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the number of symbol requests answered or in flight.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private <T> CompletableFuture<T> answer(Supplier<T> result) {
+        requests.incrementAndGet();
+        if (latencyNanos <= 0) {
+            return CompletableFuture.completedFuture(result.get());
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            try {
+                future.complete(result.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, latencyNanos, TimeUnit.NANOSECONDS);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<InitializeResult> initialize(InitializeParams params) {
+        ServerCapabilities capabilities = new ServerCapabilities();
+        capabilities.setWorkspaceSymbolProvider(true);
+        capabilities.setDocumentSymbolProvider(true);
+        return CompletableFuture.completedFuture(new InitializeResult(capabilities));
+    }
+
+    @Override
+    public CompletableFuture<Object> shutdown() {
+        scheduler.shutdownNow();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void exit() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public TextDocumentService getTextDocumentService() {
+        return textDocumentService;
+    }
+
+    @Override
+    public WorkspaceService getWorkspaceService() {
+        return workspaceService;
+    }
+
+    private final class TextDocuments implements TextDocumentService {
+        @Override
+        public CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> documentSymbol(
+                DocumentSymbolParams params) {
+            return answer(() -> {
+                List<Either<SymbolInformation, DocumentSymbol>> result = new ArrayList<>();
+                for (DocumentSymbol symbol : workspace.getDocumentSymbols(params.getTextDocument().getUri())) {
+                    result.add(Either.forRight(symbol));
+                }
+                return result;
+            });
+        }
+
+        @Override
+        public void didOpen(DidOpenTextDocumentParams params) {
+        }
+
+        @Override
+        public void didChange(DidChangeTextDocumentParams params) {
+        }
+
+        @Override
+        public void didClose(DidCloseTextDocumentParams params) {
+        }
+
+        @Override
+        public void didSave(DidSaveTextDocumentParams params) {
+        }
+    }
+
+    private final class Workspace implements WorkspaceService {
+        @Override
+        public CompletableFuture<Either<List<? extends SymbolInformation>, List<? extends WorkspaceSymbol>>> symbol(
+                WorkspaceSymbolParams params) {
+            return answer(() -> Either.forLeft(workspace.getWorkspaceSymbols()));
+        }
+
+        @Override
+        public void didChangeConfiguration(DidChangeConfigurationParams params) {
+        }
+
+        @Override
+        public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
+        }
+    }
+}
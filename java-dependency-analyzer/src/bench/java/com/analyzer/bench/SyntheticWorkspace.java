@@ -0,0 +1,180 @@
+package com.analyzer.bench;
+
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A generated Java workspace that exists only as the symbols JDT LS would report for it, for
+ * serving from {@link StubLanguageServer}.
+ *
+ * Classes are spread over packages of about 20 classes, {@code packageDepth} segments below
+ * {@code com.synthetic}. Each class has {@code fieldsPerClass} fields; a quarter of them have a
+ * JDK type ({@code String}, {@code List<String>}, ...), the others the type of another class,
+ * chosen according to the {@link Distribution}. The same arguments always give the same
+ * workspace.
+ */
+public class SyntheticWorkspace {
+
+    /**
+     * How the classes that fields refer to are chosen.
+     */
+    public enum Distribution {
+        /** Any other class with equal probability. */
+        UNIFORM,
+        /** Few classes are used by many: the i-th class is chosen with probability falling like a power law. */
+        POWER_LAW,
+        /** Four in five fields refer to a class of the same package, the rest to any class. */
+        LOCAL
+    }
+
+    /** The workspace root; all source URIs are below it. */
+    public static final String ROOT = "/synthetic";
+
+    private static final String[] JDK_TYPES = {"String", "List<String>", "Map<String, Integer>", "int"};
+    private static final int CLASSES_PER_PACKAGE = 20;
+    private static final Range RANGE = new Range(new Position(0, 0), new Position(0, 0));
+
+    private final int classCount;
+    private final int fieldsPerClass;
+    private final boolean qualifiedTypes;
+    private final String[] names;
+    private final String[] packages;
+    private final String[] uris;
+    private final Map<String, Integer> classByUri;
+    /** Per class and field: the index of the referenced class, or -1 - k for JDK type k. */
+    private final int[][] fieldTypes;
+    private final long dependencyCount;
+
+    /**
+     * @param classCount     number of classes
+     * @param fieldsPerClass fields of each class
+     * @param packageDepth   package segments below {@code com.synthetic}, at least 1
+     * @param distribution   how field types are chosen among the classes
+     * @param qualifiedTypes whether field details name classes by qualified name; JDT LS reports
+     *                       simple names, which {@code GraphBuilder} resolves with a scan
+     * @param seed           seed of the random choices
+     */
+    public SyntheticWorkspace(int classCount, int fieldsPerClass, int packageDepth, Distribution distribution,
+                              boolean qualifiedTypes, long seed) {
+        this.classCount = classCount;
+        this.fieldsPerClass = fieldsPerClass;
+        this.qualifiedTypes = qualifiedTypes;
+        this.names = new String[classCount];
+        this.packages = new String[classCount];
+        this.uris = new String[classCount];
+        this.classByUri = new HashMap<>(classCount * 2);
+        this.fieldTypes = new int[classCount][fieldsPerClass];
+
+        int packageCount = Math.max(1, (classCount + CLASSES_PER_PACKAGE - 1) / CLASSES_PER_PACKAGE);
+        int depth = Math.max(1, packageDepth);
+        int base = Math.max(2, (int) Math.ceil(Math.pow(packageCount, 1.0 / depth)));
+        String[] packageNames = new String[packageCount];
+        for (int p = 0; p < packageCount; p++) {
+            StringBuilder name = new StringBuilder("com.synthetic");
+            int rest = p;
+            for (int d = 0; d < depth; d++) {
+                name.append(".p").append(rest % base);
+                rest /= base;
+            }
+            packageNames[p] = name.toString();
+        }
+        for (int i = 0; i < classCount; i++) {
+            names[i] = "C" + i;
+            packages[i] = packageNames[i / CLASSES_PER_PACKAGE];
+            uris[i] = "file://" + ROOT + "/src/main/java/" + packages[i].replace('.', '/') + "/" + names[i] + ".java";
+            classByUri.put(uris[i], i);
+        }
+
+        Random random = new Random(seed);
+        long dependencies = 0;
+        for (int i = 0; i < classCount; i++) {
+            for (int f = 0; f < fieldsPerClass; f++) {
+                if (classCount < 2 || random.nextInt(4) == 0) {
+                    fieldTypes[i][f] = -1 - random.nextInt(JDK_TYPES.length);
+                    continue;
+                }
+                int target;
+                do {
+                    target = chooseTarget(distribution, i, random);
+                } while (target == i);
+                fieldTypes[i][f] = target;
+                dependencies++;
+            }
+        }
+        this.dependencyCount = dependencies;
+    }
+
+    private int chooseTarget(Distribution distribution, int source, Random random) {
+        switch (distribution) {
+            case POWER_LAW:
+                return (int) (classCount * Math.pow(random.nextDouble(), 3));
+            case LOCAL:
+                if (random.nextInt(5) != 0) {
+                    int first = source / CLASSES_PER_PACKAGE * CLASSES_PER_PACKAGE;
+                    int size = Math.min(CLASSES_PER_PACKAGE, classCount - first);
+                    if (size > 1) {
+                        return first + random.nextInt(size);
+                    }
+                }
+                return random.nextInt(classCount);
+            default:
+                return random.nextInt(classCount);
+        }
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Get the number of fields whose type is another class of the workspace, i.e. the number of
+     * dependencies {@code GraphBuilder} should find.
+     */
+    public long getDependencyCount() {
+        return dependencyCount;
+    }
+
+    /**
+     * Get the workspace symbols of all classes, as JDT LS answers a {@code *} query.
+     */
+    @SuppressWarnings("deprecation")
+    public List<SymbolInformation> getWorkspaceSymbols() {
+        List<SymbolInformation> symbols = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            symbols.add(new SymbolInformation(names[i], SymbolKind.Class, new Location(uris[i], RANGE), packages[i]));
+        }
+        return symbols;
+    }
+
+    /**
+     * Get the document symbols of a source file: its class with the fields as children, or
+     * nothing for an unknown URI.
+     */
+    public List<DocumentSymbol> getDocumentSymbols(String uri) {
+        Integer index = classByUri.get(uri);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        List<DocumentSymbol> fields = new ArrayList<>(fieldsPerClass);
+        for (int f = 0; f < fieldsPerClass; f++) {
+            int type = fieldTypes[index][f];
+            String detail = type < 0 ? JDK_TYPES[-1 - type]
+                    : qualifiedTypes ? packages[type] + "." + names[type] : names[type];
+            fields.add(new DocumentSymbol("field" + f, SymbolKind.Field, RANGE, RANGE, detail));
+        }
+        DocumentSymbol type = new DocumentSymbol(names[index], SymbolKind.Class, RANGE, RANGE);
+        type.setChildren(fields);
+        return Collections.singletonList(type);
+    }
+}
@@ -0,0 +1,244 @@
+package com.analyzer.bench;
+
+import ch.qos.logback.classic.Level;
+import com.analyzer.concurrent.ThreadingMode;
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.server.JettyServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the WebSocket endpoint with many simulated clients, run once with platform
+ * threads and once with virtual threads (if the JDK has them) to compare the two execution
+ * modes.
+ *
+ * Each client connects with delta sync, so it is not sent the graph, and then sends
+ * {@code neighbours} queries in a closed loop: the next query goes out as soon as the answer
+ * to the previous one arrives. The test reports the answered queries per second and the
+ * latency percentiles over the measurement period.
+ *
+ * Run with {@code mvn -Pbench compile exec:java}; arguments (clients, seconds, nodes, port) are
+ * passed with {@code -Dexec.args="500 20 50000 18080"}.
+ */
+public class WebSocketLoadTest {
+
+    private final int clients;
+    private final int seconds;
+    private final int port;
+    private final DependencyGraph graph;
+
+    public WebSocketLoadTest(int clients, int seconds, int nodes, int port) {
+        this.clients = clients;
+        this.seconds = seconds;
+        this.port = port;
+        this.graph = createGraph(nodes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nodes = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 18080;
+
+        // Per-query debug logging would dominate the measurement
+        for (String name : new String[] {Logger.ROOT_LOGGER_NAME, "com.analyzer", "org.eclipse.jetty"}) {
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(name)).setLevel(Level.WARN);
+        }
+        System.out.printf("WebSocket load test: %d clients, %d s per mode, %d nodes, Java %s%n",
+                clients, seconds, nodes, System.getProperty("java.version"));
+        WebSocketLoadTest test = new WebSocketLoadTest(clients, seconds, nodes, port);
+        test.run(false);
+        if (ThreadingMode.isVirtualThreadSupported()) {
+            test.run(true);
+        } else {
+            System.out.println("virtual: skipped, this JDK has no virtual threads (needs Java 21+)");
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Start a server in the given mode, load it with the simulated clients and print the results.
+     */
+    public void run(boolean virtualThreads) throws Exception {
+        Properties config = new Properties();
+        config.setProperty("execution.virtual-threads", Boolean.toString(virtualThreads));
+        config.setProperty("query.threads", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        config.setProperty("query.max-pending", Integer.toString(clients * 2));
+        JettyServer server = new JettyServer(port, config);
+        server.start(graph);
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient http = HttpClient.newBuilder().executor(clientExecutor).build();
+        List<Client> connected = new ArrayList<>();
+        try {
+            URI uri = URI.create("ws://localhost:" + port + "/ws/graph?sync");
+            for (int i = 0; i < clients; i++) {
+                Client client = new Client(i);
+                client.socket = http.newWebSocketBuilder().buildAsync(uri, client).get(10, TimeUnit.SECONDS);
+                connected.add(client);
+            }
+
+            // Warm up, then measure
+            connected.forEach(Client::sendNext);
+            Thread.sleep(Math.min(5000, seconds * 300L));
+            connected.forEach(Client::startRecording);
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            connected.forEach(Client::stop);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            report(virtualThreads ? "virtual" : "platform", connected, elapsed);
+        } finally {
+            // Wait for the server to confirm each close, so stopping it does not abort sessions
+            List<CompletableFuture<Void>> closing = new ArrayList<>();
+            for (Client client : connected) {
+                client.socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+                closing.add(client.closed);
+            }
+            try {
+                CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                System.out.println("Not all clients closed cleanly: " + e);
+            }
+            server.stop();
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private void report(String mode, List<Client> connected, double elapsedSeconds) {
+        List<long[]> recorded = new ArrayList<>();
+        int count = 0;
+        int errors = 0;
+        for (Client client : connected) {
+            synchronized (client) {
+                recorded.add(Arrays.copyOf(client.latencies, client.count));
+                count += client.count;
+                errors += client.errors;
+            }
+        }
+        long[] latencies = new long[count];
+        int offset = 0;
+        for (long[] values : recorded) {
+            System.arraycopy(values, 0, latencies, offset, values.length);
+            offset += values.length;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-8s %9.0f queries/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  (%d answered, %d errors)%n",
+                mode, count / elapsedSeconds, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                percentile(latencies, 1.0), count, errors);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static DependencyGraph createGraph(int nodes) {
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode[] classes = new ClassNode[nodes];
+        for (int i = 0; i < nodes; i++) {
+            classes[i] = new ClassNode("C" + i, "com.bench.p" + (i % 100) + ".C" + i);
+            graph.addNode(classes[i]);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < nodes * 4; i++) {
+            graph.addEdge(new DependencyEdge(classes[random.nextInt(nodes)], classes[random.nextInt(nodes)], "f" + i));
+        }
+        return graph;
+    }
+
+    /**
+     * One simulated client with a single query in flight.
+     */
+    private final class Client implements WebSocket.Listener {
+        private final Random random;
+        private final StringBuilder message = new StringBuilder();
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private WebSocket socket;
+        private volatile boolean recording;
+        private volatile boolean stopped;
+        private long sentAt;
+        private long sequence;
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        Client(int index) {
+            this.random = new Random(index);
+        }
+
+        void startRecording() {
+            recording = true;
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        synchronized void sendNext() {
+            if (stopped) {
+                return;
+            }
+            int target = random.nextInt(graph.getNodeCount());
+            String node = "com.bench.p" + (target % 100) + ".C" + target;
+            sentAt = System.nanoTime();
+            socket.sendText("{\"type\":\"query\",\"requestId\":\"" + (sequence++)
+                    + "\",\"query\":\"neighbours\",\"node\":\"" + node + "\",\"direction\":\"both\"}", true);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            message.append(data);
+            if (last) {
+                String text = message.toString();
+                message.setLength(0);
+                if (text.contains("\"query-result\"") || text.contains("\"query-error\"")) {
+                    answered(text.contains("\"query-error\""));
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        private void answered(boolean error) {
+            synchronized (this) {
+                if (recording && !stopped) {
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - sentAt;
+                    if (error) {
+                        errors++;
+                    }
+                }
+            }
+            sendNext();
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            stopped = true;
+            closed.complete(null);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.analyzer.graph;
+
+import com.analyzer.bench.BenchmarkGraphs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-field work of {@link GraphBuilder}: extracting the type from a field's symbol detail
+ * and resolving it to a class. It lives in this package because both methods are package-private.
+ *
+ * {@code lookup} selects how the type name is given: {@code qualified} names hit the map
+ * directly, {@code simple} names need a scan, and {@code missing} names (e.g. library types
+ * that are not excluded) scan the map twice without a match.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBuilderBenchmark {
+
+    /** Field details in the formats different JDT LS versions report. */
+    private static final String[] DETAILS = {
+            "String name",
+            ": List<OrderItem>",
+            "Map<String, Customer> customers",
+            "com.bench.p3.C42",
+            "C17[] items",
+            "int count : 0",
+            "items OrderItem",
+    };
+
+    /**
+     * A class map like the one {@link GraphBuilder#buildGraph()} fills, and the type names to look up.
+     */
+    @State(Scope.Benchmark)
+    public static class Lookup {
+        @Param({"1000", "10000", "100000"})
+        public int size;
+
+        /** Average dependencies per class; only shapes the graph the class names come from. */
+        @Param({"2"})
+        public double density;
+
+        @Param({"qualified", "simple", "missing"})
+        public String lookup;
+
+        private final GraphBuilder builder = new GraphBuilder(null);
+        private Map<String, ClassNode> nodeMap;
+        private String[] typeNames;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            BenchmarkGraphs.quietLogging();
+            nodeMap = new HashMap<>();
+            for (ClassNode node : BenchmarkGraphs.create(size, density).getNodes()) {
+                nodeMap.put(node.getFullyQualifiedName(), node);
+            }
+            ClassNode[] nodes = nodeMap.values().toArray(new ClassNode[0]);
+            typeNames = new String[Math.min(nodes.length, 1024)];
+            for (int i = 0; i < typeNames.length; i++) {
+                ClassNode node = nodes[(int) ((long) i * nodes.length / typeNames.length)];
+                switch (lookup) {
+                    case "qualified":
+                        typeNames[i] = node.getFullyQualifiedName();
+                        break;
+                    case "simple":
+                        typeNames[i] = node.getName();
+                        break;
+                    default:
+                        typeNames[i] = "Missing" + i;
+                }
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Details {
+        private final GraphBuilder builder = new GraphBuilder(null);
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            BenchmarkGraphs.quietLogging();
+        }
+    }
+
+    @Benchmark
+    public ClassNode findNodeByType(Lookup state) {
+        String typeName = state.typeNames[state.next];
+        state.next = state.next + 1 == state.typeNames.length ? 0 : state.next + 1;
+        return state.builder.findNodeByType(typeName, state.nodeMap);
+    }
+
+    @Benchmark
+    public String extractTypeFromDetail(Details state) {
+        String detail = DETAILS[state.next];
+        state.next = state.next + 1 == DETAILS.length ? 0 : state.next + 1;
+        return state.builder.extractTypeFromDetail(detail);
+    }
+}
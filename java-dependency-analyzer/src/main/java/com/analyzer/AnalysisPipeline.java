@@ -0,0 +1,319 @@
+package com.analyzer;
+
+import com.analyzer.concurrent.ThreadingMode;
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.GraphBuilder;
+import com.analyzer.graph.analysis.CentralityMetrics;
+import com.analyzer.graph.analysis.Communities;
+import com.analyzer.graph.layout.CachingLayout;
+import com.analyzer.graph.layout.ClusteredLayout;
+import com.analyzer.graph.layout.ForceDirectedLayout;
+import com.analyzer.graph.layout.LayoutAlgorithm;
+import com.analyzer.graph.layout.LayoutCache;
+import com.analyzer.jfr.AnalysisPhaseEvent;
+import com.analyzer.lsp.JdtLsClient;
+import com.analyzer.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Analyses one workspace: starts JDT LS on it, builds the dependency graph and lays it out.
+ * Used by {@link Main} for the workspace given on the command line and by the server to
+ * build further workspaces when they are first requested.
+ */
+public class AnalysisPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisPipeline.class);
+
+    private final String jdtlsCommand;
+    private final LayoutAlgorithm layout;
+    private final boolean virtualThreads;
+    private final int maxConcurrentRequests;
+    private final int betweennessSamples;
+    private final double communityResolution;
+    private final Path recordingDirectory;
+    private final Path replayFile;
+    private final double replaySpeed;
+
+    public AnalysisPipeline(Properties config, String jdtlsCommand) {
+        this.jdtlsCommand = jdtlsCommand;
+        this.layout = createLayoutAlgorithm(config);
+        this.virtualThreads = ThreadingMode.useVirtualThreads(config);
+        this.maxConcurrentRequests = Integer.parseInt(config.getProperty("lsp.max-concurrent-requests", "1"));
+        this.betweennessSamples = Integer.parseInt(config.getProperty("metrics.betweenness-samples",
+                String.valueOf(CentralityMetrics.DEFAULT_BETWEENNESS_SAMPLES)));
+        this.communityResolution = Double.parseDouble(config.getProperty("communities.resolution",
+                String.valueOf(Communities.DEFAULT_RESOLUTION)));
+        String recordDir = config.getProperty("lsp.record.dir", "").trim();
+        this.recordingDirectory = recordDir.isEmpty() ? null : Paths.get(recordDir);
+        String replay = config.getProperty("lsp.replay.file", "").trim();
+        this.replayFile = replay.isEmpty() ? null : Paths.get(replay);
+        this.replaySpeed = Double.parseDouble(config.getProperty("lsp.replay.speed", "1"));
+    }
+
+    /**
+     * Analyse a workspace and return its laid out dependency graph.
+     *
+     * @throws IOException if JDT LS cannot be started for the workspace
+     * @throws ExecutionException if JDT LS fails while the graph is built
+     */
+    public DependencyGraph analyze(String workspacePath)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        return analyze(workspacePath, true);
+    }
+
+    /**
+     * Analyse a workspace and return its dependency graph, laid out only if {@code withLayout}.
+     * Without layout every class is at the origin; {@link #layout} can place them later.
+     */
+    public DependencyGraph analyze(String workspacePath, boolean withLayout)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        // With virtual threads, LSP message handling and each per-class request get a thread of their own
+        ExecutorService messageExecutor = virtualThreads ? ThreadingMode.newTaskExecutor(true, "lsp", 0) : null;
+        ExecutorService requestExecutor = ThreadingMode.newTaskExecutor(virtualThreads, "lsp-request",
+                maxConcurrentRequests);
+        JdtLsClient lsClient = new JdtLsClient(workspacePath, jdtlsCommand, messageExecutor);
+        if (replayFile != null) {
+            lsClient.setReplay(replayFile, replaySpeed);
+        } else if (recordingDirectory != null) {
+            lsClient.setRecordingFile(recordingDirectory.resolve(recordingName(workspacePath)));
+        }
+
+        DependencyGraph graph;
+        try {
+            logger.info("Starting JDT Language Server for {}...", workspacePath);
+            AnalysisPhaseEvent event = new AnalysisPhaseEvent();
+            event.begin();
+            long start = System.nanoTime();
+            lsClient.connect();
+            PipelineMetrics.PHASE_SECONDS.labels("connect").observeNanos(System.nanoTime() - start);
+            commit(event, "connect", workspacePath, null);
+            logger.info("Successfully started JDT LS");
+
+            // Build dependency graph
+            logger.info("Building dependency graph...");
+            event = new AnalysisPhaseEvent();
+            event.begin();
+            start = System.nanoTime();
+            graph = new GraphBuilder(lsClient, requestExecutor, maxConcurrentRequests).buildGraph();
+            PipelineMetrics.PHASE_SECONDS.labels("graph_build").observeNanos(System.nanoTime() - start);
+            commit(event, "graph_build", workspacePath, graph);
+            logger.info("Graph built successfully: {} nodes, {} edges",
+                    graph.getNodeCount(), graph.getEdgeCount());
+
+            if (graph.getNodeCount() == 0) {
+                logger.warn("No classes found in the workspace. Make sure JDT LS is analyzing the correct project.");
+            }
+
+            // If no edges were found, create synthetic test edges to verify frontend rendering
+            if (graph.getEdgeCount() == 0 && graph.getNodeCount() > 1) {
+                logger.warn("No edges detected by JDT LS. Creating synthetic test edges to verify frontend...");
+                createSyntheticEdges(graph);
+                logger.info("Added synthetic edges. Graph now has {} edges", graph.getEdgeCount());
+            }
+        } finally {
+            // Disconnect from JDT LS (no longer needed)
+            lsClient.disconnect();
+            requestExecutor.shutdown();
+            if (messageExecutor != null) {
+                messageExecutor.shutdown();
+            }
+        }
+
+        // The writers export the analytics stamped on the nodes here and never compute them
+        graph.setBetweennessSamples(betweennessSamples);
+        graph.setCommunityResolution(communityResolution);
+        graph.getComponents(); // already found by the builder unless synthetic edges were added
+        AnalysisPhaseEvent event = new AnalysisPhaseEvent();
+        event.begin();
+        reportHubs(graph);
+        commit(event, "centrality", workspacePath, graph);
+        event = new AnalysisPhaseEvent();
+        event.begin();
+        reportCommunities(graph);
+        commit(event, "communities", workspacePath, graph);
+
+        if (withLayout) {
+            layout(graph, workspacePath);
+        }
+        return graph;
+    }
+
+    /**
+     * Lay out a graph with the configured layout algorithm.
+     */
+    public void layout(DependencyGraph graph) {
+        layout(graph, null);
+    }
+
+    private void layout(DependencyGraph graph, String workspacePath) {
+        logger.info("Calculating graph layout...");
+        AnalysisPhaseEvent event = new AnalysisPhaseEvent();
+        event.begin();
+        synchronized (layout) {
+            long start = System.nanoTime();
+            layout.calculateLayout(graph);
+            PipelineMetrics.PHASE_SECONDS.labels("layout").observeNanos(System.nanoTime() - start);
+        }
+        commit(event, "layout", workspacePath, graph);
+        logger.info("Layout calculation completed");
+    }
+
+    /**
+     * Commit a phase event if a recording wants it.
+     *
+     * @param graph the graph at the end of the phase, or null if there is none yet
+     */
+    private static void commit(AnalysisPhaseEvent event, String phase, String workspacePath, DependencyGraph graph) {
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.workspace = workspacePath;
+            event.nodeCount = graph != null ? graph.getNodeCount() : 0;
+            event.edgeCount = graph != null ? graph.getEdgeCount() : 0;
+            event.commit();
+        }
+    }
+
+    /**
+     * Name a recording after the workspace directory and the time, e.g. {@code nifi-20260101-120000.jsonl.gz}.
+     */
+    private static String recordingName(String workspacePath) {
+        Path name = Paths.get(workspacePath).toAbsolutePath().normalize().getFileName();
+        return (name != null ? name.toString() : "workspace") + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jsonl.gz";
+    }
+
+    /**
+     * Compute the centrality of the built graph, which the writers export, and log the top hubs.
+     */
+    private static void reportHubs(DependencyGraph graph) {
+        CentralityMetrics centrality = graph.getCentrality();
+        int[] hubs = centrality.topByPageRank(5);
+        for (int hub : hubs) {
+            logger.info("Hub {}: PageRank {}, {} dependents, betweenness {}",
+                    centrality.getIndex().getNode(hub).getName(),
+                    String.format("%.4f", centrality.pageRank(hub)), centrality.inDegree(hub),
+                    String.format("%.4f", centrality.betweenness(hub)));
+        }
+    }
+
+    /**
+     * Find the communities of the built graph, which the writers export, and log the largest.
+     */
+    private static void reportCommunities(DependencyGraph graph) {
+        Communities communities = graph.getCommunities();
+        for (int c = 0; c < Math.min(communities.getCommunityCount(), 5); c++) {
+            List<ClassNode> members = communities.getMembers(c);
+            logger.info("Community {} of {} classes: {}{}", c, members.size(),
+                    members.subList(0, Math.min(members.size(), 5)).stream()
+                            .map(ClassNode::getName).collect(Collectors.joining(", ")),
+                    members.size() > 5 ? ", ..." : "");
+        }
+    }
+
+    /**
+     * Create the layout algorithm based on configuration.
+     */
+    private static LayoutAlgorithm createLayoutAlgorithm(Properties config) {
+        String algorithm = config.getProperty("layout.algorithm", "force-directed");
+        int iterations = Integer.parseInt(config.getProperty("layout.iterations", "1000"));
+        double temperature = Double.parseDouble(config.getProperty("layout.temperature", "100"));
+        double idealDistance = Double.parseDouble(config.getProperty("layout.ideal-distance", "150"));
+
+        if ("force-directed".equals(algorithm)) {
+            logger.info("Using force-directed layout (iterations={}, temperature={}, idealDistance={})",
+                    iterations, temperature, idealDistance);
+
+            ForceDirectedLayout forceDirected = new ForceDirectedLayout(iterations, temperature, idealDistance, 1.0, 0.01);
+            return withLayoutCache(config, forceDirected);
+        } else if ("clustered".equals(algorithm)) {
+            double refinement = Double.parseDouble(config.getProperty("layout.clustered.refinement", "0.3"));
+
+            logger.info("Using clustered layout (iterations={}, temperature={}, idealDistance={}, refinement={})",
+                    iterations, temperature, idealDistance, refinement);
+
+            ClusteredLayout clustered = new ClusteredLayout(iterations, temperature, idealDistance, 1.0, 0.01, refinement);
+            return withLayoutCache(config, clustered);
+        } else {
+            logger.warn("Unknown layout algorithm '{}', using default force-directed", algorithm);
+            return new ForceDirectedLayout();
+        }
+    }
+
+    /**
+     * Wrap the layout in a persistent layout cache unless disabled in the configuration.
+     */
+    private static LayoutAlgorithm withLayoutCache(Properties config, ForceDirectedLayout layout) {
+        if (!Boolean.parseBoolean(config.getProperty("layout.cache.enabled", "true"))) {
+            return layout;
+        }
+
+        String defaultFile = Paths.get(System.getProperty("java.io.tmpdir"),
+                "java-dependency-analyzer", "layout-cache.bin").toString();
+        Path cacheFile = Paths.get(config.getProperty("layout.cache.file", defaultFile));
+        int maxEntries = Integer.parseInt(config.getProperty("layout.cache.max-entries", "8"));
+        double minSimilarity = Double.parseDouble(config.getProperty("layout.cache.min-similarity", "0.5"));
+
+        logger.info("Using layout cache {} (maxEntries={}, minSimilarity={})", cacheFile, maxEntries, minSimilarity);
+        return new CachingLayout(layout, new LayoutCache(cacheFile, maxEntries), minSimilarity);
+    }
+
+    /**
+     * Create synthetic edges between nodes to test frontend rendering.
+     * This is used when JDT LS doesn't detect any dependencies.
+     */
+    private static void createSyntheticEdges(DependencyGraph graph) {
+        List<ClassNode> nodes = new ArrayList<>(graph.getNodes());
+
+        if (nodes.size() < 2) {
+            logger.warn("Not enough nodes to create synthetic edges");
+            return;
+        }
+
+        // Create edges between sequential nodes (like a chain)
+        int edgesToCreate = Math.min(nodes.size() - 1, 50); // Limit to 50 edges
+
+        for (int i = 0; i < edgesToCreate; i++) {
+            ClassNode source = nodes.get(i);
+            ClassNode target = nodes.get(i + 1);
+
+            DependencyEdge edge = new DependencyEdge(source, target, "syntheticField" + i);
+            graph.addEdge(edge);
+
+            if (i < 5) {
+                logger.info("Created synthetic edge: {} -> {}", source.getName(), target.getName());
+            }
+        }
+
+        // Also create some random cross-connections
+        int crossEdges = Math.min(nodes.size() / 4, 20);
+        for (int i = 0; i < crossEdges; i++) {
+            int sourceIdx = (i * 3) % nodes.size();
+            int targetIdx = (i * 7 + 5) % nodes.size();
+
+            if (sourceIdx != targetIdx) {
+                ClassNode source = nodes.get(sourceIdx);
+                ClassNode target = nodes.get(targetIdx);
+
+                DependencyEdge edge = new DependencyEdge(source, target, "crossField" + i);
+                graph.addEdge(edge);
+            }
+        }
+
+        logger.info("Created {} synthetic edges total", graph.getEdgeCount());
+    }
+}
@@ -1,25 +1,25 @@
 package com.analyzer;
 
-import com.analyzer.graph.ClassNode;
-import com.analyzer.graph.DependencyEdge;
+import com.analyzer.cli.DiffCommand;
+import com.analyzer.cli.ExportCommand;
+import com.analyzer.cli.ImpactCommand;
 import com.analyzer.graph.DependencyGraph;
-import com.analyzer.graph.GraphBuilder;
-import com.analyzer.graph.layout.ForceDirectedLayout;
-import com.analyzer.graph.layout.LayoutAlgorithm;
-import com.analyzer.lsp.JdtLsClient;
 import com.analyzer.server.JettyServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.Properties;
 
 /**
  * Main application entry point.
  * Connects to JDT LS, builds the dependency graph, and starts the web server.
+ * With {@code diff} as the first argument it compares two graphs instead (see {@link DiffCommand}),
+ * with {@code impact} it lists the classes affected by changed files (see {@link ImpactCommand}),
+ * and with {@code export} it writes the graph to a file and exits (see {@link ExportCommand}).
  */
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
@@ -29,6 +29,10 @@ public class Main {
     private static final int DEFAULT_SERVER_PORT = 8080;
 
     public static void main(String[] args) {
+        if (args.length > 0 && ("diff".equals(args[0]) || "impact".equals(args[0]) || "export".equals(args[0]))) {
+            System.exit(runCommand(args));
+            return;
+        }
         logger.info("Starting Java Dependency Graph Analyzer");
 
         try {
@@ -46,13 +50,12 @@ public class Main {
             logger.info("  JDT LS command: {}", jdtlsCommand);
             logger.info("  Server port: {}", serverPort);
 
-            // Connect to JDT LS
-            JdtLsClient lsClient = new JdtLsClient(workspacePath, jdtlsCommand);
-            logger.info("Starting JDT Language Server...");
+            // Analyse the workspace given on the command line; others are analysed on first request
+            AnalysisPipeline pipeline = new AnalysisPipeline(config, jdtlsCommand);
+            DependencyGraph graph;
 
             try {
-                lsClient.connect();
-                logger.info("Successfully started JDT LS");
+                graph = pipeline.analyze(workspacePath);
             } catch (IOException e) {
                 logger.error("Failed to start JDT LS for workspace: {}", workspacePath);
                 logger.error("Error: {}", e.getMessage());
@@ -62,50 +65,16 @@ public class Main {
                 logger.info("\nUsage: java -jar analyzer.jar [workspace-path] [jdtls-command] [server-port]");
                 logger.info("Example: java -jar analyzer.jar /path/to/nifi jdtls 8080");
                 System.exit(1);
-            } catch (Exception e) {
-                logger.error("Error initializing JDT LS connection", e);
-                System.exit(1);
-            }
-
-            // Build dependency graph
-            logger.info("Building dependency graph...");
-            GraphBuilder graphBuilder = new GraphBuilder(lsClient);
-            DependencyGraph graph;
-
-            try {
-                graph = graphBuilder.buildGraph();
-                logger.info("Graph built successfully: {} nodes, {} edges",
-                        graph.getNodeCount(), graph.getEdgeCount());
-
-                if (graph.getNodeCount() == 0) {
-                    logger.warn("No classes found in the workspace. Make sure JDT LS is analyzing the correct project.");
-                }
-                
-                // If no edges were found, create synthetic test edges to verify frontend rendering
-                if (graph.getEdgeCount() == 0 && graph.getNodeCount() > 1) {
-                    logger.warn("No edges detected by JDT LS. Creating synthetic test edges to verify frontend...");
-                    createSyntheticEdges(graph);
-                    logger.info("Added synthetic edges. Graph now has {} edges", graph.getEdgeCount());
-                }
+                return;
             } catch (Exception e) {
                 logger.error("Error building dependency graph", e);
-                lsClient.disconnect();
                 System.exit(1);
                 return;
             }
 
-            // Apply layout algorithm
-            logger.info("Calculating graph layout...");
-            LayoutAlgorithm layout = createLayoutAlgorithm(config);
-            layout.calculateLayout(graph);
-            logger.info("Layout calculation completed");
-
-            // Disconnect from JDT LS (no longer needed)
-            lsClient.disconnect();
-
             // Start web server
             logger.info("Starting web server on port {}...", serverPort);
-            JettyServer server = new JettyServer(serverPort);
+            JettyServer server = new JettyServer(serverPort, config, (id, path) -> pipeline.analyze(path));
 
             try {
                 server.start(graph);
@@ -129,6 +98,26 @@ public class Main {
         }
     }
 
+    /**
+     * Run a command that works without the server, e.g. {@code diff}, and return its exit code.
+     */
+    private static int runCommand(String[] args) {
+        // The console log appender writes to whatever System.out is; keep stdout for the result
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+
+        Properties config = loadConfiguration();
+        String jdtlsCommand = config.getProperty("jdtls.command", DEFAULT_JDTLS_COMMAND);
+        String[] commandArgs = Arrays.copyOfRange(args, 1, args.length);
+        if ("impact".equals(args[0])) {
+            return new ImpactCommand(config, jdtlsCommand, System.in, stdout).run(commandArgs);
+        }
+        if ("export".equals(args[0])) {
+            return new ExportCommand(config, jdtlsCommand, stdout).run(commandArgs);
+        }
+        return new DiffCommand(config, jdtlsCommand, stdout).run(commandArgs);
+    }
+
     /**
      * Load configuration from application.properties if it exists.
      */
@@ -168,70 +157,4 @@ public class Main {
         // Use default
         return defaultValue;
     }
-
-    /**
-     * Create the layout algorithm based on configuration.
-     */
-    private static LayoutAlgorithm createLayoutAlgorithm(Properties config) {
-        String algorithm = config.getProperty("layout.algorithm", "force-directed");
-
-        if ("force-directed".equals(algorithm)) {
-            int iterations = Integer.parseInt(config.getProperty("layout.iterations", "1000"));
-            double temperature = Double.parseDouble(config.getProperty("layout.temperature", "100"));
-            double idealDistance = Double.parseDouble(config.getProperty("layout.ideal-distance", "150"));
-
-            logger.info("Using force-directed layout (iterations={}, temperature={}, idealDistance={})",
-                    iterations, temperature, idealDistance);
-
-            return new ForceDirectedLayout(iterations, temperature, idealDistance, 1.0, 0.01);
-        } else {
-            logger.warn("Unknown layout algorithm '{}', using default force-directed", algorithm);
-            return new ForceDirectedLayout();
-        }
-    }
-    
-    /**
-     * Create synthetic edges between nodes to test frontend rendering.
-     * This is used when JDT LS doesn't detect any dependencies.
-     */
-    private static void createSyntheticEdges(DependencyGraph graph) {
-        List<ClassNode> nodes = new ArrayList<>(graph.getNodes());
-        
-        if (nodes.size() < 2) {
-            logger.warn("Not enough nodes to create synthetic edges");
-            return;
-        }
-        
-        // Create edges between sequential nodes (like a chain)
-        int edgesToCreate = Math.min(nodes.size() - 1, 50); // Limit to 50 edges
-        
-        for (int i = 0; i < edgesToCreate; i++) {
-            ClassNode source = nodes.get(i);
-            ClassNode target = nodes.get(i + 1);
-            
-            DependencyEdge edge = new DependencyEdge(source, target, "syntheticField" + i);
-            graph.addEdge(edge);
-            
-            if (i < 5) {
-                logger.info("Created synthetic edge: {} -> {}", source.getName(), target.getName());
-            }
-        }
-        
-        // Also create some random cross-connections
-        int crossEdges = Math.min(nodes.size() / 4, 20);
-        for (int i = 0; i < crossEdges; i++) {
-            int sourceIdx = (i * 3) % nodes.size();
-            int targetIdx = (i * 7 + 5) % nodes.size();
-            
-            if (sourceIdx != targetIdx) {
-                ClassNode source = nodes.get(sourceIdx);
-                ClassNode target = nodes.get(targetIdx);
-                
-                DependencyEdge edge = new DependencyEdge(source, target, "crossField" + i);
-                graph.addEdge(edge);
-            }
-        }
-        
-        logger.info("Created {} synthetic edges total", graph.getEdgeCount());
-    }
 }
@@ -0,0 +1,151 @@
+package com.analyzer.cli;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.diff.GraphDiff;
+import com.analyzer.graph.export.JsonGraphWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The {@code diff} command: compares two dependency graphs without starting the server.
+ *
+ * <pre>
+ * diff [--format json|text] [--output file] &lt;base&gt; &lt;new&gt;
+ * </pre>
+ * Each graph is either a binary snapshot (from {@code /api/graph?format=binary} or a spilled
+ * workspace) or a project directory, which is analysed with JDT LS first. The diff is written
+ * as a {@code graph-diff} JSON document (see {@link JsonGraphWriter}) or as a text listing.
+ * The caller sends logging to stderr, so that stdout carries only the diff.
+ *
+ * Like diff(1), the exit code is 0 if the graphs are the same, 1 if they differ and 2 on errors.
+ */
+public class DiffCommand {
+    private static final Logger logger = LoggerFactory.getLogger(DiffCommand.class);
+
+    private static final String USAGE = "Usage: diff [--format json|text] [--output file] <base> <new>";
+
+    private final Properties config;
+    private final String jdtlsCommand;
+    private final PrintStream stdout;
+
+    /**
+     * @param stdout where the diff goes unless written to a file
+     */
+    public DiffCommand(Properties config, String jdtlsCommand, PrintStream stdout) {
+        this.config = config;
+        this.jdtlsCommand = jdtlsCommand;
+        this.stdout = stdout;
+    }
+
+    /**
+     * Run the command with the arguments after {@code diff}.
+     *
+     * @return the exit code
+     */
+    public int run(String[] args) {
+        String format = "json";
+        String output = null;
+        String basePath = null;
+        String newPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if (("--format".equals(args[i]) || "--output".equals(args[i])) && i + 1 < args.length) {
+                if ("--format".equals(args[i])) {
+                    format = args[++i];
+                } else {
+                    output = args[++i];
+                }
+            } else if (args[i].startsWith("--")) {
+                System.err.println(USAGE);
+                return 2;
+            } else if (basePath == null) {
+                basePath = args[i];
+            } else if (newPath == null) {
+                newPath = args[i];
+            } else {
+                System.err.println(USAGE);
+                return 2;
+            }
+        }
+        if (newPath == null || (!"json".equals(format) && !"text".equals(format))) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            DependencyGraph base = GraphLoader.load(config, jdtlsCommand, basePath);
+            DependencyGraph graph = GraphLoader.load(config, jdtlsCommand, newPath);
+            GraphDiff diff = GraphDiff.compute(base, graph);
+            logger.info("Compared {} ({} nodes, {} edges) with {} ({} nodes, {} edges) in {} ms: {}",
+                    basePath, base.getNodeCount(), base.getEdgeCount(), newPath, graph.getNodeCount(),
+                    graph.getEdgeCount(), diff.getElapsedNanos() / 1_000_000, diff);
+
+            Writer out = output != null
+                    ? Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+            try {
+                if ("json".equals(format)) {
+                    new JsonGraphWriter().writeDiff(diff, null, out);
+                    out.write('\n');
+                } else {
+                    writeText(diff, out);
+                }
+            } finally {
+                if (output != null) {
+                    out.close();
+                } else {
+                    out.flush();
+                }
+            }
+            return diff.isEmpty() ? 0 : 1;
+        } catch (Exception e) {
+            logger.error("diff failed: {}", e.getMessage(), e);
+            return 2;
+        }
+    }
+
+    /**
+     * Write the diff as one line per change, in the style of a unified diff.
+     */
+    private static void writeText(GraphDiff diff, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        for (GraphDiff.PackageMove move : diff.getMovedPackages()) {
+            out.println("~ package " + move.getFrom() + " -> " + move.getTo() + " (" + move.getClassCount() + " classes)");
+        }
+        for (GraphDiff.NodeMove move : diff.getMovedNodes()) {
+            out.println("~ class " + move.getFrom().getFullyQualifiedName() + " -> " + move.getTo().getFullyQualifiedName());
+        }
+        for (ClassNode node : diff.getRemovedNodes()) {
+            out.println("- class " + node.getFullyQualifiedName());
+        }
+        for (ClassNode node : diff.getAddedNodes()) {
+            out.println("+ class " + node.getFullyQualifiedName());
+        }
+        for (DependencyEdge edge : diff.getRemovedEdges()) {
+            out.println("- " + describe(edge));
+        }
+        for (DependencyEdge edge : diff.getAddedEdges()) {
+            out.println("+ " + describe(edge));
+        }
+        out.println(diff.getRemovedNodes().size() + " classes removed, " + diff.getAddedNodes().size() + " added, "
+                + diff.getMovedNodes().size() + " moved; " + diff.getRemovedEdges().size() + " dependencies removed, "
+                + diff.getAddedEdges().size() + " added");
+        out.flush();
+    }
+
+    private static String describe(DependencyEdge edge) {
+        return edge.getSource().getFullyQualifiedName() + " -> " + edge.getTarget().getFullyQualifiedName()
+                + " (" + edge.getFieldName() + ")";
+    }
+}
@@ -0,0 +1,224 @@
+package com.analyzer.cli;
+
+import com.analyzer.AnalysisPipeline;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.export.BinaryGraphWriter;
+import com.analyzer.graph.export.DotGraphWriter;
+import com.analyzer.graph.export.GraphMlGraphWriter;
+import com.analyzer.graph.export.JsonGraphWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The {@code export} command: analyses a project, lays it out (unless {@code --no-layout}) and
+ * writes the graph to a file or stdout, without starting the server, e.g. in a CI pipeline.
+ *
+ * <pre>
+ * export [--format json|binary|graphml|dot] [--output file] [--no-layout] &lt;graph&gt;
+ * </pre>
+ * The graph is a project directory, or a binary snapshot (see {@link GraphLoader}) to convert to
+ * another format. The format defaults to the one the output file's extension names
+ * ({@code .json}, {@code .bin}, {@code .graphml}, {@code .dot} or {@code .gv}), else JSON:
+ * <ul>
+ *   <li>{@code json}: the compact snapshot of {@link JsonGraphWriter}</li>
+ *   <li>{@code binary}: the format of {@link BinaryGraphWriter}, which the other commands read back</li>
+ *   <li>{@code graphml}: GraphML (see {@link GraphMlGraphWriter})</li>
+ *   <li>{@code dot}: Graphviz DOT (see {@link DotGraphWriter})</li>
+ * </ul>
+ * All formats are streamed, so the output is never held in memory. A file is written under a
+ * temporary name and renamed when complete, so a failed export leaves no partial file behind.
+ *
+ * A timing summary goes to stderr. The exit code is 0 on success, 1 if the analysis failed or
+ * found no classes, and 2 on usage or output errors.
+ */
+public class ExportCommand {
+    private static final Logger logger = LoggerFactory.getLogger(ExportCommand.class);
+
+    private static final String USAGE =
+            "Usage: export [--format json|binary|graphml|dot] [--output file] [--no-layout] <graph>";
+
+    private final Properties config;
+    private final String jdtlsCommand;
+    private final PrintStream stdout;
+
+    /**
+     * @param stdout where the graph goes unless written to a file
+     */
+    public ExportCommand(Properties config, String jdtlsCommand, PrintStream stdout) {
+        this.config = config;
+        this.jdtlsCommand = jdtlsCommand;
+        this.stdout = stdout;
+    }
+
+    /**
+     * Run the command with the arguments after {@code export}.
+     *
+     * @return the exit code
+     */
+    public int run(String[] args) {
+        String format = null;
+        String output = null;
+        boolean withLayout = true;
+        String graphPath = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if ("--format".equals(arg) && hasValue) {
+                format = args[++i].toLowerCase(Locale.ROOT);
+            } else if ("--output".equals(arg) && hasValue) {
+                output = args[++i];
+            } else if ("--no-layout".equals(arg)) {
+                withLayout = false;
+            } else if (arg.startsWith("--") || graphPath != null) {
+                System.err.println(USAGE);
+                return 2;
+            } else {
+                graphPath = arg;
+            }
+        }
+        if (format == null) {
+            format = output != null ? formatOf(output) : "json";
+        }
+        if (graphPath == null || !(format.equals("json") || format.equals("binary")
+                || format.equals("graphml") || format.equals("dot"))) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        long start = System.nanoTime();
+        DependencyGraph graph;
+        long analysed;
+        long laidOut;
+        try {
+            if (Files.isDirectory(Paths.get(graphPath))) {
+                AnalysisPipeline pipeline = new AnalysisPipeline(config, jdtlsCommand);
+                graph = pipeline.analyze(graphPath, false);
+                analysed = System.nanoTime();
+                if (withLayout && graph.getNodeCount() > 0) {
+                    pipeline.layout(graph);
+                }
+            } else {
+                // A snapshot keeps the layout it was taken with
+                graph = GraphLoader.load(config, jdtlsCommand, graphPath);
+                if (!"dot".equals(format)) {
+                    // The writers export the analytics stamped on the nodes; snapshots older than
+                    // format version 5 do not carry them all
+                    graph.getComponents();
+                    graph.getCentrality();
+                    graph.getCommunities();
+                }
+                analysed = System.nanoTime();
+            }
+            laidOut = System.nanoTime();
+        } catch (Exception e) {
+            logger.error("Analysis of {} failed: {}", graphPath, e.getMessage(), e);
+            return 1;
+        }
+        if (graph.getNodeCount() == 0) {
+            logger.error("No classes found in {}", graphPath);
+            return 1;
+        }
+
+        long bytes;
+        try {
+            bytes = output != null ? writeFile(graph, format, withLayout, Paths.get(output))
+                    : write(graph, format, withLayout, stdout);
+        } catch (Exception e) {
+            logger.error("export failed: {}", e.getMessage(), e);
+            return 2;
+        }
+        long written = System.nanoTime();
+
+        System.err.printf(Locale.ROOT, "Exported %d classes and %d dependencies as %s to %s (%d bytes)%n",
+                graph.getNodeCount(), graph.getEdgeCount(), format, output != null ? output : "stdout", bytes);
+        System.err.printf(Locale.ROOT, "  analysis %9.2f s%n", (analysed - start) / 1e9);
+        System.err.printf(Locale.ROOT, "  layout   %9.2f s%n", (laidOut - analysed) / 1e9);
+        System.err.printf(Locale.ROOT, "  write    %9.2f s%n", (written - laidOut) / 1e9);
+        System.err.printf(Locale.ROOT, "  total    %9.2f s%n", (written - start) / 1e9);
+        return 0;
+    }
+
+    private static String formatOf(String output) {
+        String name = output.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".bin")) {
+            return "binary";
+        } else if (name.endsWith(".graphml")) {
+            return "graphml";
+        } else if (name.endsWith(".dot") || name.endsWith(".gv")) {
+            return "dot";
+        }
+        return "json";
+    }
+
+    private static long writeFile(DependencyGraph graph, String format, boolean withPositions, Path file)
+            throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            long bytes;
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                bytes = write(graph, format, withPositions, out);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            return bytes;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Stream the graph in the given format and return the number of bytes written.
+     */
+    private static long write(DependencyGraph graph, String format, boolean withPositions, OutputStream stream)
+            throws IOException {
+        CountingOutputStream out = new CountingOutputStream(stream);
+        switch (format) {
+            case "binary":
+                new BinaryGraphWriter().write(graph, out);
+                break;
+            case "graphml":
+                new GraphMlGraphWriter().write(graph, out);
+                break;
+            case "dot":
+                new DotGraphWriter(withPositions).write(graph, out);
+                break;
+            default:
+                new JsonGraphWriter().write(graph, out);
+                out.write('\n');
+                break;
+        }
+        out.flush();
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
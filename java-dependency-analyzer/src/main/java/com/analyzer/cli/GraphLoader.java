@@ -0,0 +1,54 @@
+package com.analyzer.cli;
+
+import com.analyzer.AnalysisPipeline;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.export.BinaryGraphReader;
+import com.analyzer.graph.index.AdjacencyIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Loads the graph a command works on: a binary snapshot (from {@code /api/graph?format=binary}
+ * or a spilled workspace), or a project directory, which is analysed with JDT LS first.
+ */
+final class GraphLoader {
+    private static final Logger logger = LoggerFactory.getLogger(GraphLoader.class);
+
+    private GraphLoader() {
+    }
+
+    static DependencyGraph load(Properties config, String jdtlsCommand, String location) throws Exception {
+        Path path = Paths.get(location);
+        if (Files.isDirectory(path)) {
+            logger.info("Analysing {}", path);
+            return new AnalysisPipeline(config, jdtlsCommand).analyze(location);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return new BinaryGraphReader().read(in);
+        } catch (IOException e) {
+            throw new IOException("Cannot read graph snapshot " + location + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load only the adjacency index, which a snapshot provides without building a graph.
+     */
+    static AdjacencyIndex loadIndex(Properties config, String jdtlsCommand, String location) throws Exception {
+        Path path = Paths.get(location);
+        if (Files.isDirectory(path)) {
+            return load(config, jdtlsCommand, location).getAdjacencyIndex();
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return new BinaryGraphReader().readIndex(in);
+        } catch (IOException e) {
+            throw new IOException("Cannot read graph snapshot " + location + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.analyzer.cli;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.analysis.ChangeImpact;
+import com.analyzer.graph.export.JsonGraphWriter;
+import com.analyzer.graph.index.AdjacencyIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * The {@code impact} command: lists the classes affected by a set of changed source files, e.g.
+ * to select the tests a CI build has to run, without starting the server.
+ *
+ * <pre>
+ * impact [--format json|text] [--output file] [--root dir] [--depth n] &lt;graph&gt; [changed-file ...]
+ * </pre>
+ * The graph is a binary snapshot or a project directory (see {@link GraphLoader}); a snapshot
+ * is read in well under a second, so CI should keep one from its last full build. Changed files
+ * are taken from the arguments, or one per line from stdin if there are none (or just {@code -}),
+ * so {@code git diff --name-only main | java -jar analyzer.jar impact graph.bin} works. Relative
+ * paths are resolved against {@code --root} (the working directory by default) and otherwise
+ * matched by path suffix; see {@link ChangeImpact}. {@code --depth} limits how many dependency
+ * steps are followed (0, the default, for all).
+ *
+ * The result is an {@code impact} JSON document (see {@link JsonGraphWriter}) or, as text, the
+ * changed and affected classes one per line in name order. Files that declare no known class are
+ * logged. The exit code is 0 on success and 2 on errors.
+ */
+public class ImpactCommand {
+    private static final Logger logger = LoggerFactory.getLogger(ImpactCommand.class);
+
+    private static final String USAGE =
+            "Usage: impact [--format json|text] [--output file] [--root dir] [--depth n] <graph> [changed-file ...]";
+
+    private final Properties config;
+    private final String jdtlsCommand;
+    private final InputStream stdin;
+    private final PrintStream stdout;
+
+    /**
+     * @param stdin  where changed files are read from if none are given as arguments
+     * @param stdout where the result goes unless written to a file
+     */
+    public ImpactCommand(Properties config, String jdtlsCommand, InputStream stdin, PrintStream stdout) {
+        this.config = config;
+        this.jdtlsCommand = jdtlsCommand;
+        this.stdin = stdin;
+        this.stdout = stdout;
+    }
+
+    /**
+     * Run the command with the arguments after {@code impact}.
+     *
+     * @return the exit code
+     */
+    public int run(String[] args) {
+        String format = "json";
+        String output = null;
+        String root = ".";
+        int depth = 0;
+        String graphPath = null;
+        List<String> files = new ArrayList<>();
+        boolean readStdin = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                boolean hasValue = i + 1 < args.length;
+                if ("--format".equals(arg) && hasValue) {
+                    format = args[++i];
+                } else if ("--output".equals(arg) && hasValue) {
+                    output = args[++i];
+                } else if ("--root".equals(arg) && hasValue) {
+                    root = args[++i];
+                } else if ("--depth".equals(arg) && hasValue) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if (arg.startsWith("--")) {
+                    System.err.println(USAGE);
+                    return 2;
+                } else if (graphPath == null) {
+                    graphPath = arg;
+                } else if ("-".equals(arg)) {
+                    readStdin = true;
+                } else {
+                    files.add(arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (graphPath == null || depth < 0 || (!"json".equals(format) && !"text".equals(format))) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            if (readStdin || files.isEmpty()) {
+                files.addAll(readLines(stdin));
+            }
+            AdjacencyIndex index = GraphLoader.loadIndex(config, jdtlsCommand, graphPath);
+            ChangeImpact impact = ChangeImpact.compute(index, files, Paths.get(root), depth);
+            logger.info("{} changed files declare {} classes; {} classes depend on them ({} ms)",
+                    impact.getChangedFiles().size(), impact.getChangedClasses().size(),
+                    impact.getAffected().size(), impact.getElapsedNanos() / 1_000_000);
+            for (String file : impact.getUnmatchedFiles()) {
+                logger.info("No class of the graph is declared in {}", file);
+            }
+
+            Writer out = output != null
+                    ? Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+            try {
+                if ("json".equals(format)) {
+                    new JsonGraphWriter().writeImpact(impact, out);
+                    out.write('\n');
+                } else {
+                    writeText(impact, out);
+                }
+            } finally {
+                if (output != null) {
+                    out.close();
+                } else {
+                    out.flush();
+                }
+            }
+            return 0;
+        } catch (Exception e) {
+            logger.error("impact failed: {}", e.getMessage(), e);
+            return 2;
+        }
+    }
+
+    private static List<String> readLines(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Write the changed and affected classes, one fully qualified name per line.
+     */
+    private static void writeText(ChangeImpact impact, Writer writer) {
+        TreeSet<String> names = new TreeSet<>();
+        for (ClassNode node : impact.getChangedClasses()) {
+            names.add(node.getFullyQualifiedName());
+        }
+        for (ChangeImpact.Affected affected : impact.getAffected()) {
+            names.add(affected.getNode().getFullyQualifiedName());
+        }
+        PrintWriter out = new PrintWriter(writer);
+        for (String name : names) {
+            out.println(name);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,90 @@
+package com.analyzer.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses between platform and virtual threads for work that mostly waits: HTTP and WebSocket
+ * request handling and LSP requests.
+ *
+ * Virtual threads are enabled with {@code execution.virtual-threads=true}. The application
+ * targets Java 11, so they are looked up reflectively and used only when the running JDK
+ * provides them (Java 21 and later); otherwise the platform thread model is kept. Java 19 and 20
+ * have the factory method but reject it without {@code --enable-preview}, so it is tried once
+ * before being relied on.
+ */
+public final class ThreadingMode {
+    private static final Logger logger = LoggerFactory.getLogger(ThreadingMode.class);
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactory();
+
+    private ThreadingMode() {
+    }
+
+    /**
+     * Whether the running JDK supports virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Whether virtual threads are configured and supported. Logs a warning if they are
+     * configured on a JDK without them.
+     */
+    public static boolean useVirtualThreads(Properties config) {
+        if (!Boolean.parseBoolean(config.getProperty("execution.virtual-threads", "false"))) {
+            return false;
+        }
+        if (!isVirtualThreadSupported()) {
+            logger.warn("execution.virtual-threads is set, but Java {} has no virtual threads; using platform threads",
+                    System.getProperty("java.version"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Create an executor for blocking tasks: one new virtual thread per task, or a fixed pool
+     * of daemon platform threads.
+     *
+     * @param virtual         whether to use virtual threads; must only be true if they are supported
+     * @param name            prefix of the platform thread names
+     * @param platformThreads size of the platform thread pool
+     */
+    public static ExecutorService newTaskExecutor(boolean virtual, String name, int platformThreads) {
+        if (virtual) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create a virtual thread executor", e);
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads), runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Method findVirtualThreadFactory() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ((ExecutorService) factory.invoke(null)).shutdown();
+            return factory;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            // Preview API on Java 19 and 20: throws UnsupportedOperationException unless enabled
+            logger.debug("Virtual threads are not available", e.getCause() != null ? e.getCause() : e);
+            return null;
+        }
+    }
+}
@@ -8,12 +8,18 @@ import java.util.Objects;
 public class ClassNode {
     private final String name;
     private final String fullyQualifiedName;
+    private String sourceUri;
     private double x;
     private double y;
     private double z;
     private double vx; // velocity for force-directed layout
     private double vy;
     private double vz;
+    private int componentId = -1; // strongly connected component, see DependencyGraph#getComponents()
+    private int dependentCount;    // centrality, see DependencyGraph#getCentrality()
+    private double pageRank;
+    private double betweenness;
+    private int communityId = -1;  // see DependencyGraph#getCommunities()
 
     public ClassNode(String name, String fullyQualifiedName) {
         this.name = name;
@@ -34,6 +40,18 @@ public class ClassNode {
         return fullyQualifiedName;
     }
 
+    /**
+     * Get the URI of the source file that declares this class, as reported by JDT LS, or null
+     * if it is not known.
+     */
+    public String getSourceUri() {
+        return sourceUri;
+    }
+
+    public void setSourceUri(String sourceUri) {
+        this.sourceUri = sourceUri;
+    }
+
     public double getX() {
         return x;
     }
@@ -82,6 +100,64 @@ public class ClassNode {
         this.vz = vz;
     }
 
+    /**
+     * Get the strongly connected component of this class as of the last time the components
+     * of its graph were computed, or -1 if they never were. Classes in the same cycle share it.
+     */
+    public int getComponentId() {
+        return componentId;
+    }
+
+    public void setComponentId(int componentId) {
+        this.componentId = componentId;
+    }
+
+    /**
+     * Get the number of dependencies on this class, one per field of its type, as of the last
+     * time the centrality of its graph was computed.
+     */
+    public int getDependentCount() {
+        return dependentCount;
+    }
+
+    public void setDependentCount(int dependentCount) {
+        this.dependentCount = dependentCount;
+    }
+
+    /**
+     * Get the PageRank of this class as of the last centrality computation, 0 if there was none.
+     */
+    public double getPageRank() {
+        return pageRank;
+    }
+
+    public void setPageRank(double pageRank) {
+        this.pageRank = pageRank;
+    }
+
+    /**
+     * Get the normalised betweenness of this class as of the last centrality computation.
+     */
+    public double getBetweenness() {
+        return betweenness;
+    }
+
+    public void setBetweenness(double betweenness) {
+        this.betweenness = betweenness;
+    }
+
+    /**
+     * Get the community of this class as of the last time the communities of its graph were
+     * computed, or -1 if they never were.
+     */
+    public int getCommunityId() {
+        return communityId;
+    }
+
+    public void setCommunityId(int communityId) {
+        this.communityId = communityId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
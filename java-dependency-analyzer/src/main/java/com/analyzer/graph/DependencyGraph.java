@@ -1,44 +1,373 @@
 package com.analyzer.graph;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.analyzer.graph.analysis.CentralityMetrics;
+import com.analyzer.graph.analysis.Communities;
+import com.analyzer.graph.analysis.ReachabilityIndex;
+import com.analyzer.graph.analysis.StronglyConnectedComponents;
+import com.analyzer.graph.export.BinaryGraphWriter;
+import com.analyzer.graph.export.JsonGraphWriter;
+import com.analyzer.graph.index.AdjacencyIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents the complete dependency graph of classes.
  * Thread-safe for concurrent access.
+ *
+ * Every mutation increments the graph version and is recorded in a bounded change log,
+ * so clients holding an older version can be sent just the missing changes.
  */
 public class DependencyGraph {
     private static final Logger logger = LoggerFactory.getLogger(DependencyGraph.class);
-    
+
+    public static final int DEFAULT_CHANGE_LOG_CAPACITY = 10_000;
+
+    private final String id;
     private final Map<String, ClassNode> nodes;
     private final Set<DependencyEdge> edges;
-    private final Gson gson;
+    private final GraphChangeLog changeLog;
+    private volatile long version;
+    private volatile AdjacencyIndex adjacencyIndex;
+    private volatile StronglyConnectedComponents components;
+    private volatile ReachabilityIndex reachability;
+    private volatile CentralityMetrics centrality;
+    private volatile int betweennessSamples = CentralityMetrics.DEFAULT_BETWEENNESS_SAMPLES;
+    private volatile Communities communities;
+    private volatile double communityResolution = Communities.DEFAULT_RESOLUTION;
+    private final Map<Integer, PackageGraph> packageGraphs = new ConcurrentHashMap<>();
 
     public DependencyGraph() {
+        this(DEFAULT_CHANGE_LOG_CAPACITY);
+    }
+
+    /**
+     * Create a graph that keeps at most the given number of changes for delta sync.
+     */
+    public DependencyGraph(int changeLogCapacity) {
+        this.id = UUID.randomUUID().toString();
         this.nodes = new ConcurrentHashMap<>();
         this.edges = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.changeLog = new GraphChangeLog(changeLogCapacity);
+        this.version = 0;
     }
 
     /**
-     * Add a class node to the graph.
+     * Add a class node to the graph, replacing any node with the same fully qualified name.
      */
-    public void addNode(ClassNode node) {
-        nodes.put(node.getFullyQualifiedName(), node);
+    public synchronized void addNode(ClassNode node) {
+        ClassNode replaced = nodes.put(node.getFullyQualifiedName(), node);
+        recordNodeChange(GraphChange.Type.NODE_ADDED, node);
+        if (replaced == null) {
+            for (PackageGraph packages : packageGraphs.values()) {
+                packages.nodeAdded(node, version);
+            }
+        }
     }
 
     /**
      * Add a dependency edge to the graph.
      */
-    public void addEdge(DependencyEdge edge) {
-        edges.add(edge);
+    public synchronized void addEdge(DependencyEdge edge) {
+        if (edges.add(edge)) {
+            recordEdgeChange(GraphChange.Type.EDGE_ADDED, edge);
+            for (PackageGraph packages : packageGraphs.values()) {
+                packages.edgeAdded(edge, version);
+            }
+        }
+    }
+
+    /**
+     * Remove a node and all edges connected to it.
+     *
+     * @return the removed node, or null if there was no such node
+     */
+    public synchronized ClassNode removeNode(String fullyQualifiedName) {
+        ClassNode node = nodes.get(fullyQualifiedName);
+        if (node == null) {
+            return null;
+        }
+        for (DependencyEdge edge : getEdgesForNode(node)) {
+            removeEdge(edge);
+        }
+        nodes.remove(fullyQualifiedName);
+        recordNodeChange(GraphChange.Type.NODE_REMOVED, node);
+        for (PackageGraph packages : packageGraphs.values()) {
+            packages.nodeRemoved(node, version);
+        }
+        return node;
+    }
+
+    /**
+     * Remove a dependency edge.
+     *
+     * @return true if the edge was part of the graph
+     */
+    public synchronized boolean removeEdge(DependencyEdge edge) {
+        if (edges.remove(edge)) {
+            recordEdgeChange(GraphChange.Type.EDGE_REMOVED, edge);
+            for (PackageGraph packages : packageGraphs.values()) {
+                packages.edgeRemoved(edge, version);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move a node to a new position and record the move as a change.
+     * Layout algorithms set positions directly before a graph is published;
+     * use this method for position updates after publishing.
+     */
+    public synchronized void updateNodePosition(ClassNode node, double x, double y, double z) {
+        node.setX(x);
+        node.setY(y);
+        node.setZ(z);
+        if (nodes.get(node.getFullyQualifiedName()) == node) {
+            recordNodeChange(GraphChange.Type.NODE_MOVED, node);
+        }
+    }
+
+    /**
+     * Get the unique id of this graph instance. Versions are only comparable within one id.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the current version, incremented on every mutation.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get all changes made after the given version.
+     *
+     * @return the changes in version order, or null if the log no longer reaches back that far
+     *         and the client needs a full snapshot
+     */
+    public synchronized List<GraphChange> getChangesSince(long sinceVersion) {
+        if (sinceVersion > version) {
+            return null;
+        }
+        return changeLog.since(sinceVersion);
+    }
+
+    /**
+     * Get the compressed adjacency index of the graph at its current version.
+     * The index is built on first use and rebuilt after the graph changes.
+     */
+    public AdjacencyIndex getAdjacencyIndex() {
+        long current = version;
+        AdjacencyIndex index = adjacencyIndex;
+        if (index == null || index.getVersion() != current) {
+            synchronized (this) {
+                index = adjacencyIndex;
+                if (index == null || index.getVersion() != version) {
+                    long start = System.nanoTime();
+                    index = AdjacencyIndex.build(this);
+                    adjacencyIndex = index;
+                    logger.info("Built adjacency index: {} nodes, {} edges at version {} in {} ms",
+                            index.getNodeCount(), index.getEdgeCount(), version, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the strongly connected components (cycles) of the graph at its current version.
+     * They are computed on first use and after the graph changes, and each class node is
+     * stamped with its component id.
+     */
+    public StronglyConnectedComponents getComponents() {
+        AdjacencyIndex index = getAdjacencyIndex();
+        StronglyConnectedComponents current = components;
+        if (current == null || current.getIndex() != index) {
+            synchronized (this) {
+                current = components;
+                if (current == null || current.getIndex() != index) {
+                    long start = System.nanoTime();
+                    current = StronglyConnectedComponents.compute(index);
+                    for (int i = 0; i < index.getNodeCount(); i++) {
+                        index.getNode(i).setComponentId(current.componentOf(i));
+                    }
+                    components = current;
+                    logger.info("Found {} strongly connected components, {} of them cycles, at version {} in {} ms",
+                            current.getComponentCount(), current.getCycleCount(), index.getVersion(),
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the centrality metrics (in-degree, PageRank, betweenness) of the graph at its current
+     * version. They are computed on first use and after the graph changes, and each class node
+     * is stamped with its values.
+     */
+    public CentralityMetrics getCentrality() {
+        AdjacencyIndex index = getAdjacencyIndex();
+        CentralityMetrics current = centrality;
+        if (current == null || current.getIndex() != index) {
+            synchronized (this) {
+                current = centrality;
+                if (current == null || current.getIndex() != index) {
+                    current = CentralityMetrics.compute(index, betweennessSamples);
+                    for (int i = 0; i < index.getNodeCount(); i++) {
+                        ClassNode node = index.getNode(i);
+                        node.setDependentCount(current.inDegree(i));
+                        node.setPageRank(current.pageRank(i));
+                        node.setBetweenness(current.betweenness(i));
+                    }
+                    centrality = current;
+                    logger.info("Computed centrality of {} classes at version {} in {} ms "
+                                    + "(PageRank in {} iterations, betweenness from {} of {} sources)",
+                            index.getNodeCount(), index.getVersion(), current.getElapsedNanos() / 1_000_000,
+                            current.getPageRankIterations(), current.getBetweennessSamples(), index.getNodeCount());
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Set the number of source classes betweenness is estimated from the next time the
+     * centrality is computed; 0 skips betweenness.
+     */
+    public void setBetweennessSamples(int samples) {
+        this.betweennessSamples = samples;
+    }
+
+    /**
+     * Get the communities of the graph at its current version. They are computed on first use
+     * and after the graph changes, and each class node is stamped with its community id.
+     */
+    public Communities getCommunities() {
+        AdjacencyIndex index = getAdjacencyIndex();
+        Communities current = communities;
+        if (current == null || current.getIndex() != index) {
+            synchronized (this) {
+                current = communities;
+                if (current == null || current.getIndex() != index) {
+                    current = Communities.compute(index, communityResolution);
+                    for (int i = 0; i < index.getNodeCount(); i++) {
+                        index.getNode(i).setCommunityId(current.communityOf(i));
+                    }
+                    communities = current;
+                    logger.info("Found {} communities (modularity {}) at version {} in {} ms over {} levels",
+                            current.getCommunityCount(), String.format("%.3f", current.getModularity()),
+                            index.getVersion(), current.getElapsedNanos() / 1_000_000, current.getLevels());
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Set the modularity resolution used the next time the communities are computed; above 1
+     * gives more, smaller communities.
+     */
+    public void setCommunityResolution(double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+        this.communityResolution = resolution;
+    }
+
+    /**
+     * Get the modularity resolution the communities are computed with.
+     */
+    public double getCommunityResolution() {
+        return communityResolution;
+    }
+
+    /**
+     * Get the reachability index of the graph at its current version. After dependencies are
+     * added between existing classes the index is updated in place; after other changes it is
+     * rebuilt on the next call.
+     *
+     * @param maxBitsetBytes memory the index may use for bitsets before it uses interval labels
+     */
+    public ReachabilityIndex getReachabilityIndex(long maxBitsetBytes) {
+        ReachabilityIndex current = reachability;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = reachability;
+            if (current != null && current.getVersion() == version) {
+                return current;
+            }
+            if (current != null && current.getVersion() < version) {
+                long start = System.nanoTime();
+                List<GraphChange> changes = changeLog.since(current.getVersion());
+                if (changes != null && current.applyChanges(changes, version)) {
+                    logger.debug("Updated reachability index with {} changes to version {} in {} us",
+                            changes.size(), version, (System.nanoTime() - start) / 1000);
+                    return current;
+                }
+            }
+            current = ReachabilityIndex.build(getComponents(), maxBitsetBytes);
+            reachability = current;
+            logger.info("Built reachability index ({}) for {} components at version {} in {} ms, ~{} KB",
+                    current.isBitsetMode() ? "bitsets" : "interval labels",
+                    current.getComponents().getComponentCount(), version,
+                    current.getBuildNanos() / 1_000_000, current.getMemoryBytes() >> 10);
+            return current;
+        }
+    }
+
+    /**
+     * Get the package-level aggregate of the graph at a package depth (0 for full package names).
+     * It is built from the current graph on first use for a depth and from then on kept up to
+     * date with every added and removed node and edge.
+     *
+     * @throws IllegalArgumentException if the depth is negative
+     */
+    public PackageGraph getPackageGraph(int depth) {
+        PackageGraph packages = packageGraphs.get(depth);
+        if (packages != null) {
+            return packages;
+        }
+        synchronized (this) {
+            packages = packageGraphs.get(depth);
+            if (packages == null) {
+                long start = System.nanoTime();
+                packages = new PackageGraph(depth, version);
+                for (ClassNode node : nodes.values()) {
+                    packages.nodeAdded(node, version);
+                }
+                for (DependencyEdge edge : edges) {
+                    packages.edgeAdded(edge, version);
+                }
+                packageGraphs.put(depth, packages);
+                logger.info("Built package graph at depth {}: {} packages, {} package dependencies at version {} in {} ms",
+                        depth, packages.getPackageCount(), packages.getEdgeCount(), version,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            return packages;
+        }
+    }
+
+    private void recordNodeChange(GraphChange.Type type, ClassNode node) {
+        version++;
+        changeLog.append(GraphChange.forNode(version, type, node));
+    }
+
+    private void recordEdgeChange(GraphChange.Type type, DependencyEdge edge) {
+        version++;
+        changeLog.append(GraphChange.forEdge(version, type, edge));
     }
 
     /**
@@ -62,6 +391,14 @@ public class DependencyGraph {
         return new HashSet<>(edges);
     }
 
+    /**
+     * Get a read-only live view of the edges, without copying.
+     * Iteration is weakly consistent with concurrent modifications.
+     */
+    public Set<DependencyEdge> getEdgesView() {
+        return Collections.unmodifiableSet(edges);
+    }
+
     /**
      * Get the number of nodes in the graph.
      */
@@ -90,78 +427,71 @@ public class DependencyGraph {
     }
 
     /**
-     * Get the number of dependencies (outgoing edges) for a node.
+     * Get the number of dependencies (outgoing edges) for a node, from the adjacency index.
      */
     public int getDependencyCount(ClassNode node) {
-        int count = 0;
-        for (DependencyEdge edge : edges) {
-            if (edge.getSource().equals(node)) {
-                count++;
-            }
-        }
-        return count;
+        AdjacencyIndex index = getAdjacencyIndex();
+        int i = index.indexOf(node.getFullyQualifiedName());
+        return i >= 0 ? index.outDegree(i) : 0;
     }
 
     /**
      * Convert the graph to JSON format for transmission to frontend.
+     * Prefer {@link #writeJson(OutputStream)} for large graphs to avoid building the whole string.
      */
     public String toJson() {
-        logger.info("Serializing graph to JSON: {} nodes, {} edges", nodes.size(), edges.size());
-        
-        JsonObject root = new JsonObject();
-        root.addProperty("type", "graph");
-
-        // Convert nodes
-        JsonArray nodesArray = new JsonArray();
-        for (ClassNode node : nodes.values()) {
-            JsonObject nodeObj = new JsonObject();
-            nodeObj.addProperty("id", node.getFullyQualifiedName());
-            nodeObj.addProperty("name", node.getName());
-            nodeObj.addProperty("fullName", node.getFullyQualifiedName());
-            nodeObj.addProperty("x", node.getX());
-            nodeObj.addProperty("y", node.getY());
-            nodeObj.addProperty("z", node.getZ());
-            nodeObj.addProperty("dependencyCount", getDependencyCount(node));
-            nodesArray.add(nodeObj);
-        }
-        root.add("nodes", nodesArray);
-
-        // Convert edges
-        JsonArray edgesArray = new JsonArray();
-        for (DependencyEdge edge : edges) {
-            JsonObject edgeObj = new JsonObject();
-            String sourceId = edge.getSource().getFullyQualifiedName();
-            String targetId = edge.getTarget().getFullyQualifiedName();
-            edgeObj.addProperty("source", sourceId);
-            edgeObj.addProperty("target", targetId);
-            edgeObj.addProperty("fieldName", edge.getFieldName());
-            edgesArray.add(edgeObj);
-            
-            // Log first few edges for debugging
-            if (edgesArray.size() <= 5) {
-                logger.info("Edge {}: {} -> {} ({})", edgesArray.size(), sourceId, targetId, edge.getFieldName());
-            }
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
         }
-        root.add("edges", edgesArray);
-        
-        logger.info("JSON serialization complete: {} nodes, {} edges in output", 
-                nodesArray.size(), edgesArray.size());
+        return writer.toString();
+    }
 
-        return gson.toJson(root);
+    /**
+     * Stream the graph as compact JSON to a character stream.
+     */
+    public void writeJson(Writer out) throws IOException {
+        logger.info("Serializing graph to JSON: {} nodes, {} edges", nodes.size(), edges.size());
+        new JsonGraphWriter().write(this, out);
+    }
+
+    /**
+     * Stream the graph as compact UTF-8 JSON to an output stream.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        logger.info("Serializing graph to JSON: {} nodes, {} edges", nodes.size(), edges.size());
+        new JsonGraphWriter().write(this, out);
+    }
+
+    /**
+     * Write the graph in the compact binary format described in {@link BinaryGraphWriter}.
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        logger.info("Serializing graph to binary: {} nodes, {} edges", nodes.size(), edges.size());
+        new BinaryGraphWriter().write(this, out);
     }
 
     /**
      * Clear all nodes and edges from the graph.
+     * Clients are forced to resync from a full snapshot afterwards.
      */
-    public void clear() {
+    public synchronized void clear() {
         nodes.clear();
         edges.clear();
+        version++;
+        changeLog.reset(version);
+        for (PackageGraph packages : packageGraphs.values()) {
+            packages.clear(version);
+        }
     }
 
     @Override
     public String toString() {
         return "DependencyGraph{" +
-                "nodeCount=" + nodes.size() +
+                "version=" + version +
+                ", nodeCount=" + nodes.size() +
                 ", edgeCount=" + edges.size() +
                 '}';
     }
@@ -1,5 +1,6 @@
 package com.analyzer.graph;
 
+import com.analyzer.graph.analysis.StronglyConnectedComponents;
 import com.analyzer.lsp.JdtLsClient;
 import org.eclipse.lsp4j.*;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
@@ -8,6 +9,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Builds a dependency graph by analyzing Java classes via JDT LS.
@@ -18,6 +24,8 @@ public class GraphBuilder {
 
     private final JdtLsClient lsClient;
     private final DependencyGraph graph;
+    private final ExecutorService executor;
+    private final int maxConcurrentRequests;
 
     // Set of Java standard library package prefixes to exclude
     private static final Set<String> EXCLUDED_PACKAGES = Set.of(
@@ -27,8 +35,19 @@ public class GraphBuilder {
     );
 
     public GraphBuilder(JdtLsClient lsClient) {
+        this(lsClient, null, 1);
+    }
+
+    /**
+     * Create a builder that analyses classes concurrently, with up to the given number of
+     * document symbol requests in flight. Each class is analysed by a task on the executor that
+     * blocks on its request, which is cheap when the executor runs virtual threads.
+     */
+    public GraphBuilder(JdtLsClient lsClient, ExecutorService executor, int maxConcurrentRequests) {
         this.lsClient = lsClient;
         this.graph = new DependencyGraph();
+        this.executor = executor;
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
     }
 
     /**
@@ -60,31 +79,99 @@ public class GraphBuilder {
         for (SymbolInformation symbol : classSymbols) {
             String fullName = getFullyQualifiedName(symbol);
             ClassNode node = new ClassNode(symbol.getName(), fullName);
+            // Deprecated with SymbolInformation in LSP 3.17, which getWorkspaceSymbols still returns
+            @SuppressWarnings("deprecation")
+            Location location = symbol.getLocation();
+            if (location != null) {
+                node.setSourceUri(location.getUri());
+            }
             graph.addNode(node);
             nodeMap.put(fullName, node);
         }
 
         // Analyze each class for dependencies
-        int processedCount = 0;
-        for (SymbolInformation classSymbol : classSymbols) {
-            try {
-                analyzeClassDependencies(classSymbol, nodeMap);
-                processedCount++;
-
-                if (processedCount % 10 == 0) {
-                    logger.info("Analyzed {}/{} classes", processedCount, classSymbols.size());
+        if (executor == null || maxConcurrentRequests == 1) {
+            int processedCount = 0;
+            for (SymbolInformation classSymbol : classSymbols) {
+                try {
+                    analyzeClassDependencies(classSymbol, nodeMap);
+                    processedCount++;
+
+                    if (processedCount % 10 == 0) {
+                        logger.info("Analyzed {}/{} classes", processedCount, classSymbols.size());
+                    }
+                } catch (Exception e) {
+                    logger.warn("Error analyzing class {}: {}", classSymbol.getName(), e.getMessage());
                 }
-            } catch (Exception e) {
-                logger.warn("Error analyzing class {}: {}", classSymbol.getName(), e.getMessage());
             }
+        } else {
+            analyzeConcurrently(classSymbols, nodeMap);
         }
 
         logger.info("Graph building completed: {} nodes, {} edges",
                 graph.getNodeCount(), graph.getEdgeCount());
 
+        reportCycles();
+
         return graph;
     }
 
+    /**
+     * Find the cycles of the built graph and log the largest ones.
+     */
+    private void reportCycles() {
+        StronglyConnectedComponents components = graph.getComponents();
+        if (components.getCycleCount() == 0) {
+            logger.info("No dependency cycles found");
+            return;
+        }
+        logger.info("Found {} dependency cycles", components.getCycleCount());
+        int[] cycles = components.getCyclicComponents();
+        for (int i = 0; i < Math.min(cycles.length, 5); i++) {
+            List<ClassNode> members = components.getMembers(cycles[i]);
+            logger.info("Cycle of {} classes: {}{}", members.size(),
+                    members.subList(0, Math.min(members.size(), 5)).stream()
+                            .map(ClassNode::getName).collect(Collectors.joining(", ")),
+                    members.size() > 5 ? ", ..." : "");
+        }
+    }
+
+    /**
+     * Analyze classes on the executor with at most {@code maxConcurrentRequests} requests in flight.
+     */
+    private void analyzeConcurrently(List<SymbolInformation> classSymbols, Map<String, ClassNode> nodeMap)
+            throws InterruptedException {
+        logger.info("Analyzing classes with up to {} concurrent requests", maxConcurrentRequests);
+        Semaphore inFlight = new Semaphore(maxConcurrentRequests);
+        AtomicInteger processedCount = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>(classSymbols.size());
+        for (SymbolInformation classSymbol : classSymbols) {
+            inFlight.acquire();
+            tasks.add(executor.submit(() -> {
+                try {
+                    analyzeClassDependencies(classSymbol, nodeMap);
+                    int processed = processedCount.incrementAndGet();
+                    if (processed % 10 == 0) {
+                        logger.info("Analyzed {}/{} classes", processed, classSymbols.size());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logger.warn("Error analyzing class {}: {}", classSymbol.getName(), e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                logger.warn("Class analysis task failed: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
     /**
      * Analyze a single class for instance variable dependencies.
      */
@@ -165,7 +252,7 @@ public class GraphBuilder {
      * - "Type fieldName" (type and field name)
      * - ": Type" (with colon prefix)
      */
-    private String extractTypeFromDetail(String detail) {
+    String extractTypeFromDetail(String detail) {
         if (detail == null || detail.isEmpty()) {
             logger.debug("Detail is null or empty");
             return null;
@@ -222,7 +309,7 @@ public class GraphBuilder {
     /**
      * Find a node by type name, trying both simple and fully qualified names.
      */
-    private ClassNode findNodeByType(String typeName, Map<String, ClassNode> nodeMap) {
+    ClassNode findNodeByType(String typeName, Map<String, ClassNode> nodeMap) {
         // Try exact match first
         ClassNode node = nodeMap.get(typeName);
         if (node != null) {
@@ -0,0 +1,98 @@
+package com.analyzer.graph;
+
+/**
+ * A single versioned mutation of a {@link DependencyGraph}, as recorded in its change log.
+ */
+public class GraphChange {
+
+    /**
+     * Kind of mutation.
+     */
+    public enum Type {
+        NODE_ADDED("node-added"),
+        NODE_REMOVED("node-removed"),
+        NODE_MOVED("node-moved"),
+        EDGE_ADDED("edge-added"),
+        EDGE_REMOVED("edge-removed");
+
+        private final String wireName;
+
+        Type(String wireName) {
+            this.wireName = wireName;
+        }
+
+        public String getWireName() {
+            return wireName;
+        }
+    }
+
+    private final long version;
+    private final Type type;
+    private final ClassNode node;
+    private final DependencyEdge edge;
+    private final double x;
+    private final double y;
+    private final double z;
+
+    private GraphChange(long version, Type type, ClassNode node, DependencyEdge edge) {
+        this.version = version;
+        this.type = type;
+        this.node = node;
+        this.edge = edge;
+        // Capture the position at the time of the change, the node itself may move later
+        this.x = node != null ? node.getX() : 0;
+        this.y = node != null ? node.getY() : 0;
+        this.z = node != null ? node.getZ() : 0;
+    }
+
+    static GraphChange forNode(long version, Type type, ClassNode node) {
+        return new GraphChange(version, type, node, null);
+    }
+
+    static GraphChange forEdge(long version, Type type, DependencyEdge edge) {
+        return new GraphChange(version, type, null, edge);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the affected node, or null for edge changes.
+     */
+    public ClassNode getNode() {
+        return node;
+    }
+
+    /**
+     * Get the affected edge, or null for node changes.
+     */
+    public DependencyEdge getEdge() {
+        return edge;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    @Override
+    public String toString() {
+        return "GraphChange{" +
+                "version=" + version +
+                ", type=" + type +
+                ", " + (node != null ? "node=" + node.getFullyQualifiedName() : "edge=" + edge) +
+                '}';
+    }
+}
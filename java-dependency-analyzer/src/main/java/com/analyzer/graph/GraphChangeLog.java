@@ -0,0 +1,62 @@
+package com.analyzer.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded log of the most recent graph changes, used to send deltas to clients that
+ * already hold an older version of the graph. Not thread-safe; guarded by the owning graph.
+ */
+class GraphChangeLog {
+    private final int capacity;
+    private final Deque<GraphChange> changes;
+    private long trimmedUpTo; // highest version no longer available in the log
+
+    GraphChangeLog(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.changes = new ArrayDeque<>(Math.min(this.capacity, 1024));
+        this.trimmedUpTo = 0;
+    }
+
+    void append(GraphChange change) {
+        changes.addLast(change);
+        while (changes.size() > capacity) {
+            trimmedUpTo = changes.removeFirst().getVersion();
+        }
+    }
+
+    /**
+     * Forget all changes up to and including the given version.
+     */
+    void reset(long version) {
+        changes.clear();
+        trimmedUpTo = version;
+    }
+
+    /**
+     * Get all changes after the given version.
+     *
+     * @return the changes in version order, or null if some of them were already trimmed
+     */
+    List<GraphChange> since(long version) {
+        if (version < trimmedUpTo) {
+            return null;
+        }
+        // Walk back from the newest change, clients are usually only a few versions behind
+        List<GraphChange> result = new ArrayList<>();
+        Iterator<GraphChange> iterator = changes.descendingIterator();
+        while (iterator.hasNext()) {
+            GraphChange change = iterator.next();
+            if (change.getVersion() <= version) {
+                break;
+            }
+            result.add(change);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+}
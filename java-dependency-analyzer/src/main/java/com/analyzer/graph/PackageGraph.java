@@ -0,0 +1,295 @@
+package com.analyzer.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The package-level aggregate of a dependency graph: the number of classes in each package and
+ * the number of class dependencies between each pair of packages.
+ *
+ * Packages are cut to a depth: 0 keeps the full package name, a positive depth keeps that many
+ * leading segments, so at depth 2 {@code com.analyzer.graph.index} and {@code com.analyzer.server}
+ * both count as {@code com.analyzer}. Classes without a package belong to {@value #DEFAULT_PACKAGE}.
+ * Dependencies between classes of the same package are counted as that package's internal edges.
+ *
+ * A package graph is not recomputed when the graph changes: {@link DependencyGraph} updates every
+ * package graph it has handed out on each added or removed node and edge, in O(1) per change.
+ * Obtain one with {@link DependencyGraph#getPackageGraph(int)}.
+ */
+public class PackageGraph {
+    public static final String DEFAULT_PACKAGE = "(default)";
+
+    private final int depth;
+    // Counters are int[1] so they can be updated without boxing; entries are dropped at 0
+    private final Map<String, int[]> classCounts = new HashMap<>();
+    private final Map<String, int[]> internalEdgeCounts = new HashMap<>();
+    private final Map<String, Map<String, int[]>> edgeCounts = new HashMap<>();
+    private int packageEdgeCount;
+    private long version;
+    private Snapshot snapshot;
+
+    PackageGraph(int depth, long version) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Package depth must not be negative: " + depth);
+        }
+        this.depth = depth;
+        this.version = version;
+    }
+
+    /**
+     * Get the package of a class at a depth: the full package for depth 0, otherwise at most
+     * that many leading segments of it.
+     */
+    public static String packageOf(String fullyQualifiedName, int depth) {
+        int end = fullyQualifiedName.lastIndexOf('.');
+        if (end <= 0) {
+            return DEFAULT_PACKAGE;
+        }
+        if (depth > 0) {
+            int dot = -1;
+            for (int segment = 0; segment < depth; segment++) {
+                dot = fullyQualifiedName.indexOf('.', dot + 1);
+                if (dot < 0 || dot >= end) {
+                    return fullyQualifiedName.substring(0, end);
+                }
+            }
+            end = dot;
+        }
+        return fullyQualifiedName.substring(0, end);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the graph version of the last change that affected this package graph.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the number of packages with at least one class.
+     */
+    public synchronized int getPackageCount() {
+        return classCounts.size();
+    }
+
+    /**
+     * Get the number of package pairs with at least one dependency between them.
+     */
+    public synchronized int getEdgeCount() {
+        return packageEdgeCount;
+    }
+
+    public synchronized int getClassCount(String packageName) {
+        int[] count = classCounts.get(packageName);
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * Get the number of class dependencies from one package to another, or within a package if
+     * both are the same.
+     */
+    public synchronized int getDependencyCount(String sourcePackage, String targetPackage) {
+        if (sourcePackage.equals(targetPackage)) {
+            int[] count = internalEdgeCounts.get(sourcePackage);
+            return count != null ? count[0] : 0;
+        }
+        Map<String, int[]> targets = edgeCounts.get(sourcePackage);
+        int[] count = targets != null ? targets.get(targetPackage) : null;
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * Get an immutable copy of the package graph, with packages and edges in name order.
+     * The copy is reused until the next change.
+     */
+    public synchronized Snapshot snapshot() {
+        if (snapshot == null) {
+            // Packages that only appear at the end of a dependency have no classes in the graph
+            Set<String> names = new TreeSet<>(classCounts.keySet());
+            names.addAll(internalEdgeCounts.keySet());
+            for (Map.Entry<String, Map<String, int[]>> source : edgeCounts.entrySet()) {
+                names.add(source.getKey());
+                names.addAll(source.getValue().keySet());
+            }
+            List<Package> packages = new ArrayList<>(names.size());
+            for (String name : names) {
+                packages.add(new Package(name, getClassCount(name), getDependencyCount(name, name)));
+            }
+
+            List<Edge> edges = new ArrayList<>(packageEdgeCount);
+            for (Map.Entry<String, Map<String, int[]>> source : edgeCounts.entrySet()) {
+                for (Map.Entry<String, int[]> target : source.getValue().entrySet()) {
+                    edges.add(new Edge(source.getKey(), target.getKey(), target.getValue()[0]));
+                }
+            }
+            edges.sort((a, b) -> {
+                int order = a.getSource().compareTo(b.getSource());
+                return order != 0 ? order : a.getTarget().compareTo(b.getTarget());
+            });
+            snapshot = new Snapshot(depth, version, Collections.unmodifiableList(packages),
+                    Collections.unmodifiableList(edges));
+        }
+        return snapshot;
+    }
+
+    synchronized void nodeAdded(ClassNode node, long newVersion) {
+        add(classCounts, packageOf(node), 1);
+        changed(newVersion);
+    }
+
+    synchronized void nodeRemoved(ClassNode node, long newVersion) {
+        add(classCounts, packageOf(node), -1);
+        changed(newVersion);
+    }
+
+    synchronized void edgeAdded(DependencyEdge edge, long newVersion) {
+        addEdge(edge, 1);
+        changed(newVersion);
+    }
+
+    synchronized void edgeRemoved(DependencyEdge edge, long newVersion) {
+        addEdge(edge, -1);
+        changed(newVersion);
+    }
+
+    synchronized void clear(long newVersion) {
+        classCounts.clear();
+        internalEdgeCounts.clear();
+        edgeCounts.clear();
+        packageEdgeCount = 0;
+        changed(newVersion);
+    }
+
+    private void addEdge(DependencyEdge edge, int delta) {
+        String source = packageOf(edge.getSource());
+        String target = packageOf(edge.getTarget());
+        if (source.equals(target)) {
+            add(internalEdgeCounts, source, delta);
+            return;
+        }
+        Map<String, int[]> targets = edgeCounts.computeIfAbsent(source, key -> new HashMap<>());
+        int before = targets.size();
+        add(targets, target, delta);
+        packageEdgeCount += targets.size() - before;
+        if (targets.isEmpty()) {
+            edgeCounts.remove(source);
+        }
+    }
+
+    private String packageOf(ClassNode node) {
+        return packageOf(node.getFullyQualifiedName(), depth);
+    }
+
+    private static void add(Map<String, int[]> counts, String key, int delta) {
+        int[] count = counts.get(key);
+        if (count == null) {
+            if (delta <= 0) {
+                return;
+            }
+            counts.put(key, new int[] {delta});
+        } else if ((count[0] += delta) <= 0) {
+            counts.remove(key);
+        }
+    }
+
+    private void changed(long newVersion) {
+        version = newVersion;
+        snapshot = null;
+    }
+
+    /**
+     * An immutable copy of a package graph at one graph version.
+     */
+    public static final class Snapshot {
+        private final int depth;
+        private final long version;
+        private final List<Package> packages;
+        private final List<Edge> edges;
+
+        Snapshot(int depth, long version, List<Package> packages, List<Edge> edges) {
+            this.depth = depth;
+            this.version = version;
+            this.packages = packages;
+            this.edges = edges;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Package> getPackages() {
+            return packages;
+        }
+
+        public List<Edge> getEdges() {
+            return edges;
+        }
+    }
+
+    /**
+     * A package with its number of classes and of dependencies between its own classes.
+     */
+    public static final class Package {
+        private final String name;
+        private final int classCount;
+        private final int internalDependencyCount;
+
+        Package(String name, int classCount, int internalDependencyCount) {
+            this.name = name;
+            this.classCount = classCount;
+            this.internalDependencyCount = internalDependencyCount;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public int getInternalDependencyCount() {
+            return internalDependencyCount;
+        }
+    }
+
+    /**
+     * The class dependencies from one package to another.
+     */
+    public static final class Edge {
+        private final String source;
+        private final String target;
+        private final int count;
+
+        Edge(String source, String target, int count) {
+            this.source = source;
+            this.target = target;
+            this.count = count;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.index.AdjacencyIndex;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Centrality of every class in one version of a dependency graph, to tell real hubs from
+ * classes that merely have many fields:
+ * <ul>
+ *   <li>in-degree: the number of dependencies on a class, one per field of its type;</li>
+ *   <li>PageRank: how much of the graph ends up depending on a class, directly or through
+ *       other important classes (damping 0.85, summing to 1). A class passes on its rank in
+ *       proportion to the number of its fields of each type;</li>
+ *   <li>betweenness: the share of shortest dependency paths that pass through a class,
+ *       normalised to [0, 1]. It is estimated with Brandes' algorithm from a random sample of
+ *       source classes, and exact when the sample covers the whole graph.</li>
+ * </ul>
+ *
+ * Both PageRank and betweenness run in parallel over the compressed adjacency index. PageRank
+ * pulls along incoming edges so each class is written by one thread only; betweenness gives
+ * each worker its own search buffers and accumulator, and the partial sums are added up in a
+ * fixed order so the result only depends on the seed.
+ *
+ * Obtain one with {@link com.analyzer.graph.DependencyGraph#getCentrality()}, which caches it per version.
+ */
+public class CentralityMetrics {
+    public static final int DEFAULT_BETWEENNESS_SAMPLES = 256;
+    public static final double DAMPING = 0.85;
+
+    private static final int MAX_ITERATIONS = 100;
+    private static final double TOLERANCE = 1e-9;
+    private static final long SEED = 42;
+
+    private final AdjacencyIndex index;
+    private final double[] pageRank;
+    private final double[] betweenness;
+    private final int pageRankIterations;
+    private final int betweennessSamples;
+    private final long elapsedNanos;
+
+    private CentralityMetrics(AdjacencyIndex index, int samples) {
+        long start = System.nanoTime();
+        this.index = index;
+        int n = index.getNodeCount();
+        this.pageRank = new double[n];
+        this.pageRankIterations = computePageRank(index, pageRank);
+        this.betweennessSamples = Math.min(Math.max(0, samples), n);
+        this.betweenness = computeBetweenness(index, betweennessSamples);
+        this.elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Compute the metrics of an adjacency index.
+     *
+     * @param betweennessSamples number of source classes to estimate betweenness from; the
+     *                           whole graph if it has fewer classes, 0 to skip betweenness
+     */
+    public static CentralityMetrics compute(AdjacencyIndex index, int betweennessSamples) {
+        return new CentralityMetrics(index, betweennessSamples);
+    }
+
+    /**
+     * Power iteration until the total change drops below the tolerance. Classes without
+     * dependencies spread their rank evenly over the graph.
+     *
+     * @return the number of iterations
+     */
+    private static int computePageRank(AdjacencyIndex index, double[] rank) {
+        int n = index.getNodeCount();
+        if (n == 0) {
+            return 0;
+        }
+        Arrays.fill(rank, 1.0 / n);
+        double[] next = new double[n];
+        double[] share = new double[n]; // rank each class passes along each outgoing edge
+        int iteration = 0;
+        while (iteration < MAX_ITERATIONS) {
+            iteration++;
+            double dangling = 0;
+            for (int v = 0; v < n; v++) {
+                int degree = index.outDegree(v);
+                if (degree == 0) {
+                    dangling += rank[v];
+                    share[v] = 0;
+                } else {
+                    share[v] = rank[v] / degree;
+                }
+            }
+            double base = (1 - DAMPING) / n + DAMPING * dangling / n;
+            double[] current = rank;
+            IntStream.range(0, n).parallel().forEach(v -> {
+                double sum = 0;
+                for (int k = 0, degree = index.inDegree(v); k < degree; k++) {
+                    sum += share[index.inSource(v, k)];
+                }
+                next[v] = base + DAMPING * sum;
+            });
+            double change = 0;
+            for (int v = 0; v < n; v++) {
+                change += Math.abs(next[v] - current[v]);
+                current[v] = next[v];
+            }
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+        return iteration;
+    }
+
+    /**
+     * Brandes' algorithm from the given number of random sources, scaled up to the whole graph
+     * and normalised by the (n-1)(n-2) ordered pairs a class can lie between.
+     */
+    private static double[] computeBetweenness(AdjacencyIndex index, int samples) {
+        int n = index.getNodeCount();
+        double[] result = new double[n];
+        if (samples == 0 || n < 3) {
+            return result;
+        }
+        int[] sources = sampleSources(n, samples);
+        int chunks = Math.min(samples, 4 * Runtime.getRuntime().availableProcessors());
+        double[][] partial = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    BrandesSearch search = new BrandesSearch(index);
+                    for (int s = chunk; s < sources.length; s += chunks) {
+                        search.accumulateFrom(sources[s]);
+                    }
+                    return search.centrality;
+                })
+                .toArray(double[][]::new);
+        double scale = ((double) n / samples) / ((double) (n - 1) * (n - 2));
+        for (double[] values : partial) {
+            for (int v = 0; v < n; v++) {
+                result[v] += values[v];
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            result[v] *= scale;
+        }
+        return result;
+    }
+
+    /**
+     * Pick distinct source classes: all of them if the sample covers the graph, otherwise a
+     * seeded random subset.
+     */
+    private static int[] sampleSources(int n, int samples) {
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) {
+            all[v] = v;
+        }
+        if (samples < n) {
+            Random random = new Random(SEED);
+            for (int i = 0; i < samples; i++) {
+                int j = i + random.nextInt(n - i);
+                int swap = all[i];
+                all[i] = all[j];
+                all[j] = swap;
+            }
+        }
+        return Arrays.copyOf(all, samples);
+    }
+
+    public AdjacencyIndex getIndex() {
+        return index;
+    }
+
+    public String getGraphId() {
+        return index.getGraphId();
+    }
+
+    public long getVersion() {
+        return index.getVersion();
+    }
+
+    /**
+     * Get the number of dependencies on a class, by its index in {@link #getIndex()}.
+     */
+    public int inDegree(int node) {
+        return index.inDegree(node);
+    }
+
+    /**
+     * Get the number of dependencies of a class, one per field.
+     */
+    public int outDegree(int node) {
+        return index.outDegree(node);
+    }
+
+    public double pageRank(int node) {
+        return pageRank[node];
+    }
+
+    public double betweenness(int node) {
+        return betweenness[node];
+    }
+
+    public int getPageRankIterations() {
+        return pageRankIterations;
+    }
+
+    /**
+     * Get the number of source classes betweenness was estimated from.
+     */
+    public int getBetweennessSamples() {
+        return betweennessSamples;
+    }
+
+    /**
+     * Whether betweenness was computed from every class rather than estimated.
+     */
+    public boolean isBetweennessExact() {
+        return betweennessSamples == index.getNodeCount();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the classes with the highest PageRank, highest first, as indices in {@link #getIndex()}.
+     */
+    public int[] topByPageRank(int count) {
+        return top(pageRank, count);
+    }
+
+    /**
+     * Get the classes with the highest betweenness, highest first.
+     */
+    public int[] topByBetweenness(int count) {
+        return top(betweenness, count);
+    }
+
+    private static int[] top(double[] values, int count) {
+        return IntStream.range(0, values.length).boxed()
+                .sorted((a, b) -> Double.compare(values[b], values[a]))
+                .limit(count)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Search buffers and accumulated centrality of one worker. The search is a breadth-first
+     * search along dependencies, since every dependency has the same length. A class with several
+     * fields of the same type has several edges to it, but they count as one path.
+     */
+    private static final class BrandesSearch {
+        private final AdjacencyIndex index;
+        private final double[] centrality;
+        private final int[] distance;
+        private final double[] paths;      // number of shortest paths from the source
+        private final double[] dependency; // accumulated pair dependency
+        private final int[] order;         // classes in order of discovery
+        private final int[] seen;          // last class whose edges reached this one, to skip parallel edges
+
+        BrandesSearch(AdjacencyIndex index) {
+            this.index = index;
+            int n = index.getNodeCount();
+            this.centrality = new double[n];
+            this.distance = new int[n];
+            this.paths = new double[n];
+            this.dependency = new double[n];
+            this.order = new int[n];
+            this.seen = new int[n];
+            Arrays.fill(distance, -1);
+        }
+
+        void accumulateFrom(int source) {
+            int head = 0;
+            int tail = 0;
+            order[tail++] = source;
+            distance[source] = 0;
+            paths[source] = 1;
+            while (head < tail) {
+                int v = order[head++];
+                for (int k = 0, degree = index.outDegree(v); k < degree; k++) {
+                    int w = index.outTarget(v, k);
+                    if (seen[w] == v + 1) {
+                        continue; // another field of the same type
+                    }
+                    seen[w] = v + 1;
+                    if (distance[w] < 0) {
+                        distance[w] = distance[v] + 1;
+                        order[tail++] = w;
+                    }
+                    if (distance[w] == distance[v] + 1) {
+                        paths[w] += paths[v];
+                    }
+                }
+            }
+
+            // Back-propagate in reverse discovery order; predecessors are the in-neighbours one step closer
+            for (int i = tail - 1; i > 0; i--) {
+                int w = order[i];
+                double coefficient = (1 + dependency[w]) / paths[w];
+                for (int k = 0, degree = index.inDegree(w); k < degree; k++) {
+                    int v = index.inSource(w, k);
+                    if (distance[v] >= 0 && distance[v] == distance[w] - 1 && seen[v] != -(w + 1)) {
+                        seen[v] = -(w + 1);
+                        dependency[v] += paths[v] * coefficient;
+                    }
+                }
+                centrality[w] += dependency[w];
+            }
+
+            // Reset only what this search touched
+            for (int i = 0; i < tail; i++) {
+                int v = order[i];
+                distance[v] = -1;
+                seen[v] = 0;
+                paths[v] = 0;
+                dependency[v] = 0;
+            }
+        }
+    }
+}
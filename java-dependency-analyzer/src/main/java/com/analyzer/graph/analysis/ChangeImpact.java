@@ -0,0 +1,246 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.index.AdjacencyIndex;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The classes affected by a set of changed source files: the classes declared in those files and
+ * every class that depends on one of them, directly or transitively.
+ *
+ * Changed files are matched to classes through the source URIs JDT LS reported for them. A path
+ * is resolved against a root directory first; if no class was declared in exactly that file, it
+ * matches the classes whose source path ends with it, so paths relative to a repository (as
+ * printed by {@code git diff --name-only}) also work against a snapshot taken in another checkout.
+ *
+ * Classes are grouped by the file name of their source URI, and only the URIs of classes declared
+ * in a file with the same name as a changed file are parsed. The affected set is then found with
+ * one breadth-first search along incoming dependencies from all changed classes at once, in O(N+E).
+ */
+public class ChangeImpact {
+    private final String graphId;
+    private final long version;
+    private final List<String> changedFiles;
+    private final List<String> unmatchedFiles;
+    private final List<ClassNode> changedClasses;
+    private final List<Affected> affected;
+    private final int maxDepth;
+    private final long elapsedNanos;
+
+    private ChangeImpact(AdjacencyIndex index, Collection<String> files, Path root, int maxDepth) {
+        long start = System.nanoTime();
+        this.graphId = index.getGraphId();
+        this.version = index.getVersion();
+        this.maxDepth = maxDepth;
+        this.changedFiles = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(files)));
+
+        Map<String, List<Integer>> classesByName = classesByFileName(index);
+        Set<Integer> seeds = new LinkedHashSet<>();
+        List<String> unmatched = new ArrayList<>();
+        for (String file : changedFiles) {
+            List<Integer> declared = findClasses(index, classesByName, file, root);
+            if (declared.isEmpty()) {
+                unmatched.add(file);
+            }
+            seeds.addAll(declared);
+        }
+        this.unmatchedFiles = Collections.unmodifiableList(unmatched);
+
+        int[] depth = new int[index.getNodeCount()];
+        Arrays.fill(depth, -1);
+        int[] queue = new int[index.getNodeCount()];
+        int head = 0;
+        int tail = 0;
+        List<ClassNode> changed = new ArrayList<>();
+        for (int seed : seeds) {
+            depth[seed] = 0;
+            queue[tail++] = seed;
+            changed.add(index.getNode(seed));
+        }
+        List<Affected> reached = new ArrayList<>();
+        while (head < tail) {
+            int v = queue[head++];
+            if (maxDepth > 0 && depth[v] >= maxDepth) {
+                continue;
+            }
+            for (int k = 0, degree = index.inDegree(v); k < degree; k++) {
+                int u = index.inSource(v, k);
+                if (depth[u] < 0) {
+                    depth[u] = depth[v] + 1;
+                    queue[tail++] = u;
+                    reached.add(new Affected(index.getNode(u), depth[u]));
+                }
+            }
+        }
+        changed.sort(Comparator.comparing(ClassNode::getFullyQualifiedName));
+        reached.sort(Comparator.comparingInt(Affected::getDepth)
+                .thenComparing(entry -> entry.getNode().getFullyQualifiedName()));
+        this.changedClasses = Collections.unmodifiableList(changed);
+        this.affected = Collections.unmodifiableList(reached);
+        this.elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Find the classes affected by changes to the given source files.
+     *
+     * @param root     directory relative paths are resolved against
+     * @param maxDepth how many dependency steps to follow from a changed class, 0 for all
+     */
+    public static ChangeImpact compute(DependencyGraph graph, Collection<String> files, Path root, int maxDepth) {
+        return compute(graph.getAdjacencyIndex(), files, root, maxDepth);
+    }
+
+    /**
+     * Find the classes affected by changes to the given source files, e.g. in an index read
+     * straight from a snapshot.
+     *
+     * @param root     directory relative paths are resolved against
+     * @param maxDepth how many dependency steps to follow from a changed class, 0 for all
+     */
+    public static ChangeImpact compute(AdjacencyIndex index, Collection<String> files, Path root, int maxDepth) {
+        return new ChangeImpact(index, files, root, maxDepth);
+    }
+
+    /**
+     * Group classes by the file name of their source file, for file URIs only.
+     */
+    private static Map<String, List<Integer>> classesByFileName(AdjacencyIndex index) {
+        Map<String, List<Integer>> byName = new HashMap<>();
+        for (int i = 0; i < index.getNodeCount(); i++) {
+            String uri = index.getNode(i).getSourceUri();
+            if (uri == null || !uri.startsWith("file:")) {
+                continue;
+            }
+            String name = uri.substring(uri.lastIndexOf('/') + 1);
+            if (name.indexOf('%') >= 0) {
+                name = fileName(uri);
+                if (name == null) {
+                    continue;
+                }
+            }
+            byName.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+        }
+        return byName;
+    }
+
+    private static String fileName(String uri) {
+        Path path = toPath(uri);
+        return path != null && path.getFileName() != null ? path.getFileName().toString() : null;
+    }
+
+    private static Path toPath(String uri) {
+        try {
+            return Paths.get(URI.create(uri)).normalize();
+        } catch (IllegalArgumentException e) {
+            return null; // not a local file
+        }
+    }
+
+    private static List<Integer> findClasses(AdjacencyIndex index, Map<String, List<Integer>> classesByName,
+                                             String file, Path root) {
+        Path path = Paths.get(file).normalize();
+        if (path.getFileName() == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> candidates = classesByName.getOrDefault(path.getFileName().toString(), Collections.emptyList());
+        String absolute = root.resolve(path).toAbsolutePath().normalize().toString();
+        String suffix = path.toString();
+        List<Integer> exact = new ArrayList<>();
+        List<Integer> matches = new ArrayList<>();
+        for (int i : candidates) {
+            Path source = toPath(index.getNode(i).getSourceUri());
+            if (source == null) {
+                continue;
+            }
+            String candidate = source.toString();
+            if (candidate.equals(absolute)) {
+                exact.add(i);
+            } else if (!path.isAbsolute() && candidate.length() > suffix.length() && candidate.endsWith(suffix)
+                    && candidate.charAt(candidate.length() - suffix.length() - 1) == File.separatorChar) {
+                matches.add(i);
+            }
+        }
+        return exact.isEmpty() ? matches : exact;
+    }
+
+    public String getGraphId() {
+        return graphId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the changed files as given, without duplicates.
+     */
+    public List<String> getChangedFiles() {
+        return changedFiles;
+    }
+
+    /**
+     * Get the changed files that declare no class of the graph, e.g. new or non-Java files.
+     */
+    public List<String> getUnmatchedFiles() {
+        return unmatchedFiles;
+    }
+
+    /**
+     * Get the classes declared in the changed files, in name order.
+     */
+    public List<ClassNode> getChangedClasses() {
+        return changedClasses;
+    }
+
+    /**
+     * Get the classes that depend on a changed class, nearest first, not counting the changed
+     * classes themselves.
+     */
+    public List<Affected> getAffected() {
+        return affected;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * A class that depends on a changed class, with the number of dependency steps between them.
+     */
+    public static final class Affected {
+        private final ClassNode node;
+        private final int depth;
+
+        Affected(ClassNode node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        public ClassNode getNode() {
+            return node;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.index.AdjacencyIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Communities of a dependency graph: groups of classes with many dependencies among themselves
+ * and few to the rest, found with the Louvain method. They often show the real modules of a
+ * code base better than its packages do.
+ *
+ * Dependencies are treated as undirected and weighted by the number of fields, and the
+ * communities maximise modularity at the given resolution (above 1 gives smaller communities).
+ * Each level moves classes to the neighbouring community with the best modularity gain until
+ * nothing improves, then merges every community into a single node and repeats on the smaller
+ * graph.
+ *
+ * The local-move phase runs in parallel. Nodes are coloured so that no two neighbours share a
+ * colour, and all nodes of one colour pick their best community at the same time against the
+ * same state; the moves are then applied in node order, skipping any that no longer gain
+ * anything. Since neighbours never decide together, two classes cannot swap into each other's
+ * community, modularity only goes up, and the result does not depend on the number of threads.
+ *
+ * Communities are numbered by size, largest first. Obtain them with
+ * {@link com.analyzer.graph.DependencyGraph#getCommunities()}, which caches them per version.
+ */
+public class Communities {
+    public static final double DEFAULT_RESOLUTION = 1.0;
+
+    private static final int MAX_LEVELS = 32;
+    private static final int MAX_PASSES = 32;
+    private static final double MIN_PASS_GAIN = 1e-7;
+    // Colours with fewer nodes are moved on the calling thread
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    private final AdjacencyIndex index;
+    private final double resolution;
+    private final int[] communityOf;
+    private final int[] sizes;
+    private final double modularity;
+    private final int levels;
+    private final long elapsedNanos;
+
+    private Communities(AdjacencyIndex index, double resolution) {
+        long start = System.nanoTime();
+        this.index = index;
+        this.resolution = resolution;
+        int n = index.getNodeCount();
+
+        int[] assignment = new int[n];
+        for (int v = 0; v < n; v++) {
+            assignment[v] = v;
+        }
+        Level classes = Level.of(index);
+        Level level = classes;
+        int levelCount = 0;
+        while (levelCount < MAX_LEVELS && level.nodeCount() > 1) {
+            int[] moved = level.moveNodes(resolution);
+            int count = renumber(moved);
+            levelCount++;
+            if (count == level.nodeCount()) {
+                break; // no node joined another
+            }
+            for (int v = 0; v < n; v++) {
+                assignment[v] = moved[assignment[v]];
+            }
+            level = level.aggregate(moved, count);
+        }
+
+        this.levels = levelCount;
+        this.sizes = numberBySize(assignment);
+        this.communityOf = assignment;
+        this.modularity = classes.modularity(assignment, resolution);
+        this.elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Find the communities of an adjacency index.
+     *
+     * @param resolution modularity resolution; 1 is standard modularity
+     */
+    public static Communities compute(AdjacencyIndex index, double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+        return new Communities(index, resolution);
+    }
+
+    /**
+     * Number communities 0..count-1 in order of first appearance.
+     *
+     * @return the number of communities
+     */
+    private static int renumber(int[] community) {
+        int[] ids = new int[community.length];
+        Arrays.fill(ids, -1);
+        int count = 0;
+        for (int v = 0; v < community.length; v++) {
+            int c = community[v];
+            if (ids[c] < 0) {
+                ids[c] = count++;
+            }
+            community[v] = ids[c];
+        }
+        return count;
+    }
+
+    /**
+     * Number communities by size, largest first and ties by first member.
+     *
+     * @return the size of each community
+     */
+    private static int[] numberBySize(int[] community) {
+        int count = renumber(community);
+        int[] size = new int[count];
+        for (int c : community) {
+            size[c]++;
+        }
+        Integer[] order = new Integer[count];
+        for (int c = 0; c < count; c++) {
+            order[c] = c;
+        }
+        Arrays.sort(order, (a, b) -> size[a] != size[b] ? Integer.compare(size[b], size[a]) : Integer.compare(a, b));
+        int[] rank = new int[count];
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            rank[order[i]] = i;
+            sorted[i] = size[order[i]];
+        }
+        for (int v = 0; v < community.length; v++) {
+            community[v] = rank[community[v]];
+        }
+        return sorted;
+    }
+
+    public AdjacencyIndex getIndex() {
+        return index;
+    }
+
+    public String getGraphId() {
+        return index.getGraphId();
+    }
+
+    public long getVersion() {
+        return index.getVersion();
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    public int getCommunityCount() {
+        return sizes.length;
+    }
+
+    /**
+     * Get the community of a class by its index in {@link #getIndex()}.
+     */
+    public int communityOf(int node) {
+        return communityOf[node];
+    }
+
+    public int getSize(int community) {
+        return sizes[community];
+    }
+
+    /**
+     * Get the classes of a community.
+     */
+    public List<ClassNode> getMembers(int community) {
+        List<ClassNode> members = new ArrayList<>(sizes[community]);
+        for (int v = 0; v < communityOf.length; v++) {
+            if (communityOf[v] == community) {
+                members.add(index.getNode(v));
+            }
+        }
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Get the modularity of the communities at the resolution they were found with.
+     */
+    public double getModularity() {
+        return modularity;
+    }
+
+    /**
+     * Get the number of Louvain levels until no community merged with another.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * One level of the Louvain method: an undirected weighted graph whose nodes are the
+     * communities of the level below, as symmetric compressed rows. A node's own row holds its
+     * internal weight as a self-loop, counted in both directions.
+     */
+    private static final class Level {
+        private final int[] start;
+        private final int[] neighbours;
+        private final double[] weights;
+        private final double[] degree;
+        private final double totalWeight; // 2m, the sum of all degrees
+
+        private Level(int[] start, int[] neighbours, double[] weights) {
+            this.start = start;
+            this.neighbours = neighbours;
+            this.weights = weights;
+            int n = start.length - 1;
+            this.degree = new double[n];
+            double total = 0;
+            for (int v = 0; v < n; v++) {
+                for (int e = start[v]; e < start[v + 1]; e++) {
+                    degree[v] += weights[e];
+                }
+                total += degree[v];
+            }
+            this.totalWeight = total;
+        }
+
+        /**
+         * The class graph with every dependency in both directions and parallel dependencies
+         * merged into their weight.
+         */
+        static Level of(AdjacencyIndex index) {
+            int n = index.getNodeCount();
+            int[] count = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                count[v + 1] += index.outDegree(v) + index.inDegree(v);
+            }
+            for (int v = 0; v < n; v++) {
+                count[v + 1] += count[v];
+            }
+            int[] rawTargets = new int[count[n]];
+            int[] fill = Arrays.copyOf(count, n);
+            for (int v = 0; v < n; v++) {
+                for (int k = 0, d = index.outDegree(v); k < d; k++) {
+                    rawTargets[fill[v]++] = index.outTarget(v, k);
+                }
+                for (int k = 0, d = index.inDegree(v); k < d; k++) {
+                    rawTargets[fill[v]++] = index.inSource(v, k);
+                }
+            }
+            int[] identity = new int[n];
+            for (int v = 0; v < n; v++) {
+                identity[v] = v;
+            }
+            return merge(count, rawTargets, null, identity, n);
+        }
+
+        /**
+         * Build the graph of the given node groups, adding up the weights between groups.
+         *
+         * @param rawWeights weight of each raw entry, or null for 1
+         */
+        private static Level merge(int[] rawStart, int[] rawTargets, double[] rawWeights, int[] group, int groupCount) {
+            int n = rawStart.length - 1;
+            // Members of each group, in node order
+            int[] memberStart = new int[groupCount + 1];
+            for (int v = 0; v < n; v++) {
+                memberStart[group[v] + 1]++;
+            }
+            for (int c = 0; c < groupCount; c++) {
+                memberStart[c + 1] += memberStart[c];
+            }
+            int[] members = new int[n];
+            int[] fill = Arrays.copyOf(memberStart, groupCount);
+            for (int v = 0; v < n; v++) {
+                members[fill[group[v]]++] = v;
+            }
+
+            int[] start = new int[groupCount + 1];
+            int[] neighbours = new int[rawTargets.length];
+            double[] weights = new double[rawTargets.length];
+            double[] sum = new double[groupCount];
+            int[] touched = new int[groupCount];
+            boolean[] seen = new boolean[groupCount];
+            int size = 0;
+            for (int c = 0; c < groupCount; c++) {
+                int touchedCount = 0;
+                for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                    int v = members[m];
+                    for (int e = rawStart[v]; e < rawStart[v + 1]; e++) {
+                        int d = group[rawTargets[e]];
+                        if (!seen[d]) {
+                            seen[d] = true;
+                            touched[touchedCount++] = d;
+                        }
+                        sum[d] += rawWeights != null ? rawWeights[e] : 1;
+                    }
+                }
+                Arrays.sort(touched, 0, touchedCount);
+                for (int i = 0; i < touchedCount; i++) {
+                    int d = touched[i];
+                    neighbours[size] = d;
+                    weights[size++] = sum[d];
+                    sum[d] = 0;
+                    seen[d] = false;
+                }
+                start[c + 1] = size;
+            }
+            return new Level(start, Arrays.copyOf(neighbours, size), Arrays.copyOf(weights, size));
+        }
+
+        int nodeCount() {
+            return degree.length;
+        }
+
+        /**
+         * Build the next level, with one node per community of this one.
+         */
+        Level aggregate(int[] community, int count) {
+            return merge(start, neighbours, weights, community, count);
+        }
+
+        /**
+         * Move nodes between communities, one colour at a time, until a pass gains almost
+         * nothing.
+         *
+         * @return the community of each node, as the id of one of its original members
+         */
+        int[] moveNodes(double resolution) {
+            int n = nodeCount();
+            int[] community = new int[n];
+            double[] communityDegree = Arrays.copyOf(degree, n);
+            for (int v = 0; v < n; v++) {
+                community[v] = v;
+            }
+            if (totalWeight == 0) {
+                return community;
+            }
+            int[][] colours = colour();
+            // Scratch space is taken from the pool per chunk rather than per thread, so none outlives the call
+            Queue<MoveSearch> pool = new ConcurrentLinkedQueue<>();
+            int[] target = new int[n];
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                double gain = 0;
+                for (int[] nodes : colours) {
+                    int chunks = nodes.length < PARALLEL_THRESHOLD ? 1
+                            : Math.min(nodes.length / PARALLEL_THRESHOLD + 1, 4 * Runtime.getRuntime().availableProcessors());
+                    IntStream range = IntStream.range(0, chunks);
+                    (chunks > 1 ? range.parallel() : range).forEach(chunk -> {
+                        MoveSearch search = pool.poll();
+                        if (search == null) {
+                            search = new MoveSearch(n);
+                        }
+                        for (int i = chunk; i < nodes.length; i += chunks) {
+                            target[nodes[i]] = search.bestCommunity(this, nodes[i], community, communityDegree, resolution);
+                        }
+                        pool.add(search);
+                    });
+                    // Nodes of one colour decided against the same community degrees; skip moves that stopped paying off
+                    for (int v : nodes) {
+                        int to = target[v];
+                        int from = community[v];
+                        if (to == from) {
+                            continue;
+                        }
+                        double delta = gain(v, to, community, communityDegree, resolution)
+                                - gain(v, from, community, communityDegree, resolution);
+                        if (delta > 1e-12) {
+                            gain += delta;
+                            communityDegree[from] -= degree[v];
+                            communityDegree[to] += degree[v];
+                            community[v] = to;
+                        }
+                    }
+                }
+                if (gain / totalWeight < MIN_PASS_GAIN) {
+                    break;
+                }
+            }
+            return community;
+        }
+
+        /**
+         * Modularity gain (times m) of putting a node, taken out of its own community, into a
+         * community, against the current community degrees.
+         */
+        private double gain(int v, int c, int[] community, double[] communityDegree, double resolution) {
+            double links = 0;
+            for (int e = start[v]; e < start[v + 1]; e++) {
+                int u = neighbours[e];
+                if (u != v && community[u] == c) {
+                    links += weights[e];
+                }
+            }
+            double others = communityDegree[c] - (community[v] == c ? degree[v] : 0);
+            return links - resolution * others * degree[v] / totalWeight;
+        }
+
+        /**
+         * Greedy distance-1 colouring in node order.
+         *
+         * @return the nodes of each colour
+         */
+        private int[][] colour() {
+            int n = nodeCount();
+            int[] colour = new int[n];
+            int[] used = new int[n + 1]; // colour -> last node whose neighbour had it, plus one
+            int colourCount = 0;
+            for (int v = 0; v < n; v++) {
+                for (int e = start[v]; e < start[v + 1]; e++) {
+                    int u = neighbours[e];
+                    if (u < v) {
+                        used[colour[u]] = v + 1;
+                    }
+                }
+                int c = 0;
+                while (used[c] == v + 1) {
+                    c++;
+                }
+                colour[v] = c;
+                colourCount = Math.max(colourCount, c + 1);
+            }
+            int[] size = new int[colourCount];
+            for (int c : colour) {
+                size[c]++;
+            }
+            int[][] nodes = new int[colourCount][];
+            for (int c = 0; c < colourCount; c++) {
+                nodes[c] = new int[size[c]];
+                size[c] = 0;
+            }
+            for (int v = 0; v < n; v++) {
+                nodes[colour[v]][size[colour[v]]++] = v;
+            }
+            return nodes;
+        }
+
+        /**
+         * Modularity of a partition of this graph.
+         */
+        double modularity(int[] community, double resolution) {
+            if (totalWeight == 0) {
+                return 0;
+            }
+            int count = 0;
+            for (int c : community) {
+                count = Math.max(count, c + 1);
+            }
+            double[] internal = new double[count];
+            double[] total = new double[count];
+            for (int v = 0; v < nodeCount(); v++) {
+                total[community[v]] += degree[v];
+                for (int e = start[v]; e < start[v + 1]; e++) {
+                    if (community[neighbours[e]] == community[v]) {
+                        internal[community[v]] += weights[e];
+                    }
+                }
+            }
+            double q = 0;
+            for (int c = 0; c < count; c++) {
+                double share = total[c] / totalWeight;
+                q += internal[c] / totalWeight - resolution * share * share;
+            }
+            return q;
+        }
+    }
+
+    /**
+     * Scratch space of one worker: the link weight from the node being moved to each
+     * neighbouring community.
+     */
+    private static final class MoveSearch {
+        private final double[] links;
+        private final int[] touched;
+
+        MoveSearch(int n) {
+            this.links = new double[n];
+            this.touched = new int[n];
+        }
+
+        /**
+         * Find the community with the best modularity gain for a node. Stays put on ties, and
+         * otherwise prefers the lower community id so the outcome does not depend on row order.
+         */
+        int bestCommunity(Level level, int v, int[] community, double[] communityDegree, double resolution) {
+            int own = community[v];
+            int touchedCount = 0;
+            touched[touchedCount++] = own;
+            links[own] = 0;
+            for (int e = level.start[v]; e < level.start[v + 1]; e++) {
+                int u = level.neighbours[e];
+                if (u == v) {
+                    continue;
+                }
+                int c = community[u];
+                if (links[c] == 0 && c != own) {
+                    touched[touchedCount++] = c;
+                }
+                links[c] += level.weights[e];
+            }
+
+            double scale = resolution * level.degree[v] / level.totalWeight;
+            int best = own;
+            double bestGain = links[own] - scale * (communityDegree[own] - level.degree[v]);
+            for (int i = 1; i < touchedCount; i++) {
+                int c = touched[i];
+                double gain = links[c] - scale * communityDegree[c];
+                if (gain > bestGain + 1e-12 || (gain >= bestGain - 1e-12 && best != own && c < best)) {
+                    best = c;
+                    bestGain = gain;
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                links[touched[i]] = 0;
+            }
+            return best;
+        }
+    }
+}
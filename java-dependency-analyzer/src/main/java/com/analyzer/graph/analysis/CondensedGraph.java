@@ -0,0 +1,192 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.index.AdjacencyIndex;
+
+import java.util.Arrays;
+
+/**
+ * The condensation of a dependency graph: one node per strongly connected component and one
+ * edge per pair of components with a class dependency between them, weighted by the number of
+ * such dependencies. The condensation has no cycles.
+ *
+ * Components keep the ids of {@link StronglyConnectedComponents}, in which every dependency of
+ * a component has a smaller id. Ascending ids are therefore an order in which each component
+ * comes after everything it depends on, and topological questions can be answered without
+ * sorting.
+ */
+public class CondensedGraph {
+    private final StronglyConnectedComponents components;
+    private final int[] outStart;
+    private final int[] outTargets;
+    private final int[] outWeights;
+    private final int[] inStart;
+    private final int[] inSources;
+    private final int[] depth;
+
+    CondensedGraph(StronglyConnectedComponents components) {
+        this.components = components;
+        AdjacencyIndex index = components.getIndex();
+        int count = components.getComponentCount();
+
+        // Deduplicate component edges: lastSeen marks targets already added for the current component
+        int[] lastSeen = new int[count];
+        int[] position = new int[count];
+        Arrays.fill(lastSeen, -1);
+        outStart = new int[count + 1];
+        int[] targets = new int[Math.max(16, index.getEdgeCount())];
+        int[] weights = new int[targets.length];
+        int m = 0;
+        for (int c = 0; c < count; c++) {
+            outStart[c] = m;
+            for (int k = 0; k < components.size(c); k++) {
+                int v = components.member(c, k);
+                for (int e = 0, degree = index.outDegree(v); e < degree; e++) {
+                    int target = components.componentOf(index.outTarget(v, e));
+                    if (target == c) {
+                        continue;
+                    }
+                    if (lastSeen[target] == c) {
+                        weights[position[target]]++;
+                    } else {
+                        lastSeen[target] = c;
+                        position[target] = m;
+                        targets[m] = target;
+                        weights[m] = 1;
+                        m++;
+                    }
+                }
+            }
+        }
+        outStart[count] = m;
+        outTargets = Arrays.copyOf(targets, m);
+        outWeights = Arrays.copyOf(weights, m);
+
+        inStart = new int[count + 1];
+        for (int e = 0; e < m; e++) {
+            inStart[outTargets[e] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            inStart[c + 1] += inStart[c];
+        }
+        inSources = new int[m];
+        int[] fill = Arrays.copyOf(inStart, count);
+        for (int c = 0; c < count; c++) {
+            for (int e = outStart[c]; e < outStart[c + 1]; e++) {
+                inSources[fill[outTargets[e]]++] = c;
+            }
+        }
+
+        // Dependencies have smaller ids, so one ascending pass sees them first
+        depth = new int[count];
+        for (int c = 0; c < count; c++) {
+            int d = 0;
+            for (int e = outStart[c]; e < outStart[c + 1]; e++) {
+                d = Math.max(d, depth[outTargets[e]] + 1);
+            }
+            depth[c] = d;
+        }
+    }
+
+    public StronglyConnectedComponents getComponents() {
+        return components;
+    }
+
+    public int getComponentCount() {
+        return depth.length;
+    }
+
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    public int outDegree(int component) {
+        return outStart[component + 1] - outStart[component];
+    }
+
+    public int inDegree(int component) {
+        return inStart[component + 1] - inStart[component];
+    }
+
+    /**
+     * Get the k-th component a component depends on, for k in [0, outDegree).
+     */
+    public int outTarget(int component, int k) {
+        return outTargets[outStart[component] + k];
+    }
+
+    /**
+     * Get the number of class dependencies behind the k-th outgoing edge of a component.
+     */
+    public int outWeight(int component, int k) {
+        return outWeights[outStart[component] + k];
+    }
+
+    /**
+     * Get the k-th component that depends on a component, for k in [0, inDegree).
+     */
+    public int inSource(int component, int k) {
+        return inSources[inStart[component] + k];
+    }
+
+    /**
+     * Get the length of the longest dependency chain below a component; 0 if it depends on
+     * nothing. Components only depend on components of a smaller depth.
+     */
+    public int getDepth(int component) {
+        return depth[component];
+    }
+
+    /**
+     * Get the components in dependency order: each one after all components it depends on.
+     */
+    public int[] getDependencyOrder() {
+        int[] order = new int[depth.length];
+        for (int c = 0; c < order.length; c++) {
+            order[c] = c;
+        }
+        return order;
+    }
+
+    /**
+     * Get the components in topological order: each one before all components it depends on.
+     */
+    public int[] getTopologicalOrder() {
+        int[] order = new int[depth.length];
+        for (int c = 0; c < order.length; c++) {
+            order[c] = order.length - 1 - c;
+        }
+        return order;
+    }
+
+    /**
+     * Whether a component depends on another, directly or transitively. A component reaches
+     * itself. The search only follows components whose id and depth still allow the target.
+     */
+    public boolean reaches(int from, int to) {
+        if (from == to) {
+            return true;
+        }
+        if (to > from || depth[to] >= depth[from]) {
+            return false;
+        }
+        boolean[] visited = new boolean[depth.length];
+        int[] stack = new int[depth.length];
+        int size = 0;
+        stack[size++] = from;
+        visited[from] = true;
+        while (size > 0) {
+            int c = stack[--size];
+            for (int e = outStart[c]; e < outStart[c + 1]; e++) {
+                int next = outTargets[e];
+                if (next == to) {
+                    return true;
+                }
+                if (!visited[next] && next > to && depth[next] > depth[to]) {
+                    visited[next] = true;
+                    stack[size++] = next;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,442 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.GraphChange;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Answers "does A depend on B, directly or transitively" and lists all transitive
+ * dependencies or dependents of a class without searching the class graph.
+ *
+ * The index works on the {@link CondensedGraph}: classes in one cycle all reach each other, so
+ * only reachability between components needs storing. If the condensation is small enough for
+ * the bitset budget, every component gets a bitset of the components it depends on, and a
+ * reachability check is a single bit test. Larger condensations get interval labels instead:
+ * a few randomised depth-first traversals give every component nested intervals, and a
+ * component can only reach another if each of its intervals contains the other's. Checks that
+ * the labels cannot rule out fall back to a depth-first search that skips every component the
+ * labels rule out.
+ *
+ * Dependencies added between existing classes are applied to a bitset index in place, see
+ * {@link #applyChanges(List, long)}; any other change requires a rebuild.
+ *
+ * Obtain one with {@link com.analyzer.graph.DependencyGraph#getReachabilityIndex(long)}, which
+ * keeps it current.
+ */
+public class ReachabilityIndex {
+    /** Default memory the bitsets may take before interval labels are used instead. */
+    public static final long DEFAULT_MAX_BITSET_BYTES = 64L << 20;
+
+    /** Number of randomised traversals for interval labels; more rule out more pairs. */
+    private static final int INTERVAL_TRAVERSALS = 3;
+
+    private final StronglyConnectedComponents components;
+    private final int componentCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long buildNanos;
+    private volatile long version;
+
+    // Bitset mode: the components each component reaches, itself excluded; null in interval mode
+    private final long[][] descendants;
+
+    // Interval mode: per traversal, the smallest post-order rank below each component and its own rank
+    private final CondensedGraph condensed;
+    private final int[][] low;
+    private final int[][] post;
+
+    private ReachabilityIndex(StronglyConnectedComponents components, long maxBitsetBytes) {
+        long start = System.nanoTime();
+        this.components = components;
+        this.componentCount = components.getComponentCount();
+        this.version = components.getVersion();
+        this.condensed = components.getCondensedGraph();
+
+        if (bitsetBytes(componentCount) <= maxBitsetBytes) {
+            descendants = buildBitsets(condensed);
+            low = null;
+            post = null;
+        } else {
+            descendants = null;
+            low = new int[INTERVAL_TRAVERSALS][];
+            post = new int[INTERVAL_TRAVERSALS][];
+            Random random = new Random(componentCount);
+            for (int t = 0; t < INTERVAL_TRAVERSALS; t++) {
+                low[t] = new int[componentCount];
+                post[t] = new int[componentCount];
+                label(condensed, random, low[t], post[t]);
+            }
+        }
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Build the index for the given components, with bitsets if they fit in the given number of bytes.
+     */
+    public static ReachabilityIndex build(StronglyConnectedComponents components, long maxBitsetBytes) {
+        return new ReachabilityIndex(components, maxBitsetBytes);
+    }
+
+    private static long bitsetBytes(int componentCount) {
+        return (long) componentCount * ((componentCount + 63) >>> 6) * 8;
+    }
+
+    /**
+     * Dependencies have smaller component ids, so one ascending pass has every dependency's
+     * bitset complete before it is merged.
+     */
+    private static long[][] buildBitsets(CondensedGraph condensed) {
+        int count = condensed.getComponentCount();
+        int words = (count + 63) >>> 6;
+        long[][] bits = new long[count][];
+        for (int c = 0; c < count; c++) {
+            long[] set = new long[words];
+            for (int k = 0, degree = condensed.outDegree(c); k < degree; k++) {
+                int target = condensed.outTarget(c, k);
+                long[] below = bits[target];
+                for (int w = 0; w < words; w++) {
+                    set[w] |= below[w];
+                }
+                set[target >>> 6] |= 1L << target;
+            }
+            bits[c] = set;
+        }
+        return bits;
+    }
+
+    /**
+     * One randomised post-order traversal of the condensation, from its roots in random order
+     * and visiting children from a random offset.
+     */
+    private static void label(CondensedGraph condensed, Random random, int[] low, int[] post) {
+        int count = condensed.getComponentCount();
+        int[] roots = new int[count];
+        int rootCount = 0;
+        for (int c = 0; c < count; c++) {
+            if (condensed.inDegree(c) == 0) {
+                roots[rootCount++] = c;
+            }
+        }
+        for (int i = rootCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = roots[i];
+            roots[i] = roots[j];
+            roots[j] = swap;
+        }
+
+        boolean[] visited = new boolean[count];
+        int[] stack = new int[count];
+        int[] next = new int[count];
+        int[] offset = new int[count];
+        int rank = 0;
+        for (int r = 0; r < rootCount; r++) {
+            int size = 0;
+            stack[size++] = roots[r];
+            visited[roots[r]] = true;
+            enter(condensed, random, roots[r], next, offset, low);
+            while (size > 0) {
+                int c = stack[size - 1];
+                int degree = condensed.outDegree(c);
+                if (next[c] < degree) {
+                    int child = condensed.outTarget(c, (offset[c] + next[c]++) % degree);
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        enter(condensed, random, child, next, offset, low);
+                        stack[size++] = child;
+                    } else if (low[child] < low[c]) {
+                        low[c] = low[child];
+                    }
+                    continue;
+                }
+                size--;
+                post[c] = ++rank;
+                if (rank < low[c]) {
+                    low[c] = rank;
+                }
+                if (size > 0 && low[c] < low[stack[size - 1]]) {
+                    low[stack[size - 1]] = low[c];
+                }
+            }
+        }
+    }
+
+    private static void enter(CondensedGraph condensed, Random random, int c, int[] next, int[] offset, int[] low) {
+        int degree = condensed.outDegree(c);
+        next[c] = 0;
+        offset[c] = degree > 1 ? random.nextInt(degree) : 0;
+        low[c] = Integer.MAX_VALUE;
+    }
+
+    public StronglyConnectedComponents getComponents() {
+        return components;
+    }
+
+    public String getGraphId() {
+        return components.getGraphId();
+    }
+
+    /**
+     * Get the graph version the index answers for; later than its components' version after
+     * changes were applied in place.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether reachability is stored as bitsets (true) or interval labels (false).
+     */
+    public boolean isBitsetMode() {
+        return descendants != null;
+    }
+
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Get the approximate heap taken by the index, not counting the components it is built on.
+     */
+    public long getMemoryBytes() {
+        if (descendants != null) {
+            return bitsetBytes(componentCount) + (long) componentCount * 16;
+        }
+        return (long) INTERVAL_TRAVERSALS * 2 * componentCount * 4;
+    }
+
+    /**
+     * Get the component of a class, or -1 if the class is not in the index.
+     */
+    public int componentOf(String fullyQualifiedName) {
+        return components.componentOf(fullyQualifiedName);
+    }
+
+    /**
+     * Whether one class depends on another, directly or transitively. A class reaches itself.
+     *
+     * @throws IllegalArgumentException if either class is not in the index
+     */
+    public boolean dependsOn(String from, String to) {
+        int source = componentOf(from);
+        int target = componentOf(to);
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("Unknown node " + (source < 0 ? from : to));
+        }
+        return reaches(source, target);
+    }
+
+    /**
+     * Whether one component reaches another. A component reaches itself.
+     */
+    public boolean reaches(int from, int to) {
+        if (from == to) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            if (descendants != null) {
+                return (descendants[from][to >>> 6] & (1L << to)) != 0;
+            }
+            return reachesByLabels(from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean reachesByLabels(int from, int to) {
+        if (!mayReach(from, to)) {
+            return false;
+        }
+        BitSet visited = new BitSet(componentCount);
+        int[] stack = new int[componentCount];
+        int size = 0;
+        stack[size++] = from;
+        visited.set(from);
+        while (size > 0) {
+            int c = stack[--size];
+            for (int k = 0, degree = condensed.outDegree(c); k < degree; k++) {
+                int next = condensed.outTarget(c, k);
+                if (next == to) {
+                    return true;
+                }
+                if (!visited.get(next) && mayReach(next, to)) {
+                    visited.set(next);
+                    stack[size++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the labels allow a path: the target has a smaller id and its intervals nest in the source's.
+     */
+    private boolean mayReach(int from, int to) {
+        if (to > from) {
+            return false;
+        }
+        for (int t = 0; t < INTERVAL_TRAVERSALS; t++) {
+            if (low[t][to] < low[t][from] || post[t][to] > post[t][from]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the components a component depends on, directly or transitively, itself excluded.
+     */
+    public int[] descendantComponents(int component) {
+        lock.readLock().lock();
+        try {
+            if (descendants != null) {
+                return setBits(descendants[component]);
+            }
+            return search(component, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the components that depend on a component, directly or transitively, itself excluded.
+     */
+    public int[] ancestorComponents(int component) {
+        lock.readLock().lock();
+        try {
+            if (descendants != null) {
+                int[] result = new int[16];
+                int size = 0;
+                int word = component >>> 6;
+                long bit = 1L << component;
+                for (int c = 0; c < componentCount; c++) {
+                    if ((descendants[c][word] & bit) != 0) {
+                        if (size == result.length) {
+                            result = Arrays.copyOf(result, size * 2);
+                        }
+                        result[size++] = c;
+                    }
+                }
+                return Arrays.copyOf(result, size);
+            }
+            return search(component, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int[] setBits(long[] set) {
+        int count = 0;
+        for (long word : set) {
+            count += Long.bitCount(word);
+        }
+        int[] result = new int[count];
+        int size = 0;
+        for (int w = 0; w < set.length; w++) {
+            long word = set[w];
+            while (word != 0) {
+                result[size++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Depth-first search of the condensation along dependencies (forward) or dependents.
+     */
+    private int[] search(int from, boolean forward) {
+        BitSet visited = new BitSet(componentCount);
+        int[] stack = new int[componentCount];
+        int[] result = new int[componentCount];
+        int found = 0;
+        int size = 0;
+        stack[size++] = from;
+        visited.set(from);
+        while (size > 0) {
+            int c = stack[--size];
+            int degree = forward ? condensed.outDegree(c) : condensed.inDegree(c);
+            for (int k = 0; k < degree; k++) {
+                int next = forward ? condensed.outTarget(c, k) : condensed.inSource(c, k);
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    stack[size++] = next;
+                    result[found++] = next;
+                }
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Bring the index up to date with changes made to the graph since its version.
+     *
+     * Moves need nothing. Dependencies added between classes that are already in the index
+     * are merged into the bitsets: everything that reaches the source now also reaches the
+     * target and all it reaches. Additions that are already implied are accepted in either mode.
+     *
+     * @return false if a change cannot be applied in place, e.g. a removal, a new class, an
+     *         addition that closes a cycle, or a new reachable pair in interval mode; the index
+     *         must then be rebuilt and may have been partly updated
+     */
+    public boolean applyChanges(List<GraphChange> changes, long toVersion) {
+        lock.writeLock().lock();
+        try {
+            for (GraphChange change : changes) {
+                switch (change.getType()) {
+                    case NODE_MOVED:
+                        break;
+                    case EDGE_ADDED:
+                        if (!addDependency(change.getEdge().getSource(), change.getEdge().getTarget())) {
+                            return false;
+                        }
+                        break;
+                    default:
+                        return false;
+                }
+            }
+            version = toVersion;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean addDependency(ClassNode source, ClassNode target) {
+        int from = componentOf(source.getFullyQualifiedName());
+        int to = componentOf(target.getFullyQualifiedName());
+        if (from < 0 || to < 0) {
+            return false;
+        }
+        if (from == to) {
+            return true;
+        }
+        if (descendants == null) {
+            return reachesByLabels(from, to);
+        }
+        if ((descendants[from][to >>> 6] & (1L << to)) != 0) {
+            return true;
+        }
+        if ((descendants[to][from >>> 6] & (1L << from)) != 0) {
+            return false; // closes a cycle: components merge
+        }
+        long[] added = descendants[to].clone();
+        added[to >>> 6] |= 1L << to;
+        int word = from >>> 6;
+        long bit = 1L << from;
+        for (int c = 0; c < componentCount; c++) {
+            if (c == from || (descendants[c][word] & bit) != 0) {
+                long[] set = descendants[c];
+                for (int w = 0; w < set.length; w++) {
+                    set[w] |= added[w];
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,261 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.index.AdjacencyIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Strongly connected components of one version of a dependency graph, found with Tarjan's
+ * algorithm in O(N+E).
+ *
+ * The depth-first search keeps its own stack instead of recursing, so graphs with long
+ * dependency chains cannot overflow the thread stack. Components are numbered in the order
+ * Tarjan's algorithm completes them, which is a reverse topological order: every dependency of
+ * a component has a smaller id. A component with more than one class, or a class that depends
+ * on itself, is a cycle.
+ *
+ * Obtain one with {@link com.analyzer.graph.DependencyGraph#getComponents()}, which caches it per version.
+ */
+public class StronglyConnectedComponents {
+    private final AdjacencyIndex index;
+    private final int[] componentOf;
+    private final int componentCount;
+    private final int[] memberStart;
+    private final int[] members;
+    private final boolean[] cyclic;
+    private final int[] cycles;
+    private volatile CondensedGraph condensed;
+
+    private StronglyConnectedComponents(AdjacencyIndex index) {
+        this.index = index;
+        int n = index.getNodeCount();
+        componentOf = new int[n];
+        componentCount = findComponents(index, componentOf);
+
+        // Members grouped by component
+        memberStart = new int[componentCount + 1];
+        for (int v = 0; v < n; v++) {
+            memberStart[componentOf[v] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberStart[c + 1] += memberStart[c];
+        }
+        members = new int[n];
+        int[] fill = Arrays.copyOf(memberStart, componentCount);
+        for (int v = 0; v < n; v++) {
+            members[fill[componentOf[v]]++] = v;
+        }
+
+        cyclic = new boolean[componentCount];
+        for (int v = 0; v < n; v++) {
+            int c = componentOf[v];
+            if (memberStart[c + 1] - memberStart[c] > 1) {
+                cyclic[c] = true;
+                continue;
+            }
+            for (int k = 0, degree = index.outDegree(v); k < degree; k++) {
+                if (index.outTarget(v, k) == v) {
+                    cyclic[c] = true;
+                    break;
+                }
+            }
+        }
+
+        // Largest cycles first
+        List<Integer> found = new ArrayList<>();
+        for (int c = 0; c < componentCount; c++) {
+            if (cyclic[c]) {
+                found.add(c);
+            }
+        }
+        found.sort(Comparator.comparingInt(this::size).reversed().thenComparingInt(c -> c));
+        cycles = found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Find the components of an adjacency index.
+     */
+    public static StronglyConnectedComponents compute(AdjacencyIndex index) {
+        return new StronglyConnectedComponents(index);
+    }
+
+    /**
+     * Iterative Tarjan: fills the component of every node and returns the number of components.
+     */
+    private static int findComponents(AdjacencyIndex index, int[] componentOf) {
+        int n = index.getNodeCount();
+        int[] order = new int[n];   // discovery order, -1 while unvisited
+        int[] low = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];   // nodes of components not yet completed
+        int[] callNode = new int[n]; // explicit depth-first search stack
+        int[] callEdge = new int[n]; // next outgoing edge to follow for each frame
+        Arrays.fill(order, -1);
+
+        int counter = 0;
+        int stackSize = 0;
+        int componentCount = 0;
+        for (int root = 0; root < n; root++) {
+            if (order[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callNode[0] = root;
+            callEdge[0] = 0;
+            depth++;
+
+            while (depth > 0) {
+                int v = callNode[depth - 1];
+                int k = callEdge[depth - 1];
+                if (k < index.outDegree(v)) {
+                    callEdge[depth - 1]++;
+                    int w = index.outTarget(v, k);
+                    if (order[w] == -1) {
+                        order[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callNode[depth] = w;
+                        callEdge[depth] = 0;
+                        depth++;
+                    } else if (onStack[w] && order[w] < low[v]) {
+                        low[v] = order[w];
+                    }
+                    continue;
+                }
+
+                // All edges of v followed
+                depth--;
+                if (low[v] == order[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        componentOf[w] = componentCount;
+                    } while (w != v);
+                    componentCount++;
+                }
+                if (depth > 0) {
+                    int parent = callNode[depth - 1];
+                    if (low[v] < low[parent]) {
+                        low[parent] = low[v];
+                    }
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    public AdjacencyIndex getIndex() {
+        return index;
+    }
+
+    public String getGraphId() {
+        return index.getGraphId();
+    }
+
+    public long getVersion() {
+        return index.getVersion();
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Get the component of a node, by its index in {@link #getIndex()}.
+     */
+    public int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    /**
+     * Get the component of a node by fully qualified name, or -1 if it is not in the graph.
+     */
+    public int componentOf(String fullyQualifiedName) {
+        int node = index.indexOf(fullyQualifiedName);
+        return node >= 0 ? componentOf[node] : -1;
+    }
+
+    /**
+     * Get the number of classes in a component.
+     */
+    public int size(int component) {
+        return memberStart[component + 1] - memberStart[component];
+    }
+
+    /**
+     * Get the k-th class of a component, as an index in {@link #getIndex()}, for k in [0, size).
+     */
+    public int member(int component, int k) {
+        return members[memberStart[component] + k];
+    }
+
+    /**
+     * Whether a component is a cycle: more than one class, or one class that depends on itself.
+     */
+    public boolean isCyclic(int component) {
+        return cyclic[component];
+    }
+
+    /**
+     * Get the number of cycles.
+     */
+    public int getCycleCount() {
+        return cycles.length;
+    }
+
+    /**
+     * Get the components that are cycles, largest first.
+     */
+    public int[] getCyclicComponents() {
+        return cycles.clone();
+    }
+
+    /**
+     * Get the classes of every cycle, largest cycle first, each in name order.
+     */
+    public List<List<ClassNode>> getCycles() {
+        List<List<ClassNode>> result = new ArrayList<>(cycles.length);
+        for (int c : cycles) {
+            result.add(getMembers(c));
+        }
+        return result;
+    }
+
+    /**
+     * Get the classes of a component in name order.
+     */
+    public List<ClassNode> getMembers(int component) {
+        List<ClassNode> result = new ArrayList<>(size(component));
+        for (int k = 0; k < size(component); k++) {
+            result.add(index.getNode(member(component, k)));
+        }
+        result.sort(Comparator.comparing(ClassNode::getFullyQualifiedName));
+        return result;
+    }
+
+    /**
+     * Get the condensation of the graph: one node per component, which is acyclic.
+     * Built on first use.
+     */
+    public CondensedGraph getCondensedGraph() {
+        CondensedGraph graph = condensed;
+        if (graph == null) {
+            synchronized (this) {
+                graph = condensed;
+                if (graph == null) {
+                    graph = new CondensedGraph(this);
+                    condensed = graph;
+                }
+            }
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,357 @@
+package com.analyzer.graph.diff;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.PackageGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The structural difference between two dependency graphs, e.g. the analyses of a branch before
+ * and after a change: the classes and dependencies one has and the other does not.
+ *
+ * The diff runs in O(N+E). Classes are matched by fully qualified name and dependencies by their
+ * hash, and only the classes and dependencies that differ are sorted for output.
+ *
+ * A class that disappears from one package while exactly one class of the same simple name
+ * appears in another counts as moved, not as removed and added. Dependencies of moved classes are
+ * compared under their new names, so moving a class only shows up as a change to its own
+ * dependencies if they changed too. A package whose classes all moved into the same new package
+ * is reported as a moved package.
+ *
+ * The graphs may be changed while they are compared, but the diff then reflects some
+ * intermediate state.
+ */
+public class GraphDiff {
+    private static final Comparator<ClassNode> BY_NAME = Comparator.comparing(ClassNode::getFullyQualifiedName);
+    private static final Comparator<DependencyEdge> EDGE_ORDER = Comparator
+            .comparing((DependencyEdge edge) -> edge.getSource().getFullyQualifiedName())
+            .thenComparing(edge -> edge.getTarget().getFullyQualifiedName())
+            .thenComparing(DependencyEdge::getFieldName, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final String baseGraphId;
+    private final long baseVersion;
+    private final String graphId;
+    private final long version;
+    private final List<ClassNode> addedNodes;
+    private final List<ClassNode> removedNodes;
+    private final List<NodeMove> movedNodes;
+    private final List<PackageMove> movedPackages;
+    private final List<DependencyEdge> addedEdges;
+    private final List<DependencyEdge> removedEdges;
+    private final long elapsedNanos;
+
+    private GraphDiff(DependencyGraph base, DependencyGraph graph, Deadline deadline) throws TimeoutException {
+        long start = System.nanoTime();
+        this.baseGraphId = base.getId();
+        this.baseVersion = base.getVersion();
+        this.graphId = graph.getId();
+        this.version = graph.getVersion();
+
+        List<ClassNode> removed = missingFrom(base.getNodes(), graph, deadline);
+        List<ClassNode> added = missingFrom(graph.getNodes(), base, deadline);
+
+        // Pair classes that left one package with the only class of the same name that arrived in another
+        Map<String, ClassNode> removedByName = uniqueByName(removed);
+        Map<String, ClassNode> addedByName = uniqueByName(added);
+        Map<String, ClassNode> renamedTo = new HashMap<>();   // old name -> class in graph
+        Map<String, ClassNode> renamedFrom = new HashMap<>(); // new name -> class in base
+        List<NodeMove> moves = new ArrayList<>();
+        for (Map.Entry<String, ClassNode> entry : removedByName.entrySet()) {
+            ClassNode to = addedByName.get(entry.getKey());
+            if (to != null) {
+                ClassNode from = entry.getValue();
+                renamedTo.put(from.getFullyQualifiedName(), to);
+                renamedFrom.put(to.getFullyQualifiedName(), from);
+                moves.add(new NodeMove(from, to));
+            }
+        }
+        removed.removeIf(node -> renamedTo.containsKey(node.getFullyQualifiedName()));
+        added.removeIf(node -> renamedFrom.containsKey(node.getFullyQualifiedName()));
+        removed.sort(BY_NAME);
+        added.sort(BY_NAME);
+        moves.sort(Comparator.comparing(move -> move.getFrom().getFullyQualifiedName()));
+
+        this.removedNodes = Collections.unmodifiableList(removed);
+        this.addedNodes = Collections.unmodifiableList(added);
+        this.movedNodes = Collections.unmodifiableList(moves);
+        this.movedPackages = Collections.unmodifiableList(findPackageMoves(moves, graph));
+        this.removedEdges = Collections.unmodifiableList(missingEdges(base, graph, renamedTo, deadline));
+        this.addedEdges = Collections.unmodifiableList(missingEdges(graph, base, renamedFrom, deadline));
+        this.elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Compare two graphs.
+     *
+     * @param base  the graph before the change
+     * @param graph the graph after the change
+     */
+    public static GraphDiff compute(DependencyGraph base, DependencyGraph graph) {
+        try {
+            return new GraphDiff(base, graph, null);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e); // cannot happen without a deadline
+        }
+    }
+
+    /**
+     * Compare two graphs, giving up after a time limit.
+     *
+     * @throws TimeoutException if the comparison took longer than the time limit
+     */
+    public static GraphDiff compute(DependencyGraph base, DependencyGraph graph, long timeout, TimeUnit unit)
+            throws TimeoutException {
+        return new GraphDiff(base, graph, new Deadline(System.nanoTime() + unit.toNanos(timeout)));
+    }
+
+    private static List<ClassNode> missingFrom(Collection<ClassNode> nodes, DependencyGraph other,
+                                               Deadline deadline) throws TimeoutException {
+        List<ClassNode> missing = new ArrayList<>();
+        for (ClassNode node : nodes) {
+            Deadline.check(deadline);
+            if (other.getNode(node.getFullyQualifiedName()) == null) {
+                missing.add(node);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Index classes by simple name, leaving out names shared by several classes.
+     */
+    private static Map<String, ClassNode> uniqueByName(List<ClassNode> nodes) {
+        Map<String, ClassNode> byName = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        for (ClassNode node : nodes) {
+            if (byName.putIfAbsent(node.getName(), node) != null) {
+                ambiguous.add(node.getName());
+            }
+        }
+        byName.keySet().removeAll(ambiguous);
+        return byName;
+    }
+
+    /**
+     * Find the packages that are gone from the new graph because all their classes moved to
+     * one other package.
+     */
+    private static List<PackageMove> findPackageMoves(List<NodeMove> moves, DependencyGraph graph) {
+        if (moves.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> remaining = new HashSet<>();
+        for (ClassNode node : graph.getNodes()) {
+            remaining.add(PackageGraph.packageOf(node.getFullyQualifiedName(), 0));
+        }
+        // Target package per source package, or null once classes went to different packages
+        Map<String, String> targets = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (NodeMove move : moves) {
+            String from = PackageGraph.packageOf(move.getFrom().getFullyQualifiedName(), 0);
+            String to = PackageGraph.packageOf(move.getTo().getFullyQualifiedName(), 0);
+            if (from.equals(to) || remaining.contains(from)) {
+                continue;
+            }
+            if (targets.containsKey(from) && !to.equals(targets.get(from))) {
+                targets.put(from, null);
+            } else {
+                targets.put(from, to);
+            }
+            counts.merge(from, 1, Integer::sum);
+        }
+        List<PackageMove> result = new ArrayList<>();
+        for (Map.Entry<String, String> entry : targets.entrySet()) {
+            if (entry.getValue() != null) {
+                result.add(new PackageMove(entry.getKey(), entry.getValue(), counts.get(entry.getKey())));
+            }
+        }
+        result.sort(Comparator.comparing(PackageMove::getFrom));
+        return result;
+    }
+
+    /**
+     * Find the dependencies of one graph that the other does not have, looking up dependencies
+     * of moved classes under their names in the other graph.
+     */
+    private static List<DependencyEdge> missingEdges(DependencyGraph graph, DependencyGraph other,
+                                                     Map<String, ClassNode> renamed, Deadline deadline)
+            throws TimeoutException {
+        Set<DependencyEdge> otherEdges = other.getEdgesView();
+        List<DependencyEdge> missing = new ArrayList<>();
+        for (DependencyEdge edge : graph.getEdgesView()) {
+            Deadline.check(deadline);
+            DependencyEdge lookup = edge;
+            if (!renamed.isEmpty()) {
+                ClassNode source = renamed.get(edge.getSource().getFullyQualifiedName());
+                ClassNode target = renamed.get(edge.getTarget().getFullyQualifiedName());
+                if (source != null || target != null) {
+                    lookup = new DependencyEdge(source != null ? source : edge.getSource(),
+                            target != null ? target : edge.getTarget(), edge.getFieldName());
+                }
+            }
+            if (!otherEdges.contains(lookup)) {
+                missing.add(edge);
+            }
+        }
+        missing.sort(EDGE_ORDER);
+        return missing;
+    }
+
+    public String getBaseGraphId() {
+        return baseGraphId;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public String getGraphId() {
+        return graphId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the classes only the new graph has, in name order, not counting moved classes.
+     */
+    public List<ClassNode> getAddedNodes() {
+        return addedNodes;
+    }
+
+    /**
+     * Get the classes only the base graph has, in name order, not counting moved classes.
+     */
+    public List<ClassNode> getRemovedNodes() {
+        return removedNodes;
+    }
+
+    /**
+     * Get the classes that moved to another package, in order of their old name.
+     */
+    public List<NodeMove> getMovedNodes() {
+        return movedNodes;
+    }
+
+    /**
+     * Get the packages whose classes all moved to one other package.
+     */
+    public List<PackageMove> getMovedPackages() {
+        return movedPackages;
+    }
+
+    /**
+     * Get the dependencies only the new graph has, with the classes of the new graph.
+     */
+    public List<DependencyEdge> getAddedEdges() {
+        return addedEdges;
+    }
+
+    /**
+     * Get the dependencies only the base graph has, with the classes of the base graph.
+     */
+    public List<DependencyEdge> getRemovedEdges() {
+        return removedEdges;
+    }
+
+    /**
+     * Whether the two graphs have the same classes and dependencies.
+     */
+    public boolean isEmpty() {
+        return addedNodes.isEmpty() && removedNodes.isEmpty() && movedNodes.isEmpty()
+                && addedEdges.isEmpty() && removedEdges.isEmpty();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "GraphDiff{+" + addedNodes.size() + "/-" + removedNodes.size() + " classes, "
+                + movedNodes.size() + " moved, +" + addedEdges.size() + "/-" + removedEdges.size() + " dependencies}";
+    }
+
+    /**
+     * A class that moved to another package.
+     */
+    public static final class NodeMove {
+        private final ClassNode from;
+        private final ClassNode to;
+
+        NodeMove(ClassNode from, ClassNode to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /** The class in the base graph. */
+        public ClassNode getFrom() {
+            return from;
+        }
+
+        /** The class in the new graph. */
+        public ClassNode getTo() {
+            return to;
+        }
+    }
+
+    /**
+     * A package whose classes all moved to another package.
+     */
+    public static final class PackageMove {
+        private final String from;
+        private final String to;
+        private final int classCount;
+
+        PackageMove(String from, String to, int classCount) {
+            this.from = from;
+            this.to = to;
+            this.classCount = classCount;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+    }
+
+    /**
+     * A time limit, checked once per this many steps of a comparison.
+     */
+    private static final class Deadline {
+        private static final int CHECK_INTERVAL = 1024;
+
+        private final long at;
+        private int steps;
+
+        Deadline(long at) {
+            this.at = at;
+        }
+
+        static void check(Deadline deadline) throws TimeoutException {
+            if (deadline != null && ++deadline.steps % CHECK_INTERVAL == 0 && System.nanoTime() - deadline.at > 0) {
+                throw new TimeoutException("Graph diff exceeded its time limit");
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.analyzer.graph.export;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.index.AdjacencyIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a graph written by {@link BinaryGraphWriter} back into a {@link DependencyGraph}.
+ *
+ * Format versions 2 to 6 are read. Node positions, components (version 3+), centrality
+ * (version 4+), communities (version 5+) and source files (version 6+) are restored, so a graph
+ * read from a snapshot needs no new layout or analysis. The result is a new graph with its own
+ * id and change history; the id and version stored in the snapshot are not carried over.
+ *
+ * Tools that only query the snapshot can use {@link #readIndex(InputStream)} instead, which
+ * builds the compressed adjacency index straight from the edge columns.
+ */
+public class BinaryGraphReader {
+
+    /**
+     * Read a graph from an input stream. The stream is read to the end but not closed.
+     *
+     * @throws IOException if the stream is not a binary graph of a supported format version
+     */
+    public DependencyGraph read(InputStream in) throws IOException {
+        Snapshot snapshot = parse(in);
+        DependencyGraph graph = new DependencyGraph();
+        for (ClassNode node : snapshot.nodes) {
+            graph.addNode(node);
+        }
+        try {
+            for (int i = 0; i < snapshot.sources.length; i++) {
+                String fieldName = snapshot.string(snapshot.fields[i]);
+                graph.addEdge(new DependencyEdge(snapshot.nodes[snapshot.sources[i]],
+                        snapshot.nodes[snapshot.targets[i]], fieldName.isEmpty() ? null : fieldName));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw corrupt(e);
+        }
+        return graph;
+    }
+
+    /**
+     * Read only the adjacency index of a snapshot, keeping the graph id and version stored in it.
+     * This skips building a {@link DependencyGraph} and is several times faster for large graphs.
+     * The stream is read to the end but not closed.
+     *
+     * @throws IOException if the stream is not a binary graph of a supported format version
+     */
+    public AdjacencyIndex readIndex(InputStream in) throws IOException {
+        Snapshot snapshot = parse(in);
+        try {
+            String[] fields = new String[snapshot.fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                String fieldName = snapshot.string(snapshot.fields[i]);
+                fields[i] = fieldName.isEmpty() ? null : fieldName;
+            }
+            return AdjacencyIndex.of(snapshot.graphId, snapshot.version, snapshot.nodes,
+                    snapshot.sources, snapshot.targets, fields);
+        } catch (IndexOutOfBoundsException e) {
+            throw corrupt(e);
+        }
+    }
+
+    private static Snapshot parse(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new Snapshot(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw corrupt(e);
+        }
+    }
+
+    private static IOException corrupt(RuntimeException cause) {
+        return new IOException("Truncated or corrupt binary graph", cause);
+    }
+
+    /**
+     * Check a count read from the header against the bytes left, so that a corrupt header fails
+     * with an IOException instead of a negative or huge allocation.
+     */
+    private static void checkCount(ByteBuffer buffer, String what, int count, int bytesEach) throws IOException {
+        if (count < 0 || (long) count * bytesEach > buffer.remaining()) {
+            throw new IOException("Corrupt binary graph: " + what + " count " + count + " with "
+                    + buffer.remaining() + " bytes left");
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    /**
+     * The decoded columns of a snapshot. Strings are decoded when first used, so edge field
+     * names cost nothing unless they are read.
+     */
+    private static final class Snapshot {
+        private final ByteBuffer buffer;
+        private final int[] stringOffsets;
+        private final int blobStart;
+        private final String[] strings;
+        private final String graphId;
+        private final long version;
+        private final ClassNode[] nodes;
+        private final int[] sources;
+        private final int[] targets;
+        private final int[] fields;
+
+        Snapshot(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.remaining() < 4 || buffer.getInt() != BinaryGraphWriter.MAGIC) {
+                throw new IOException("Not a binary graph");
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion < 2 || formatVersion > BinaryGraphWriter.FORMAT_VERSION) {
+                throw new IOException("Unsupported binary graph format version " + formatVersion);
+            }
+            int nodeCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            int stringCount = buffer.getInt();
+            int stringBytes = buffer.getInt();
+            int graphIdString = buffer.getInt();
+            long versionLow = buffer.getInt() & 0xFFFFFFFFL;
+            long versionHigh = buffer.getInt() & 0xFFFFFFFFL;
+            checkCount(buffer, "node", nodeCount, 4);
+            checkCount(buffer, "edge", edgeCount, 4);
+            checkCount(buffer, "string", stringCount, 4);
+            checkCount(buffer, "string byte", stringBytes, 1);
+
+            stringOffsets = readInts(buffer, stringCount + 1);
+            blobStart = buffer.position();
+            strings = new String[stringCount];
+            buffer.position(blobStart + ((stringBytes + 3) & ~3));
+            graphId = string(graphIdString);
+            version = (versionHigh << 32) | versionLow;
+
+            int[] idStrings = readInts(buffer, nodeCount);
+            int[] nameStrings = readInts(buffer, nodeCount);
+            nodes = new ClassNode[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                nodes[i] = new ClassNode(string(nameStrings[i]), string(idStrings[i]));
+            }
+            for (ClassNode node : nodes) {
+                node.setX(buffer.getFloat());
+                node.setY(buffer.getFloat());
+                node.setZ(buffer.getFloat());
+            }
+            // Degrees are derived from the edges; the analytics are restored as they were stamped
+            buffer.position(buffer.position() + nodeCount * 4);
+            int[] inDegrees = readInts(buffer, nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                nodes[i].setDependentCount(inDegrees[i]);
+            }
+            if (formatVersion >= 3) {
+                int[] components = readInts(buffer, nodeCount);
+                for (int i = 0; i < nodeCount; i++) {
+                    nodes[i].setComponentId(components[i]);
+                }
+            }
+            if (formatVersion >= 4) {
+                for (ClassNode node : nodes) {
+                    node.setPageRank(buffer.getFloat());
+                }
+                for (ClassNode node : nodes) {
+                    node.setBetweenness(buffer.getFloat());
+                }
+            }
+            if (formatVersion >= 5) {
+                int[] communities = readInts(buffer, nodeCount);
+                for (int i = 0; i < nodeCount; i++) {
+                    nodes[i].setCommunityId(communities[i]);
+                }
+            }
+            if (formatVersion >= 6) {
+                int[] sourceStrings = readInts(buffer, nodeCount);
+                for (int i = 0; i < nodeCount; i++) {
+                    nodes[i].setSourceUri(sourceStrings[i] >= 0 ? string(sourceStrings[i]) : null);
+                }
+            }
+
+            sources = readInts(buffer, edgeCount);
+            targets = readInts(buffer, edgeCount);
+            fields = readInts(buffer, edgeCount);
+        }
+
+        String string(int index) {
+            String value = strings[index];
+            if (value == null) {
+                value = new String(buffer.array(), blobStart + stringOffsets[index],
+                        stringOffsets[index + 1] - stringOffsets[index], StandardCharsets.UTF_8);
+                strings[index] = value;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.analyzer.graph.export;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a dependency graph in a compact little-endian binary format that browsers can
+ * decode directly into typed arrays.
+ *
+ * Every section starts on a 4-byte boundary so it can be viewed as an Int32Array/Float32Array:
+ * <pre>
+ *   Header     u32 magic "JDGB", u32 format version, u32 nodeCount, u32 edgeCount,
+ *              u32 stringCount, u32 stringBytes, u32 graphId string,
+ *              u32 graph version low bits, u32 graph version high bits
+ *   Strings    i32[stringCount + 1] offsets into the blob, u8[stringBytes] UTF-8 blob (padded)
+ *   Nodes      i32[nodeCount] id string, i32[nodeCount] name string,
+ *              f32[nodeCount * 3] x/y/z, i32[nodeCount] out-degree, i32[nodeCount] in-degree,
+ *              i32[nodeCount] strongly connected component (since version 3),
+ *              f32[nodeCount] PageRank, f32[nodeCount] betweenness (since version 4),
+ *              i32[nodeCount] community (since version 5),
+ *              i32[nodeCount] source file URI string or -1 (since version 6)
+ *   Edges      i32[edgeCount] source node, i32[edgeCount] target node, i32[edgeCount] field name string
+ * </pre>
+ * Strings are deduplicated, so each fully qualified name is stored once. Cycles are not listed
+ * separately: they are the components shared by several nodes, or by the two ends of a self-loop.
+ * Components, centrality and communities are the values stamped on the class nodes when the
+ * graph was analysed; the writer does not compute them.
+ */
+public class BinaryGraphWriter {
+    public static final int MAGIC = 0x4247444A; // "JDGB" when read little-endian
+    public static final int FORMAT_VERSION = 6;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Write the graph to an output stream. The stream is flushed but not closed.
+     */
+    public void write(DependencyGraph graph, OutputStream out) throws IOException {
+        long version = graph.getVersion();
+
+        // Snapshot the nodes so indices stay stable while we write
+        List<ClassNode> nodes = new ArrayList<>(graph.getNodes());
+        Map<ClassNode, Integer> nodeIndex = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIndex.put(nodes.get(i), i);
+        }
+
+        StringTable strings = new StringTable();
+        int graphIdString = strings.indexOf(graph.getId());
+        int[] idStrings = new int[nodes.size()];
+        int[] nameStrings = new int[nodes.size()];
+        int[] componentOf = new int[nodes.size()];
+        float[] pageRank = new float[nodes.size()];
+        float[] betweenness = new float[nodes.size()];
+        int[] communityOf = new int[nodes.size()];
+        int[] sourceStrings = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            String id = nodes.get(i).getFullyQualifiedName();
+            idStrings[i] = strings.indexOf(id);
+            nameStrings[i] = strings.indexOf(nodes.get(i).getName());
+            componentOf[i] = nodes.get(i).getComponentId();
+            pageRank[i] = (float) nodes.get(i).getPageRank();
+            betweenness[i] = (float) nodes.get(i).getBetweenness();
+            communityOf[i] = nodes.get(i).getCommunityId();
+            String sourceUri = nodes.get(i).getSourceUri();
+            sourceStrings[i] = sourceUri != null ? strings.indexOf(sourceUri) : -1;
+        }
+
+        // Resolve edges to node indices; skip edges whose endpoints were added after the snapshot
+        int edgeCapacity = Math.max(16, graph.getEdgeCount());
+        int[] sources = new int[edgeCapacity];
+        int[] targets = new int[edgeCapacity];
+        int[] fields = new int[edgeCapacity];
+        int[] outDegree = new int[nodes.size()];
+        int[] inDegree = new int[nodes.size()];
+        int edgeCount = 0;
+        for (DependencyEdge edge : graph.getEdgesView()) {
+            Integer source = nodeIndex.get(edge.getSource());
+            Integer target = nodeIndex.get(edge.getTarget());
+            if (source == null || target == null) {
+                continue;
+            }
+            if (edgeCount == sources.length) {
+                int grown = sources.length * 2;
+                sources = Arrays.copyOf(sources, grown);
+                targets = Arrays.copyOf(targets, grown);
+                fields = Arrays.copyOf(fields, grown);
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            fields[edgeCount] = strings.indexOf(edge.getFieldName() != null ? edge.getFieldName() : "");
+            outDegree[source]++;
+            inDegree[target]++;
+            edgeCount++;
+        }
+
+        ChunkedWriter writer = new ChunkedWriter(out);
+
+        writer.putInt(MAGIC);
+        writer.putInt(FORMAT_VERSION);
+        writer.putInt(nodes.size());
+        writer.putInt(edgeCount);
+        writer.putInt(strings.size());
+        writer.putInt(strings.byteLength);
+        writer.putInt(graphIdString);
+        writer.putInt((int) version);
+        writer.putInt((int) (version >>> 32));
+
+        int offset = 0;
+        writer.putInt(0);
+        for (byte[] bytes : strings.encoded) {
+            offset += bytes.length;
+            writer.putInt(offset);
+        }
+        for (byte[] bytes : strings.encoded) {
+            writer.putBytes(bytes);
+        }
+        writer.padTo4();
+
+        writer.putInts(idStrings, nodes.size());
+        writer.putInts(nameStrings, nodes.size());
+        for (ClassNode node : nodes) {
+            writer.putFloat((float) node.getX());
+            writer.putFloat((float) node.getY());
+            writer.putFloat((float) node.getZ());
+        }
+        writer.putInts(outDegree, nodes.size());
+        writer.putInts(inDegree, nodes.size());
+        writer.putInts(componentOf, nodes.size());
+        for (float value : pageRank) {
+            writer.putFloat(value);
+        }
+        for (float value : betweenness) {
+            writer.putFloat(value);
+        }
+        writer.putInts(communityOf, nodes.size());
+        writer.putInts(sourceStrings, nodes.size());
+
+        writer.putInts(sources, edgeCount);
+        writer.putInts(targets, edgeCount);
+        writer.putInts(fields, edgeCount);
+
+        writer.flush();
+    }
+
+    /**
+     * Deduplicating table of UTF-8 encoded strings.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int byteLength = 0;
+
+        int indexOf(String value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                index = encoded.size();
+                encoded.add(bytes);
+                byteLength += bytes.length;
+                indices.put(value, index);
+            }
+            return index;
+        }
+
+        int size() {
+            return encoded.size();
+        }
+    }
+
+    /**
+     * Little-endian writer that stages data in a fixed buffer to keep memory flat.
+     */
+    private static class ChunkedWriter {
+        private final OutputStream out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long written = 0;
+
+        ChunkedWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                putInt(values[i]);
+            }
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int position = 0;
+            while (position < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - position);
+                buffer.put(bytes, position, length);
+                position += length;
+            }
+        }
+
+        void padTo4() throws IOException {
+            while ((written + buffer.position()) % 4 != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            written += buffer.position();
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.analyzer.graph.export;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams a dependency graph in the Graphviz DOT language:
+ * <pre>
+ * digraph "graphId" {
+ *   node [shape=box];
+ *   "com.example.Foo" [label="Foo", pos="12.5,-40.0"];
+ *   "com.example.Foo" -&gt; "com.example.Bar" [label="bar"];
+ * }
+ * </pre>
+ * Nodes are labelled with the simple class name and edges with the field name. With
+ * {@code withPositions}, each node has the x and y of the layout as its {@code pos}, which
+ * {@code neato -n} keeps; z is dropped.
+ */
+public class DotGraphWriter {
+    private final boolean withPositions;
+
+    public DotGraphWriter(boolean withPositions) {
+        this.withPositions = withPositions;
+    }
+
+    /**
+     * Write the graph to an output stream as UTF-8. The stream is flushed but not closed.
+     */
+    public void write(DependencyGraph graph, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        write(graph, writer);
+    }
+
+    /**
+     * Write the graph to a character stream. The writer is flushed but not closed.
+     */
+    public void write(DependencyGraph graph, Writer out) throws IOException {
+        out.write("digraph ");
+        quote(out, graph.getId());
+        out.write(" {\n  node [shape=box];\n");
+        for (ClassNode node : graph.getNodes()) {
+            out.write("  ");
+            quote(out, node.getFullyQualifiedName());
+            out.write(" [label=");
+            quote(out, node.getName());
+            if (withPositions) {
+                out.write(", pos=\"");
+                out.write(Double.toString(node.getX()));
+                out.write(',');
+                out.write(Double.toString(node.getY()));
+                out.write('"');
+            }
+            out.write("];\n");
+        }
+        for (DependencyEdge edge : graph.getEdgesView()) {
+            out.write("  ");
+            quote(out, edge.getSource().getFullyQualifiedName());
+            out.write(" -> ");
+            quote(out, edge.getTarget().getFullyQualifiedName());
+            if (edge.getFieldName() != null) {
+                out.write(" [label=");
+                quote(out, edge.getFieldName());
+                out.write(']');
+            }
+            out.write(";\n");
+        }
+        out.write("}\n");
+        out.flush();
+    }
+
+    /**
+     * Write a DOT double-quoted string.
+     */
+    private static void quote(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                out.write('\\');
+                out.write(ch);
+            } else if (ch == '\n') {
+                out.write("\\n");
+            } else {
+                out.write(ch);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,127 @@
+package com.analyzer.graph.export;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams a dependency graph as GraphML, for tools such as Gephi, yEd, Cytoscape or NetworkX.
+ *
+ * Nodes are classes with their fully qualified name as id; edges are dependencies, directed from
+ * the class that has the field to the field's type:
+ * <pre>
+ * &lt;graphml&gt;
+ *   &lt;key id="name" for="node" attr.name="name" attr.type="string"/&gt; ... x, y, z, dependencyCount,
+ *       dependentCount, pageRank, betweenness, scc, community; fieldName for edges
+ *   &lt;graph id="graphId" edgedefault="directed"&gt;
+ *     &lt;node id="com.example.Foo"&gt;&lt;data key="name"&gt;Foo&lt;/data&gt;...&lt;/node&gt;
+ *     &lt;edge source="com.example.Foo" target="com.example.Bar"&gt;&lt;data key="fieldName"&gt;bar&lt;/data&gt;&lt;/edge&gt;
+ * </pre>
+ * The node attributes are those of the JSON snapshot (see {@link JsonGraphWriter}), with the
+ * analytics stamped on the class nodes when the graph was analysed.
+ */
+public class GraphMlGraphWriter {
+    private static final String NAMESPACE = "http://graphml.graphdrawing.org/xmlns";
+    private static final int[] NO_EDGES = new int[2];
+
+    private static final String[][] NODE_KEYS = {
+            {"name", "string"}, {"x", "double"}, {"y", "double"}, {"z", "double"},
+            {"dependencyCount", "int"}, {"dependentCount", "int"}, {"pageRank", "double"},
+            {"betweenness", "double"}, {"scc", "int"}, {"community", "int"}};
+
+    /**
+     * Write the graph to an output stream as UTF-8. The stream is flushed but not closed.
+     */
+    public void write(DependencyGraph graph, OutputStream out) throws IOException {
+        Map<ClassNode, int[]> degrees = new HashMap<>();
+        for (DependencyEdge edge : graph.getEdgesView()) {
+            degrees.computeIfAbsent(edge.getSource(), n -> new int[2])[0]++;
+            degrees.computeIfAbsent(edge.getTarget(), n -> new int[2])[1]++;
+        }
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(buffered, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("graphml");
+            xml.writeDefaultNamespace(NAMESPACE);
+            xml.writeCharacters("\n");
+            for (String[] key : NODE_KEYS) {
+                writeKey(xml, key[0], "node", key[1]);
+            }
+            writeKey(xml, "fieldName", "edge", "string");
+
+            xml.writeStartElement("graph");
+            xml.writeAttribute("id", graph.getId());
+            xml.writeAttribute("edgedefault", "directed");
+            xml.writeCharacters("\n");
+
+            for (ClassNode node : graph.getNodes()) {
+                String id = node.getFullyQualifiedName();
+                int[] degree = degrees.getOrDefault(node, NO_EDGES);
+                xml.writeStartElement("node");
+                xml.writeAttribute("id", id);
+                writeData(xml, "name", node.getName());
+                writeData(xml, "x", Double.toString(node.getX()));
+                writeData(xml, "y", Double.toString(node.getY()));
+                writeData(xml, "z", Double.toString(node.getZ()));
+                writeData(xml, "dependencyCount", Integer.toString(degree[0]));
+                writeData(xml, "dependentCount", Integer.toString(degree[1]));
+                writeData(xml, "pageRank", Double.toString(node.getPageRank()));
+                writeData(xml, "betweenness", Double.toString(node.getBetweenness()));
+                writeData(xml, "scc", Integer.toString(node.getComponentId()));
+                writeData(xml, "community", Integer.toString(node.getCommunityId()));
+                xml.writeEndElement();
+                xml.writeCharacters("\n");
+            }
+
+            for (DependencyEdge edge : graph.getEdgesView()) {
+                xml.writeStartElement("edge");
+                xml.writeAttribute("source", edge.getSource().getFullyQualifiedName());
+                xml.writeAttribute("target", edge.getTarget().getFullyQualifiedName());
+                if (edge.getFieldName() != null) {
+                    writeData(xml, "fieldName", edge.getFieldName());
+                }
+                xml.writeEndElement();
+                xml.writeCharacters("\n");
+            }
+
+            xml.writeEndElement(); // graph
+            xml.writeCharacters("\n");
+            xml.writeEndElement(); // graphml
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot write GraphML: " + e.getMessage(), e);
+        }
+        buffered.flush();
+    }
+
+    private static void writeKey(XMLStreamWriter xml, String name, String scope, String type)
+            throws XMLStreamException {
+        xml.writeEmptyElement("key");
+        xml.writeAttribute("id", name);
+        xml.writeAttribute("for", scope);
+        xml.writeAttribute("attr.name", name);
+        xml.writeAttribute("attr.type", type);
+        xml.writeCharacters("\n");
+    }
+
+    private static void writeData(XMLStreamWriter xml, String key, String value) throws XMLStreamException {
+        xml.writeStartElement("data");
+        xml.writeAttribute("key", key);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+}
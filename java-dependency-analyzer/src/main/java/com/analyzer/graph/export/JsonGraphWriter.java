@@ -0,0 +1,504 @@
+package com.analyzer.graph.export;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.GraphChange;
+import com.analyzer.graph.PackageGraph;
+import com.analyzer.graph.analysis.CentralityMetrics;
+import com.analyzer.graph.analysis.ChangeImpact;
+import com.analyzer.graph.analysis.Communities;
+import com.analyzer.graph.diff.GraphDiff;
+import com.analyzer.graph.index.ViewportIndex;
+import com.analyzer.graph.index.ViewportResult;
+import com.analyzer.graph.query.QueryResult;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams a dependency graph as compact JSON without building an intermediate tree.
+ *
+ * Snapshot schema:
+ * <pre>
+ * {"type":"graph", "graphId", "version",
+ *  "nodes":[{"id","name","fullName","x","y","z","dependencyCount","dependentCount","pageRank","betweenness","scc","community"}, ...],
+ *  "edges":[{"source","target","fieldName"}, ...],
+ *  "componentCount", "cycles":[{"scc","nodes":[id, ...]}, ...], "communityCount"}
+ * </pre>
+ * "scc" is the strongly connected component of a class; "cycles" lists the components that
+ * are cycles, largest first. "pageRank" and "betweenness" are the centrality of a class (see
+ * {@link CentralityMetrics}), and "community" the cluster it belongs to, 0 for the largest (see
+ * {@link Communities}). The writer does not compute any of these: it writes the values stamped
+ * on the class nodes when the graph was analysed, so classes added since have "scc" and
+ * "community" -1 and a PageRank of 0. Deltas do not update them either.
+ * Delta schema:
+ * <pre>
+ * {"type":"delta", "graphId", "fromVersion", "toVersion",
+ *  "changes":[{"version","op","id","name","x","y","z"} or {"version","op","source","target","fieldName"}, ...]}
+ * </pre>
+ * Summary schema, sent instead of a snapshot for graphs too large to send whole:
+ * <pre>
+ * {"type":"graph-summary", "graphId", "version", "nodeCount", "edgeCount", "packageCount",
+ *  "bounds":{"minX","minY","minZ","maxX","maxY","maxZ"}}
+ * </pre>
+ * Viewport schema (aggregate nodes are packages, with "classCount" and weighted edges):
+ * <pre>
+ * {"type":"viewport", "requestId", "graphId", "version", "aggregated", "page", "pageCount", "totalNodes",
+ *  "nodes":[{"id","name","x","y","z","classCount","dependencyCount"}, ...],
+ *  "edges":[{"source","target","fieldName","count"}, ...]}
+ * </pre>
+ * Query result schema (depth is the distance from the start node, the position along a path, or
+ * -1 where no distance is known, e.g. for answers from the reachability index):
+ * <pre>
+ * {"type":"query-result", "requestId", "graphId", "version", "query", "found", "truncated", "reason",
+ *  "elapsedMs", "nodes":[{"id","name","depth"}, ...], "edges":[{"source","target","fieldName"}, ...]}
+ * </pre>
+ * Package graph schema (packages cut to "depth" segments, 0 = full names; "internalCount" counts
+ * dependencies within a package, "count" those from one package to another):
+ * <pre>
+ * {"type":"package-graph", "requestId", "graphId", "version", "depth",
+ *  "packages":[{"id","classCount","internalCount"}, ...], "edges":[{"source","target","count"}, ...]}
+ * </pre>
+ * Graph diff schema (removed edges name the classes of the base graph, added edges those of the
+ * new graph; moved classes are not listed as added or removed):
+ * <pre>
+ * {"type":"graph-diff", "requestId", "baseGraphId", "baseVersion", "graphId", "version", "elapsedMs",
+ *  "addedNodes":[{"id","name"}, ...], "removedNodes":[{"id","name"}, ...], "movedNodes":[{"from","to"}, ...],
+ *  "movedPackages":[{"from","to","classCount"}, ...],
+ *  "addedEdges":[{"source","target","fieldName"}, ...], "removedEdges":[{"source","target","fieldName"}, ...]}
+ * </pre>
+ * Change impact schema ("changed" are the classes declared in the changed files, "affected" the
+ * classes that depend on them, with the number of dependency steps in between):
+ * <pre>
+ * {"type":"impact", "graphId", "version", "maxDepth", "elapsedMs", "changedFiles":[path, ...],
+ *  "unmatchedFiles":[path, ...], "changed":[{"id","name"}, ...], "affected":[{"id","name","depth"}, ...]}
+ * </pre>
+ */
+public class JsonGraphWriter {
+    private static final int[] NO_EDGES = new int[2];
+
+    /**
+     * Write the graph as UTF-8 JSON to an output stream. The stream is flushed but not closed.
+     */
+    public void write(DependencyGraph graph, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        write(graph, writer);
+    }
+
+    /**
+     * Write the graph as JSON to a character stream. The writer is flushed but not closed.
+     */
+    public void write(DependencyGraph graph, Writer out) throws IOException {
+        // Read the version first: changes made while writing have a higher version and are
+        // either already included or will be re-applied idempotently from a later delta
+        long version = graph.getVersion();
+        Map<ClassNode, int[]> degrees = new HashMap<>();
+        Set<ClassNode> selfLoops = new HashSet<>();
+        for (DependencyEdge edge : graph.getEdgesView()) {
+            degrees.computeIfAbsent(edge.getSource(), n -> new int[2])[0]++;
+            degrees.computeIfAbsent(edge.getTarget(), n -> new int[2])[1]++;
+            if (edge.getSource().equals(edge.getTarget())) {
+                selfLoops.add(edge.getSource());
+            }
+        }
+        Map<Integer, List<ClassNode>> members = new HashMap<>();
+        Set<Integer> communities = new HashSet<>();
+
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("graph");
+        json.name("graphId").value(graph.getId());
+        json.name("version").value(version);
+
+        json.name("nodes").beginArray();
+        for (ClassNode node : graph.getNodes()) {
+            json.beginObject();
+            json.name("id").value(node.getFullyQualifiedName());
+            json.name("name").value(node.getName());
+            json.name("fullName").value(node.getFullyQualifiedName());
+            json.name("x").value(node.getX());
+            json.name("y").value(node.getY());
+            json.name("z").value(node.getZ());
+            int[] degree = degrees.getOrDefault(node, NO_EDGES);
+            json.name("dependencyCount").value(degree[0]);
+            json.name("dependentCount").value(degree[1]);
+            json.name("pageRank").value(node.getPageRank());
+            json.name("betweenness").value(node.getBetweenness());
+            json.name("scc").value(node.getComponentId());
+            json.name("community").value(node.getCommunityId());
+            json.endObject();
+            if (node.getComponentId() >= 0) {
+                members.computeIfAbsent(node.getComponentId(), c -> new ArrayList<>()).add(node);
+            }
+            if (node.getCommunityId() >= 0) {
+                communities.add(node.getCommunityId());
+            }
+        }
+        json.endArray();
+
+        json.name("edges").beginArray();
+        for (DependencyEdge edge : graph.getEdgesView()) {
+            json.beginObject();
+            json.name("source").value(edge.getSource().getFullyQualifiedName());
+            json.name("target").value(edge.getTarget().getFullyQualifiedName());
+            json.name("fieldName").value(edge.getFieldName());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("componentCount").value(members.size());
+        json.name("cycles").beginArray();
+        for (List<ClassNode> cycle : cycles(members, selfLoops)) {
+            json.beginObject();
+            json.name("scc").value(cycle.get(0).getComponentId());
+            json.name("nodes").beginArray();
+            for (ClassNode node : cycle) {
+                json.value(node.getFullyQualifiedName());
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+        json.name("communityCount").value(communities.size());
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Get the components that are cycles, largest first, each in name order: those with several
+     * classes, and single classes that depend on themselves.
+     */
+    private static List<List<ClassNode>> cycles(Map<Integer, List<ClassNode>> members, Set<ClassNode> selfLoops) {
+        List<List<ClassNode>> cycles = new ArrayList<>();
+        for (List<ClassNode> component : members.values()) {
+            if (component.size() > 1 || selfLoops.contains(component.get(0))) {
+                component.sort(Comparator.comparing(ClassNode::getFullyQualifiedName));
+                cycles.add(component);
+            }
+        }
+        cycles.sort(Comparator.<List<ClassNode>>comparingInt(List::size).reversed()
+                .thenComparingInt(cycle -> cycle.get(0).getComponentId()));
+        return cycles;
+    }
+
+    /**
+     * Write a delta message carrying the given changes.
+     */
+    public void writeDelta(String graphId, long fromVersion, long toVersion, List<GraphChange> changes, Writer out)
+            throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("delta");
+        json.name("graphId").value(graphId);
+        json.name("fromVersion").value(fromVersion);
+        json.name("toVersion").value(toVersion);
+
+        json.name("changes").beginArray();
+        for (GraphChange change : changes) {
+            json.beginObject();
+            json.name("version").value(change.getVersion());
+            json.name("op").value(change.getType().getWireName());
+            if (change.getNode() != null) {
+                ClassNode node = change.getNode();
+                json.name("id").value(node.getFullyQualifiedName());
+                if (change.getType() != GraphChange.Type.NODE_REMOVED) {
+                    json.name("name").value(node.getName());
+                    json.name("x").value(change.getX());
+                    json.name("y").value(change.getY());
+                    json.name("z").value(change.getZ());
+                }
+            } else {
+                DependencyEdge edge = change.getEdge();
+                json.name("source").value(edge.getSource().getFullyQualifiedName());
+                json.name("target").value(edge.getTarget().getFullyQualifiedName());
+                json.name("fieldName").value(edge.getFieldName());
+            }
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Write a summary of a graph that is served through viewport queries.
+     */
+    public void writeSummary(ViewportIndex index, String graphId, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        double[] bounds = index.getBounds();
+        json.beginObject();
+        json.name("type").value("graph-summary");
+        json.name("graphId").value(graphId);
+        json.name("version").value(index.getVersion());
+        json.name("nodeCount").value(index.getNodeCount());
+        json.name("edgeCount").value(index.getEdgeCount());
+        json.name("packageCount").value(index.getPackageCount());
+        json.name("bounds").beginObject();
+        json.name("minX").value(bounds[0]);
+        json.name("minY").value(bounds[1]);
+        json.name("minZ").value(bounds[2]);
+        json.name("maxX").value(bounds[3]);
+        json.name("maxY").value(bounds[4]);
+        json.name("maxZ").value(bounds[5]);
+        json.endObject();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Write one page of a viewport query result.
+     */
+    public void writeViewport(ViewportResult result, String requestId, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("viewport");
+        json.name("requestId").value(requestId);
+        json.name("graphId").value(result.getGraphId());
+        json.name("version").value(result.getVersion());
+        json.name("aggregated").value(result.isAggregated());
+        json.name("page").value(result.getPage());
+        json.name("pageCount").value(result.getPageCount());
+        json.name("totalNodes").value(result.getTotalNodes());
+
+        json.name("nodes").beginArray();
+        for (ViewportResult.Node node : result.getNodes()) {
+            json.beginObject();
+            json.name("id").value(node.getId());
+            json.name("name").value(node.getName());
+            json.name("x").value(node.getX());
+            json.name("y").value(node.getY());
+            json.name("z").value(node.getZ());
+            json.name("classCount").value(node.getClassCount());
+            json.name("dependencyCount").value(node.getDependencyCount());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("edges").beginArray();
+        for (ViewportResult.Edge edge : result.getEdges()) {
+            json.beginObject();
+            json.name("source").value(edge.getSource());
+            json.name("target").value(edge.getTarget());
+            json.name("fieldName").value(edge.getFieldName());
+            json.name("count").value(edge.getCount());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Write the answer to a graph query.
+     */
+    public void writeQueryResult(QueryResult result, String requestId, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("query-result");
+        json.name("requestId").value(requestId);
+        json.name("graphId").value(result.getGraphId());
+        json.name("version").value(result.getVersion());
+        json.name("query").value(result.getQuery().getType().getWireName());
+        json.name("found").value(result.isFound());
+        json.name("truncated").value(result.isTruncated());
+        json.name("reason").value(result.getTruncatedReason());
+        json.name("elapsedMs").value(result.getElapsedNanos() / 1_000_000.0);
+
+        json.name("nodes").beginArray();
+        for (QueryResult.Node node : result.getNodes()) {
+            json.beginObject();
+            json.name("id").value(node.getNode().getFullyQualifiedName());
+            json.name("name").value(node.getNode().getName());
+            json.name("depth").value(node.getDepth());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("edges").beginArray();
+        for (QueryResult.Edge edge : result.getEdges()) {
+            json.beginObject();
+            json.name("source").value(edge.getSource().getFullyQualifiedName());
+            json.name("target").value(edge.getTarget().getFullyQualifiedName());
+            json.name("fieldName").value(edge.getFieldName());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Write the package-level aggregate of a graph.
+     */
+    public void writePackageGraph(PackageGraph.Snapshot packages, String graphId, String requestId, Writer out)
+            throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("package-graph");
+        json.name("requestId").value(requestId);
+        json.name("graphId").value(graphId);
+        json.name("version").value(packages.getVersion());
+        json.name("depth").value(packages.getDepth());
+
+        json.name("packages").beginArray();
+        for (PackageGraph.Package pkg : packages.getPackages()) {
+            json.beginObject();
+            json.name("id").value(pkg.getName());
+            json.name("classCount").value(pkg.getClassCount());
+            json.name("internalCount").value(pkg.getInternalDependencyCount());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("edges").beginArray();
+        for (PackageGraph.Edge edge : packages.getEdges()) {
+            json.beginObject();
+            json.name("source").value(edge.getSource());
+            json.name("target").value(edge.getTarget());
+            json.name("count").value(edge.getCount());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Write the difference between two graphs. The request id may be null, e.g. for the command line.
+     */
+    public void writeDiff(GraphDiff diff, String requestId, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("graph-diff");
+        json.name("requestId").value(requestId);
+        json.name("baseGraphId").value(diff.getBaseGraphId());
+        json.name("baseVersion").value(diff.getBaseVersion());
+        json.name("graphId").value(diff.getGraphId());
+        json.name("version").value(diff.getVersion());
+        json.name("elapsedMs").value(diff.getElapsedNanos() / 1_000_000.0);
+
+        writeDiffNodes(json, "addedNodes", diff.getAddedNodes());
+        writeDiffNodes(json, "removedNodes", diff.getRemovedNodes());
+
+        json.name("movedNodes").beginArray();
+        for (GraphDiff.NodeMove move : diff.getMovedNodes()) {
+            json.beginObject();
+            json.name("from").value(move.getFrom().getFullyQualifiedName());
+            json.name("to").value(move.getTo().getFullyQualifiedName());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("movedPackages").beginArray();
+        for (GraphDiff.PackageMove move : diff.getMovedPackages()) {
+            json.beginObject();
+            json.name("from").value(move.getFrom());
+            json.name("to").value(move.getTo());
+            json.name("classCount").value(move.getClassCount());
+            json.endObject();
+        }
+        json.endArray();
+
+        writeDiffEdges(json, "addedEdges", diff.getAddedEdges());
+        writeDiffEdges(json, "removedEdges", diff.getRemovedEdges());
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Write the classes affected by a set of changed files.
+     */
+    public void writeImpact(ChangeImpact impact, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setHtmlSafe(false);
+
+        json.beginObject();
+        json.name("type").value("impact");
+        json.name("graphId").value(impact.getGraphId());
+        json.name("version").value(impact.getVersion());
+        json.name("maxDepth").value(impact.getMaxDepth());
+        json.name("elapsedMs").value(impact.getElapsedNanos() / 1_000_000.0);
+
+        json.name("changedFiles").beginArray();
+        for (String file : impact.getChangedFiles()) {
+            json.value(file);
+        }
+        json.endArray();
+        json.name("unmatchedFiles").beginArray();
+        for (String file : impact.getUnmatchedFiles()) {
+            json.value(file);
+        }
+        json.endArray();
+
+        writeDiffNodes(json, "changed", impact.getChangedClasses());
+
+        json.name("affected").beginArray();
+        for (ChangeImpact.Affected affected : impact.getAffected()) {
+            json.beginObject();
+            json.name("id").value(affected.getNode().getFullyQualifiedName());
+            json.name("name").value(affected.getNode().getName());
+            json.name("depth").value(affected.getDepth());
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeDiffNodes(JsonWriter json, String name, List<ClassNode> nodes) throws IOException {
+        json.name(name).beginArray();
+        for (ClassNode node : nodes) {
+            json.beginObject();
+            json.name("id").value(node.getFullyQualifiedName());
+            json.name("name").value(node.getName());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static void writeDiffEdges(JsonWriter json, String name, List<DependencyEdge> edges) throws IOException {
+        json.name(name).beginArray();
+        for (DependencyEdge edge : edges) {
+            json.beginObject();
+            json.name("source").value(edge.getSource().getFullyQualifiedName());
+            json.name("target").value(edge.getTarget().getFullyQualifiedName());
+            json.name("fieldName").value(edge.getFieldName());
+            json.endObject();
+        }
+        json.endArray();
+    }
+}
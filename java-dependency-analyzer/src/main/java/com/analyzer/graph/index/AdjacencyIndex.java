@@ -0,0 +1,222 @@
+package com.analyzer.graph.index;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compressed adjacency of one version of a dependency graph.
+ *
+ * Nodes are numbered 0..n-1. Outgoing edges of node i are {@code outTargets[outStart[i] ..
+ * outStart[i+1])}, incoming edges likewise in {@code inSources}, so neighbour iteration touches
+ * contiguous int arrays instead of scanning the edge set. Node ids are also sorted, on the first
+ * package prefix lookup, so that the lookups are binary searches.
+ *
+ * Obtain one with {@link DependencyGraph#getAdjacencyIndex()}, which caches it per version.
+ */
+public class AdjacencyIndex {
+    private final String graphId;
+    private final long version;
+    private final ClassNode[] nodes;
+    private final Map<String, Integer> indexById;
+    private final int[] outStart;
+    private final int[] outTargets;
+    private final String[] outFields;
+    private final int[] inStart;
+    private final int[] inSources;
+    private final int[] inEdge;
+    private volatile int[] sortedById;
+
+    private AdjacencyIndex(String graphId, long version, ClassNode[] nodes,
+                           int[] sources, int[] targets, String[] fields, int m) {
+        this.graphId = graphId;
+        this.version = version;
+        this.nodes = nodes;
+        int n = nodes.length;
+
+        indexById = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            indexById.put(nodes[i].getFullyQualifiedName(), i);
+        }
+
+        outStart = new int[n + 1];
+        inStart = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            outStart[sources[e] + 1]++;
+            inStart[targets[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            outStart[i + 1] += outStart[i];
+            inStart[i + 1] += inStart[i];
+        }
+
+        outTargets = new int[m];
+        outFields = new String[m];
+        inSources = new int[m];
+        inEdge = new int[m];
+        int[] outFill = Arrays.copyOf(outStart, n);
+        int[] inFill = Arrays.copyOf(inStart, n);
+        for (int e = 0; e < m; e++) {
+            int out = outFill[sources[e]]++;
+            outTargets[out] = targets[e];
+            outFields[out] = fields[e];
+            int in = inFill[targets[e]]++;
+            inSources[in] = sources[e];
+            inEdge[in] = out;
+        }
+    }
+
+    /**
+     * Build an index over the current nodes and edges of a graph.
+     */
+    public static AdjacencyIndex build(DependencyGraph graph) {
+        long version = graph.getVersion();
+        ClassNode[] nodes = graph.getNodes().toArray(new ClassNode[0]);
+        Map<ClassNode, Integer> indexByNode = new HashMap<>(nodes.length * 2);
+        for (int i = 0; i < nodes.length; i++) {
+            indexByNode.put(nodes[i], i);
+        }
+
+        List<DependencyEdge> edges = new ArrayList<>(graph.getEdgesView());
+        int[] sources = new int[edges.size()];
+        int[] targets = new int[edges.size()];
+        String[] fields = new String[edges.size()];
+        int m = 0;
+        for (DependencyEdge edge : edges) {
+            Integer source = indexByNode.get(edge.getSource());
+            Integer target = indexByNode.get(edge.getTarget());
+            if (source == null || target == null) {
+                continue; // endpoint added after the node snapshot
+            }
+            sources[m] = source;
+            targets[m] = target;
+            fields[m] = edge.getFieldName();
+            m++;
+        }
+        return new AdjacencyIndex(graph.getId(), version, nodes, sources, targets, fields, m);
+    }
+
+    /**
+     * Build an index directly from edge lists, e.g. those of a binary snapshot, without a
+     * {@link DependencyGraph}. Edge i goes from {@code nodes[sources[i]]} to {@code nodes[targets[i]]}.
+     */
+    public static AdjacencyIndex of(String graphId, long version, ClassNode[] nodes,
+                                    int[] sources, int[] targets, String[] fields) {
+        if (sources.length != targets.length || sources.length != fields.length) {
+            throw new IllegalArgumentException("Edge arrays differ in length");
+        }
+        return new AdjacencyIndex(graphId, version, nodes.clone(), sources, targets, fields, sources.length);
+    }
+
+    public String getGraphId() {
+        return graphId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    public ClassNode getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Get the index of a node by fully qualified name, or -1 if it is not in the graph.
+     */
+    public int indexOf(String fullyQualifiedName) {
+        Integer index = indexById.get(fullyQualifiedName);
+        return index != null ? index : -1;
+    }
+
+    public int outDegree(int node) {
+        return outStart[node + 1] - outStart[node];
+    }
+
+    public int inDegree(int node) {
+        return inStart[node + 1] - inStart[node];
+    }
+
+    /**
+     * Get the k-th dependency (edge target) of a node, for k in [0, outDegree).
+     */
+    public int outTarget(int node, int k) {
+        return outTargets[outStart[node] + k];
+    }
+
+    /**
+     * Get the field name of the k-th outgoing edge of a node.
+     */
+    public String outField(int node, int k) {
+        return outFields[outStart[node] + k];
+    }
+
+    /**
+     * Get the k-th dependent (edge source) of a node, for k in [0, inDegree).
+     */
+    public int inSource(int node, int k) {
+        return inSources[inStart[node] + k];
+    }
+
+    /**
+     * Get the field name of the k-th incoming edge of a node.
+     */
+    public String inField(int node, int k) {
+        return outFields[inEdge[inStart[node] + k]];
+    }
+
+    /**
+     * Get the indices of all nodes in a package or any of its subpackages, in name order.
+     * A prefix ending in '.' matches any name starting with it.
+     */
+    public int[] nodesInPackage(String packagePrefix) {
+        String prefix = packagePrefix.endsWith(".") ? packagePrefix : packagePrefix + ".";
+        int[] sortedById = sortedById();
+        int low = 0;
+        int high = sortedById.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (nodes[sortedById[mid]].getFullyQualifiedName().compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < sortedById.length && nodes[sortedById[end]].getFullyQualifiedName().startsWith(prefix)) {
+            end++;
+        }
+        return Arrays.copyOfRange(sortedById, low, end);
+    }
+
+    private int[] sortedById() {
+        int[] sorted = sortedById;
+        if (sorted == null) {
+            Integer[] order = new Integer[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(i -> nodes[i].getFullyQualifiedName()));
+            sorted = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                sorted[i] = order[i];
+            }
+            sortedById = sorted; // racing threads compute the same array
+        }
+        return sorted;
+    }
+}
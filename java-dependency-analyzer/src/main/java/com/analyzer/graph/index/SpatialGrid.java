@@ -0,0 +1,169 @@
+package com.analyzer.graph.index;
+
+import com.analyzer.graph.ClassNode;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Uniform grid over the laid-out node positions, for answering box queries without
+ * scanning every node.
+ *
+ * Positions are copied when the grid is built, so it describes the layout at one point in
+ * time and must be rebuilt when nodes move. Cells are stored in compressed form: node indices
+ * sorted by cell, with a start offset per cell. Axes on which all nodes share the same
+ * coordinate (e.g. z for a 2D layout) get a single cell.
+ */
+public class SpatialGrid {
+    private static final int TARGET_NODES_PER_CELL = 4;
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    private final ClassNode[] nodes;
+    private final float[] positions;
+    private final double[] min = new double[3];
+    private final double[] max = new double[3];
+    private final int[] cells = new int[3];
+    private final double[] cellSize = new double[3];
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    public SpatialGrid(Collection<ClassNode> nodes) {
+        this.nodes = nodes.toArray(new ClassNode[0]);
+        int n = this.nodes.length;
+        this.positions = new float[n * 3];
+
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            ClassNode node = this.nodes[i];
+            positions[i * 3] = (float) node.getX();
+            positions[i * 3 + 1] = (float) node.getY();
+            positions[i * 3 + 2] = (float) node.getZ();
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], positions[i * 3 + axis]);
+                max[axis] = Math.max(max[axis], positions[i * 3 + axis]);
+            }
+        }
+        if (n == 0) {
+            Arrays.fill(min, 0);
+            Arrays.fill(max, 0);
+        }
+
+        // Pick one cell edge length for all non-flat axes so cells hold a few nodes each
+        int flatAxes = 0;
+        double volume = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = max[axis] - min[axis];
+            if (extent > 0) {
+                volume *= extent;
+            } else {
+                flatAxes++;
+            }
+        }
+        int dimensions = 3 - flatAxes;
+        double targetCells = Math.max(1, (double) n / TARGET_NODES_PER_CELL);
+        double edge = dimensions == 0 ? 1 : Math.pow(volume / targetCells, 1.0 / dimensions);
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = max[axis] - min[axis];
+            cells[axis] = extent > 0 ? (int) Math.max(1, Math.min(MAX_CELLS_PER_AXIS, Math.ceil(extent / edge))) : 1;
+            cellSize[axis] = extent > 0 ? extent / cells[axis] : 1;
+        }
+
+        // Counting sort of node indices by cell
+        int cellCount = cells[0] * cells[1] * cells[2];
+        int[] cellOf = new int[n];
+        cellStart = new int[cellCount + 1];
+        for (int i = 0; i < n; i++) {
+            int cell = cellIndex(clampCell(0, positions[i * 3]), clampCell(1, positions[i * 3 + 1]),
+                    clampCell(2, positions[i * 3 + 2]));
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellNodes = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, cellCount);
+        for (int i = 0; i < n; i++) {
+            cellNodes[fill[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Find the indices of all nodes inside the given box (bounds inclusive).
+     */
+    public int[] query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double[] lo = {minX, minY, minZ};
+        double[] hi = {maxX, maxY, maxZ};
+        int[] from = new int[3];
+        int[] to = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            if (hi[axis] < min[axis] || lo[axis] > max[axis] || hi[axis] < lo[axis]) {
+                return new int[0];
+            }
+            from[axis] = clampCell(axis, lo[axis]);
+            to[axis] = clampCell(axis, hi[axis]);
+        }
+
+        int[] result = new int[16];
+        int count = 0;
+        for (int cz = from[2]; cz <= to[2]; cz++) {
+            for (int cy = from[1]; cy <= to[1]; cy++) {
+                for (int cx = from[0]; cx <= to[0]; cx++) {
+                    int cell = cellIndex(cx, cy, cz);
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int i = cellNodes[k];
+                        if (contains(i, lo, hi)) {
+                            if (count == result.length) {
+                                result = Arrays.copyOf(result, count * 2);
+                            }
+                            result[count++] = i;
+                        }
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Get the bounding box of all nodes as {minX, minY, minZ, maxX, maxY, maxZ}.
+     */
+    public double[] getBounds() {
+        return new double[]{min[0], min[1], min[2], max[0], max[1], max[2]};
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public ClassNode getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Get a coordinate of a node as it was when the grid was built (axis 0 = x, 1 = y, 2 = z).
+     */
+    public float getPosition(int index, int axis) {
+        return positions[index * 3 + axis];
+    }
+
+    private boolean contains(int i, double[] lo, double[] hi) {
+        for (int axis = 0; axis < 3; axis++) {
+            float p = positions[i * 3 + axis];
+            if (p < lo[axis] || p > hi[axis]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int clampCell(int axis, double value) {
+        int cell = (int) Math.floor((value - min[axis]) / cellSize[axis]);
+        return Math.max(0, Math.min(cells[axis] - 1, cell));
+    }
+
+    private int cellIndex(int cx, int cy, int cz) {
+        return (cz * cells[1] + cy) * cells[0] + cx;
+    }
+}
@@ -0,0 +1,339 @@
+package com.analyzer.graph.index;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.PackageGraph;
+
+import java.util.*;
+
+/**
+ * Answers viewport queries over one version of a laid-out graph.
+ *
+ * Visible nodes are found with a {@link SpatialGrid}, ordered by distance from the centre of
+ * the view and returned a page at a time. When the client is zoomed out, or more classes are
+ * visible than can usefully be drawn, classes are collapsed into one node per package and
+ * dependencies into weighted package edges.
+ *
+ * Each edge between two visible nodes is returned on exactly one page: the page that holds
+ * the later of its two endpoints in the visible order. A client that loads pages in order
+ * therefore always has both endpoints of every edge it receives.
+ */
+public class ViewportIndex {
+    private final String graphId;
+    private final long version;
+    private final SpatialGrid grid;
+
+    // Edges by grid node index, and per-node incident edges in compressed form
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    private final String[] edgeField;
+    private final int[] incidentStart;
+    private final int[] incidentEdges;
+    private final int[] outDegree;
+
+    private final int[] packageOf;
+    private final String[] packageNames;
+
+    private ViewportIndex(DependencyGraph graph, long version) {
+        this.graphId = graph.getId();
+        this.version = version;
+        this.grid = new SpatialGrid(new ArrayList<>(graph.getNodes()));
+
+        int n = grid.size();
+        Map<ClassNode, Integer> nodeIndex = new HashMap<>(n * 2);
+        Map<String, Integer> packageIndex = new HashMap<>();
+        List<String> packages = new ArrayList<>();
+        packageOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            ClassNode node = grid.getNode(i);
+            nodeIndex.put(node, i);
+            String packageName = PackageGraph.packageOf(node.getFullyQualifiedName(), 0);
+            Integer p = packageIndex.get(packageName);
+            if (p == null) {
+                p = packages.size();
+                packages.add(packageName);
+                packageIndex.put(packageName, p);
+            }
+            packageOf[i] = p;
+        }
+        packageNames = packages.toArray(new String[0]);
+
+        List<DependencyEdge> edges = new ArrayList<>(graph.getEdgesView());
+        int[] sources = new int[edges.size()];
+        int[] targets = new int[edges.size()];
+        String[] fields = new String[edges.size()];
+        outDegree = new int[n];
+        int[] incidentCount = new int[n + 1];
+        int m = 0;
+        for (DependencyEdge edge : edges) {
+            Integer source = nodeIndex.get(edge.getSource());
+            Integer target = nodeIndex.get(edge.getTarget());
+            if (source == null || target == null) {
+                continue; // endpoint added after the node snapshot
+            }
+            sources[m] = source;
+            targets[m] = target;
+            fields[m] = edge.getFieldName();
+            outDegree[source]++;
+            incidentCount[source + 1]++;
+            if (!source.equals(target)) {
+                incidentCount[target + 1]++;
+            }
+            m++;
+        }
+        edgeSource = Arrays.copyOf(sources, m);
+        edgeTarget = Arrays.copyOf(targets, m);
+        edgeField = Arrays.copyOf(fields, m);
+
+        incidentStart = incidentCount;
+        for (int i = 0; i < n; i++) {
+            incidentStart[i + 1] += incidentStart[i];
+        }
+        incidentEdges = new int[incidentStart[n]];
+        int[] fill = Arrays.copyOf(incidentStart, n);
+        for (int e = 0; e < m; e++) {
+            incidentEdges[fill[edgeSource[e]]++] = e;
+            if (edgeSource[e] != edgeTarget[e]) {
+                incidentEdges[fill[edgeTarget[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * Build an index over the current node positions and edges of a graph.
+     */
+    public static ViewportIndex build(DependencyGraph graph) {
+        return new ViewportIndex(graph, graph.getVersion());
+    }
+
+    /**
+     * Check whether this index was built from the given graph at the given version.
+     */
+    public boolean isCurrent(DependencyGraph graph, long graphVersion) {
+        return graphId.equals(graph.getId()) && version == graphVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNodeCount() {
+        return grid.size();
+    }
+
+    public int getEdgeCount() {
+        return edgeSource.length;
+    }
+
+    public int getPackageCount() {
+        return packageNames.length;
+    }
+
+    /**
+     * Get the bounding box of the layout as {minX, minY, minZ, maxX, maxY, maxZ}.
+     */
+    public double[] getBounds() {
+        return grid.getBounds();
+    }
+
+    /**
+     * Answer a viewport query.
+     *
+     * @param aggregateBelowZoom collapse classes into packages when the zoom is below this value
+     * @param maxDetailNodes     collapse classes into packages when more than this many are visible
+     */
+    public ViewportResult query(ViewportQuery query, double aggregateBelowZoom, int maxDetailNodes) {
+        int[] visible = grid.query(query.getMinX(), query.getMinY(), query.getMinZ(),
+                query.getMaxX(), query.getMaxY(), query.getMaxZ());
+        double[] centre = centre(query);
+
+        boolean aggregate = query.getZoom() < aggregateBelowZoom || visible.length > maxDetailNodes;
+        return aggregate ? aggregated(visible, centre, query) : detailed(visible, centre, query);
+    }
+
+    private ViewportResult detailed(int[] visible, double[] centre, ViewportQuery query) {
+        int[] order = sortByDistance(visible.length, i -> distance(centre,
+                grid.getPosition(visible[i], 0), grid.getPosition(visible[i], 1), grid.getPosition(visible[i], 2)));
+
+        int[] rankOf = new int[grid.size()];
+        Arrays.fill(rankOf, -1);
+        for (int r = 0; r < order.length; r++) {
+            rankOf[visible[order[r]]] = r;
+        }
+
+        int pageSize = Math.max(1, query.getPageSize());
+        int pageCount = Math.max(1, (visible.length + pageSize - 1) / pageSize);
+        int from = Math.min(visible.length, query.getPage() * pageSize);
+        int to = Math.min(visible.length, from + pageSize);
+
+        List<ViewportResult.Node> nodes = new ArrayList<>(to - from);
+        List<ViewportResult.Edge> edges = new ArrayList<>();
+        for (int r = from; r < to; r++) {
+            int i = visible[order[r]];
+            ClassNode node = grid.getNode(i);
+            nodes.add(new ViewportResult.Node(node.getFullyQualifiedName(), node.getName(),
+                    grid.getPosition(i, 0), grid.getPosition(i, 1), grid.getPosition(i, 2), 1, outDegree[i]));
+
+            for (int k = incidentStart[i]; k < incidentStart[i + 1]; k++) {
+                int e = incidentEdges[k];
+                int other = edgeSource[e] == i ? edgeTarget[e] : edgeSource[e];
+                int otherRank = rankOf[other];
+                if (otherRank >= 0 && otherRank <= r) {
+                    edges.add(new ViewportResult.Edge(grid.getNode(edgeSource[e]).getFullyQualifiedName(),
+                            grid.getNode(edgeTarget[e]).getFullyQualifiedName(), edgeField[e], 1));
+                }
+            }
+        }
+        return new ViewportResult(graphId, version, false, query.getPage(), pageCount, visible.length, nodes, edges);
+    }
+
+    private ViewportResult aggregated(int[] visible, double[] centre, ViewportQuery query) {
+        // Collapse visible classes into packages
+        int[] slotOf = new int[packageNames.length];
+        Arrays.fill(slotOf, -1);
+        int[] slotPackage = new int[Math.min(visible.length, packageNames.length)];
+        double[] sum = new double[slotPackage.length * 3];
+        int[] classes = new int[slotPackage.length];
+        int[] dependencies = new int[slotPackage.length];
+        int slots = 0;
+        boolean[] isVisible = new boolean[grid.size()];
+        for (int i : visible) {
+            isVisible[i] = true;
+            int p = packageOf[i];
+            if (slotOf[p] < 0) {
+                slotOf[p] = slots;
+                slotPackage[slots++] = p;
+            }
+            int s = slotOf[p];
+            for (int axis = 0; axis < 3; axis++) {
+                sum[s * 3 + axis] += grid.getPosition(i, axis);
+            }
+            classes[s]++;
+            dependencies[s] += outDegree[i];
+        }
+        for (int s = 0; s < slots; s++) {
+            for (int axis = 0; axis < 3; axis++) {
+                sum[s * 3 + axis] /= classes[s];
+            }
+        }
+
+        int[] order = sortByDistance(slots, s -> distance(centre, sum[s * 3], sum[s * 3 + 1], sum[s * 3 + 2]));
+        int[] rankOf = new int[slots];
+        for (int r = 0; r < slots; r++) {
+            rankOf[order[r]] = r;
+        }
+
+        int pageSize = Math.max(1, query.getPageSize());
+        int pageCount = Math.max(1, (slots + pageSize - 1) / pageSize);
+        int from = Math.min(slots, query.getPage() * pageSize);
+        int to = Math.min(slots, from + pageSize);
+
+        List<ViewportResult.Node> nodes = new ArrayList<>(to - from);
+        for (int r = from; r < to; r++) {
+            int s = order[r];
+            String packageName = packageNames[slotPackage[s]];
+            nodes.add(new ViewportResult.Node(packageName, packageName,
+                    sum[s * 3], sum[s * 3 + 1], sum[s * 3 + 2], classes[s], dependencies[s]));
+        }
+
+        // Group visible classes by package slot
+        int[] slotStart = new int[slots + 1];
+        for (int i : visible) {
+            slotStart[slotOf[packageOf[i]] + 1]++;
+        }
+        for (int t = 0; t < slots; t++) {
+            slotStart[t + 1] += slotStart[t];
+        }
+        int[] bySlot = new int[visible.length];
+        int[] fill = Arrays.copyOf(slotStart, slots);
+        for (int i : visible) {
+            bySlot[fill[slotOf[packageOf[i]]]++] = i;
+        }
+
+        // Count class dependencies between visible packages one source package at a time,
+        // keeping the package edges owned by this page
+        List<ViewportResult.Edge> edges = new ArrayList<>();
+        int[] counts = new int[slots];
+        int[] touched = new int[slots];
+        for (int sourceSlot = 0; sourceSlot < slots; sourceSlot++) {
+            int touchedCount = 0;
+            for (int k = slotStart[sourceSlot]; k < slotStart[sourceSlot + 1]; k++) {
+                int i = bySlot[k];
+                for (int j = incidentStart[i]; j < incidentStart[i + 1]; j++) {
+                    int e = incidentEdges[j];
+                    int target = edgeTarget[e];
+                    if (edgeSource[e] != i || !isVisible[target]) {
+                        continue;
+                    }
+                    int targetSlot = slotOf[packageOf[target]];
+                    if (targetSlot == sourceSlot) {
+                        continue;
+                    }
+                    if (counts[targetSlot]++ == 0) {
+                        touched[touchedCount++] = targetSlot;
+                    }
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                int targetSlot = touched[t];
+                int owner = Math.max(rankOf[sourceSlot], rankOf[targetSlot]);
+                if (owner >= from && owner < to) {
+                    edges.add(new ViewportResult.Edge(packageNames[slotPackage[sourceSlot]],
+                            packageNames[slotPackage[targetSlot]], null, counts[targetSlot]));
+                }
+                counts[targetSlot] = 0;
+            }
+        }
+        return new ViewportResult(graphId, version, true, query.getPage(), pageCount, slots, nodes, edges);
+    }
+
+    /**
+     * Get the centre of the view box, ignoring unbounded axes.
+     */
+    private static double[] centre(ViewportQuery query) {
+        double[] lo = {query.getMinX(), query.getMinY(), query.getMinZ()};
+        double[] hi = {query.getMaxX(), query.getMaxY(), query.getMaxZ()};
+        double[] centre = new double[3];
+        for (int axis = 0; axis < 3; axis++) {
+            centre[axis] = Double.isInfinite(lo[axis]) || Double.isInfinite(hi[axis])
+                    ? Double.NaN : (lo[axis] + hi[axis]) / 2;
+        }
+        return centre;
+    }
+
+    private static double distance(double[] centre, double x, double y, double z) {
+        double d = 0;
+        double[] p = {x, y, z};
+        for (int axis = 0; axis < 3; axis++) {
+            if (!Double.isNaN(centre[axis])) {
+                double delta = p[axis] - centre[axis];
+                d += delta * delta;
+            }
+        }
+        return d;
+    }
+
+    private interface Distance {
+        double of(int i);
+    }
+
+    /**
+     * Get the permutation of 0..count-1 that sorts the items by distance, nearest first.
+     * Ties keep index order, so pages are stable for an unchanged view.
+     */
+    private static int[] sortByDistance(int count, Distance distance) {
+        double[] keys = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = distance.of(i);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+}
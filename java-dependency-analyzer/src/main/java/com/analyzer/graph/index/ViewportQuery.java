@@ -0,0 +1,75 @@
+package com.analyzer.graph.index;
+
+/**
+ * A request for the part of the graph visible in a camera's view box.
+ *
+ * Bounds are in layout coordinates; pass infinite values for an axis the camera does not
+ * restrict (the z axis for a 2D view). The zoom is the client's scale relative to the view
+ * that fits the whole graph, so 1.0 shows everything and larger values show less.
+ */
+public class ViewportQuery {
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double maxX;
+    private final double maxY;
+    private final double maxZ;
+    private final double zoom;
+    private final int page;
+    private final int pageSize;
+
+    public ViewportQuery(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                         double zoom, int page, int pageSize) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.zoom = zoom;
+        this.page = page;
+        this.pageSize = pageSize;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMinZ() {
+        return minZ;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public double getMaxZ() {
+        return maxZ;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ViewportQuery{x=[%.1f,%.1f], y=[%.1f,%.1f], z=[%.1f,%.1f], zoom=%.2f, page=%d/%d}",
+                minX, maxX, minY, maxY, minZ, maxZ, zoom, page, pageSize);
+    }
+}
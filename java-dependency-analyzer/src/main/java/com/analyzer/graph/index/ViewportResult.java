@@ -0,0 +1,156 @@
+package com.analyzer.graph.index;
+
+import java.util.List;
+
+/**
+ * One page of a viewport query: the visible nodes and the edges between them, either as
+ * individual classes or collapsed into one aggregate node per package.
+ */
+public class ViewportResult {
+    private final String graphId;
+    private final long version;
+    private final boolean aggregated;
+    private final int page;
+    private final int pageCount;
+    private final int totalNodes;
+    private final List<Node> nodes;
+    private final List<Edge> edges;
+
+    ViewportResult(String graphId, long version, boolean aggregated, int page, int pageCount, int totalNodes,
+                   List<Node> nodes, List<Edge> edges) {
+        this.graphId = graphId;
+        this.version = version;
+        this.aggregated = aggregated;
+        this.page = page;
+        this.pageCount = pageCount;
+        this.totalNodes = totalNodes;
+        this.nodes = nodes;
+        this.edges = edges;
+    }
+
+    public String getGraphId() {
+        return graphId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether nodes are package aggregates rather than classes.
+     */
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Get the number of visible nodes (or packages) over all pages.
+     */
+    public int getTotalNodes() {
+        return totalNodes;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public List<Edge> getEdges() {
+        return edges;
+    }
+
+    /**
+     * A visible class, or a package aggregate positioned at the centroid of its visible classes.
+     */
+    public static class Node {
+        private final String id;
+        private final String name;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final int classCount;
+        private final int dependencyCount;
+
+        Node(String id, String name, double x, double y, double z, int classCount, int dependencyCount) {
+            this.id = id;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.classCount = classCount;
+            this.dependencyCount = dependencyCount;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        /**
+         * Get the number of visible classes the node stands for; 1 for a class node.
+         */
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public int getDependencyCount() {
+            return dependencyCount;
+        }
+    }
+
+    /**
+     * A dependency between two result nodes. Aggregate edges have no field name and count
+     * the class dependencies they stand for.
+     */
+    public static class Edge {
+        private final String source;
+        private final String target;
+        private final String fieldName;
+        private final int count;
+
+        Edge(String source, String target, String fieldName, int count) {
+            this.source = source;
+            this.target = target;
+            this.fieldName = fieldName;
+            this.count = count;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
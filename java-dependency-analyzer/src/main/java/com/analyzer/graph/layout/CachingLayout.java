@@ -0,0 +1,116 @@
+package com.analyzer.graph.layout;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Layout algorithm that reuses previously computed force-directed layouts.
+ *
+ * An identical graph (same nodes, edges and parameters) gets its cached coordinates directly.
+ * A partially changed graph is warm-started from the most similar cached layout: known nodes keep
+ * their positions, new nodes are placed next to their neighbours, and the simulation only runs
+ * for a fraction of the usual iterations.
+ */
+public class CachingLayout implements LayoutAlgorithm {
+    private static final Logger logger = LoggerFactory.getLogger(CachingLayout.class);
+
+    private final ForceDirectedLayout delegate;
+    private final LayoutCache cache;
+    private final double minSimilarity;
+
+    public CachingLayout(ForceDirectedLayout delegate, LayoutCache cache, double minSimilarity) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.minSimilarity = minSimilarity;
+    }
+
+    @Override
+    public void calculateLayout(DependencyGraph graph) {
+        if (graph.getNodeCount() == 0) {
+            delegate.calculateLayout(graph);
+            return;
+        }
+
+        byte[] fingerprint = LayoutCache.fingerprint(graph, delegate);
+        String key = LayoutCache.toHex(fingerprint);
+
+        LayoutCache.Entry exact = cache.get(fingerprint);
+        if (exact != null && exact.applyTo(graph).size() == graph.getNodeCount()) {
+            logger.info("Layout cache hit for graph {} ({} nodes)", key, graph.getNodeCount());
+            return; // the refreshed use time is written with the next new entry
+        }
+
+        LayoutCache.Match nearest = cache.findNearest(graph, delegate, minSimilarity);
+        if (nearest != null) {
+            Set<ClassNode> positioned = nearest.getEntry().applyTo(graph);
+            placeNewNodes(graph, positioned);
+            double changed = 1.0 - nearest.getSimilarity();
+            logger.info("Layout cache warm start for graph {}: {}/{} nodes reused (similarity {})",
+                    key, positioned.size(), graph.getNodeCount(), String.format("%.3f", nearest.getSimilarity()));
+            delegate.refineLayout(graph, Math.max(changed, 0.1));
+        } else {
+            logger.info("Layout cache miss for graph {}", key);
+            delegate.calculateLayout(graph);
+        }
+
+        cache.put(fingerprint, graph, delegate);
+        saveQuietly();
+    }
+
+    /**
+     * Place nodes without a cached position at the centroid of their already positioned
+     * neighbours (with a small deterministic jitter), or randomly if they have none.
+     */
+    private void placeNewNodes(DependencyGraph graph, Set<ClassNode> positioned) {
+        Map<ClassNode, List<ClassNode>> neighbours = new HashMap<>();
+        for (DependencyEdge edge : graph.getEdges()) {
+            neighbours.computeIfAbsent(edge.getSource(), n -> new ArrayList<>()).add(edge.getTarget());
+            neighbours.computeIfAbsent(edge.getTarget(), n -> new ArrayList<>()).add(edge.getSource());
+        }
+
+        Random random = new Random(42);
+        double jitter = delegate.getIdealDistance() * 0.25;
+        double spread = delegate.getIdealDistance() * Math.sqrt(graph.getNodeCount());
+
+        for (ClassNode node : graph.getNodes()) {
+            if (positioned.contains(node)) {
+                continue;
+            }
+
+            double sx = 0, sy = 0, sz = 0;
+            int count = 0;
+            for (ClassNode neighbour : neighbours.getOrDefault(node, Collections.emptyList())) {
+                if (positioned.contains(neighbour)) {
+                    sx += neighbour.getX();
+                    sy += neighbour.getY();
+                    sz += neighbour.getZ();
+                    count++;
+                }
+            }
+
+            if (count > 0) {
+                node.setX(sx / count + (random.nextDouble() - 0.5) * jitter);
+                node.setY(sy / count + (random.nextDouble() - 0.5) * jitter);
+                node.setZ(sz / count + (random.nextDouble() - 0.5) * jitter);
+            } else {
+                node.setX((random.nextDouble() - 0.5) * spread);
+                node.setY((random.nextDouble() - 0.5) * spread);
+                node.setZ((random.nextDouble() - 0.5) * spread);
+            }
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            cache.save();
+        } catch (IOException e) {
+            logger.warn("Could not save layout cache: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.analyzer.graph.layout;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.analysis.Communities;
+import com.analyzer.graph.index.AdjacencyIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+/**
+ * Force-directed layout that starts from the communities of the graph instead of random positions.
+ *
+ * Each community gets a ball of its own, sized by its number of classes, with the balls spread
+ * evenly over a sphere (a Fibonacci lattice, largest community first). The classes start at random
+ * points in their ball and the force-directed simulation then only refines the layout, with a
+ * fraction of the iterations. Communities end up as visibly separate clusters, and large graphs
+ * need far fewer iterations than from a random start.
+ */
+public class ClusteredLayout extends ForceDirectedLayout {
+    private static final Logger logger = LoggerFactory.getLogger(ClusteredLayout.class);
+
+    private final double refinement;
+
+    /**
+     * @param refinement fraction in (0, 1] of the iterations and temperature used after placing the communities
+     * @throws IllegalArgumentException if the refinement is outside (0, 1]
+     */
+    public ClusteredLayout(int maxIterations, double initialTemperature, double idealDistance,
+                           double repulsionStrength, double attractionStrength, double refinement) {
+        super(maxIterations, initialTemperature, idealDistance, repulsionStrength, attractionStrength);
+        if (!(refinement > 0 && refinement <= 1)) {
+            throw new IllegalArgumentException("Refinement must be in (0, 1]: " + refinement);
+        }
+        this.refinement = refinement;
+    }
+
+    @Override
+    public void calculateLayout(DependencyGraph graph) {
+        if (graph.getNodeCount() == 0) {
+            super.calculateLayout(graph);
+            return;
+        }
+
+        Communities communities = graph.getCommunities();
+        AdjacencyIndex index = communities.getIndex();
+        int count = communities.getCommunityCount();
+        logger.info("Starting clustered layout for {} nodes in {} communities", index.getNodeCount(), count);
+
+        double spread = getIdealDistance() * Math.cbrt(index.getNodeCount()) * 4;
+        double[][] centres = new double[count][];
+        double goldenAngle = Math.PI * (3 - Math.sqrt(5));
+        for (int c = 0; c < count; c++) {
+            double y = count == 1 ? 0 : 1 - 2.0 * c / (count - 1);
+            double ring = Math.sqrt(1 - y * y);
+            double angle = goldenAngle * c;
+            centres[c] = new double[] {spread * ring * Math.cos(angle), spread * y, spread * ring * Math.sin(angle)};
+        }
+
+        Random random = new Random(42); // Fixed seed for reproducibility
+        for (int i = 0; i < index.getNodeCount(); i++) {
+            int c = communities.communityOf(i);
+            double radius = getIdealDistance() * Math.cbrt(communities.getSize(c)) * 0.6;
+            ClassNode node = index.getNode(i);
+            node.setX(centres[c][0] + (random.nextDouble() - 0.5) * 2 * radius);
+            node.setY(centres[c][1] + (random.nextDouble() - 0.5) * 2 * radius);
+            node.setZ(centres[c][2] + (random.nextDouble() - 0.5) * 2 * radius);
+        }
+
+        refineLayout(graph, refinement);
+    }
+
+    public double getRefinement() {
+        return refinement;
+    }
+}
@@ -3,6 +3,9 @@ package com.analyzer.graph.layout;
 import com.analyzer.graph.ClassNode;
 import com.analyzer.graph.DependencyEdge;
 import com.analyzer.graph.DependencyGraph;
+import com.analyzer.jfr.LayoutIterationEvent;
+import com.analyzer.metrics.Histogram;
+import com.analyzer.metrics.PipelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,11 +51,77 @@ public class ForceDirectedLayout implements LayoutAlgorithm {
         // Initialize positions randomly
         initializePositions(nodes);
 
-        double temperature = initialTemperature;
-        double coolingRate = initialTemperature / maxIterations;
+        runIterations(graph, maxIterations, initialTemperature);
+
+        logger.info("Force-directed layout completed");
+    }
+
+    /**
+     * Continue the layout from the positions the nodes already have instead of a random start.
+     * Used to warm-start from a previous layout of a similar graph, so only a fraction of the
+     * iterations and a cooler starting temperature are needed.
+     *
+     * @param graph The dependency graph whose nodes are already (mostly) positioned
+     * @param warmth Fraction in (0, 1] of the iterations and initial temperature to use
+     */
+    public void refineLayout(DependencyGraph graph, double warmth) {
+        if (graph.getNodeCount() == 0) {
+            logger.warn("Graph has no nodes to layout");
+            return;
+        }
+
+        double fraction = Math.max(0.01, Math.min(1.0, warmth));
+        int iterations = Math.max(1, (int) Math.ceil(maxIterations * fraction));
+        double temperature = Math.max(initialTemperature * fraction, 0.1);
+
+        logger.info("Refining layout for {} nodes and {} edges ({} iterations, temperature={})",
+                graph.getNodeCount(), graph.getEdgeCount(), iterations, temperature);
+
+        for (ClassNode node : graph.getNodes()) {
+            node.setVx(0);
+            node.setVy(0);
+            node.setVz(0);
+        }
+
+        runIterations(graph, iterations, temperature);
+
+        logger.info("Layout refinement completed");
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public double getInitialTemperature() {
+        return initialTemperature;
+    }
+
+    public double getIdealDistance() {
+        return idealDistance;
+    }
+
+    public double getRepulsionStrength() {
+        return repulsionStrength;
+    }
+
+    public double getAttractionStrength() {
+        return attractionStrength;
+    }
+
+    /**
+     * Run the simulation loop, cooling linearly from the given temperature.
+     */
+    private void runIterations(DependencyGraph graph, int iterations, double startTemperature) {
+        Collection<ClassNode> nodes = graph.getNodes();
+        double temperature = startTemperature;
+        double coolingRate = startTemperature / iterations;
+        Histogram iterationSeconds = PipelineMetrics.LAYOUT_ITERATION_SECONDS;
 
         // Main iteration loop
-        for (int iteration = 0; iteration < maxIterations; iteration++) {
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            LayoutIterationEvent event = new LayoutIterationEvent();
+            event.begin();
             // Calculate repulsive forces between all pairs of nodes
             calculateRepulsiveForces(nodes);
 
@@ -60,17 +129,25 @@ public class ForceDirectedLayout implements LayoutAlgorithm {
             calculateAttractiveForces(graph);
 
             // Update positions based on forces and temperature
-            updatePositions(nodes, temperature);
+            double energy = updatePositions(nodes, temperature);
+
+            iterationSeconds.observeNanos(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.iteration = iteration;
+                event.iterations = iterations;
+                event.nodeCount = nodes.size();
+                event.temperature = temperature;
+                event.energy = energy;
+                event.commit();
+            }
 
             // Cool down the temperature
             temperature = Math.max(temperature - coolingRate, 0.1);
 
             if (iteration % 100 == 0) {
-                logger.debug("Layout iteration {} / {}, temperature: {}", iteration, maxIterations, temperature);
+                logger.debug("Layout iteration {} / {}, temperature: {}", iteration, iterations, temperature);
             }
         }
-
-        logger.info("Force-directed layout completed");
     }
 
     /**
@@ -169,15 +246,20 @@ public class ForceDirectedLayout implements LayoutAlgorithm {
 
     /**
      * Update node positions based on accumulated forces.
+     *
+     * @return the sum of the squared forces on the nodes, the energy of the system
      */
-    private void updatePositions(Collection<ClassNode> nodes, double temperature) {
+    private double updatePositions(Collection<ClassNode> nodes, double temperature) {
+        double energy = 0;
         for (ClassNode node : nodes) {
             // Calculate displacement magnitude
             double vx = node.getVx();
             double vy = node.getVy();
             double vz = node.getVz();
 
-            double displacement = Math.sqrt(vx * vx + vy * vy + vz * vz);
+            double squared = vx * vx + vy * vy + vz * vz;
+            energy += squared;
+            double displacement = Math.sqrt(squared);
 
             if (displacement > 0.01) {
                 // Limit displacement by temperature
@@ -195,5 +277,6 @@ public class ForceDirectedLayout implements LayoutAlgorithm {
             node.setVy(0);
             node.setVz(0);
         }
+        return energy;
     }
 }
@@ -0,0 +1,429 @@
+package com.analyzer.graph.layout;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of computed layouts, keyed by a fingerprint of the graph structure
+ * and the layout parameters.
+ *
+ * File format (gzip-compressed, big-endian):
+ * <pre>
+ *   int magic, int version, int entryCount
+ *   per entry: byte[32] fingerprint, int iterations, double temperature, double idealDistance,
+ *              double repulsion, double attraction, boolean clustered, double refinement,
+ *              double resolution, long lastUsed, int nodeCount,
+ *              nodeCount x (UTF fullyQualifiedName, float x, float y, float z)
+ * </pre>
+ * Refinement and resolution are 0 for a plain force-directed layout.
+ */
+public class LayoutCache {
+    private static final Logger logger = LoggerFactory.getLogger(LayoutCache.class);
+
+    private static final int MAGIC = 0x4C415943; // "LAYC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int FINGERPRINT_LENGTH = 32;
+    private static final int INITIAL_NODE_CAPACITY = 64 * 1024;
+
+    private final Path file;
+    private final int maxEntries;
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean loaded = false;
+
+    public LayoutCache(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Compute the canonical fingerprint of a graph's structure and the layout parameters.
+     * Node and edge order does not matter; field names are ignored since they do not affect the layout.
+     * A clustered layout also depends on the community resolution of the graph.
+     */
+    public static byte[] fingerprint(DependencyGraph graph, ForceDirectedLayout layout) {
+        List<String> nodeIds = new ArrayList<>(graph.getNodeCount());
+        for (ClassNode node : graph.getNodes()) {
+            nodeIds.add(node.getFullyQualifiedName());
+        }
+        Collections.sort(nodeIds);
+
+        List<String> edgeIds = new ArrayList<>(graph.getEdgeCount());
+        for (DependencyEdge edge : graph.getEdges()) {
+            edgeIds.add(edge.getSource().getFullyQualifiedName() + '\u0000' + edge.getTarget().getFullyQualifiedName());
+        }
+        Collections.sort(edgeIds);
+
+        MessageDigest digest = sha256();
+        for (String id : nodeIds) {
+            digest.update(id.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        digest.update((byte) 0x1E);
+        for (String id : edgeIds) {
+            digest.update(id.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        digest.update((byte) 0x1E);
+        String parameters = layout.getMaxIterations() + ";" + layout.getInitialTemperature() + ";"
+                + layout.getIdealDistance() + ";" + layout.getRepulsionStrength() + ";" + layout.getAttractionStrength();
+        if (layout instanceof ClusteredLayout) {
+            parameters += ";clustered;" + ((ClusteredLayout) layout).getRefinement()
+                    + ";" + graph.getCommunityResolution();
+        }
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    /**
+     * Find the entry with exactly the given fingerprint.
+     */
+    public synchronized Entry get(byte[] fingerprint) {
+        ensureLoaded();
+        for (Entry entry : entries) {
+            if (Arrays.equals(entry.fingerprint, fingerprint)) {
+                entry.lastUsed = System.currentTimeMillis();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the cached entry, computed with the same parameters, whose node set overlaps most
+     * with the given graph. For a clustered layout the parameters include the community
+     * resolution, since a layout of other communities is no place to start from. Similarity is the Jaccard index of the two node sets.
+     *
+     * @return the nearest entry, or null if none reaches the minimum similarity
+     */
+    public synchronized Match findNearest(DependencyGraph graph, ForceDirectedLayout layout, double minSimilarity) {
+        ensureLoaded();
+        Set<String> nodeIds = new HashSet<>();
+        for (ClassNode node : graph.getNodes()) {
+            nodeIds.add(node.getFullyQualifiedName());
+        }
+
+        Match best = null;
+        for (Entry entry : entries) {
+            if (!entry.hasSameParameters(graph, layout)) {
+                continue;
+            }
+            int shared = 0;
+            for (String id : entry.nodeIds) {
+                if (nodeIds.contains(id)) {
+                    shared++;
+                }
+            }
+            int union = nodeIds.size() + entry.nodeIds.length - shared;
+            double similarity = union == 0 ? 0 : (double) shared / union;
+            if (similarity >= minSimilarity && (best == null || similarity > best.similarity)) {
+                best = new Match(entry, similarity);
+            }
+        }
+
+        if (best != null) {
+            best.entry.lastUsed = System.currentTimeMillis();
+        }
+        return best;
+    }
+
+    /**
+     * Store the current node positions of a graph under the given fingerprint,
+     * evicting the least recently used entry when the cache is full.
+     */
+    public synchronized void put(byte[] fingerprint, DependencyGraph graph, ForceDirectedLayout layout) {
+        ensureLoaded();
+        entries.removeIf(entry -> Arrays.equals(entry.fingerprint, fingerprint));
+
+        Collection<ClassNode> nodes = graph.getNodes();
+        String[] nodeIds = new String[nodes.size()];
+        float[] positions = new float[nodes.size() * 3];
+        int i = 0;
+        for (ClassNode node : nodes) {
+            if (i == nodeIds.length) {
+                break; // graph grew while copying
+            }
+            nodeIds[i] = node.getFullyQualifiedName();
+            positions[i * 3] = (float) node.getX();
+            positions[i * 3 + 1] = (float) node.getY();
+            positions[i * 3 + 2] = (float) node.getZ();
+            i++;
+        }
+        if (i < nodeIds.length) {
+            nodeIds = Arrays.copyOf(nodeIds, i);
+            positions = Arrays.copyOf(positions, i * 3);
+        }
+
+        entries.add(new Entry(fingerprint.clone(), layout.getMaxIterations(), layout.getInitialTemperature(),
+                layout.getIdealDistance(), layout.getRepulsionStrength(), layout.getAttractionStrength(),
+                layout instanceof ClusteredLayout, refinementOf(layout), resolutionOf(graph, layout),
+                System.currentTimeMillis(), nodeIds, positions));
+
+        while (entries.size() > maxEntries) {
+            Entry oldest = Collections.min(entries, Comparator.comparingLong(entry -> entry.lastUsed));
+            entries.remove(oldest);
+        }
+    }
+
+    /**
+     * Write the cache to disk. The file is replaced atomically so a crash never leaves a truncated cache.
+     */
+    public synchronized void save() throws IOException {
+        ensureLoaded();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new GZIPOutputStream(fileOut)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                entry.write(out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Saved {} layout cache entries to {}", entries.size(), file);
+    }
+
+    /**
+     * Get the number of cached layouts.
+     */
+    public synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(new GZIPInputStream(fileIn)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.warn("Ignoring layout cache {} with unknown format", file);
+                return;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt entry count " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                entries.add(Entry.read(in));
+            }
+            logger.info("Loaded {} layout cache entries from {}", entries.size(), file);
+        } catch (EOFException e) {
+            logger.warn("Ignoring truncated layout cache {}", file);
+            entries.clear();
+        } catch (IOException e) {
+            logger.warn("Could not read layout cache {}: {}", file, e.getMessage());
+            entries.clear();
+        }
+    }
+
+    private static double refinementOf(ForceDirectedLayout layout) {
+        return layout instanceof ClusteredLayout ? ((ClusteredLayout) layout).getRefinement() : 0;
+    }
+
+    private static double resolutionOf(DependencyGraph graph, ForceDirectedLayout layout) {
+        return layout instanceof ClusteredLayout ? graph.getCommunityResolution() : 0;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Convert a fingerprint to a short hex string for logging.
+     */
+    public static String toHex(byte[] fingerprint) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(8, fingerprint.length); i++) {
+            sb.append(String.format("%02x", fingerprint[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A cached layout: node ids with their positions.
+     */
+    public static class Entry {
+        private final byte[] fingerprint;
+        private final int iterations;
+        private final double temperature;
+        private final double idealDistance;
+        private final double repulsion;
+        private final double attraction;
+        private final boolean clustered;
+        private final double refinement;
+        private final double resolution;
+        private long lastUsed;
+        private final String[] nodeIds;
+        private final float[] positions;
+
+        private Entry(byte[] fingerprint, int iterations, double temperature, double idealDistance,
+                      double repulsion, double attraction, boolean clustered, double refinement,
+                      double resolution, long lastUsed, String[] nodeIds, float[] positions) {
+            this.fingerprint = fingerprint;
+            this.iterations = iterations;
+            this.temperature = temperature;
+            this.idealDistance = idealDistance;
+            this.repulsion = repulsion;
+            this.attraction = attraction;
+            this.clustered = clustered;
+            this.refinement = refinement;
+            this.resolution = resolution;
+            this.lastUsed = lastUsed;
+            this.nodeIds = nodeIds;
+            this.positions = positions;
+        }
+
+        private boolean hasSameParameters(DependencyGraph graph, ForceDirectedLayout layout) {
+            return iterations == layout.getMaxIterations()
+                    && temperature == layout.getInitialTemperature()
+                    && idealDistance == layout.getIdealDistance()
+                    && repulsion == layout.getRepulsionStrength()
+                    && attraction == layout.getAttractionStrength()
+                    && clustered == (layout instanceof ClusteredLayout)
+                    && refinement == refinementOf(layout)
+                    && resolution == resolutionOf(graph, layout);
+        }
+
+        /**
+         * Copy the cached positions onto the matching nodes of a graph.
+         *
+         * @return the nodes that received a cached position
+         */
+        public Set<ClassNode> applyTo(DependencyGraph graph) {
+            Set<ClassNode> applied = new HashSet<>();
+            for (int i = 0; i < nodeIds.length; i++) {
+                ClassNode node = graph.getNode(nodeIds[i]);
+                if (node != null) {
+                    node.setX(positions[i * 3]);
+                    node.setY(positions[i * 3 + 1]);
+                    node.setZ(positions[i * 3 + 2]);
+                    applied.add(node);
+                }
+            }
+            return applied;
+        }
+
+        public int getNodeCount() {
+            return nodeIds.length;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.write(fingerprint);
+            out.writeInt(iterations);
+            out.writeDouble(temperature);
+            out.writeDouble(idealDistance);
+            out.writeDouble(repulsion);
+            out.writeDouble(attraction);
+            out.writeBoolean(clustered);
+            out.writeDouble(refinement);
+            out.writeDouble(resolution);
+            out.writeLong(lastUsed);
+            out.writeInt(nodeIds.length);
+            for (int i = 0; i < nodeIds.length; i++) {
+                out.writeUTF(nodeIds[i]);
+                out.writeFloat(positions[i * 3]);
+                out.writeFloat(positions[i * 3 + 1]);
+                out.writeFloat(positions[i * 3 + 2]);
+            }
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+            in.readFully(fingerprint);
+            int iterations = in.readInt();
+            double temperature = in.readDouble();
+            double idealDistance = in.readDouble();
+            double repulsion = in.readDouble();
+            double attraction = in.readDouble();
+            boolean clustered = in.readBoolean();
+            double refinement = in.readDouble();
+            double resolution = in.readDouble();
+            long lastUsed = in.readLong();
+            int nodeCount = in.readInt();
+            if (nodeCount < 0 || nodeCount > Integer.MAX_VALUE / 3) {
+                throw new IOException("Corrupt node count " + nodeCount);
+            }
+            // Grow with the data actually read, so a corrupt count ends in EOF rather than a huge allocation
+            int capacity = Math.min(nodeCount, INITIAL_NODE_CAPACITY);
+            String[] nodeIds = new String[capacity];
+            float[] positions = new float[capacity * 3];
+            for (int i = 0; i < nodeCount; i++) {
+                if (i == nodeIds.length) {
+                    capacity = (int) Math.min(nodeCount, 2L * capacity);
+                    nodeIds = Arrays.copyOf(nodeIds, capacity);
+                    positions = Arrays.copyOf(positions, capacity * 3);
+                }
+                nodeIds[i] = in.readUTF();
+                positions[i * 3] = in.readFloat();
+                positions[i * 3 + 1] = in.readFloat();
+                positions[i * 3 + 2] = in.readFloat();
+            }
+            return new Entry(fingerprint, iterations, temperature, idealDistance, repulsion, attraction,
+                    clustered, refinement, resolution, lastUsed, nodeIds, positions);
+        }
+    }
+
+    /**
+     * A cached entry together with its similarity to the queried graph.
+     */
+    public static class Match {
+        private final Entry entry;
+        private final double similarity;
+
+        private Match(Entry entry, double similarity) {
+            this.entry = entry;
+            this.similarity = similarity;
+        }
+
+        public Entry getEntry() {
+            return entry;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
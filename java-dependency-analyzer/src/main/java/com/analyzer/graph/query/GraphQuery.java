@@ -0,0 +1,147 @@
+package com.analyzer.graph.query;
+
+/**
+ * A question about the dependency graph, answered by {@link GraphQueryEngine}.
+ */
+public class GraphQuery {
+
+    public enum Type {
+        /** Direct neighbours of a node. */
+        NEIGHBOURS("neighbours"),
+        /** Classes a node depends on, transitively up to a depth, or all of them from the reachability index. */
+        DEPENDENCIES("dependencies"),
+        /** Classes that depend on a node, transitively up to a depth, or all of them from the reachability index. */
+        DEPENDENTS("dependents"),
+        /** Shortest dependency path from one node to another. */
+        PATH("path"),
+        /** Classes in a package and its subpackages, with the edges between them. */
+        PACKAGE("package"),
+        /** Whether one node depends on another, directly or transitively. */
+        REACHES("reaches");
+
+        private final String wireName;
+
+        Type(String wireName) {
+            this.wireName = wireName;
+        }
+
+        public String getWireName() {
+            return wireName;
+        }
+
+        /**
+         * Get the type with the given wire name, or null if there is none.
+         */
+        public static Type fromWireName(String name) {
+            for (Type type : values()) {
+                if (type.wireName.equals(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Which edges to follow: dependencies (out), dependents (in) or both.
+     */
+    public enum Direction {
+        OUT, IN, BOTH
+    }
+
+    private final Type type;
+    private final String node;
+    private final String target;
+    private final String packagePrefix;
+    private final Direction direction;
+    private final int depth;
+
+    private GraphQuery(Type type, String node, String target, String packagePrefix, Direction direction, int depth) {
+        this.type = type;
+        this.node = node;
+        this.target = target;
+        this.packagePrefix = packagePrefix;
+        this.direction = direction;
+        this.depth = depth;
+    }
+
+    public static GraphQuery neighbours(String node, Direction direction) {
+        return new GraphQuery(Type.NEIGHBOURS, node, null, null, direction, 1);
+    }
+
+    /**
+     * Create a transitive dependencies query; a depth of 0 or less means unlimited.
+     */
+    public static GraphQuery dependencies(String node, int depth) {
+        return new GraphQuery(Type.DEPENDENCIES, node, null, null, Direction.OUT, depth);
+    }
+
+    /**
+     * Create a transitive dependents query; a depth of 0 or less means unlimited.
+     */
+    public static GraphQuery dependents(String node, int depth) {
+        return new GraphQuery(Type.DEPENDENTS, node, null, null, Direction.IN, depth);
+    }
+
+    /**
+     * Create a shortest path query. With {@link Direction#BOTH} edge direction is ignored.
+     */
+    public static GraphQuery path(String from, String to, Direction direction) {
+        return new GraphQuery(Type.PATH, from, to, null, direction, 0);
+    }
+
+    /**
+     * Create a query for whether one node depends on another, answered from the reachability index.
+     */
+    public static GraphQuery reaches(String from, String to) {
+        return new GraphQuery(Type.REACHES, from, to, null, Direction.OUT, 0);
+    }
+
+    public static GraphQuery packageSubgraph(String packagePrefix) {
+        return new GraphQuery(Type.PACKAGE, null, null, packagePrefix, Direction.BOTH, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the fully qualified name of the start node (the source, for a path query).
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Get the fully qualified name of the destination of a path or reaches query.
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    public String getPackagePrefix() {
+        return packagePrefix;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case PATH:
+                return "path(" + node + " -> " + target + ", " + direction + ")";
+            case REACHES:
+                return "reaches(" + node + " -> " + target + ")";
+            case PACKAGE:
+                return "package(" + packagePrefix + ")";
+            default:
+                return type.getWireName() + "(" + node + ", " + direction + ", depth " + depth + ")";
+        }
+    }
+}
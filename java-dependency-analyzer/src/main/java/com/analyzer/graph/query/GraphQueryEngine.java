@@ -0,0 +1,474 @@
+package com.analyzer.graph.query;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.analysis.ReachabilityIndex;
+import com.analyzer.graph.analysis.StronglyConnectedComponents;
+import com.analyzer.graph.diff.GraphDiff;
+import com.analyzer.graph.index.AdjacencyIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers {@link GraphQuery} questions on the server, so clients receive only the answer
+ * instead of walking the whole graph themselves.
+ *
+ * Queries run over the graph's {@link AdjacencyIndex} on a small pool of worker threads with a
+ * bounded backlog; when the backlog is full new queries are rejected rather than queued without
+ * limit. Each query has a time limit, checked cooperatively during the traversal, and a cap on
+ * the number of nodes in the result. A query that hits either limit returns what it found so far,
+ * marked truncated.
+ *
+ * Unlimited dependencies and dependents queries, and reaches queries, are answered from the
+ * graph's {@link ReachabilityIndex} instead of a search. Their nodes have no depth (-1), as the
+ * index does not know distances.
+ *
+ * Graph diffs (see {@link GraphDiff}) run on the same workers under the same time limit. The
+ * last few are kept by graph ids and versions, so clients asking for the same comparison share
+ * one computation.
+ */
+public class GraphQueryEngine {
+    private static final Logger logger = LoggerFactory.getLogger(GraphQueryEngine.class);
+
+    /** Check the clock once per this many visited nodes. */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    /** Number of graph diffs to keep. */
+    private static final int MAX_CACHED_DIFFS = 8;
+
+    private final long timeoutNanos;
+    private final int maxNodes;
+    private final long maxBitsetBytes;
+    private final ThreadPoolExecutor executor;
+    // Guarded by itself; in access order, so the least recently used diff is dropped first
+    private final Map<String, CompletableFuture<GraphDiff>> diffs = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param timeoutMillis time limit per query
+     * @param maxNodes maximum number of nodes in a result; edges are capped at four times this
+     * @param threads number of worker threads
+     * @param maxPending number of queries that may wait for a worker before new ones are rejected
+     */
+    public GraphQueryEngine(long timeoutMillis, int maxNodes, int threads, int maxPending) {
+        this(timeoutMillis, maxNodes, threads, maxPending, ReachabilityIndex.DEFAULT_MAX_BITSET_BYTES);
+    }
+
+    /**
+     * @param maxBitsetBytes memory the reachability index may use for bitsets before it uses interval labels
+     */
+    public GraphQueryEngine(long timeoutMillis, int maxNodes, int threads, int maxPending, long maxBitsetBytes) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxNodes = maxNodes;
+        this.maxBitsetBytes = maxBitsetBytes;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxPending)), runnable -> {
+                    Thread thread = new Thread(runnable, "graph-query-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Run a query on a worker thread.
+     *
+     * @param limit result node cap requested by the client; values of 0 or less, or above the
+     *              configured cap, use the configured cap
+     * @return a future completed with the result, or exceptionally with an
+     *         {@link IllegalArgumentException} for an invalid query or a
+     *         {@link RejectedExecutionException} if too many queries are pending
+     */
+    public CompletableFuture<QueryResult> submit(DependencyGraph graph, GraphQuery query, int limit) {
+        try {
+            return CompletableFuture.supplyAsync(() -> execute(graph, query, limit), executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<QueryResult> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * Compare two graphs on a worker thread, or return the diff of the same graph versions if it
+     * was computed recently.
+     *
+     * @return a future completed with the diff, or exceptionally with a
+     *         {@link TimeoutException} if it took longer than the time limit
+     *         or a {@link RejectedExecutionException} if too many queries are pending
+     */
+    public CompletableFuture<GraphDiff> diff(DependencyGraph base, DependencyGraph graph) {
+        String key = base.getId() + '@' + base.getVersion() + ' ' + graph.getId() + '@' + graph.getVersion();
+        CompletableFuture<GraphDiff> diff;
+        synchronized (diffs) {
+            diff = diffs.get(key);
+            if (diff != null) {
+                return diff;
+            }
+            try {
+                diff = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return GraphDiff.compute(base, graph, timeoutNanos, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            } catch (RejectedExecutionException e) {
+                CompletableFuture<GraphDiff> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(e);
+                return rejected;
+            }
+            diffs.put(key, diff);
+            if (diffs.size() > MAX_CACHED_DIFFS) {
+                Iterator<String> eldest = diffs.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        // A failed diff may succeed when asked again
+        CompletableFuture<GraphDiff> computed = diff;
+        diff.whenComplete((result, error) -> {
+            if (error != null) {
+                synchronized (diffs) {
+                    diffs.remove(key, computed);
+                }
+            }
+        });
+        return diff;
+    }
+
+    /**
+     * Run a query on the calling thread.
+     *
+     * @throws IllegalArgumentException if the query names a node that is not in the graph
+     */
+    public QueryResult execute(DependencyGraph graph, GraphQuery query, int limit) {
+        long start = System.nanoTime();
+        AdjacencyIndex index = graph.getAdjacencyIndex();
+        int nodeCap = limit > 0 ? Math.min(limit, maxNodes) : maxNodes;
+        Traversal traversal = new Traversal(index, query, start + timeoutNanos, nodeCap);
+
+        switch (query.getType()) {
+            case NEIGHBOURS:
+                traversal.expand(resolve(index, query.getNode()), query.getDirection(), query.getDepth());
+                break;
+            case DEPENDENCIES:
+            case DEPENDENTS:
+                if (query.getDepth() > 0) {
+                    traversal.expand(resolve(index, query.getNode()), query.getDirection(), query.getDepth());
+                } else {
+                    traversal.closure(resolve(index, query.getNode()), query.getType() == GraphQuery.Type.DEPENDENCIES,
+                            graph.getReachabilityIndex(maxBitsetBytes));
+                }
+                break;
+            case REACHES:
+                traversal.reaches(resolve(index, query.getNode()), resolve(index, query.getTarget()),
+                        graph.getReachabilityIndex(maxBitsetBytes));
+                break;
+            case PATH:
+                traversal.shortestPath(resolve(index, query.getNode()), resolve(index, query.getTarget()),
+                        query.getDirection());
+                break;
+            case PACKAGE:
+                if (query.getPackagePrefix() == null || query.getPackagePrefix().isEmpty()) {
+                    throw new IllegalArgumentException("Package query needs a package prefix");
+                }
+                traversal.packageSubgraph(query.getPackagePrefix());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported query type " + query.getType());
+        }
+
+        QueryResult result = traversal.toResult(System.nanoTime() - start);
+        logger.debug("Query {} on graph {} v{}: {} nodes, {} edges in {} ms{}", query, index.getGraphId(),
+                index.getVersion(), result.getNodes().size(), result.getEdges().size(),
+                result.getElapsedNanos() / 1_000_000,
+                result.isTruncated() ? " (truncated: " + result.getTruncatedReason() + ")" : "");
+        return result;
+    }
+
+    /**
+     * Stop the worker threads. Queries already running are allowed to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static int resolve(AdjacencyIndex index, String fullyQualifiedName) {
+        if (fullyQualifiedName == null || fullyQualifiedName.isEmpty()) {
+            throw new IllegalArgumentException("Query needs a node");
+        }
+        int node = index.indexOf(fullyQualifiedName);
+        if (node < 0) {
+            throw new IllegalArgumentException("Unknown node " + fullyQualifiedName);
+        }
+        return node;
+    }
+
+    /**
+     * State of one query: which nodes were reached at what depth, and the limits.
+     */
+    private static class Traversal {
+        private final AdjacencyIndex index;
+        private final GraphQuery query;
+        private final long deadline;
+        private final int nodeCap;
+        private final int edgeCap;
+        private final int[] depth;
+        private final List<Integer> order = new ArrayList<>();
+        private List<QueryResult.Edge> pathEdges;
+        private boolean found = true;
+        private String truncatedReason;
+        private int steps;
+
+        Traversal(AdjacencyIndex index, GraphQuery query, long deadline, int nodeCap) {
+            this.index = index;
+            this.query = query;
+            this.deadline = deadline;
+            this.nodeCap = nodeCap;
+            this.edgeCap = nodeCap * 4;
+            this.depth = new int[index.getNodeCount()];
+            Arrays.fill(depth, -1);
+        }
+
+        /**
+         * Breadth-first search from a node up to a depth (unlimited if 0 or less).
+         */
+        void expand(int start, GraphQuery.Direction direction, int maxDepth) {
+            int[] queue = new int[index.getNodeCount()];
+            int head = 0;
+            int tail = 0;
+            visit(start, 0);
+            queue[tail++] = start;
+            while (head < tail && truncatedReason == null) {
+                int node = queue[head++];
+                if (maxDepth > 0 && depth[node] >= maxDepth) {
+                    continue;
+                }
+                if (direction != GraphQuery.Direction.IN) {
+                    for (int k = 0, d = index.outDegree(node); k < d && truncatedReason == null; k++) {
+                        int next = index.outTarget(node, k);
+                        if (depth[next] < 0 && visit(next, depth[node] + 1)) {
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+                if (direction != GraphQuery.Direction.OUT) {
+                    for (int k = 0, d = index.inDegree(node); k < d && truncatedReason == null; k++) {
+                        int next = index.inSource(node, k);
+                        if (depth[next] < 0 && visit(next, depth[node] + 1)) {
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Collect every transitive dependency (forward) or dependent of a node from the
+         * reachability index: the other classes in its cycle, then the classes of every
+         * component its component reaches (or is reached from).
+         */
+        void closure(int start, boolean forward, ReachabilityIndex reachability) {
+            visit(start, 0);
+            StronglyConnectedComponents components = reachability.getComponents();
+            int component = reachability.componentOf(index.getNode(start).getFullyQualifiedName());
+            if (component < 0) {
+                return; // added since the index was built; it has no known dependencies yet
+            }
+            if (!collectMembers(components, component, start)) {
+                return;
+            }
+            int[] reached = forward ? reachability.descendantComponents(component)
+                    : reachability.ancestorComponents(component);
+            for (int c : reached) {
+                if (!collectMembers(components, c, start)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Add the classes of a component, other than the start node, to the result.
+         *
+         * @return false if the result is full or the time limit has passed
+         */
+        private boolean collectMembers(StronglyConnectedComponents components, int component, int start) {
+            AdjacencyIndex componentIndex = components.getIndex();
+            for (int k = 0, size = components.size(component); k < size; k++) {
+                int node = components.member(component, k);
+                if (componentIndex != index) {
+                    // Updated in place since the components were found: map by name to the current index
+                    ClassNode member = componentIndex.getNode(node);
+                    node = index.indexOf(member.getFullyQualifiedName());
+                }
+                if (node >= 0 && node != start && !visit(node, -1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Answer whether one node depends on another; the result holds both nodes.
+         */
+        void reaches(int from, int to, ReachabilityIndex reachability) {
+            found = reachability.dependsOn(index.getNode(from).getFullyQualifiedName(),
+                    index.getNode(to).getFullyQualifiedName());
+            visit(from, 0);
+            if (to != from) {
+                visit(to, -1);
+            }
+        }
+
+        /**
+         * Breadth-first search from one node towards another, recording parents to rebuild the path.
+         */
+        void shortestPath(int from, int to, GraphQuery.Direction direction) {
+            int n = index.getNodeCount();
+            int[] parent = new int[n];
+            boolean[] parentForward = new boolean[n];
+            String[] parentField = new String[n];
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            depth[from] = 0;
+            queue[tail++] = from;
+            while (head < tail && depth[to] < 0 && checkDeadline()) {
+                int node = queue[head++];
+                if (direction != GraphQuery.Direction.IN) {
+                    for (int k = 0, d = index.outDegree(node); k < d; k++) {
+                        int next = index.outTarget(node, k);
+                        if (depth[next] < 0) {
+                            depth[next] = depth[node] + 1;
+                            parent[next] = node;
+                            parentForward[next] = true;
+                            parentField[next] = index.outField(node, k);
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+                if (direction != GraphQuery.Direction.OUT) {
+                    for (int k = 0, d = index.inDegree(node); k < d; k++) {
+                        int next = index.inSource(node, k);
+                        if (depth[next] < 0) {
+                            depth[next] = depth[node] + 1;
+                            parent[next] = node;
+                            parentForward[next] = false;
+                            parentField[next] = index.inField(node, k);
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+            }
+
+            pathEdges = new ArrayList<>();
+            if (depth[to] < 0) {
+                found = false;
+                order.add(from);
+                return;
+            }
+            // A path is all or nothing, so it is not subject to the node cap
+            List<Integer> path = new ArrayList<>();
+            for (int node = to; node != from; node = parent[node]) {
+                path.add(node);
+                int previous = parent[node];
+                pathEdges.add(parentForward[node]
+                        ? new QueryResult.Edge(index.getNode(previous), index.getNode(node), parentField[node])
+                        : new QueryResult.Edge(index.getNode(node), index.getNode(previous), parentField[node]));
+            }
+            path.add(from);
+            for (int i = path.size() - 1; i >= 0; i--) {
+                order.add(path.get(i));
+            }
+            Collections.reverse(pathEdges);
+        }
+
+        /**
+         * Collect every node under a package prefix; edges are those between collected nodes.
+         */
+        void packageSubgraph(String prefix) {
+            for (int node : index.nodesInPackage(prefix)) {
+                if (!visit(node, -1)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Add a node to the result.
+         *
+         * @return false if the result is full or the time limit has passed
+         */
+        private boolean visit(int node, int nodeDepth) {
+            if (order.size() >= nodeCap) {
+                truncatedReason = "result-cap";
+                return false;
+            }
+            if (!checkDeadline()) {
+                return false;
+            }
+            depth[node] = nodeDepth;
+            order.add(node);
+            return true;
+        }
+
+        private boolean checkDeadline() {
+            if (++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                truncatedReason = "time-limit";
+            }
+            return truncatedReason == null;
+        }
+
+        QueryResult toResult(long elapsedNanos) {
+            List<QueryResult.Node> nodes = new ArrayList<>(order.size());
+            boolean isPath = query.getType() == GraphQuery.Type.PATH;
+            for (int i = 0; i < order.size(); i++) {
+                int node = order.get(i);
+                nodes.add(new QueryResult.Node(index.getNode(node), isPath ? i : depth[node]));
+            }
+
+            List<QueryResult.Edge> edges = pathEdges;
+            if (edges == null) {
+                // Induced edges: every edge whose endpoints are both in the result
+                boolean[] included = new boolean[index.getNodeCount()];
+                for (int node : order) {
+                    included[node] = true;
+                }
+                edges = new ArrayList<>();
+                outer:
+                for (int node : order) {
+                    for (int k = 0, d = index.outDegree(node); k < d; k++) {
+                        int target = index.outTarget(node, k);
+                        if (included[target]) {
+                            if (edges.size() >= edgeCap) {
+                                if (truncatedReason == null) {
+                                    truncatedReason = "result-cap";
+                                }
+                                break outer;
+                            }
+                            edges.add(new QueryResult.Edge(index.getNode(node), index.getNode(target),
+                                    index.outField(node, k)));
+                        }
+                    }
+                }
+            }
+            return new QueryResult(query, index.getGraphId(), index.getVersion(), nodes, edges, found,
+                    truncatedReason, elapsedNanos);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.analyzer.graph.query;
+
+import com.analyzer.graph.ClassNode;
+
+import java.util.List;
+
+/**
+ * The answer to a {@link GraphQuery}: the matching nodes (with their distance from the start
+ * node where that applies) and the edges between them.
+ *
+ * A result cut short by the time limit or the result cap is marked truncated; it is still a
+ * correct partial answer, e.g. all dependencies found up to the point the limit was hit.
+ */
+public class QueryResult {
+    private final GraphQuery query;
+    private final String graphId;
+    private final long version;
+    private final List<Node> nodes;
+    private final List<Edge> edges;
+    private final boolean found;
+    private final String truncatedReason;
+    private final long elapsedNanos;
+
+    QueryResult(GraphQuery query, String graphId, long version, List<Node> nodes, List<Edge> edges,
+                boolean found, String truncatedReason, long elapsedNanos) {
+        this.query = query;
+        this.graphId = graphId;
+        this.version = version;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.found = found;
+        this.truncatedReason = truncatedReason;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public GraphQuery getQuery() {
+        return query;
+    }
+
+    public String getGraphId() {
+        return graphId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public List<Edge> getEdges() {
+        return edges;
+    }
+
+    /**
+     * Whether a path query found a path. Always true for other queries.
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    public boolean isTruncated() {
+        return truncatedReason != null;
+    }
+
+    /**
+     * Get why the result was cut short ("time-limit" or "result-cap"), or null if it is complete.
+     */
+    public String getTruncatedReason() {
+        return truncatedReason;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * A node in the result. The depth is the number of edges from the start node,
+     * or the position along the path for a path query, and -1 where it does not apply.
+     */
+    public static class Node {
+        private final ClassNode node;
+        private final int depth;
+
+        Node(ClassNode node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        public ClassNode getNode() {
+            return node;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+
+    /**
+     * A dependency edge in the result, from the depending class to its dependency.
+     */
+    public static class Edge {
+        private final ClassNode source;
+        private final ClassNode target;
+        private final String fieldName;
+
+        Edge(ClassNode source, ClassNode target, String fieldName) {
+            this.source = source;
+            this.target = target;
+            this.fieldName = fieldName;
+        }
+
+        public ClassNode getSource() {
+            return source;
+        }
+
+        public ClassNode getTarget() {
+            return target;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of analysing a workspace: connect, graph_build, centrality, communities or layout.
+ */
+@Name("com.analyzer.AnalysisPhase")
+@Label("Analysis Phase")
+@Category({"Java Dependency Analyzer", "Analysis"})
+@Description("A phase of analysing a workspace: connect, graph_build, centrality, communities or layout")
+public class AnalysisPhaseEvent extends Event {
+    @Label("Phase")
+    public String phase;
+
+    @Label("Workspace")
+    public String workspace;
+
+    @Label("Node Count")
+    @Description("Classes in the graph at the end of the phase")
+    public int nodeCount;
+
+    @Label("Edge Count")
+    @Description("Dependencies in the graph at the end of the phase")
+    public int edgeCount;
+}
@@ -0,0 +1,34 @@
+package com.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One iteration of the force-directed layout.
+ */
+@Name("com.analyzer.LayoutIteration")
+@Label("Layout Iteration")
+@Category({"Java Dependency Analyzer", "Layout"})
+@Description("One iteration of the force-directed layout")
+public class LayoutIterationEvent extends Event {
+    @Label("Iteration")
+    public int iteration;
+
+    @Label("Iterations")
+    @Description("Iterations of this layout run")
+    public int iterations;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    @Label("Temperature")
+    @Description("Largest distance a node could move in this iteration")
+    public double temperature;
+
+    @Label("Energy")
+    @Description("Sum of the squared net forces on all nodes; falls as the layout settles")
+    public double energy;
+}
@@ -0,0 +1,30 @@
+package com.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A request to the language server, from sending it until its response arrived.
+ */
+@Name("com.analyzer.LspRequest")
+@Label("LSP Request")
+@Category({"Java Dependency Analyzer", "LSP"})
+@Description("A request to JDT LS, from sending it until the response arrived")
+public class LspRequestEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("Target")
+    @Description("The document URI, or the query of a workspace symbol request")
+    public String target;
+
+    @Label("Symbol Count")
+    @Description("Top-level symbols in the response")
+    public int symbolCount;
+
+    @Label("Failed")
+    public boolean failed;
+}
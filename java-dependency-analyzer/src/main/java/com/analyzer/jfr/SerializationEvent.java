@@ -0,0 +1,36 @@
+package com.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Encoding a graph payload for clients.
+ */
+@Name("com.analyzer.Serialization")
+@Label("Graph Serialization")
+@Category({"Java Dependency Analyzer", "Server"})
+@Description("Encoding a graph payload for clients")
+public class SerializationEvent extends Event {
+    @Label("Format")
+    public String format;
+
+    @Label("Graph Id")
+    public String graphId;
+
+    @Label("Graph Version")
+    public long graphVersion;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    @Label("Edge Count")
+    public int edgeCount;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
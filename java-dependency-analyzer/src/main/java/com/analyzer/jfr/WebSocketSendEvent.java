@@ -0,0 +1,41 @@
+package com.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A message written to a WebSocket client, committed when the write finished or failed. The
+ * latency covers the time in the client's send queue as well as the write.
+ */
+@Name("com.analyzer.WebSocketSend")
+@Label("WebSocket Send")
+@Category({"Java Dependency Analyzer", "Server"})
+@Description("A message written to a WebSocket client")
+public class WebSocketSendEvent extends Event {
+    @Label("Session")
+    public String session;
+
+    @Label("Message")
+    @Description("What was sent, e.g. a snapshot or a delta")
+    public String message;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Frames")
+    public int frames;
+
+    @Label("Latency")
+    @Description("Time from queueing the message until the write finished")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+
+    @Label("Failed")
+    public boolean failed;
+}
@@ -0,0 +1,200 @@
+package com.analyzer.lsp;
+
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.json.ConcurrentMessageProcessor;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageProducer;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageClientAware;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A language server running in this process, connected to a {@link JdtLsClient} through a pair
+ * of pipes instead of a subprocess's stdio. Messages still go through lsp4j's JSON-RPC encoding,
+ * so the client sees the same traffic as with JDT LS.
+ *
+ * <pre>
+ * try (InProcessServer server = InProcessServer.start(languageServer, null)) {
+ *     client.connect(server.getClientInput(), server.getClientOutput());
+ *     ...
+ * }
+ * </pre>
+ *
+ * The pipes are NIO pipes rather than {@code java.io.PipedInputStream}, which fails once the
+ * thread that last wrote to it has ended, as request threads of a concurrent build do.
+ */
+public final class InProcessServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(InProcessServer.class);
+
+    private final Pipe toServer;
+    private final Pipe toClient;
+    private final Future<Void> listening;
+    private final ExecutorService ownExecutor;
+    private final ClientInput clientInput;
+    private final OutputStream clientOutput;
+
+    /**
+     * @param ownExecutor an executor created for this server, shut down on close, or null
+     */
+    private InProcessServer(Pipe toServer, Pipe toClient, Future<Void> listening, ExecutorService ownExecutor) {
+        this.toServer = toServer;
+        this.toClient = toClient;
+        this.listening = listening;
+        this.ownExecutor = ownExecutor;
+        this.clientInput = new ClientInput(Channels.newInputStream(toClient.source()));
+        this.clientOutput = Channels.newOutputStream(toServer.sink());
+    }
+
+    /**
+     * Start serving the given language server. If it is {@link LanguageClientAware}, it is
+     * connected to the client proxy before the first message is read.
+     *
+     * @param executor executor for the server's message threads, or null for lsp4j's default thread pool
+     */
+    public static InProcessServer start(LanguageServer server, ExecutorService executor) throws IOException {
+        Pipe toServer = Pipe.open();
+        Pipe toClient = Pipe.open();
+        InputStream in = Channels.newInputStream(toServer.source());
+        OutputStream out = Channels.newOutputStream(toClient.sink());
+        Launcher<LanguageClient> launcher = executor != null
+                ? LSPLauncher.createServerLauncher(server, in, out, executor, null)
+                : LSPLauncher.createServerLauncher(server, in, out);
+        if (server instanceof LanguageClientAware) {
+            ((LanguageClientAware) server).connect(launcher.getRemoteProxy());
+        }
+        logger.debug("Started in-process language server {}", server.getClass().getSimpleName());
+        return new InProcessServer(toServer, toClient, launcher.startListening(), null);
+    }
+
+    /**
+     * Start serving a JSON-RPC endpoint that works on the messages' JSON rather than on lsp4j's
+     * typed parameters and results: it gets the parameters of requests and notifications as
+     * {@link com.google.gson.JsonElement}s and may answer with them.
+     *
+     * @param executor executor for the server's message thread, or null for a new cached thread
+     *                 pool that is shut down on close
+     */
+    public static InProcessServer start(Endpoint endpoint, ExecutorService executor) throws IOException {
+        Pipe toServer = Pipe.open();
+        Pipe toClient = Pipe.open();
+        MessageJsonHandler jsonHandler = new MessageJsonHandler(Collections.emptyMap());
+        RemoteEndpoint remoteEndpoint = new RemoteEndpoint(
+                new StreamMessageConsumer(Channels.newOutputStream(toClient.sink()), jsonHandler), endpoint);
+        jsonHandler.setMethodProvider(remoteEndpoint);
+        StreamMessageProducer reader = new StreamMessageProducer(
+                Channels.newInputStream(toServer.source()), jsonHandler, remoteEndpoint);
+        ExecutorService ownExecutor = executor == null ? Executors.newCachedThreadPool() : null;
+        Future<Void> listening = new ConcurrentMessageProcessor(reader, remoteEndpoint)
+                .beginProcessing(executor != null ? executor : ownExecutor);
+        logger.debug("Started in-process JSON-RPC endpoint {}", endpoint.getClass().getSimpleName());
+        return new InProcessServer(toServer, toClient, listening, ownExecutor);
+    }
+
+    /**
+     * Get the stream the client reads the server's messages from.
+     */
+    public InputStream getClientInput() {
+        return clientInput;
+    }
+
+    /**
+     * Get the stream the client writes its messages to.
+     */
+    public OutputStream getClientOutput() {
+        return clientOutput;
+    }
+
+    /**
+     * Stop the server and close the pipes, which also ends the client's message loop. The write
+     * ends are closed first and the read ends only once both sides have read to the end, so the
+     * message loops end at the end of their input rather than with an error.
+     */
+    @Override
+    public void close() {
+        closeQuietly(toServer.sink());
+        closeQuietly(toClient.sink());
+        try {
+            listening.get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | CancellationException e) {
+            logger.debug("In-process language server did not stop cleanly: {}", e.toString());
+        }
+        listening.cancel(true);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+        closeQuietly(toServer.source());
+        try {
+            if (!clientInput.awaitEnd(1, TimeUnit.SECONDS)) {
+                logger.debug("Client did not read to the end of the in-process server's output");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(toClient.source());
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing pipe: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The client's input, which signals when the client has read to its end.
+     */
+    private static final class ClientInput extends FilterInputStream {
+        private final CountDownLatch end = new CountDownLatch(1);
+
+        ClientInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return atEnd(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return atEnd(super.read(b, off, len));
+        }
+
+        private int atEnd(int result) {
+            if (result < 0) {
+                end.countDown();
+            }
+            return result;
+        }
+
+        boolean awaitEnd(long timeout, TimeUnit unit) throws InterruptedException {
+            return end.await(timeout, unit);
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package com.analyzer.lsp;
 
+import com.analyzer.jfr.LspRequestEvent;
+import com.analyzer.lsp.replay.LspRecorder;
+import com.analyzer.lsp.replay.LspRecording;
+import com.analyzer.lsp.replay.ReplayServer;
+import com.analyzer.metrics.PipelineMetrics;
 import org.eclipse.lsp4j.*;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
@@ -24,8 +29,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
 
 /**
  * Client for connecting to JDT Language Server via stdio.
@@ -35,11 +42,18 @@ public class JdtLsClient {
 
     private final String workspacePath;
     private final String jdtlsCommand;
+    private final ExecutorService messageExecutor;
     private Process jdtlsProcess;
     private LanguageServer languageServer;
     private LanguageClientImpl languageClient;
     private boolean initialized = false;
     private volatile boolean shuttingDown = false;
+    private Path recordingFile;
+    private LspRecorder recorder;
+    private Path replayFile;
+    private double replaySpeed = 1.0;
+    private ReplayServer replayServer;
+    private InProcessServer replayConnection;
 
     /**
      * Create a new JDT LS client.
@@ -48,8 +62,20 @@ public class JdtLsClient {
      * @param jdtlsCommand Command to launch jdtls (e.g., "jdtls" or full path)
      */
     public JdtLsClient(String workspacePath, String jdtlsCommand) {
+        this(workspacePath, jdtlsCommand, null);
+    }
+
+    /**
+     * Create a new JDT LS client that reads and dispatches LSP messages on the given executor.
+     *
+     * @param workspacePath Path to the Java project workspace
+     * @param jdtlsCommand Command to launch jdtls (e.g., "jdtls" or full path)
+     * @param messageExecutor Executor for the LSP message threads, or null for lsp4j's default thread pool
+     */
+    public JdtLsClient(String workspacePath, String jdtlsCommand, ExecutorService messageExecutor) {
         this.workspacePath = workspacePath;
         this.jdtlsCommand = jdtlsCommand;
+        this.messageExecutor = messageExecutor;
     }
 
     /**
@@ -62,9 +88,36 @@ public class JdtLsClient {
     }
 
     /**
-     * Start JDT LS as a subprocess and initialize via stdio.
+     * Record the JSON-RPC traffic of the next connection, with timings, to a file that
+     * {@link #setReplay} can serve later without JDT LS (see {@link LspRecorder}).
+     *
+     * @param file the recording to write, or null not to record
+     */
+    public void setRecordingFile(Path file) {
+        this.recordingFile = file;
+    }
+
+    /**
+     * Make {@link #connect()} serve a recording in this process instead of starting JDT LS.
+     *
+     * @param recording a file written by {@link #setRecordingFile}, or null to start JDT LS
+     * @param speed how many times faster than recorded to answer (1 for the recorded latencies),
+     *              or 0 to answer at once
+     */
+    public void setReplay(Path recording, double speed) {
+        this.replayFile = recording;
+        this.replaySpeed = speed;
+    }
+
+    /**
+     * Start JDT LS as a subprocess and initialize via stdio, or serve a recording if one was set
+     * with {@link #setReplay}.
      */
     public void connect() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        if (replayFile != null) {
+            connectReplay();
+            return;
+        }
         logger.info("Starting JDT LS for workspace: {}", workspacePath);
 
         // Validate workspace path
@@ -101,38 +154,59 @@ public class JdtLsClient {
             throw new IOException("Failed to start jdtls command: " + jdtlsCommand, e);
         }
 
-        // Get stdin/stdout streams
-        InputStream input = jdtlsProcess.getInputStream();
-        OutputStream output = jdtlsProcess.getOutputStream();
+        // Monitor process termination without parking a pool thread on waitFor()
+        jdtlsProcess.onExit().thenAccept(process -> {
+            if (process.exitValue() != 0) {
+                logger.error("JDT LS process exited with code: {}", process.exitValue());
+            }
+        });
+
+        logger.info("JDT LS process started, initializing...");
+        connect(jdtlsProcess.getInputStream(), jdtlsProcess.getOutputStream());
+
+        // Give jdtls some time to analyze the workspace
+        // Import errors for some modules are non-fatal - JDT LS will continue with successfully imported modules
+        logger.info("Waiting for JDT LS to analyze workspace...");
+        logger.info("Note: Some Maven modules may fail to import due to configuration issues, but this is usually non-fatal");
+        Thread.sleep(10000); // Wait 10 seconds for initial analysis of large projects
+    }
+
+    private void connectReplay() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        LspRecording recording = LspRecording.read(replayFile);
+        logger.info("Replaying {} LSP requests recorded from {} at {}", recording.getExchanges().size(),
+                recording.getWorkspace(), replaySpeed > 0 ? replaySpeed + "x the recorded speed" : "without delays");
+        replayServer = new ReplayServer(recording, replaySpeed);
+        replayConnection = InProcessServer.start(replayServer, null);
+        connect(replayConnection.getClientInput(), replayConnection.getClientOutput());
+    }
+
+    /**
+     * Connect to a language server that is already running and initialize it over the given
+     * streams, e.g. one in this process (see {@link InProcessServer}). Unlike {@link #connect()},
+     * this does not wait for a workspace import.
+     *
+     * @param input  the server's output
+     * @param output the server's input
+     */
+    public void connect(InputStream input, OutputStream output)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        Path workspace = Paths.get(workspacePath);
 
         // Create language client
         languageClient = new LanguageClientImpl();
 
+        if (recordingFile != null) {
+            recorder = LspRecorder.open(recordingFile, "file://" + workspace.toAbsolutePath());
+        }
+
         // Launch LSP client
-        Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(
-                languageClient,
-                input,
-                output
-        );
+        Launcher<LanguageServer> launcher = LSPLauncher.createClientLauncher(languageClient, input, output,
+                messageExecutor, recorder != null ? recorder::wrap : null);
 
         languageServer = launcher.getRemoteProxy();
         
         // Start listening in a separate thread
         launcher.startListening();
-        
-        // Monitor process termination
-        CompletableFuture.runAsync(() -> {
-            try {
-                int exitCode = jdtlsProcess.waitFor();
-                if (exitCode != 0) {
-                    logger.error("JDT LS process exited with code: {}", exitCode);
-                }
-            } catch (InterruptedException e) {
-                logger.warn("JDT LS process monitoring interrupted", e);
-            }
-        });
-
-        logger.info("JDT LS process started, initializing...");
 
         // Initialize the language server
         InitializeParams initParams = new InitializeParams();
@@ -209,12 +283,6 @@ public class JdtLsClient {
         // Send initialized notification
         languageServer.initialized(new InitializedParams());
         initialized = true;
-        
-        // Give jdtls some time to analyze the workspace
-        // Import errors for some modules are non-fatal - JDT LS will continue with successfully imported modules
-        logger.info("Waiting for JDT LS to analyze workspace...");
-        logger.info("Note: Some Maven modules may fail to import due to configuration issues, but this is usually non-fatal");
-        Thread.sleep(10000); // Wait 10 seconds for initial analysis of large projects
     }
 
     /**
@@ -226,10 +294,13 @@ public class JdtLsClient {
         }
 
         WorkspaceSymbolParams params = new WorkspaceSymbolParams(query);
+        long start = System.nanoTime();
         CompletableFuture<Either<List<? extends SymbolInformation>, List<? extends WorkspaceSymbol>>> future =
                 languageServer.getWorkspaceService().symbol(params);
 
-        Either<List<? extends SymbolInformation>, List<? extends WorkspaceSymbol>> symbolsEither = future.get();
+        Either<List<? extends SymbolInformation>, List<? extends WorkspaceSymbol>> symbolsEither =
+                await("workspace/symbol", query, future, start,
+                        either -> either.isLeft() ? either.getLeft().size() : either.getRight().size());
         List<SymbolInformation> result = new ArrayList<>();
 
         if (symbolsEither.isLeft()) {
@@ -238,19 +309,29 @@ public class JdtLsClient {
         } else {
             // We got a list of WorkspaceSymbol - convert each to SymbolInformation
             for (WorkspaceSymbol ws : symbolsEither.getRight()) {
-                SymbolInformation si = new SymbolInformation();
-                si.setName(ws.getName());
-                si.setKind(ws.getKind());
-                if (ws.getLocation().isLeft()) {
-                    si.setLocation(ws.getLocation().getLeft());
-                }
-                result.add(si);
+                result.add(toSymbolInformation(ws));
             }
         }
 
         return result;
     }
 
+    // SymbolInformation is deprecated in LSP 3.17, but it is what callers of getWorkspaceSymbols get
+    @SuppressWarnings("deprecation")
+    private static SymbolInformation toSymbolInformation(WorkspaceSymbol ws) {
+        SymbolInformation si = new SymbolInformation();
+        si.setName(ws.getName());
+        si.setKind(ws.getKind());
+        si.setContainerName(ws.getContainerName());
+        if (ws.getLocation().isLeft()) {
+            si.setLocation(ws.getLocation().getLeft());
+        } else {
+            // Only the file is known; GraphBuilder needs no more
+            si.setLocation(new Location(ws.getLocation().getRight().getUri(), new Range()));
+        }
+        return si;
+    }
+
     /**
      * Get document symbols for a specific file (classes, methods, fields).
      */
@@ -263,10 +344,43 @@ public class JdtLsClient {
         DocumentSymbolParams params = new DocumentSymbolParams();
         params.setTextDocument(new TextDocumentIdentifier(uri));
 
+        long start = System.nanoTime();
         CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> future =
                 languageServer.getTextDocumentService().documentSymbol(params);
 
-        return future.get();
+        return await("textDocument/documentSymbol", uri, future, start, List::size);
+    }
+
+    /**
+     * Wait for the response to a request sent at {@code start}, recording its latency and an
+     * {@link LspRequestEvent}.
+     *
+     * @param target the document or query the request is about
+     * @param symbolCount counts the symbols in a response
+     */
+    private static <T> T await(String method, String target, CompletableFuture<T> future, long start,
+                               ToIntFunction<T> symbolCount) throws ExecutionException, InterruptedException {
+        LspRequestEvent event = new LspRequestEvent();
+        event.begin();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = future.get();
+            failed = false;
+            PipelineMetrics.LSP_REQUEST_SECONDS.labels(method).observeNanos(System.nanoTime() - start);
+            return result;
+        } catch (ExecutionException | InterruptedException e) {
+            PipelineMetrics.LSP_REQUEST_FAILURES.labels(method).inc();
+            throw e;
+        } finally {
+            if (event.shouldCommit()) {
+                event.method = method;
+                event.target = target;
+                event.symbolCount = result != null ? symbolCount.applyAsInt(result) : 0;
+                event.failed = failed;
+                event.commit();
+            }
+        }
     }
 
     /**
@@ -336,6 +450,17 @@ public class JdtLsClient {
             }
         }
 
+        if (replayConnection != null) {
+            replayConnection.close();
+            replayServer.close();
+            replayConnection = null;
+            replayServer = null;
+        }
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+
         initialized = false;
         logger.info("Disconnected from JDT LS");
     }
@@ -0,0 +1,136 @@
+package com.analyzer.lsp.replay;
+
+import com.google.gson.JsonObject;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the JSON-RPC messages between a client and a language server, with the time each was
+ * sent or received, to a gzipped file of JSON lines that {@link LspRecording} reads back:
+ *
+ * <pre>
+ * {"format":"lsp-recording","version":1,"workspace":"file:///...","recorded":"2026-01-01T12:00:00Z"}
+ * {"t":1520,"dir":"send","msg":{"jsonrpc":"2.0","id":"1","method":"initialize","params":{...}}}
+ * {"t":812044,"dir":"recv","msg":{"jsonrpc":"2.0","id":"1","result":{...}}}
+ * </pre>
+ *
+ * {@code t} is in microseconds since the recorder was opened. Messages are recorded from the
+ * lsp4j message consumers, see {@link #wrap(MessageConsumer)}, so they are the messages lsp4j
+ * sent and parsed, not the raw stream.
+ */
+public class LspRecorder implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LspRecorder.class);
+
+    static final String FORMAT = "lsp-recording";
+    static final int VERSION = 1;
+
+    private final Path file;
+    private final Writer out;
+    private final MessageJsonHandler jsonHandler = new MessageJsonHandler(Collections.emptyMap());
+    private final long start = System.nanoTime();
+    private long messages;
+    private boolean closed;
+
+    private LspRecorder(Path file, Writer out) {
+        this.file = file;
+        this.out = out;
+    }
+
+    /**
+     * Create a recording file, replacing an existing one.
+     *
+     * @param workspaceUri the root of the recorded workspace, kept for reference
+     */
+    public static LspRecorder open(Path file, String workspaceUri) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file), 65536), StandardCharsets.UTF_8), 65536);
+        JsonObject header = new JsonObject();
+        header.addProperty("format", FORMAT);
+        header.addProperty("version", VERSION);
+        header.addProperty("workspace", workspaceUri);
+        header.addProperty("recorded", Instant.now().toString());
+        out.write(header.toString());
+        out.write('\n');
+        logger.info("Recording LSP traffic to {}", file);
+        return new LspRecorder(file, out);
+    }
+
+    /**
+     * Wrap one of the message consumers of an lsp4j launcher (see
+     * {@code Launcher.Builder.wrapMessages}). The launcher wraps both directions: the consumer
+     * of received messages is its {@link RemoteEndpoint}, the other one writes to the server.
+     */
+    public MessageConsumer wrap(MessageConsumer consumer) {
+        boolean received = consumer instanceof RemoteEndpoint;
+        return message -> {
+            record(received, message);
+            consumer.consume(message);
+        };
+    }
+
+    private void record(boolean received, Message message) {
+        long micros = (System.nanoTime() - start) / 1000;
+        String json;
+        try {
+            json = jsonHandler.serialize(message);
+        } catch (RuntimeException e) {
+            logger.warn("Could not record LSP message: {}", e.toString());
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.write("{\"t\":");
+                out.write(Long.toString(micros));
+                out.write(received ? ",\"dir\":\"recv\",\"msg\":" : ",\"dir\":\"send\",\"msg\":");
+                out.write(json);
+                out.write("}\n");
+                messages++;
+            } catch (IOException e) {
+                logger.warn("Stopped recording LSP traffic to {}: {}", file, e.getMessage());
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Finish the recording; messages after this are not recorded.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closeQuietly();
+            logger.info("Recorded {} LSP messages to {}", messages, file);
+        }
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("Error closing LSP recording {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.analyzer.lsp.replay;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The requests a client sent in a recording made by {@link LspRecorder}, each with the server's
+ * response and how long it took. Messages the server sent on its own (notifications and its
+ * requests to the client) are skipped, as are requests that never got a response.
+ */
+public class LspRecording {
+    private final Path file;
+    private final String workspace;
+    private final List<Exchange> exchanges;
+    private final long durationNanos;
+
+    private LspRecording(Path file, String workspace, List<Exchange> exchanges, long durationNanos) {
+        this.file = file;
+        this.workspace = workspace;
+        this.exchanges = Collections.unmodifiableList(exchanges);
+        this.durationNanos = durationNanos;
+    }
+
+    public static LspRecording read(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 65536), StandardCharsets.UTF_8))) {
+            JsonObject header = parse(file, reader.readLine(), 1);
+            if (header == null || !LspRecorder.FORMAT.equals(string(header, "format"))) {
+                throw new IOException(file + " is not an LSP recording");
+            }
+            int version = header.get("version").getAsInt();
+            if (version > LspRecorder.VERSION) {
+                throw new IOException("Unsupported LSP recording version " + version + " in " + file);
+            }
+
+            Map<String, JsonObject> pending = new HashMap<>();
+            Map<String, Long> sentAt = new HashMap<>();
+            List<Exchange> exchanges = new ArrayList<>();
+            long last = 0;
+            int lineNumber = 1;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                JsonObject entry = parse(file, line, lineNumber);
+                if (entry == null) {
+                    continue;
+                }
+                long micros = entry.get("t").getAsLong();
+                last = Math.max(last, micros);
+                JsonObject message = entry.getAsJsonObject("msg");
+                JsonElement id = message.get("id");
+                if (id == null || id.isJsonNull()) {
+                    continue; // notification
+                }
+                boolean sent = "send".equals(string(entry, "dir"));
+                if (sent && message.has("method")) {
+                    pending.put(id.toString(), message);
+                    sentAt.put(id.toString(), micros);
+                } else if (!sent && !message.has("method")) {
+                    JsonObject request = pending.remove(id.toString());
+                    if (request != null) {
+                        exchanges.add(new Exchange(string(request, "method"), request.get("params"),
+                                message.get("result"), message.getAsJsonObject("error"),
+                                (micros - sentAt.remove(id.toString())) * 1000));
+                    }
+                }
+            }
+            return new LspRecording(file, string(header, "workspace"), exchanges, last * 1000);
+        }
+    }
+
+    private static JsonObject parse(Path file, String line, int lineNumber) throws IOException {
+        if (line == null || line.isEmpty()) {
+            return null;
+        }
+        try {
+            return JsonParser.parseString(line).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Malformed line " + lineNumber + " in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String string(JsonObject object, String member) {
+        JsonElement value = object.get(member);
+        return value != null && !value.isJsonNull() ? value.getAsString() : null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Get the root URI of the recorded workspace, or null if it was not recorded.
+     */
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    /**
+     * Get the requests with their responses, in the order the responses arrived.
+     */
+    public List<Exchange> getExchanges() {
+        return exchanges;
+    }
+
+    /**
+     * Get the time from the start of the recording to its last message.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Count the requests per method, in order of first occurrence.
+     */
+    public Map<String, Integer> countByMethod() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Exchange exchange : exchanges) {
+            counts.merge(exchange.getMethod(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * A request and the server's response to it.
+     */
+    public static final class Exchange {
+        private final String method;
+        private final JsonElement params;
+        private final JsonElement result;
+        private final JsonObject error;
+        private final long latencyNanos;
+
+        Exchange(String method, JsonElement params, JsonElement result, JsonObject error, long latencyNanos) {
+            this.method = method;
+            this.params = params;
+            this.result = result;
+            this.error = error;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * Get the request parameters, or null if there were none.
+         */
+        public JsonElement getParams() {
+            return params;
+        }
+
+        /**
+         * Get the result, or null if the server answered with an error or a null result.
+         */
+        public JsonElement getResult() {
+            return result;
+        }
+
+        /**
+         * Get the error ({@code code}, {@code message} and optional {@code data}), or null.
+         */
+        public JsonObject getError() {
+            return error;
+        }
+
+        /**
+         * Get the time from sending the request to receiving the response.
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+}
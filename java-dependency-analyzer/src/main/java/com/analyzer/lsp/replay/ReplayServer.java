@@ -0,0 +1,193 @@
+package com.analyzer.lsp.replay;
+
+import com.analyzer.lsp.InProcessServer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for a language server by answering requests from an {@link LspRecording}, after the
+ * recorded latency divided by a speed factor. Serve it with {@link InProcessServer#start(Endpoint,
+ * java.util.concurrent.ExecutorService)}.
+ *
+ * A request is answered with the recorded response to the same method and parameters; repeated
+ * requests get the recorded responses in turn, and the last one once they are used up. Requests
+ * whose parameters differ from run to run, such as {@code initialize} with its process id, get
+ * the responses to their method in the same way; these fallbacks are counted and logged. Other
+ * requests fail and count as unmatched, except {@code shutdown}, which is answered with null.
+ *
+ * Each latency is replayed on its own, so the replay does not slow down under concurrent
+ * requests the way the recorded server may have.
+ */
+public class ReplayServer implements Endpoint, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayServer.class);
+
+    /** Requests answered by method when their parameters were not recorded, as they change with every run. */
+    private static final Set<String> PER_RUN_METHODS = new HashSet<>(Arrays.asList("initialize", "shutdown"));
+
+    private final LspRecording recording;
+    private final double speed;
+    private final Map<String, Responses> byRequest = new HashMap<>();
+    private final Map<String, Responses> byMethod = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * @param speed how many times faster than recorded to answer (1 for the recorded latencies),
+     *              or 0 to answer at once
+     */
+    public ReplayServer(LspRecording recording, double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + speed);
+        }
+        this.recording = recording;
+        this.speed = speed;
+        for (LspRecording.Exchange exchange : recording.getExchanges()) {
+            byRequest.computeIfAbsent(key(exchange.getMethod(), exchange.getParams()), key -> new Responses())
+                    .add(exchange);
+            byMethod.computeIfAbsent(exchange.getMethod(), key -> new Responses()).add(exchange);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lsp-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<?> request(String method, Object parameter) {
+        requests.incrementAndGet();
+        LspRecording.Exchange exchange = find(method, (JsonElement) parameter);
+        if (exchange == null) {
+            unmatched.incrementAndGet();
+            if ("shutdown".equals(method)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            logger.debug("No recorded response to {} {}", method, parameter);
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new ResponseErrorException(new ResponseError(
+                    ResponseErrorCode.RequestFailed, "No response to " + method + " in the recording", null)));
+            return failed;
+        }
+
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        long delay = speed > 0 ? (long) (exchange.getLatencyNanos() / speed) : 0;
+        if (delay > 0) {
+            scheduler.schedule(() -> respond(response, exchange), delay, TimeUnit.NANOSECONDS);
+        } else {
+            respond(response, exchange);
+        }
+        return response;
+    }
+
+    @Override
+    public void notify(String method, Object parameter) {
+        // Notifications from the client (initialized, exit, ...) need no answer
+    }
+
+    private LspRecording.Exchange find(String method, JsonElement params) {
+        Responses responses;
+        synchronized (this) {
+            responses = byRequest.get(key(method, params));
+            if (responses == null && PER_RUN_METHODS.contains(method)) {
+                responses = byMethod.get(method);
+                if (responses != null) {
+                    fallbacks.incrementAndGet();
+                    logger.debug("Answering {} with a recorded response to other parameters", method);
+                }
+            }
+            return responses != null ? responses.next() : null;
+        }
+    }
+
+    private static void respond(CompletableFuture<Object> response, LspRecording.Exchange exchange) {
+        JsonObject error = exchange.getError();
+        if (error != null) {
+            JsonElement message = error.get("message");
+            response.completeExceptionally(new ResponseErrorException(new ResponseError(
+                    error.get("code").getAsInt(), message != null ? message.getAsString() : "", error.get("data"))));
+        } else {
+            JsonElement result = exchange.getResult();
+            response.complete(result == null || result.isJsonNull() ? null : result);
+        }
+    }
+
+    private static String key(String method, JsonElement params) {
+        return params == null || params.isJsonNull() ? method : method + '\n' + params;
+    }
+
+    public LspRecording getRecording() {
+        return recording;
+    }
+
+    /**
+     * Get the number of requests received.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Get the number of requests that had no recorded response.
+     */
+    public long getUnmatchedCount() {
+        return unmatched.get();
+    }
+
+    /**
+     * Get the number of requests answered with the response to other parameters of the same method.
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        if (unmatched.get() > 0) {
+            logger.warn("{} of {} replayed LSP requests were not in the recording", unmatched.get(), requests.get());
+        }
+        if (fallbacks.get() > 0) {
+            logger.warn("{} of {} replayed LSP requests were answered with a response to other parameters of "
+                    + "the same method ({})", fallbacks.get(), requests.get(), PER_RUN_METHODS);
+        }
+    }
+
+    /**
+     * The recorded responses to one request (or method), handed out in turn.
+     */
+    private static final class Responses {
+        private final List<LspRecording.Exchange> exchanges = new ArrayList<>();
+        private int next;
+
+        void add(LspRecording.Exchange exchange) {
+            exchanges.add(exchange);
+        }
+
+        LspRecording.Exchange next() {
+            LspRecording.Exchange exchange = exchanges.get(Math.min(next, exchanges.size() - 1));
+            next++;
+            return exchange;
+        }
+    }
+}
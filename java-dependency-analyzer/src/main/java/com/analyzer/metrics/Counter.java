@@ -0,0 +1,64 @@
+package com.analyzer.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * A value that only goes up, such as a number of messages or bytes sent.
+ */
+public class Counter extends MetricFamily<Counter.Child> {
+
+    Counter(String name, String help, String[] labelNames) {
+        super(name, help, labelNames);
+        initUnlabelled();
+    }
+
+    public void inc() {
+        unlabelled().inc();
+    }
+
+    public void inc(double amount) {
+        unlabelled().inc(amount);
+    }
+
+    @Override
+    String type() {
+        return "counter";
+    }
+
+    @Override
+    Child newChild() {
+        return new Child();
+    }
+
+    @Override
+    void writeSamples(Writer out, String labels, Child child) throws IOException {
+        sample(out, getName(), labels, child.get());
+    }
+
+    /**
+     * The counter for one combination of label values.
+     */
+    public static final class Child {
+        private final DoubleAdder value = new DoubleAdder();
+
+        public void inc() {
+            value.add(1);
+        }
+
+        /**
+         * @param amount the increment, which must not be negative
+         */
+        public void inc(double amount) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("Counters cannot decrease");
+            }
+            value.add(amount);
+        }
+
+        public double get() {
+            return value.sum();
+        }
+    }
+}
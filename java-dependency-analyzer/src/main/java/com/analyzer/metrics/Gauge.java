@@ -0,0 +1,63 @@
+package com.analyzer.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that goes up and down, either set directly or read from a supplier on each scrape.
+ */
+public class Gauge extends MetricFamily<Gauge.Child> {
+
+    Gauge(String name, String help, String[] labelNames) {
+        super(name, help, labelNames);
+        initUnlabelled();
+    }
+
+    public void set(double value) {
+        unlabelled().set(value);
+    }
+
+    public void setSupplier(DoubleSupplier supplier) {
+        unlabelled().setSupplier(supplier);
+    }
+
+    @Override
+    String type() {
+        return "gauge";
+    }
+
+    @Override
+    Child newChild() {
+        return new Child();
+    }
+
+    @Override
+    void writeSamples(Writer out, String labels, Child child) throws IOException {
+        sample(out, getName(), labels, child.get());
+    }
+
+    /**
+     * The gauge for one combination of label values.
+     */
+    public static final class Child {
+        private volatile double value;
+        private volatile DoubleSupplier supplier;
+
+        public void set(double value) {
+            this.value = value;
+        }
+
+        /**
+         * Read the value from the supplier whenever it is needed, instead of a set value.
+         */
+        public void setSupplier(DoubleSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        public double get() {
+            DoubleSupplier current = supplier;
+            return current != null ? current.getAsDouble() : value;
+        }
+    }
+}
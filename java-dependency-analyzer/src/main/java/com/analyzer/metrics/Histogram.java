@@ -0,0 +1,113 @@
+package com.analyzer.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of observed values, such as request latencies, as counts per bucket plus a
+ * sum and a count. Observing is lock-free: a binary search for the bucket and two adder updates.
+ */
+public class Histogram extends MetricFamily<Histogram.Child> {
+
+    /** Bucket bounds in seconds, from 100 µs to 5 minutes. */
+    public static final double[] SECONDS = {
+            0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    /** Bucket bounds in bytes, from 1 KiB to 1 GiB in steps of 4. */
+    public static final double[] BYTES = {
+            1 << 10, 1 << 12, 1 << 14, 1 << 16, 1 << 18, 1 << 20, 1 << 22, 1 << 24, 1 << 26, 1 << 28, 1 << 30};
+
+    private final double[] bounds;
+
+    Histogram(String name, String help, double[] bounds, String[] labelNames) {
+        super(name, help, labelNames);
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        initUnlabelled();
+    }
+
+    public void observe(double value) {
+        unlabelled().observe(value);
+    }
+
+    public void observeNanos(long nanos) {
+        unlabelled().observeNanos(nanos);
+    }
+
+    @Override
+    String type() {
+        return "histogram";
+    }
+
+    @Override
+    Child newChild() {
+        return new Child(bounds);
+    }
+
+    @Override
+    void writeSamples(Writer out, String labels, Child child) throws IOException {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += child.buckets[i].sum();
+            sample(out, getName() + "_bucket", separator + "le=\"" + formatBound(bounds[i]) + "\"", cumulative);
+        }
+        cumulative += child.buckets[bounds.length].sum();
+        sample(out, getName() + "_bucket", separator + "le=\"+Inf\"", cumulative);
+        sample(out, getName() + "_sum", labels, child.sum.sum());
+        sample(out, getName() + "_count", labels, cumulative);
+    }
+
+    /**
+     * Format a bucket bound in plain notation, e.g. {@code 0.00001} rather than {@code 1.0E-5}.
+     */
+    private static String formatBound(double bound) {
+        return BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * The histogram for one combination of label values.
+     */
+    public static final class Child {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Child(double[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            int bucket = Arrays.binarySearch(bounds, value);
+            buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+            sum.add(value);
+        }
+
+        /**
+         * Observe a duration in nanoseconds, as seconds.
+         */
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public double getSum() {
+            return sum.sum();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.analyzer.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named metric with a child per combination of label values. A family without labels has a
+ * single child, which the family's own methods update; it is written even before its first update.
+ *
+ * @param <C> the child type
+ */
+abstract class MetricFamily<C> {
+    private final String name;
+    private final String help;
+    private final String[] labelNames;
+    private final Map<List<String>, C> children = new ConcurrentHashMap<>();
+
+    MetricFamily(String name, String help, String[] labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = labelNames.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the child for the given label values, in the order of the label names.
+     */
+    public C labels(String... values) {
+        if (values.length != labelNames.length) {
+            throw new IllegalArgumentException(name + " has labels " + Arrays.toString(labelNames)
+                    + ", got " + values.length + " values");
+        }
+        return children.computeIfAbsent(List.of(values), key -> newChild());
+    }
+
+    /**
+     * Get the only child of a family without labels.
+     */
+    C unlabelled() {
+        return labels();
+    }
+
+    /**
+     * Create the child of a family without labels; called by subclass constructors once their
+     * own fields are set.
+     */
+    final void initUnlabelled() {
+        if (labelNames.length == 0) {
+            unlabelled();
+        }
+    }
+
+    abstract String type();
+
+    abstract C newChild();
+
+    /**
+     * Write the samples of one child; {@code labels} is the rendered label set without braces.
+     */
+    abstract void writeSamples(Writer out, String labels, C child) throws IOException;
+
+    void write(Writer out) throws IOException {
+        out.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+        out.write("# TYPE " + name + " " + type() + "\n");
+        for (Map.Entry<List<String>, C> entry : children.entrySet()) {
+            StringBuilder labels = new StringBuilder();
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    labels.append(',');
+                }
+                labels.append(labelNames[i]).append("=\"").append(escape(entry.getKey().get(i))).append('"');
+            }
+            writeSamples(out, labels.toString(), entry.getValue());
+        }
+    }
+
+    /**
+     * Write one sample line.
+     */
+    static void sample(Writer out, String name, String labels, double value) throws IOException {
+        out.write(name);
+        if (!labels.isEmpty()) {
+            out.write('{');
+            out.write(labels);
+            out.write('}');
+        }
+        out.write(' ');
+        out.write(format(value));
+        out.write('\n');
+    }
+
+    static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        } else if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,62 @@
+package com.analyzer.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * A set of metrics, written in the Prometheus text exposition format (version 0.0.4).
+ *
+ * Registering a metric is idempotent: asking again for a name returns the metric registered
+ * first, so classes can look up their metrics without coordinating who creates them.
+ */
+public class MetricsRegistry {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, MetricFamily<?>> metrics = new ConcurrentSkipListMap<>();
+
+    /**
+     * Get the registry the analyzer's own metrics are registered with.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(name, Counter.class, key -> new Counter(name, help, labelNames));
+    }
+
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return register(name, Gauge.class, key -> new Gauge(name, help, labelNames));
+    }
+
+    /**
+     * @param buckets the upper bounds of the buckets, without {@code +Inf}
+     */
+    public Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(name, Histogram.class, key -> new Histogram(name, help, buckets, labelNames));
+    }
+
+    private <T extends MetricFamily<?>> T register(String name, Class<T> type,
+                                                   Function<String, MetricFamily<?>> factory) {
+        MetricFamily<?> metric = metrics.computeIfAbsent(name, factory);
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + metric.type());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Write all metrics, sorted by name.
+     */
+    public void write(Writer out) throws IOException {
+        for (MetricFamily<?> metric : metrics.values()) {
+            metric.write(out);
+        }
+        out.flush();
+    }
+}
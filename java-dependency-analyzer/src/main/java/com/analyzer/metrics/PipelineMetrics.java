@@ -0,0 +1,54 @@
+package com.analyzer.metrics;
+
+/**
+ * The metrics of the analysis pipeline and the server, registered with
+ * {@link MetricsRegistry#getDefault()}.
+ */
+public final class PipelineMetrics {
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.getDefault();
+
+    /** Duration of the analysis phases: connect, graph_build and layout. */
+    public static final Histogram PHASE_SECONDS = REGISTRY.histogram("analyzer_pipeline_phase_seconds",
+            "Duration of an analysis phase", Histogram.SECONDS, "phase");
+
+    /** Latency of JDT LS requests, by LSP method. */
+    public static final Histogram LSP_REQUEST_SECONDS = REGISTRY.histogram("analyzer_lsp_request_seconds",
+            "Latency of JDT LS requests", Histogram.SECONDS, "method");
+
+    public static final Counter LSP_REQUEST_FAILURES = REGISTRY.counter("analyzer_lsp_request_failures_total",
+            "JDT LS requests that failed or were interrupted", "method");
+
+    public static final Histogram LAYOUT_ITERATION_SECONDS = REGISTRY.histogram(
+            "analyzer_layout_iteration_seconds", "Duration of one force-directed layout iteration",
+            new double[] {0.00001, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5});
+
+    /** Encoding of graph payloads for clients, by payload format. */
+    public static final Histogram SERIALIZATION_SECONDS = REGISTRY.histogram("analyzer_serialization_seconds",
+            "Duration of encoding a graph payload", Histogram.SECONDS, "format");
+
+    public static final Histogram SERIALIZED_BYTES = REGISTRY.histogram("analyzer_serialized_bytes",
+            "Size of encoded graph payloads", Histogram.BYTES, "format");
+
+    /** Time from queueing a WebSocket message to the socket finishing the write. */
+    public static final Histogram WEBSOCKET_SEND_SECONDS = REGISTRY.histogram("analyzer_websocket_send_seconds",
+            "Time from queueing a WebSocket message until it is written", Histogram.SECONDS);
+
+    public static final Counter WEBSOCKET_SENT_BYTES = REGISTRY.counter("analyzer_websocket_sent_bytes_total",
+            "Bytes written to WebSocket clients");
+
+    public static final Counter WEBSOCKET_SEND_FAILURES = REGISTRY.counter("analyzer_websocket_send_failures_total",
+            "WebSocket writes that failed");
+
+    public static final Gauge WEBSOCKET_SESSIONS = REGISTRY.gauge("analyzer_websocket_sessions",
+            "Connected WebSocket clients");
+
+    /** Classes and dependencies of each loaded workspace (0 while it is not loaded). */
+    public static final Gauge GRAPH_NODES = REGISTRY.gauge("analyzer_graph_nodes",
+            "Classes in the workspace graph", "workspace");
+
+    public static final Gauge GRAPH_EDGES = REGISTRY.gauge("analyzer_graph_edges",
+            "Dependencies in the workspace graph", "workspace");
+
+    private PipelineMetrics() {
+    }
+}
@@ -0,0 +1,459 @@
+package com.analyzer.server;
+
+import com.analyzer.jfr.WebSocketSendEvent;
+import com.analyzer.metrics.PipelineMetrics;
+import org.eclipse.jetty.websocket.api.ExtensionConfig;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Per-connection state of a WebSocket client: the workspace it views, its negotiated payload
+ * format, the graph version it was last sent, and its outbound message queue.
+ *
+ * Messages are written asynchronously, one at a time, so a slow client only delays itself.
+ * Queued messages with the same key replace each other, so a client that falls behind gets
+ * the latest graph state or viewport answer rather than every intermediate one. The queue is
+ * bounded; {@link #enqueue} reports when it is full and the caller decides what to do. Answers
+ * to requests (messages without a key) are never dropped, so a client always gets a reply to a
+ * request it made; a client that stops reading altogether is caught by {@link #isStalled}.
+ */
+class ClientSession {
+    private static final Logger logger = LoggerFactory.getLogger(ClientSession.class);
+
+    /** Key of messages that carry graph state: snapshots, summaries and deltas. */
+    static final String GRAPH_KEY = "graph";
+    /** Key of viewport answers; only the latest camera position matters. */
+    static final String VIEWPORT_KEY = "viewport";
+
+    private final Session session;
+    private final Workspace workspace;
+    private final PayloadFormat format;
+    private final boolean syncEnabled;
+    private final int maxQueuedMessages;
+    private final int fragmentSize;
+    private final boolean deflate;
+    private final Object updateLock = new Object();
+
+    // Guarded by this
+    private final Deque<Outbound> queue = new ArrayDeque<>();
+    private Outbound inFlight;
+    private boolean closed;
+    private String graphId;
+    private long version = -1;
+    private String dispatchedGraphId;
+    private long dispatchedVersion = -1;
+
+    // Metrics, guarded by this
+    private int maxQueueDepth;
+    private long sentMessages;
+    private long sentBytes;
+    private long compressedBytes;
+    private long coalescedMessages;
+    private long downgrades;
+    private long lastLatencyNanos;
+    private long maxLatencyNanos;
+    private long totalLatencyNanos;
+
+    ClientSession(Session session, Workspace workspace, PayloadFormat format, boolean syncEnabled,
+                  int maxQueuedMessages, int fragmentSize) {
+        this.session = session;
+        this.workspace = workspace;
+        this.format = format;
+        this.syncEnabled = syncEnabled;
+        this.maxQueuedMessages = Math.max(1, maxQueuedMessages);
+        this.fragmentSize = fragmentSize;
+        this.deflate = isDeflateNegotiated(session);
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Get the workspace whose graph the client is viewing.
+     */
+    Workspace getWorkspace() {
+        return workspace;
+    }
+
+    PayloadFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Whether the client speaks the delta-sync protocol. Such clients announce themselves with
+     * the {@code sync} query parameter and request their first snapshot with a sync message.
+     */
+    boolean isSyncEnabled() {
+        return syncEnabled;
+    }
+
+    /**
+     * Get the lock that callers hold while deciding which graph-state message to queue next,
+     * so that concurrent sync answers and published changes do not interleave. Writes never
+     * take it.
+     */
+    Object getUpdateLock() {
+        return updateLock;
+    }
+
+    /**
+     * Get the graph the client will hold once its queue is drained.
+     */
+    synchronized String getGraphId() {
+        return graphId;
+    }
+
+    /**
+     * Get the graph version the client will hold once its queue is drained.
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the version a new graph-state message for the given graph should start from.
+     * A queued graph-state message will be replaced by the new one, so this is the version of the
+     * last message handed to the socket; otherwise it is the version of the last queued one.
+     * Returns -1 if the client does not hold that graph.
+     */
+    synchronized long getDeltaBase(String forGraphId) {
+        boolean queued = false;
+        for (Outbound message : queue) {
+            queued |= GRAPH_KEY.equals(message.key);
+        }
+        String baseGraphId = queued ? dispatchedGraphId : graphId;
+        long baseVersion = queued ? dispatchedVersion : version;
+        return forGraphId.equals(baseGraphId) ? baseVersion : -1;
+    }
+
+    /**
+     * Queue a message for sending, replacing a queued message with the same key. A message
+     * without a key, i.e. the answer to a request, is queued even when the queue is full.
+     *
+     * @return false if the queue is full and the message was not queued
+     */
+    boolean enqueue(Outbound message) {
+        synchronized (this) {
+            if (closed) {
+                return true;
+            }
+            if (message.key != null) {
+                for (Iterator<Outbound> it = queue.iterator(); it.hasNext(); ) {
+                    if (message.key.equals(it.next().key)) {
+                        it.remove();
+                        coalescedMessages++;
+                    }
+                }
+                if (queue.size() >= maxQueuedMessages) {
+                    return false;
+                }
+            }
+            add(message);
+        }
+        pump();
+        return true;
+    }
+
+    /**
+     * Drop the queued graph-state messages and viewport answers, keeping the one in flight and
+     * the answers to requests, because the client fell too far behind. The given messages, e.g.
+     * a fresh snapshot, are then queued regardless of the bound.
+     */
+    void downgrade(Outbound... replacements) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            queue.removeIf(message -> message.key != null);
+            graphId = dispatchedGraphId;
+            version = dispatchedVersion;
+            downgrades++;
+            for (Outbound message : replacements) {
+                add(message);
+            }
+        }
+        pump();
+    }
+
+    // Called with the lock held
+    private void add(Outbound message) {
+        queue.add(message);
+        maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        if (message.graphId != null) {
+            graphId = message.graphId;
+            version = message.version;
+        }
+    }
+
+    /**
+     * Check whether the message in flight has been waiting on the socket longer than the given time.
+     */
+    synchronized boolean isStalled(long maxLagNanos) {
+        return inFlight != null && System.nanoTime() - inFlight.dispatchedAt > maxLagNanos;
+    }
+
+    /**
+     * Stop sending; called when the connection is closed.
+     */
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    synchronized SessionMetrics getMetrics() {
+        long inFlightNanos = inFlight != null ? System.nanoTime() - inFlight.dispatchedAt : 0;
+        return new SessionMetrics(toString(), format, syncEnabled, queue.size(), maxQueueDepth,
+                sentMessages, sentBytes, compressedBytes, coalescedMessages, downgrades,
+                lastLatencyNanos, maxLatencyNanos, sentMessages > 0 ? totalLatencyNanos / sentMessages : 0,
+                inFlightNanos);
+    }
+
+    /**
+     * Start sending the next queued message unless one is already being written.
+     */
+    private void pump() {
+        Outbound message;
+        synchronized (this) {
+            if (inFlight != null || closed || queue.isEmpty()) {
+                return;
+            }
+            message = queue.poll();
+            inFlight = message;
+            message.dispatchedAt = System.nanoTime();
+            if (message.graphId != null) {
+                dispatchedGraphId = message.graphId;
+                dispatchedVersion = message.version;
+            }
+        }
+        writeNextFragment(message);
+    }
+
+    /**
+     * Write the next frame of a message; the write callback continues with the following one.
+     * Runs without holding the lock, since Jetty may complete the write on another thread.
+     */
+    private void writeNextFragment(Outbound message) {
+        WriteCallback callback = new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                if (message.isComplete()) {
+                    completed(message);
+                    pump();
+                } else {
+                    writeNextFragment(message);
+                }
+            }
+
+            @Override
+            public void writeFailed(Throwable error) {
+                failed(message, error);
+            }
+        };
+        try {
+            message.writeFragment(session.getRemote(), fragmentSize, callback);
+        } catch (IOException | RuntimeException e) {
+            failed(message, e);
+        }
+    }
+
+    private void completed(Outbound message) {
+        long latency = System.nanoTime() - message.enqueuedAt;
+        long compressed = deflate ? message.deflatedSize() : message.size;
+        synchronized (this) {
+            inFlight = null;
+            sentMessages++;
+            sentBytes += message.size;
+            compressedBytes += compressed;
+            lastLatencyNanos = latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            totalLatencyNanos += latency;
+        }
+        PipelineMetrics.WEBSOCKET_SEND_SECONDS.observeNanos(latency);
+        PipelineMetrics.WEBSOCKET_SENT_BYTES.inc(message.size);
+        recordSend(message, latency, false);
+
+        if (message.description != null) {
+            logger.info("Sent {}: {} bytes raw, ~{} bytes compressed ({}%) in {} frame(s) to {} in {} ms "
+                            + "(permessage-deflate: {})",
+                    message.description, message.size, compressed,
+                    message.size == 0 ? 100 : compressed * 100 / message.size, message.frames, this,
+                    latency / 1_000_000, deflate);
+        }
+    }
+
+    private void failed(Outbound message, Throwable error) {
+        synchronized (this) {
+            inFlight = null;
+            closed = true;
+            queue.clear();
+        }
+        PipelineMetrics.WEBSOCKET_SEND_FAILURES.inc();
+        recordSend(message, System.nanoTime() - message.enqueuedAt, true);
+        logger.warn("Error sending {} to client {}: {}",
+                message.description != null ? message.description : "message", this, error.getMessage());
+    }
+
+    private void recordSend(Outbound message, long latency, boolean failed) {
+        WebSocketSendEvent event = new WebSocketSendEvent();
+        if (event.shouldCommit()) {
+            event.session = toString();
+            event.message = message.description;
+            event.bytes = message.size;
+            event.frames = message.frames;
+            event.latency = latency;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Check whether the permessage-deflate extension was negotiated for a session.
+     */
+    private static boolean isDeflateNegotiated(Session session) {
+        if (session.getUpgradeResponse() == null) {
+            return false;
+        }
+        for (ExtensionConfig extension : session.getUpgradeResponse().getExtensions()) {
+            if ("permessage-deflate".equals(extension.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(session.getRemoteAddress());
+    }
+
+    /**
+     * A message waiting to be sent, written as partial frames when larger than the fragment size.
+     */
+    static class Outbound {
+        private final String key;
+        private final String graphId;
+        private final long version;
+        private final String text;
+        private final byte[] bytes;
+        private final int size;
+        private final String description;
+        private final GraphPayloadCache.EncodedPayload payload;
+        private final long enqueuedAt = System.nanoTime();
+
+        // Write progress, only touched by the write chain of the owning session
+        private int offset;
+        private int frames;
+        private long dispatchedAt;
+
+        private Outbound(String key, String graphId, long version, String text, byte[] bytes, int size,
+                         String description, GraphPayloadCache.EncodedPayload payload) {
+            this.key = key;
+            this.graphId = graphId;
+            this.version = version;
+            this.text = text;
+            this.bytes = bytes;
+            this.size = size;
+            this.description = description;
+            this.payload = payload;
+        }
+
+        /**
+         * Create a text message. Messages that carry graph state pass the graph id and version the
+         * client holds once it is sent; others pass null. A non-null description logs the send.
+         */
+        static Outbound text(String key, String graphId, long version, String text, String description) {
+            return new Outbound(key, graphId, version, text, null, utf8Length(text), description, null);
+        }
+
+        /**
+         * Create a message for an encoded graph payload, as a binary or text frame depending on its format.
+         */
+        static Outbound payload(GraphPayloadCache.EncodedPayload payload) {
+            String description = payload.getFormat() + " graph";
+            if (payload.getFormat() == PayloadFormat.BINARY) {
+                return new Outbound(GRAPH_KEY, payload.getGraphId(), payload.getVersion(), null,
+                        payload.getBytes(), payload.size(), description, payload);
+            }
+            return new Outbound(GRAPH_KEY, payload.getGraphId(), payload.getVersion(), payload.getText(), null,
+                    payload.size(), description, payload);
+        }
+
+        /**
+         * Whether the message carries graph state, i.e. is a snapshot, summary or delta.
+         */
+        boolean carriesGraphState() {
+            return graphId != null;
+        }
+
+        /**
+         * Estimate the size of the message once compressed by permessage-deflate. Graph payloads
+         * share the estimate of their encoded payload; other messages are deflated here.
+         */
+        private long deflatedSize() {
+            if (payload != null) {
+                return payload.getDeflatedSize();
+            }
+            return GraphPayloadCache.deflatedSize(bytes != null ? bytes : text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Get the number of bytes a string takes in UTF-8, without encoding it.
+         */
+        private static int utf8Length(String text) {
+            int length = text.length();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= 0x800) {
+                    length += Character.isSurrogate(c) ? 1 : 2; // a surrogate pair is 4 bytes in all
+                } else if (c >= 0x80) {
+                    length++;
+                }
+            }
+            return length;
+        }
+
+        private boolean isComplete() {
+            return offset >= (bytes != null ? bytes.length : text.length());
+        }
+
+        private void writeFragment(RemoteEndpoint remote, int fragmentSize, WriteCallback callback)
+                throws IOException {
+            frames++;
+            if (bytes != null) {
+                if (fragmentSize <= 0 || bytes.length <= fragmentSize) {
+                    offset = bytes.length;
+                    remote.sendBytes(ByteBuffer.wrap(bytes), callback);
+                } else {
+                    int start = offset;
+                    int length = Math.min(fragmentSize, bytes.length - start);
+                    offset = start + length;
+                    remote.sendPartialBytes(ByteBuffer.wrap(bytes, start, length), offset == bytes.length, callback);
+                }
+            } else {
+                if (fragmentSize <= 0 || text.length() <= fragmentSize) {
+                    offset = text.length();
+                    remote.sendString(text, callback);
+                } else {
+                    int start = offset;
+                    int end = Math.min(start + fragmentSize, text.length());
+                    if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                        end--; // never split a surrogate pair across fragments
+                    }
+                    offset = end;
+                    remote.sendPartialString(text.substring(start, end), end == text.length(), callback);
+                }
+            }
+        }
+    }
+}
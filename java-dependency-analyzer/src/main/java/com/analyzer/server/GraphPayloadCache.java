@@ -0,0 +1,251 @@
+package com.analyzer.server;
+
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.jfr.SerializationEvent;
+import com.analyzer.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the encoded payloads of a published graph so that it is serialised once per
+ * format, no matter how many sessions it is sent to. Each workspace has its own cache.
+ *
+ * The cache holds one generation at a time, for one graph at one version. It is invalidated
+ * when a new graph is published and replaced when the published graph is mutated.
+ */
+public class GraphPayloadCache {
+    private static final Logger logger = LoggerFactory.getLogger(GraphPayloadCache.class);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Generation current;
+
+    /**
+     * Get the encoded payload of a graph, encoding it on the first request.
+     */
+    public EncodedPayload get(DependencyGraph graph, PayloadFormat format) {
+        long version = graph.getVersion();
+        Generation generation = current;
+        if (generation == null || !generation.matches(graph, version)) {
+            synchronized (this) {
+                generation = current;
+                if (generation == null || !generation.matches(graph, version)) {
+                    generation = new Generation(graph, version);
+                    current = generation;
+                }
+            }
+        }
+
+        boolean[] encoded = new boolean[1];
+        Generation target = generation;
+        EncodedPayload payload = target.payloads.computeIfAbsent(format, f -> {
+            encoded[0] = true;
+            return encode(graph, target.version, f);
+        });
+        (encoded[0] ? misses : hits).incrementAndGet();
+        return payload;
+    }
+
+    /**
+     * Drop all cached payloads. Called when a new graph is published.
+     */
+    public void invalidate() {
+        current = null;
+    }
+
+    /**
+     * Get the number of bytes held by the cached payloads, including gzip variants.
+     */
+    public long getCachedBytes() {
+        Generation generation = current;
+        if (generation == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (EncodedPayload payload : generation.payloads.values()) {
+            byte[] gzipped = payload.gzipped;
+            bytes += payload.bytes.length + (gzipped != null ? gzipped.length : 0);
+        }
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static EncodedPayload encode(DependencyGraph graph, long version, PayloadFormat format) {
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(1024, graph.getEdgeCount() * 64));
+        try {
+            if (format == PayloadFormat.BINARY) {
+                graph.writeBinary(buffer);
+            } else {
+                graph.writeJson(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream never throws
+        }
+        EncodedPayload payload = new EncodedPayload(format, graph.getId(), version, buffer.toByteArray());
+        long elapsed = System.nanoTime() - start;
+        String label = format.name().toLowerCase(Locale.ROOT);
+        PipelineMetrics.SERIALIZATION_SECONDS.labels(label).observeNanos(elapsed);
+        PipelineMetrics.SERIALIZED_BYTES.labels(label).observe(payload.size());
+        if (event.shouldCommit()) {
+            event.format = label;
+            event.graphId = graph.getId();
+            event.graphVersion = version;
+            event.nodeCount = graph.getNodeCount();
+            event.edgeCount = graph.getEdgeCount();
+            event.bytes = payload.size();
+            event.commit();
+        }
+        logger.info("Encoded {} payload: {} bytes in {} ms", format, payload.size(), elapsed / 1_000_000);
+        return payload;
+    }
+
+    /**
+     * Estimate the size of some bytes once compressed by permessage-deflate, i.e. the length of
+     * their raw deflate stream. Jetty compresses each frame with its own flush, so the size on
+     * the wire differs slightly.
+     */
+    static int deflatedSize(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] scratch = new byte[64 * 1024];
+            int size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(scratch);
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Encoded payloads of one published graph at one version.
+     */
+    private static class Generation {
+        private final DependencyGraph graph;
+        private final long version;
+        private final Map<PayloadFormat, EncodedPayload> payloads = new ConcurrentHashMap<>();
+
+        private Generation(DependencyGraph graph, long version) {
+            this.graph = graph;
+            this.version = version;
+        }
+
+        private boolean matches(DependencyGraph graph, long version) {
+            return this.graph == graph && this.version == version;
+        }
+    }
+
+    /**
+     * An immutable encoded graph payload, with its text form, gzip variant and deflated size
+     * derived lazily.
+     */
+    public static class EncodedPayload {
+        private final PayloadFormat format;
+        private final String graphId;
+        private final long version;
+        private final byte[] bytes;
+        private volatile String text;
+        private volatile byte[] gzipped;
+        private volatile int deflatedSize = -1;
+
+        private EncodedPayload(PayloadFormat format, String graphId, long version, byte[] bytes) {
+            this.format = format;
+            this.graphId = graphId;
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+        public PayloadFormat getFormat() {
+            return format;
+        }
+
+        public String getGraphId() {
+            return graphId;
+        }
+
+        /**
+         * Get the graph version the payload includes at least.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Get the raw encoded bytes. Callers must not modify the returned array.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int size() {
+            return bytes.length;
+        }
+
+        /**
+         * Get the payload as a string, for text frames. Only meaningful for JSON.
+         */
+        public String getText() {
+            String result = text;
+            if (result == null) {
+                result = new String(bytes, StandardCharsets.UTF_8);
+                text = result;
+            }
+            return result;
+        }
+
+        /**
+         * Get the gzip-compressed payload. Callers must not modify the returned array.
+         */
+        public byte[] getGzipped() {
+            byte[] result = gzipped;
+            if (result == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(1024, bytes.length / 4));
+                try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 64 * 1024)) {
+                    gzip.write(bytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                result = buffer.toByteArray();
+                gzipped = result;
+            }
+            return result;
+        }
+
+        /**
+         * Get the estimated size of the payload once compressed by permessage-deflate, computed
+         * once and shared by all sessions it is sent to.
+         */
+        public int getDeflatedSize() {
+            int result = deflatedSize;
+            if (result < 0) {
+                result = GraphPayloadCache.deflatedSize(bytes);
+                deflatedSize = result;
+            }
+            return result;
+        }
+    }
+}
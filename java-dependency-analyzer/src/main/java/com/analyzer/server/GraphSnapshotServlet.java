@@ -0,0 +1,209 @@
+package com.analyzer.server;
+
+import com.analyzer.graph.DependencyGraph;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Serves the current graph snapshot over plain HTTP, for browsers, caches and scripts:
+ * {@code /api/graph} for the default workspace, {@code /api/graph/{id}} for the others.
+ * A workspace that is not in memory is loaded in the background and answered with 503 until ready.
+ *
+ * The body is the same encoded payload the WebSocket clients get, taken from the shared
+ * {@link GraphPayloadCache}: JSON by default, or the binary format with {@code ?format=binary}
+ * or {@code Accept: application/octet-stream}. Responses carry a strong ETag built from the graph
+ * id, version, format and content encoding, so unchanged graphs are answered with
+ * 304 Not Modified. Gzip bodies are compressed once per graph version and reused. Single byte
+ * ranges are supported (with {@code If-Range}); multi-range requests get the full body.
+ */
+public class GraphSnapshotServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LoggerFactory.getLogger(GraphSnapshotServlet.class);
+
+    private static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+    private static final String JSON_CONTENT_TYPE = "application/json;charset=utf-8";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        WorkspaceRegistry workspaces = GraphWebSocketHandler.getWorkspaceRegistry();
+        String pathInfo = request.getPathInfo();
+        Workspace workspace = pathInfo == null || pathInfo.equals("/")
+                ? workspaces.getDefault() : workspaces.get(pathInfo.substring(1));
+        if (workspace == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown workspace");
+            return;
+        }
+
+        DependencyGraph graph = workspace.getGraph();
+        if (graph == null && !workspace.isPinned()) {
+            workspaces.acquire(workspace);
+            graph = workspace.getGraph();
+        }
+        if (graph == null) {
+            response.setHeader("Retry-After", "5");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The graph has not been analysed yet");
+            return;
+        }
+
+        PayloadFormat format = selectFormat(request);
+        boolean gzip = acceptsGzip(request.getHeader("Accept-Encoding"));
+        GraphPayloadCache.EncodedPayload payload = workspace.getPayloadCache().get(graph, format);
+        byte[] body = gzip ? payload.getGzipped() : payload.getBytes();
+        String etag = "\"" + payload.getGraphId() + "-" + payload.getVersion() + "-"
+                + format.name().toLowerCase(Locale.ROOT) + (gzip ? "-gzip" : "") + "\"";
+
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept, Accept-Encoding");
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (matchesAny(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            logger.debug("Graph snapshot {} not modified for {}", etag, request.getRemoteAddr());
+            return;
+        }
+
+        response.setContentType(format == PayloadFormat.BINARY ? BINARY_CONTENT_TYPE : JSON_CONTENT_TYPE);
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] bounds = parseRange(range, body.length);
+            if (bounds == null) {
+                // Malformed or multi-range: fall through to the full body
+            } else if (bounds.length == 0) {
+                response.setHeader("Content-Range", "bytes */" + body.length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            } else {
+                int start = (int) bounds[0];
+                int length = (int) (bounds[1] - bounds[0] + 1);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + body.length);
+                response.setContentLength(length);
+                response.getOutputStream().write(body, start, length);
+                return;
+            }
+        }
+
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        logger.info("Served {} graph snapshot {} of workspace {} to {} ({} bytes{})", format, etag, workspace,
+                request.getRemoteAddr(), body.length, gzip ? ", gzip" : "");
+    }
+
+    /**
+     * Pick the payload format from the {@code format} parameter, then the Accept header.
+     */
+    private static PayloadFormat selectFormat(HttpServletRequest request) {
+        String format = request.getParameter("format");
+        if (format != null) {
+            return "binary".equalsIgnoreCase(format) ? PayloadFormat.BINARY : PayloadFormat.JSON;
+        }
+        String accept = request.getHeader("Accept");
+        if (accept != null && accept.contains(BINARY_CONTENT_TYPE) && !accept.contains("application/json")) {
+            return PayloadFormat.BINARY;
+        }
+        return PayloadFormat.JSON;
+    }
+
+    /**
+     * Check whether an Accept-Encoding header allows gzip (present without {@code q=0}).
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("*")) {
+                continue;
+            }
+            double quality = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (quality > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check an If-None-Match header against an entity tag, using weak comparison as RFC 9110 requires.
+     */
+    static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a single byte range against a body length.
+     *
+     * @return {first, last} inclusive, an empty array if the range cannot be satisfied,
+     *         or null if the header is malformed or asks for several ranges
+     */
+    static long[] parseRange(String header, long length) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = value.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start >= length || end < start) {
+                return start >= length ? new long[0] : null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
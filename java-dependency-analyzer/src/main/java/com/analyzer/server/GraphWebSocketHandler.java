@@ -1,65 +1,300 @@
 package com.analyzer.server;
 
 import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.GraphChange;
+import com.analyzer.graph.PackageGraph;
+import com.analyzer.graph.diff.GraphDiff;
+import com.analyzer.graph.export.JsonGraphWriter;
+import com.analyzer.graph.index.ViewportIndex;
+import com.analyzer.graph.index.ViewportQuery;
+import com.analyzer.graph.index.ViewportResult;
+import com.analyzer.graph.query.GraphQuery;
+import com.analyzer.graph.query.GraphQueryEngine;
+import com.analyzer.graph.query.QueryResult;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.annotations.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Set;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * WebSocket handler for streaming graph data to connected clients.
+ * Clients that negotiate the {@code graph-binary.v1} subprotocol receive binary frames,
+ * all others receive JSON text frames.
+ *
+ * Workspaces: {@code /ws/graph} serves the default workspace and {@code /ws/graph/{id}} the
+ * workspace with that id (see {@link WorkspaceRegistry}). Each workspace has its own graph,
+ * payload cache and viewport index. A workspace that is not in memory is loaded when its first
+ * client connects, and its clients receive the graph once it is ready.
+ *
+ * Delta sync: a client that connects with the {@code sync} query parameter sends
+ * {@code {"type":"sync","graphId":...,"version":N}} with the last version it saw (or -1).
+ * The server answers with a delta message holding only the missing changes, or with a
+ * full snapshot if the graph was replaced or the changes were trimmed from the log.
+ * Later mutations are pushed with {@link #publishChanges()}.
+ *
+ * Viewport queries: graphs with more nodes than the summary threshold are not sent whole.
+ * Clients get a {@code graph-summary} with the layout bounds instead, and then ask for
+ * what their camera shows with {@code {"type":"viewport","requestId",
+ * "minX","minY","minZ","maxX","maxY","maxZ","zoom","page","pageSize"}}.
+ * Omitted bounds are unbounded. The answer is one page of visible nodes and edges,
+ * collapsed into packages when zoomed out (see {@link ViewportIndex}).
+ *
+ * Graph queries: {@code {"type":"query","requestId","query":...}} runs a query on the server
+ * (see {@link GraphQueryEngine}) and answers with a {@code query-result} holding only the
+ * matching nodes and edges, or a {@code query-error}. Supported queries are
+ * {@code neighbours} ("node", "direction": "out", "in" or "both"), {@code dependencies} and
+ * {@code dependents} ("node", "depth", 0 for unlimited), {@code path} ("from", "to", "direction")
+ * and {@code package} ("prefix"). Any query may lower the result cap with "limit".
+ *
+ * Package graph: {@code {"type":"packages","requestId","depth"}} answers with a
+ * {@code package-graph} of class counts per package and dependency counts per package pair
+ * (see {@link PackageGraph}). The graph keeps it up to date as it changes, so asking again is
+ * cheap; it carries no classes, edges or positions.
+ *
+ * Graph diff: {@code {"type":"diff","requestId","base"}} compares the graph of the workspace
+ * with id "base" (e.g. the main branch) to the client's graph (e.g. a pull request) and answers
+ * with a {@code graph-diff} of added, removed and moved classes and dependencies (see
+ * {@link GraphDiff}), which the viewer shows as an overlay, or a {@code diff-error}.
+ *
+ * Sending never blocks the caller: each client has a bounded queue that is written
+ * asynchronously (see {@link ClientSession}). A client whose queue overflows has its pending
+ * updates replaced by one fresh snapshot, while the answers to its requests are kept; a client
+ * whose socket accepts nothing for longer than the maximum lag is disconnected.
  */
 @WebSocket
 public class GraphWebSocketHandler {
     private static final Logger logger = LoggerFactory.getLogger(GraphWebSocketHandler.class);
 
-    private static final Set<Session> sessions = ConcurrentHashMap.newKeySet();
-    private static DependencyGraph currentGraph;
+    private static final Map<Session, ClientSession> sessions = new ConcurrentHashMap<>();
+    private static final DependencyGraph EMPTY_GRAPH = new DependencyGraph();
+    private static final String PATH_PREFIX = "/ws/graph";
+    private static volatile WorkspaceRegistry workspaces = new WorkspaceRegistry(null, Long.MAX_VALUE, null, 1);
+    private static volatile int fragmentSize = 256 * 1024;
+    private static volatile int summaryThreshold = 20_000;
+    private static volatile int defaultPageSize = 1000;
+    private static volatile int maxPageSize = 5000;
+    private static volatile double aggregateBelowZoom = 0.5;
+    private static volatile int maxDetailNodes = 5000;
+    private static volatile int defaultPackageDepth = 0;
+    private static volatile int maxPackageDepth = 8;
+    private static volatile int sendQueueSize = 16;
+    private static volatile long maxSendLagNanos = TimeUnit.SECONDS.toNanos(30);
+    private static volatile GraphQueryEngine queryEngine = new GraphQueryEngine(2000, 10_000, 2, 64);
 
     /**
-     * Set the graph to be sent to clients.
+     * Set the graph of the default workspace and send it to its clients.
      */
     public static void setGraph(DependencyGraph graph) {
-        currentGraph = graph;
-        broadcastGraph();
+        Workspace workspace = workspaces.getDefault();
+        workspaces.publish(workspace, graph);
+        broadcastGraph(workspace);
     }
 
     /**
-     * Get the current graph.
+     * Set the registry of served workspaces. Must be called before clients connect.
+     */
+    public static void setWorkspaceRegistry(WorkspaceRegistry registry) {
+        workspaces = registry;
+    }
+
+    public static WorkspaceRegistry getWorkspaceRegistry() {
+        return workspaces;
+    }
+
+    /**
+     * Set the size above which payloads are sent as a sequence of partial frames.
+     * A value of 0 or less sends every payload as a single frame.
+     */
+    public static void setFragmentSize(int size) {
+        fragmentSize = size;
+    }
+
+    /**
+     * Configure the per-client send queues.
+     *
+     * @param maxQueuedMessages messages a client may have waiting before its updates are replaced by a snapshot
+     * @param maxLagMillis      time a message may wait on the socket before the client is disconnected
+     */
+    public static void configureSendQueue(int maxQueuedMessages, long maxLagMillis) {
+        sendQueueSize = maxQueuedMessages;
+        maxSendLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+    }
+
+    /**
+     * Configure viewport queries.
+     *
+     * @param summaryNodeThreshold graphs with more nodes are sent as a summary, to be explored by viewport
+     * @param pageSize             page size for viewport queries that do not ask for one
+     * @param pageSizeLimit        largest page size a client may ask for
+     * @param aggregateZoom        collapse classes into packages below this zoom
+     * @param detailNodeLimit      collapse classes into packages when more are visible
+     */
+    public static void configureViewport(int summaryNodeThreshold, int pageSize, int pageSizeLimit,
+                                         double aggregateZoom, int detailNodeLimit) {
+        summaryThreshold = summaryNodeThreshold;
+        defaultPageSize = pageSize;
+        maxPageSize = pageSizeLimit;
+        aggregateBelowZoom = aggregateZoom;
+        maxDetailNodes = detailNodeLimit;
+    }
+
+    /**
+     * Configure package graph requests.
+     *
+     * @param defaultDepth package depth for requests that do not ask for one (0 for full package names)
+     * @param depthLimit   largest depth a client may ask for; deeper requests are cut to it
+     */
+    public static void configurePackages(int defaultDepth, int depthLimit) {
+        defaultPackageDepth = defaultDepth;
+        maxPackageDepth = depthLimit;
+    }
+
+    /**
+     * Configure the graph query engine, replacing the current one. Queries already running finish
+     * on the old engine.
+     *
+     * @param timeoutMillis time limit per query
+     * @param maxNodes      maximum number of nodes in a query result
+     * @param threads       number of threads running queries
+     * @param maxPending    queries that may wait for a thread before new ones are rejected
+     * @param maxReachabilityBitsetBytes memory a graph's reachability index may use for bitsets
+     */
+    public static void configureQueries(long timeoutMillis, int maxNodes, int threads, int maxPending,
+                                        long maxReachabilityBitsetBytes) {
+        GraphQueryEngine previous = queryEngine;
+        queryEngine = new GraphQueryEngine(timeoutMillis, maxNodes, threads, maxPending, maxReachabilityBitsetBytes);
+        previous.shutdown();
+    }
+
+    /**
+     * Get the cache of encoded payloads of the default workspace, e.g. to read its hit and miss counters.
+     */
+    public static GraphPayloadCache getPayloadCache() {
+        return workspaces.getDefault().getPayloadCache();
+    }
+
+    /**
+     * Get the graph of the default workspace.
      */
     public static DependencyGraph getCurrentGraph() {
-        return currentGraph;
+        return workspaces.getDefault().getGraph();
     }
 
     @OnWebSocketConnect
     public void onConnect(Session session) {
-        sessions.add(session);
-        logger.info("WebSocket client connected: {} (total: {})",
-                session.getRemoteAddress(), sessions.size());
+        PayloadFormat format = PayloadFormat.fromSubProtocol(session.getUpgradeResponse().getAcceptedSubProtocol());
+        boolean syncEnabled = session.getUpgradeRequest().getParameterMap().containsKey("sync");
+        String path = session.getUpgradeRequest().getRequestURI().getPath();
+        Workspace workspace = workspaceFor(path);
+        if (workspace == null) {
+            logger.warn("Rejecting client {}: no workspace at {}", session.getRemoteAddress(), path);
+            session.close(StatusCode.POLICY_VIOLATION, "Unknown workspace");
+            return;
+        }
+
+        ClientSession client = new ClientSession(session, workspace, format != null ? format : PayloadFormat.JSON,
+                syncEnabled, sendQueueSize, fragmentSize);
+        workspaces.attach(workspace);
+        sessions.put(session, client);
+        logger.info("WebSocket client connected: {} (workspace: {}, format: {}, sync: {}, total: {})",
+                session.getRemoteAddress(), workspace, client.getFormat(), syncEnabled, sessions.size());
+
+        if (!workspace.isPinned()) {
+            CompletableFuture<DependencyGraph> loading = workspaces.acquire(workspace);
+            if (!workspace.isLoaded()) {
+                // The client gets the graph once it is loaded
+                logger.info("Loading workspace {} for client {}", workspace, session.getRemoteAddress());
+                loading.whenComplete((graph, error) -> workspaceLoaded(client, error));
+                return;
+            }
+        }
+
+        if (syncEnabled) {
+            // The client tells us which version it already has with its sync message
+            return;
+        }
 
         // Send current graph to newly connected client
         // Always send, even if empty, so frontend knows connection is established
-        if (currentGraph != null) {
-            sendGraphToSession(session, currentGraph);
-        } else {
+        if (!workspace.isLoaded()) {
             // Send empty graph so frontend can hide loading screen
             logger.info("No graph data available yet, sending empty graph to client");
-            DependencyGraph emptyGraph = new DependencyGraph();
-            sendGraphToSession(session, emptyGraph);
         }
+        sendGraphToSession(client, publishedGraph(client));
     }
 
     @OnWebSocketClose
     public void onClose(Session session, int statusCode, String reason) {
-        sessions.remove(session);
+        ClientSession client = sessions.get(session);
+        if (client != null) {
+            removeClient(client);
+            logger.info("Send statistics of {}", client.getMetrics());
+        }
         logger.info("WebSocket client disconnected: {} - {} (total: {})",
                 session.getRemoteAddress(), reason, sessions.size());
     }
 
+    /**
+     * Get the workspace a WebSocket path refers to: {@code /ws/graph} for the default workspace,
+     * {@code /ws/graph/{id}} for the others. Returns null if there is no such workspace.
+     */
+    private static Workspace workspaceFor(String path) {
+        if (path == null || path.equals(PATH_PREFIX) || path.equals(PATH_PREFIX + "/")) {
+            return workspaces.getDefault();
+        }
+        if (!path.startsWith(PATH_PREFIX + "/")) {
+            return null;
+        }
+        return workspaces.get(path.substring(PATH_PREFIX.length() + 1));
+    }
+
+    /**
+     * Send a client the workspace it waited for once it finished loading, or disconnect it if
+     * loading failed. Each waiting client registers its own callback, so this serves only that client.
+     */
+    private static void workspaceLoaded(ClientSession client, Throwable error) {
+        if (sessions.get(client.getSession()) != client) {
+            return; // disconnected while the workspace was loading
+        }
+        if (error != null) {
+            removeClient(client);
+            client.getSession().close(StatusCode.SERVER_ERROR, "Workspace could not be loaded");
+            return;
+        }
+        synchronized (client.getUpdateLock()) {
+            sendGraphToSession(client, publishedGraph(client));
+        }
+    }
+
+    /**
+     * Forget a client: stop its sends and release its hold on its workspace.
+     */
+    private static void removeClient(ClientSession client) {
+        if (sessions.remove(client.getSession()) != null) {
+            client.close();
+            workspaces.detach(client.getWorkspace());
+        }
+    }
+
     @OnWebSocketError
     public void onError(Session session, Throwable error) {
         if (error != null) {
@@ -75,47 +310,503 @@ public class GraphWebSocketHandler {
     @OnWebSocketMessage
     public void onMessage(Session session, String message) {
         logger.debug("Received message from {}: {}", session.getRemoteAddress(), message);
-        // For now, we just log received messages
-        // Future: could handle commands like "refresh" or "filter"
-    }
-
-    /**
-     * Send graph data to a specific session.
-     */
-    private static void sendGraphToSession(Session session, DependencyGraph graph) {
-        if (session.isOpen()) {
-            try {
-                String json = graph.toJson();
-                logger.info("Sending graph data to client: {} ({} nodes, {} edges, {} bytes)",
-                        session.getRemoteAddress(), graph.getNodeCount(), graph.getEdgeCount(), json.length());
-                session.getRemote().sendString(json);
-                logger.info("Successfully sent graph data to client: {}", session.getRemoteAddress());
-            } catch (IOException e) {
-                logger.error("Error sending graph to client {}: {}",
-                        session.getRemoteAddress(), e.getMessage(), e);
-            } catch (Exception e) {
-                logger.error("Unexpected error sending graph to client {}: {}",
-                        session.getRemoteAddress(), e.getMessage(), e);
-            }
+
+        ClientSession client = sessions.get(session);
+        if (client == null) {
+            return;
+        }
+
+        JsonObject command;
+        try {
+            command = JsonParser.parseString(message).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            logger.warn("Ignoring malformed message from {}: {}", session.getRemoteAddress(), e.getMessage());
+            return;
+        }
+
+        String type = string(command, "type");
+        if ("sync".equals(type)) {
+            handleSync(client, command);
+        } else if ("viewport".equals(type)) {
+            handleViewport(client, command);
+        } else if ("query".equals(type)) {
+            handleQuery(client, command);
+        } else if ("packages".equals(type)) {
+            handlePackages(client, command);
+        } else if ("diff".equals(type)) {
+            handleDiff(client, command);
+        } else {
+            logger.debug("Ignoring unknown message type '{}' from {}", type, session.getRemoteAddress());
+        }
+    }
+
+    /**
+     * Answer a sync request with the missing changes, or a full snapshot if they are not available.
+     */
+    private static void handleSync(ClientSession client, JsonObject command) {
+        if (!client.getWorkspace().isLoaded() && !client.getWorkspace().isPinned()) {
+            logger.debug("Client {} will get workspace {} once it is loaded", client, client.getWorkspace());
+            return;
+        }
+        DependencyGraph graph = publishedGraph(client);
+        // A malformed graph id or version is treated as none, which gets the client a full snapshot
+        String graphId = string(command, "graphId");
+        long version = (long) number(command, "version", -1);
+
+        List<GraphChange> changes = null;
+        if (graph.getId().equals(graphId) && version >= 0) {
+            changes = graph.getChangesSince(version);
+        }
+
+        synchronized (client.getUpdateLock()) {
+            answerSync(client, graph, graphId, version, changes);
+        }
+    }
+
+    private static void answerSync(ClientSession client, DependencyGraph graph, String graphId, long version,
+                                   List<GraphChange> changes) {
+        if (changes == null) {
+            logger.info("Client {} needs a full snapshot (had graph {} version {})", client, graphId, version);
+            sendGraphToSession(client, graph);
         } else {
+            logger.info("Client {} resumes from version {} with {} changes", client, version, changes.size());
+            sendDelta(client, graph, version, changes, null);
+        }
+    }
+
+    /**
+     * Answer a viewport query with one page of the visible part of the graph.
+     */
+    private static void handleViewport(ClientSession client, JsonObject command) {
+        DependencyGraph graph = publishedGraph(client);
+        int pageSize = (int) number(command, "pageSize", defaultPageSize);
+        ViewportQuery query = new ViewportQuery(
+                number(command, "minX", Double.NEGATIVE_INFINITY),
+                number(command, "minY", Double.NEGATIVE_INFINITY),
+                number(command, "minZ", Double.NEGATIVE_INFINITY),
+                number(command, "maxX", Double.POSITIVE_INFINITY),
+                number(command, "maxY", Double.POSITIVE_INFINITY),
+                number(command, "maxZ", Double.POSITIVE_INFINITY),
+                number(command, "zoom", 1.0),
+                Math.max(0, (int) number(command, "page", 0)),
+                Math.max(1, Math.min(maxPageSize, pageSize)));
+        String requestId = string(command, "requestId");
+
+        long start = System.nanoTime();
+        ViewportResult result = client.getWorkspace().getViewportIndex(graph).query(query, aggregateBelowZoom, maxDetailNodes);
+        StringWriter writer = new StringWriter();
+        try {
+            new JsonGraphWriter().writeViewport(result, requestId, writer);
+            String json = writer.toString();
+            send(client, ClientSession.Outbound.text(ClientSession.VIEWPORT_KEY, null, -1, json, null));
+            logger.debug("Answered {} for {}: {} {} nodes, {} edges, page {}/{} ({} bytes) in {} us",
+                    query, client, result.getNodes().size(), result.isAggregated() ? "package" : "class",
+                    result.getEdges().size(), result.getPage() + 1, result.getPageCount(), json.length(),
+                    (System.nanoTime() - start) / 1000);
+        } catch (IOException e) {
+            logger.error("Error sending viewport to client {}: {}", client, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Answer a package graph request with the package-level aggregate of the client's graph.
+     */
+    private static void handlePackages(ClientSession client, JsonObject command) {
+        DependencyGraph graph = publishedGraph(client);
+        int depth = Math.max(0, Math.min(maxPackageDepth, (int) number(command, "depth", defaultPackageDepth)));
+        String requestId = string(command, "requestId");
+
+        long start = System.nanoTime();
+        PackageGraph.Snapshot packages = graph.getPackageGraph(depth).snapshot();
+        StringWriter writer = new StringWriter();
+        try {
+            new JsonGraphWriter().writePackageGraph(packages, graph.getId(), requestId, writer);
+            String json = writer.toString();
+            send(client, ClientSession.Outbound.text(null, null, -1, json, null));
+            logger.debug("Answered package graph at depth {} for {}: {} packages, {} edges ({} bytes) in {} us",
+                    depth, client, packages.getPackages().size(), packages.getEdges().size(), json.length(),
+                    (System.nanoTime() - start) / 1000);
+        } catch (IOException e) {
+            logger.error("Error sending package graph to client {}: {}", client, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Answer a diff request with the changes from another workspace's graph to the client's,
+     * loading the other workspace first if needed. The diff runs on the query engine, under its
+     * time limit and backlog bound.
+     */
+    private static void handleDiff(ClientSession client, JsonObject command) {
+        String requestId = string(command, "requestId");
+        String baseId = string(command, "base");
+        Workspace base = baseId != null ? workspaces.get(baseId) : null;
+        if (base == null) {
+            sendRequestError(client, "diff-error", requestId, "Unknown workspace '" + baseId + "'");
+            return;
+        }
+        DependencyGraph graph = publishedGraph(client);
+        GraphQueryEngine engine = queryEngine;
+        workspaces.acquire(base).whenComplete((baseGraph, error) -> {
+            if (error != null) {
+                sendRequestError(client, "diff-error", requestId, "Workspace '" + baseId + "' could not be loaded");
+                return;
+            }
+            engine.diff(baseGraph, graph).whenComplete((diff, diffError) -> {
+                if (diffError != null) {
+                    Throwable cause = diffError instanceof CompletionException && diffError.getCause() != null
+                            ? diffError.getCause() : diffError;
+                    if (cause instanceof RejectedExecutionException) {
+                        sendRequestError(client, "diff-error", requestId, "Server busy, too many queries pending");
+                    } else if (cause instanceof TimeoutException) {
+                        sendRequestError(client, "diff-error", requestId, "Diff exceeded the time limit");
+                    } else {
+                        logger.error("Diff against workspace {} for client {} failed: {}",
+                                base, client, cause.getMessage(), cause);
+                        sendRequestError(client, "diff-error", requestId, "Diff failed");
+                    }
+                    return;
+                }
+                sendDiff(client, requestId, base, diff);
+            });
+        });
+    }
+
+    private static void sendDiff(ClientSession client, String requestId, Workspace base, GraphDiff diff) {
+        StringWriter writer = new StringWriter();
+        try {
+            new JsonGraphWriter().writeDiff(diff, requestId, writer);
+            String json = writer.toString();
+            send(client, ClientSession.Outbound.text(null, null, -1, json, null));
+            logger.debug("Answered diff against workspace {} for {}: {} ({} bytes) in {} us",
+                    base, client, diff, json.length(), diff.getElapsedNanos() / 1000);
+        } catch (IOException e) {
+            logger.error("Error sending diff to client {}: {}", client, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run a graph query in the background and send the client its result when it completes.
+     */
+    private static void handleQuery(ClientSession client, JsonObject command) {
+        String requestId = string(command, "requestId");
+        GraphQuery query;
+        try {
+            query = parseQuery(command);
+        } catch (IllegalArgumentException e) {
+            sendQueryError(client, requestId, e.getMessage());
+            return;
+        }
+
+        queryEngine.submit(publishedGraph(client), query, (int) number(command, "limit", 0))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (cause instanceof RejectedExecutionException) {
+                            sendQueryError(client, requestId, "Server busy, too many queries pending");
+                        } else if (cause instanceof IllegalArgumentException) {
+                            sendQueryError(client, requestId, cause.getMessage());
+                        } else {
+                            logger.error("Query {} from client {} failed: {}", query, client, cause.getMessage(), cause);
+                            sendQueryError(client, requestId, "Query failed");
+                        }
+                        return;
+                    }
+                    sendQueryResult(client, requestId, result);
+                });
+    }
+
+    /**
+     * Build a query from a command message.
+     *
+     * @throws IllegalArgumentException if the query type or direction is unknown
+     */
+    private static GraphQuery parseQuery(JsonObject command) {
+        String name = string(command, "query");
+        GraphQuery.Type type = name != null ? GraphQuery.Type.fromWireName(name) : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown query '" + name + "'");
+        }
+        int depth = (int) number(command, "depth", 0);
+        switch (type) {
+            case NEIGHBOURS:
+                return GraphQuery.neighbours(string(command, "node"), direction(command, GraphQuery.Direction.BOTH));
+            case DEPENDENCIES:
+                return GraphQuery.dependencies(string(command, "node"), depth);
+            case DEPENDENTS:
+                return GraphQuery.dependents(string(command, "node"), depth);
+            case PATH:
+                return GraphQuery.path(string(command, "from"), string(command, "to"),
+                        direction(command, GraphQuery.Direction.OUT));
+            case REACHES:
+                return GraphQuery.reaches(string(command, "from"), string(command, "to"));
+            default:
+                return GraphQuery.packageSubgraph(string(command, "prefix"));
+        }
+    }
+
+    private static GraphQuery.Direction direction(JsonObject command, GraphQuery.Direction defaultValue) {
+        String direction = string(command, "direction");
+        if (direction == null) {
+            return defaultValue;
+        }
+        try {
+            return GraphQuery.Direction.valueOf(direction.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown direction '" + direction + "'");
+        }
+    }
+
+    private static void sendQueryResult(ClientSession client, String requestId, QueryResult result) {
+        StringWriter writer = new StringWriter();
+        try {
+            new JsonGraphWriter().writeQueryResult(result, requestId, writer);
+            String json = writer.toString();
+            send(client, ClientSession.Outbound.text(null, null, -1, json, null));
+            logger.debug("Answered {} for {}: {} nodes, {} edges ({} bytes) in {} us{}", result.getQuery(), client,
+                    result.getNodes().size(), result.getEdges().size(), json.length(),
+                    result.getElapsedNanos() / 1000,
+                    result.isTruncated() ? ", truncated by " + result.getTruncatedReason() : "");
+        } catch (IOException e) {
+            logger.error("Error sending query result to client {}: {}", client, e.getMessage(), e);
+        }
+    }
+
+    private static void sendQueryError(ClientSession client, String requestId, String message) {
+        sendRequestError(client, "query-error", requestId, message);
+    }
+
+    /**
+     * Tell a client that one of its requests could not be answered.
+     */
+    private static void sendRequestError(ClientSession client, String type, String requestId, String message) {
+        StringWriter writer = new StringWriter();
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("type").value(type);
+            json.name("requestId").value(requestId);
+            json.name("message").value(message);
+            json.endObject();
+            json.flush();
+            send(client, ClientSession.Outbound.text(null, null, -1, writer.toString(), null));
+            logger.debug("Rejected request {} from client {} ({}): {}", requestId, client, type, message);
+        } catch (IOException e) {
+            logger.error("Error sending {} to client {}: {}", type, client, e.getMessage(), e);
+        }
+    }
+
+    private static String string(JsonObject command, String name) {
+        if (!command.has(name) || command.get(name).isJsonNull()) {
+            return null;
+        }
+        try {
+            return command.get(name).getAsString();
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static double number(JsonObject command, String name, double defaultValue) {
+        if (!command.has(name) || command.get(name).isJsonNull()) {
+            return defaultValue;
+        }
+        try {
+            return command.get(name).getAsDouble();
+        } catch (NumberFormatException | UnsupportedOperationException | IllegalStateException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Push changes made to the published graphs since the last send to all connected clients.
+     * Sync clients receive deltas; clients that cannot apply deltas, or are too far behind,
+     * receive a full snapshot.
+     */
+    public static void publishChanges() {
+        // Clients are usually at the same version, so encode each distinct delta once
+        Map<String, String> encodedDeltas = new HashMap<>();
+        for (ClientSession client : sessions.values()) {
+            DependencyGraph graph = client.getWorkspace().getGraph();
+            if (graph == null) {
+                continue;
+            }
+            // Decide and send under the client lock so a concurrent sync answer is not duplicated
+            synchronized (client.getUpdateLock()) {
+                if (client.getVersion() < 0 && client.isSyncEnabled()) {
+                    continue; // has not synced yet, will get everything with its sync answer
+                }
+                if (client.getVersion() == graph.getVersion() && graph.getId().equals(client.getGraphId())) {
+                    continue;
+                }
+
+                // A queued, unsent update is replaced, so the delta starts where the client really is
+                long base = client.isSyncEnabled() ? client.getDeltaBase(graph.getId()) : -1;
+                List<GraphChange> changes = base >= 0 ? graph.getChangesSince(base) : null;
+                if (changes == null) {
+                    sendGraphToSession(client, graph);
+                } else {
+                    sendDelta(client, graph, base, changes, encodedDeltas);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue a delta message for a client.
+     */
+    private static void sendDelta(ClientSession client, DependencyGraph graph, long fromVersion,
+                                  List<GraphChange> changes, Map<String, String> encodedDeltas) {
+        long toVersion = changes.isEmpty() ? fromVersion : changes.get(changes.size() - 1).getVersion();
+        String deltaKey = graph.getId() + "@" + fromVersion;
+        try {
+            String json = encodedDeltas != null ? encodedDeltas.get(deltaKey) : null;
+            if (json == null) {
+                StringWriter writer = new StringWriter();
+                new JsonGraphWriter().writeDelta(graph.getId(), fromVersion, toVersion, changes, writer);
+                json = writer.toString();
+                if (encodedDeltas != null) {
+                    encodedDeltas.put(deltaKey, json);
+                }
+            }
+            send(client, ClientSession.Outbound.text(ClientSession.GRAPH_KEY, graph.getId(), toVersion, json, null));
+            logger.debug("Queued delta {} -> {} ({} changes, {} bytes) for {}",
+                    fromVersion, toVersion, changes.size(), json.length(), client);
+        } catch (IOException e) {
+            logger.error("Error encoding delta for client {}: {}", client, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the graph a client should see: the graph of its workspace, or an empty one before it is loaded.
+     */
+    private static DependencyGraph publishedGraph(ClientSession client) {
+        DependencyGraph graph = client.getWorkspace().getGraph();
+        return graph != null ? graph : EMPTY_GRAPH;
+    }
+
+    /**
+     * Queue the full graph for a specific session.
+     */
+    private static void sendGraphToSession(ClientSession client, DependencyGraph graph) {
+        ClientSession.Outbound message = graphMessage(client, graph);
+        if (message != null) {
+            send(client, message);
+        }
+    }
+
+    /**
+     * Encode the full graph for a client, or a summary if the graph is too large to send whole.
+     * Returns null if the session is closed or encoding failed.
+     */
+    private static ClientSession.Outbound graphMessage(ClientSession client, DependencyGraph graph) {
+        Session session = client.getSession();
+        if (!session.isOpen()) {
             logger.warn("Cannot send graph to client {} - session is not open", session.getRemoteAddress());
+            return null;
+        } else if (graph.getNodeCount() > summaryThreshold) {
+            return summaryMessage(client, graph);
+        }
+        try {
+            PayloadFormat format = client.getFormat();
+            GraphPayloadCache.EncodedPayload payload = client.getWorkspace().getPayloadCache().get(graph, format);
+            logger.info("Sending {} graph data to client: {} ({} nodes, {} edges, {} bytes)",
+                    format, session.getRemoteAddress(), graph.getNodeCount(), graph.getEdgeCount(), payload.size());
+            return ClientSession.Outbound.payload(payload);
+        } catch (Exception e) {
+            logger.error("Unexpected error sending graph to client {}: {}",
+                    session.getRemoteAddress(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Encode a graph summary, letting the client load the graph by viewport.
+     */
+    private static ClientSession.Outbound summaryMessage(ClientSession client, DependencyGraph graph) {
+        ViewportIndex index = client.getWorkspace().getViewportIndex(graph);
+        StringWriter writer = new StringWriter();
+        try {
+            new JsonGraphWriter().writeSummary(index, graph.getId(), writer);
+            logger.info("Sending graph summary to client {} ({} nodes above the threshold of {})",
+                    client, index.getNodeCount(), summaryThreshold);
+            return ClientSession.Outbound.text(ClientSession.GRAPH_KEY, graph.getId(), index.getVersion(),
+                    writer.toString(), "graph summary");
+        } catch (IOException e) {
+            logger.error("Error encoding graph summary for client {}: {}", client, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Queue a message for a client, applying the backpressure policy: a client that has not
+     * completed a write within the maximum lag is disconnected, and a client whose queue is full
+     * has its pending updates replaced by a fresh snapshot. Answers to its requests are kept.
+     */
+    private static void send(ClientSession client, ClientSession.Outbound message) {
+        if (client.isStalled(maxSendLagNanos)) {
+            logger.warn("Disconnecting client {}: no write completed for over {} ms ({})",
+                    client, TimeUnit.NANOSECONDS.toMillis(maxSendLagNanos), client.getMetrics());
+            // A close frame would queue behind the stalled write, so drop the connection outright
+            removeClient(client);
+            client.getSession().disconnect();
+            return;
+        }
+        if (client.enqueue(message)) {
+            return;
+        }
+
+        logger.warn("Send queue of client {} is full; replacing pending updates with a snapshot ({})",
+                client, client.getMetrics());
+        if (message.carriesGraphState()) {
+            client.downgrade(message);
+            return;
+        }
+        // A viewport answer: the snapshot goes first, and the answer still reaches the client
+        ClientSession.Outbound snapshot = graphMessage(client, publishedGraph(client));
+        if (snapshot != null) {
+            client.downgrade(snapshot, message);
+        } else {
+            client.downgrade(message);
         }
     }
 
     /**
-     * Broadcast the current graph to all connected clients.
+     * Broadcast the graph of a workspace to its connected clients.
      */
-    private static void broadcastGraph() {
-        if (currentGraph == null) {
+    private static void broadcastGraph(Workspace workspace) {
+        DependencyGraph graph = workspace.getGraph();
+        if (graph == null) {
             logger.warn("No graph to broadcast");
             return;
         }
 
-        logger.info("Broadcasting graph to {} connected clients", sessions.size());
+        int recipients = 0;
+        for (ClientSession client : sessions.values()) {
+            if (client.getWorkspace() != workspace) {
+                continue;
+            }
+            if (client.isSyncEnabled() && client.getVersion() < 0) {
+                continue; // has not synced yet, will get the new graph with its sync answer
+            }
+            sendGraphToSession(client, graph);
+            recipients++;
+        }
+
+        GraphPayloadCache payloadCache = workspace.getPayloadCache();
+        logger.info("Broadcast graph of workspace {} to {} clients; payload cache: {} hits, {} misses",
+                workspace, recipients, payloadCache.getHits(), payloadCache.getMisses());
+    }
 
-        for (Session session : sessions) {
-            sendGraphToSession(session, currentGraph);
+    /**
+     * Get the send queue depth and latency statistics of all connected clients.
+     */
+    public static List<SessionMetrics> getSessionMetrics() {
+        List<SessionMetrics> metrics = new ArrayList<>();
+        for (ClientSession client : sessions.values()) {
+            metrics.add(client.getMetrics());
         }
+        return metrics;
     }
 
     /**
@@ -1,17 +1,28 @@
 package com.analyzer.server;
 
+import com.analyzer.concurrent.ThreadingMode;
 import com.analyzer.graph.DependencyGraph;
+import com.analyzer.metrics.MetricsRegistry;
+import com.analyzer.metrics.PipelineMetrics;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.websocket.api.ExtensionConfig;
 import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 /**
  * Jetty web server for serving the frontend and WebSocket endpoint.
@@ -19,18 +30,52 @@ import java.time.Duration;
 public class JettyServer {
     private static final Logger logger = LoggerFactory.getLogger(JettyServer.class);
 
+    private static final String WORKSPACE_PREFIX = "workspaces.";
+
     private final int port;
+    private final Properties config;
+    private final WorkspaceLoader loader;
     private Server server;
+    private WorkspaceRegistry workspaces;
 
     public JettyServer(int port) {
+        this(port, new Properties());
+    }
+
+    /**
+     * Create a server configured from the {@code websocket.*}, {@code viewport.*}, {@code packages.*},
+     * {@code query.*} and {@code execution.*} properties
+     * of application.properties, serving only the default workspace.
+     */
+    public JettyServer(int port, Properties config) {
+        this(port, config, null);
+    }
+
+    /**
+     * Create a server that also serves the workspaces listed as {@code workspaces.<id>=<path>}
+     * properties, analysing each with the loader when it is first requested.
+     */
+    public JettyServer(int port, Properties config, WorkspaceLoader loader) {
         this.port = port;
+        this.config = config;
+        this.loader = loader;
     }
 
     /**
      * Start the Jetty server.
      */
     public void start(DependencyGraph graph) throws Exception {
-        server = new Server();
+        // Jetty's pool keeps selecting and accepting on platform threads; with virtual threads
+        // enabled it hands request handling to a new virtual thread per task
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("jetty");
+        if (ThreadingMode.useVirtualThreads(config)) {
+            threadPool.setVirtualThreadsExecutor(ThreadingMode.newTaskExecutor(true, "jetty-virtual", 0));
+            logger.info("Handling HTTP and WebSocket requests on virtual threads");
+        } else {
+            logger.info("Handling HTTP and WebSocket requests on platform threads (max {})", threadPool.getMaxThreads());
+        }
+        server = new Server(threadPool);
 
         // Configure HTTP connector
         ServerConnector connector = new ServerConnector(server);
@@ -43,14 +88,74 @@ public class JettyServer {
         server.setHandler(context);
 
         // Configure WebSocket
+        long maxTextMessageSize = Long.parseLong(config.getProperty("websocket.max-text-message-size", "1048576"));
+        long maxBinaryMessageSize = Long.parseLong(config.getProperty("websocket.max-binary-message-size", "1048576"));
+        long idleTimeoutMinutes = Long.parseLong(config.getProperty("websocket.idle-timeout-minutes", "10"));
+        boolean compression = Boolean.parseBoolean(config.getProperty("websocket.compression.enabled", "true"));
+        int fragmentSize = Integer.parseInt(config.getProperty("websocket.fragment-size", "262144"));
+        logger.info("WebSocket: maxTextMessageSize={}, maxBinaryMessageSize={}, compression={}, fragmentSize={}",
+                maxTextMessageSize, maxBinaryMessageSize, compression, fragmentSize);
+        GraphWebSocketHandler.setFragmentSize(fragmentSize);
+        GraphWebSocketHandler.configureSendQueue(
+                Integer.parseInt(config.getProperty("websocket.send-queue.max-messages", "16")),
+                Long.parseLong(config.getProperty("websocket.send-queue.max-lag-ms", "30000")));
+        GraphWebSocketHandler.configureViewport(
+                Integer.parseInt(config.getProperty("viewport.summary-threshold-nodes", "20000")),
+                Integer.parseInt(config.getProperty("viewport.page-size", "1000")),
+                Integer.parseInt(config.getProperty("viewport.max-page-size", "5000")),
+                Double.parseDouble(config.getProperty("viewport.aggregate-below-zoom", "0.5")),
+                Integer.parseInt(config.getProperty("viewport.max-detail-nodes", "5000")));
+        GraphWebSocketHandler.configurePackages(
+                Integer.parseInt(config.getProperty("packages.default-depth", "0")),
+                Integer.parseInt(config.getProperty("packages.max-depth", "8")));
+        GraphWebSocketHandler.configureQueries(
+                Long.parseLong(config.getProperty("query.timeout-ms", "2000")),
+                Integer.parseInt(config.getProperty("query.max-nodes", "10000")),
+                Integer.parseInt(config.getProperty("query.threads", "2")),
+                Integer.parseInt(config.getProperty("query.max-pending", "64")),
+                Long.parseLong(config.getProperty("query.reachability.max-bitset-mb", "64")) << 20);
+
+        workspaces = createWorkspaceRegistry();
+        GraphWebSocketHandler.setWorkspaceRegistry(workspaces);
+
         JettyWebSocketServletContainerInitializer.configure(context, (servletContext, wsContainer) -> {
-            wsContainer.setMaxTextMessageSize(65536);
-            wsContainer.setIdleTimeout(Duration.ofMinutes(10));
+            wsContainer.setMaxTextMessageSize(maxTextMessageSize);
+            wsContainer.setMaxBinaryMessageSize(maxBinaryMessageSize);
+            wsContainer.setIdleTimeout(Duration.ofMinutes(idleTimeoutMinutes));
 
-            // Add WebSocket endpoint
-            wsContainer.addMapping("/ws/graph", (req, resp) -> new GraphWebSocketHandler());
+            // Add WebSocket endpoint (/ws/graph, or /ws/graph/{id} for other workspaces),
+            // accepting the first payload format subprotocol the client offers
+            wsContainer.addMapping("/ws/graph/*", (req, resp) -> {
+                for (String subProtocol : req.getSubProtocols()) {
+                    if (PayloadFormat.fromSubProtocol(subProtocol) != null) {
+                        resp.setAcceptedSubProtocol(subProtocol);
+                        break;
+                    }
+                }
+                if (!compression) {
+                    // Jetty negotiates permessage-deflate by default; strip it from the offer
+                    List<ExtensionConfig> extensions = req.getExtensions().stream()
+                            .filter(extension -> !"permessage-deflate".equals(extension.getName()))
+                            .collect(Collectors.toList());
+                    resp.setExtensions(extensions);
+                }
+                return new GraphWebSocketHandler();
+            });
         });
 
+        // HTTP snapshot of the current graph, cacheable by ETag
+        ServletHolder snapshotHolder = new ServletHolder("graph-snapshot", new GraphSnapshotServlet());
+        context.getServletHandler().addServletWithMapping(snapshotHolder, "/api/graph");
+        context.getServletHandler().addServletWithMapping(snapshotHolder, "/api/graph/*");
+
+        // Prometheus metrics of the pipeline and the server
+        if (Boolean.parseBoolean(config.getProperty("server.metrics.enabled", "true"))) {
+            registerServerMetrics();
+            ServletHolder metricsHolder = new ServletHolder("metrics",
+                    new MetricsServlet(MetricsRegistry.getDefault()));
+            context.getServletHandler().addServletWithMapping(metricsHolder, "/metrics");
+        }
+
         // Serve static files from webapp directory
         ServletHolder staticHolder = new ServletHolder("static", DefaultServlet.class);
 
@@ -80,6 +185,45 @@ public class JettyServer {
         logger.info("Access the application at: http://localhost:{}", port);
     }
 
+    /**
+     * Report the connected clients and the size of each workspace's graph when metrics are scraped.
+     */
+    private void registerServerMetrics() {
+        PipelineMetrics.WEBSOCKET_SESSIONS.setSupplier(GraphWebSocketHandler::getConnectedClientCount);
+        for (Workspace workspace : workspaces.getWorkspaces()) {
+            PipelineMetrics.GRAPH_NODES.labels(workspace.getId()).setSupplier(() -> {
+                DependencyGraph graph = workspace.getGraph();
+                return graph != null ? graph.getNodeCount() : 0;
+            });
+            PipelineMetrics.GRAPH_EDGES.labels(workspace.getId()).setSupplier(() -> {
+                DependencyGraph graph = workspace.getGraph();
+                return graph != null ? graph.getEdgeCount() : 0;
+            });
+        }
+    }
+
+    /**
+     * Create the workspace registry from the {@code workspace.*} and {@code workspaces.*} properties.
+     */
+    private WorkspaceRegistry createWorkspaceRegistry() {
+        long memoryBudgetMb = Long.parseLong(config.getProperty("workspace.memory-budget-mb", "1024"));
+        int loadThreads = Integer.parseInt(config.getProperty("workspace.load-threads", "1"));
+        String defaultSpillDirectory = Paths.get(System.getProperty("java.io.tmpdir"),
+                "java-dependency-analyzer", "workspaces").toString();
+        Path spillDirectory = Paths.get(config.getProperty("workspace.spill-dir", defaultSpillDirectory));
+
+        WorkspaceRegistry registry = new WorkspaceRegistry(loader, memoryBudgetMb * 1024 * 1024, spillDirectory,
+                loadThreads);
+        for (String name : new TreeSet<>(config.stringPropertyNames())) {
+            if (name.startsWith(WORKSPACE_PREFIX)) {
+                registry.register(name.substring(WORKSPACE_PREFIX.length()), config.getProperty(name).trim());
+            }
+        }
+        logger.info("Workspaces: {} registered, memory budget {} MB, spilling to {}",
+                registry.getWorkspaces().size() - 1, memoryBudgetMb, spillDirectory);
+        return registry;
+    }
+
     /**
      * Stop the server.
      */
@@ -88,6 +232,9 @@ public class JettyServer {
             logger.info("Stopping Jetty server");
             server.stop();
         }
+        if (workspaces != null) {
+            workspaces.shutdown();
+        }
     }
 
     /**
@@ -112,4 +259,18 @@ public class JettyServer {
     public void updateGraph(DependencyGraph graph) {
         GraphWebSocketHandler.setGraph(graph);
     }
+
+    /**
+     * Push changes made to the current graph since it was last sent to connected clients as deltas.
+     */
+    public void publishChanges() {
+        GraphWebSocketHandler.publishChanges();
+    }
+
+    /**
+     * Get the send queue depth and latency statistics of all connected clients.
+     */
+    public List<SessionMetrics> getSessionMetrics() {
+        return GraphWebSocketHandler.getSessionMetrics();
+    }
 }
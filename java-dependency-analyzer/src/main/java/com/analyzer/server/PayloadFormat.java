@@ -0,0 +1,33 @@
+package com.analyzer.server;
+
+/**
+ * Wire formats for graph payloads, negotiated through the WebSocket subprotocol.
+ */
+public enum PayloadFormat {
+    /** Compact binary format, see {@link com.analyzer.graph.export.BinaryGraphWriter}. */
+    BINARY("graph-binary.v1"),
+    /** JSON text format, see {@link com.analyzer.graph.export.JsonGraphWriter}. */
+    JSON("graph-json.v1");
+
+    private final String subProtocol;
+
+    PayloadFormat(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public String getSubProtocol() {
+        return subProtocol;
+    }
+
+    /**
+     * Find the format for a subprotocol name, or null if it is not supported.
+     */
+    public static PayloadFormat fromSubProtocol(String subProtocol) {
+        for (PayloadFormat format : values()) {
+            if (format.subProtocol.equalsIgnoreCase(subProtocol)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.analyzer.server;
+
+/**
+ * Point-in-time send statistics of one WebSocket client.
+ */
+public class SessionMetrics {
+    private final String remoteAddress;
+    private final PayloadFormat format;
+    private final boolean syncEnabled;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final long sentMessages;
+    private final long sentBytes;
+    private final long compressedBytes;
+    private final long coalescedMessages;
+    private final long downgrades;
+    private final long lastLatencyNanos;
+    private final long maxLatencyNanos;
+    private final long averageLatencyNanos;
+    private final long inFlightNanos;
+
+    SessionMetrics(String remoteAddress, PayloadFormat format, boolean syncEnabled, int queueDepth, int maxQueueDepth,
+                   long sentMessages, long sentBytes, long compressedBytes, long coalescedMessages, long downgrades,
+                   long lastLatencyNanos, long maxLatencyNanos, long averageLatencyNanos, long inFlightNanos) {
+        this.remoteAddress = remoteAddress;
+        this.format = format;
+        this.syncEnabled = syncEnabled;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.sentMessages = sentMessages;
+        this.sentBytes = sentBytes;
+        this.compressedBytes = compressedBytes;
+        this.coalescedMessages = coalescedMessages;
+        this.downgrades = downgrades;
+        this.lastLatencyNanos = lastLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.averageLatencyNanos = averageLatencyNanos;
+        this.inFlightNanos = inFlightNanos;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public PayloadFormat getFormat() {
+        return format;
+    }
+
+    public boolean isSyncEnabled() {
+        return syncEnabled;
+    }
+
+    /**
+     * Get the number of messages waiting to be sent, not counting the one being written.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getSentMessages() {
+        return sentMessages;
+    }
+
+    /**
+     * Get the number of payload bytes sent, UTF-8 for text, before compression.
+     */
+    public long getSentBytes() {
+        return sentBytes;
+    }
+
+    /**
+     * Get the estimated number of bytes the sent payloads took once compressed: their deflated
+     * size if permessage-deflate was negotiated, otherwise the same as {@link #getSentBytes()}.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Get the number of queued messages that were replaced by a newer one before being sent.
+     */
+    public long getCoalescedMessages() {
+        return coalescedMessages;
+    }
+
+    /**
+     * Get the number of times the queue overflowed and was replaced by a fresh snapshot.
+     */
+    public long getDowngrades() {
+        return downgrades;
+    }
+
+    /**
+     * Get the time from queueing to fully written of the last sent message.
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public long getAverageLatencyNanos() {
+        return averageLatencyNanos;
+    }
+
+    /**
+     * Get how long the message currently being written has been in progress, or 0 if idle.
+     */
+    public long getInFlightNanos() {
+        return inFlightNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{format=%s, queue=%d (max %d), sent=%d (%d bytes, ~%d compressed), coalesced=%d, "
+                        + "downgrades=%d, latency last/avg/max=%.1f/%.1f/%.1f ms}",
+                remoteAddress, format, queueDepth, maxQueueDepth, sentMessages, sentBytes, compressedBytes,
+                coalescedMessages, downgrades, lastLatencyNanos / 1e6, averageLatencyNanos / 1e6,
+                maxLatencyNanos / 1e6);
+    }
+}
@@ -0,0 +1,162 @@
+package com.analyzer.server;
+
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.index.ViewportIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One analysed project served by the analyzer: its graph (which carries the layout), the
+ * encoded payloads of that graph and its viewport index.
+ *
+ * The graph is null until the workspace is first requested, and again after the
+ * {@link WorkspaceRegistry} has evicted it; it is then reloaded from the snapshot it was
+ * spilled to.
+ */
+public class Workspace {
+    private static final Logger logger = LoggerFactory.getLogger(Workspace.class);
+
+    /** Rough heap cost of a class node: object, name strings and map entry. */
+    private static final long NODE_BYTES = 512;
+    /** Rough heap cost of an edge: object, field name and set entry. */
+    private static final long EDGE_BYTES = 160;
+
+    private final String id;
+    private final String path;
+    private final boolean pinned;
+    private final GraphPayloadCache payloadCache = new GraphPayloadCache();
+    private volatile DependencyGraph graph;
+    private volatile ViewportIndex viewportIndex;
+
+    // Guarded by the registry
+    private int clientCount;
+    private CompletableFuture<DependencyGraph> loading;
+    private Path snapshot;
+    private boolean evicting;
+
+    Workspace(String id, String path, boolean pinned) {
+        this.id = id;
+        this.path = path;
+        this.pinned = pinned;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the path of the analysed project, or null for a workspace whose graph is set directly.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Whether the workspace is exempt from eviction. The default workspace is pinned because
+     * its graph is owned and mutated by the caller that published it.
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    /**
+     * Get the graph, or null if it has not been loaded or has been evicted.
+     */
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    public boolean isLoaded() {
+        return graph != null;
+    }
+
+    public GraphPayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    /**
+     * Get the viewport index of a graph of this workspace at its current version,
+     * rebuilding it after changes.
+     */
+    ViewportIndex getViewportIndex(DependencyGraph graph) {
+        long version = graph.getVersion();
+        ViewportIndex index = viewportIndex;
+        if (index == null || !index.isCurrent(graph, version)) {
+            synchronized (this) {
+                index = viewportIndex;
+                if (index == null || !index.isCurrent(graph, version)) {
+                    long start = System.nanoTime();
+                    index = ViewportIndex.build(graph);
+                    viewportIndex = index;
+                    logger.info("Built viewport index of workspace {} for {} nodes at version {} in {} ms",
+                            id, index.getNodeCount(), version, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Estimate the heap held by the workspace: its graph and its encoded payloads.
+     */
+    public long estimateMemory() {
+        DependencyGraph current = graph;
+        if (current == null) {
+            return 0;
+        }
+        return current.getNodeCount() * NODE_BYTES + current.getEdgeCount() * EDGE_BYTES
+                + payloadCache.getCachedBytes();
+    }
+
+    void setGraph(DependencyGraph graph) {
+        this.graph = graph;
+        payloadCache.invalidate();
+        viewportIndex = null;
+    }
+
+    int getClientCount() {
+        return clientCount;
+    }
+
+    void setClientCount(int clientCount) {
+        this.clientCount = clientCount;
+    }
+
+    CompletableFuture<DependencyGraph> getLoading() {
+        return loading;
+    }
+
+    void setLoading(CompletableFuture<DependencyGraph> loading) {
+        this.loading = loading;
+    }
+
+    /**
+     * Get the file the graph was spilled to when it was last evicted, or null.
+     */
+    Path getSnapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(Path snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Whether the graph is being spilled to disk, after which it is dropped from memory.
+     */
+    boolean isEvicting() {
+        return evicting;
+    }
+
+    void setEvicting(boolean evicting) {
+        this.evicting = evicting;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,18 @@
+package com.analyzer.server;
+
+import com.analyzer.graph.DependencyGraph;
+
+/**
+ * Builds the graph of a workspace the first time it is requested.
+ */
+@FunctionalInterface
+public interface WorkspaceLoader {
+
+    /**
+     * Analyse a workspace and return its laid out graph.
+     *
+     * @param workspaceId id the workspace is served under
+     * @param path        path of the project to analyse
+     */
+    DependencyGraph load(String workspaceId, String path) throws Exception;
+}
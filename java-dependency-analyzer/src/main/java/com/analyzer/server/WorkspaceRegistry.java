@@ -0,0 +1,324 @@
+package com.analyzer.server;
+
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.export.BinaryGraphReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * The workspaces served by this analyzer, loaded on first request and evicted when idle.
+ *
+ * Loaded workspaces are kept in least-recently-used order. When their estimated memory
+ * (see {@link Workspace#estimateMemory()}) exceeds the budget, the least recently used
+ * workspaces without connected clients are spilled to a binary snapshot and dropped from
+ * memory. The next request reloads a spilled workspace from its snapshot, which skips the
+ * analysis and the layout. The default workspace is never evicted.
+ *
+ * Victims are chosen under the registry's lock, but their snapshots are written on the loader
+ * threads without it, so clients connecting to other workspaces do not wait for the disk. A
+ * workspace that gets a client or a new graph while it is being written stays loaded.
+ */
+public class WorkspaceRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceRegistry.class);
+
+    /** Id of the workspace served at the unqualified paths, {@code /ws/graph} and {@code /api/graph}. */
+    public static final String DEFAULT_ID = "default";
+
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_][A-Za-z0-9_.-]*");
+
+    private final Map<String, Workspace> workspaces = new ConcurrentHashMap<>();
+    private final WorkspaceLoader loader;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    private final ExecutorService loadExecutor;
+
+    // Loaded workspaces in access order, least recently used first; guarded by this
+    private final LinkedHashMap<String, Workspace> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param loader            builds workspace graphs on first request, or null if only the default workspace is served
+     * @param memoryBudgetBytes estimated memory the loaded workspaces may use before idle ones are evicted
+     * @param spillDirectory    directory for the snapshots of evicted workspaces
+     * @param loadThreads       number of workspaces that may be analysed at the same time
+     */
+    public WorkspaceRegistry(WorkspaceLoader loader, long memoryBudgetBytes, Path spillDirectory, int loadThreads) {
+        this.loader = loader;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loadExecutor = Executors.newFixedThreadPool(Math.max(1, loadThreads), runnable -> {
+            Thread thread = new Thread(runnable, "workspace-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workspaces.put(DEFAULT_ID, new Workspace(DEFAULT_ID, null, true));
+    }
+
+    /**
+     * Register a workspace to be analysed from the given project path on first request.
+     *
+     * @throws IllegalArgumentException if the id is not usable in a URL path and file name, or already taken
+     */
+    public Workspace register(String id, String path) {
+        if (!VALID_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid workspace id '" + id + "'");
+        }
+        Workspace workspace = new Workspace(id, path, false);
+        if (workspaces.putIfAbsent(id, workspace) != null) {
+            throw new IllegalArgumentException("Workspace '" + id + "' is already registered");
+        }
+        logger.info("Registered workspace {} at {}", id, path);
+        return workspace;
+    }
+
+    /**
+     * Get a workspace by id, or null if there is none.
+     */
+    public Workspace get(String id) {
+        return workspaces.get(id);
+    }
+
+    public Workspace getDefault() {
+        return workspaces.get(DEFAULT_ID);
+    }
+
+    public Collection<Workspace> getWorkspaces() {
+        return workspaces.values();
+    }
+
+    /**
+     * Publish a graph to a workspace, replacing its current one.
+     */
+    public synchronized void publish(Workspace workspace, DependencyGraph graph) {
+        workspace.setGraph(graph);
+        workspace.setSnapshot(null);
+        resident.put(workspace.getId(), workspace);
+        evictIdle(workspace);
+    }
+
+    /**
+     * Get the graph of a workspace, loading it in the background if it is not in memory.
+     * Marks the workspace as recently used.
+     *
+     * @return a future completed with the graph, or exceptionally if the workspace cannot be loaded
+     */
+    public synchronized CompletableFuture<DependencyGraph> acquire(Workspace workspace) {
+        DependencyGraph graph = workspace.getGraph();
+        if (graph != null) {
+            touch(workspace);
+            return CompletableFuture.completedFuture(graph);
+        }
+        CompletableFuture<DependencyGraph> loading = workspace.getLoading();
+        if (loading == null) {
+            // Callers chain on the returned stage, which completes only after the graph is installed
+            loading = CompletableFuture.supplyAsync(() -> load(workspace), loadExecutor)
+                    .whenComplete((loaded, error) -> loaded(workspace, loaded, error));
+            if (!loading.isDone()) {
+                workspace.setLoading(loading);
+            }
+        }
+        return loading;
+    }
+
+    /**
+     * Record that a client is connected to a workspace, which keeps it from being evicted.
+     */
+    public synchronized void attach(Workspace workspace) {
+        workspace.setClientCount(workspace.getClientCount() + 1);
+    }
+
+    /**
+     * Record that a client of a workspace disconnected. A workspace without clients becomes
+     * the most recently used eviction candidate.
+     */
+    public synchronized void detach(Workspace workspace) {
+        workspace.setClientCount(Math.max(0, workspace.getClientCount() - 1));
+        if (workspace.getClientCount() == 0 && workspace.isLoaded()) {
+            touch(workspace);
+            evictIdle(null);
+        }
+    }
+
+    /**
+     * Get the estimated memory of all loaded workspaces.
+     */
+    public synchronized long getResidentBytes() {
+        long bytes = 0;
+        for (Workspace workspace : resident.values()) {
+            bytes += workspace.estimateMemory();
+        }
+        return bytes;
+    }
+
+    private void touch(Workspace workspace) {
+        resident.get(workspace.getId()); // moves it to the most recently used end
+    }
+
+    private DependencyGraph load(Workspace workspace) {
+        long start = System.nanoTime();
+        Path snapshot;
+        synchronized (this) {
+            snapshot = workspace.getSnapshot();
+        }
+        if (snapshot != null) {
+            try (InputStream in = Files.newInputStream(snapshot)) {
+                DependencyGraph graph = new BinaryGraphReader().read(in);
+                logger.info("Reloaded workspace {} from {} ({} nodes, {} edges) in {} ms", workspace, snapshot,
+                        graph.getNodeCount(), graph.getEdgeCount(), (System.nanoTime() - start) / 1_000_000);
+                return graph;
+            } catch (IOException e) {
+                logger.warn("Could not reload workspace {} from {}, analysing it again: {}",
+                        workspace, snapshot, e.getMessage());
+            }
+        }
+
+        if (loader == null || workspace.getPath() == null) {
+            throw new IllegalStateException("Workspace " + workspace + " has no graph and cannot be analysed");
+        }
+        logger.info("Analysing workspace {} at {}", workspace, workspace.getPath());
+        try {
+            DependencyGraph graph = loader.load(workspace.getId(), workspace.getPath());
+            logger.info("Analysed workspace {} ({} nodes, {} edges) in {} ms", workspace,
+                    graph.getNodeCount(), graph.getEdgeCount(), (System.nanoTime() - start) / 1_000_000);
+            return graph;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Analysis of workspace " + workspace + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void loaded(Workspace workspace, DependencyGraph graph, Throwable error) {
+        workspace.setLoading(null);
+        if (error != null) {
+            logger.error("Failed to load workspace {}: {}", workspace, error.getMessage());
+            return;
+        }
+        workspace.setGraph(graph);
+        resident.put(workspace.getId(), workspace);
+        evictIdle(workspace);
+    }
+
+    /**
+     * Start evicting least recently used idle workspaces until the loaded ones fit the memory
+     * budget. Workspaces already being evicted count as gone.
+     *
+     * @param keep a workspace that must stay loaded, e.g. the one just loaded, or null
+     */
+    private void evictIdle(Workspace keep) {
+        long total = 0;
+        for (Workspace workspace : resident.values()) {
+            if (!workspace.isEvicting()) {
+                total += workspace.estimateMemory();
+            }
+        }
+        if (total <= memoryBudgetBytes) {
+            return;
+        }
+
+        List<Workspace> candidates = new ArrayList<>();
+        for (Workspace workspace : resident.values()) {
+            if (workspace != keep && !workspace.isPinned() && workspace.getClientCount() == 0
+                    && !workspace.isEvicting() && (spillDirectory != null || workspace.getPath() != null)) {
+                candidates.add(workspace);
+            }
+        }
+        for (Workspace workspace : candidates) {
+            if (total <= memoryBudgetBytes) {
+                break;
+            }
+            DependencyGraph graph = workspace.getGraph();
+            long bytes = workspace.estimateMemory();
+            try {
+                loadExecutor.execute(() -> evicted(workspace, graph, bytes, spill(workspace, graph)));
+            } catch (RejectedExecutionException e) {
+                break; // shutting down
+            }
+            workspace.setEvicting(true);
+            total -= bytes;
+        }
+        if (total > memoryBudgetBytes) {
+            logger.warn("Loaded workspaces use ~{} MB, over the budget of {} MB, but none can be evicted",
+                    total >> 20, memoryBudgetBytes >> 20);
+        }
+    }
+
+    /**
+     * Drop the graph of a workspace once its snapshot has been written, unless the workspace
+     * got a client or another graph in the meantime.
+     *
+     * @param snapshot the snapshot file, or null if none could be written
+     */
+    private synchronized void evicted(Workspace workspace, DependencyGraph graph, long bytes, Path snapshot) {
+        workspace.setEvicting(false);
+        if (workspace.getClientCount() > 0 || workspace.getGraph() != graph) {
+            logger.info("Keeping workspace {} loaded: it was used while being evicted", workspace);
+            return;
+        }
+        if (snapshot == null && workspace.getPath() == null) {
+            return; // could be neither reloaded nor analysed again
+        }
+        workspace.setSnapshot(snapshot);
+        workspace.setGraph(null);
+        resident.remove(workspace.getId());
+        long total = 0;
+        for (Workspace loaded : resident.values()) {
+            total += loaded.estimateMemory();
+        }
+        logger.info("Evicted idle workspace {} (~{} MB); loaded workspaces now use ~{} MB of {} MB",
+                workspace, bytes >> 20, total >> 20, memoryBudgetBytes >> 20);
+    }
+
+    /**
+     * Write the graph of a workspace to its snapshot file. Runs without the registry's lock.
+     *
+     * @return the snapshot file, or null if it could not be written
+     */
+    private Path spill(Workspace workspace, DependencyGraph graph) {
+        if (spillDirectory == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Path file = spillDirectory.resolve(workspace.getId() + ".graph");
+        Path temporary = spillDirectory.resolve(workspace.getId() + ".graph.tmp");
+        try {
+            Files.createDirectories(spillDirectory);
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                graph.writeBinary(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Spilled workspace {} to {} ({} bytes) in {} ms", workspace, file, Files.size(file),
+                    (System.nanoTime() - start) / 1_000_000);
+            return file;
+        } catch (IOException e) {
+            logger.warn("Could not spill workspace {} to {}: {}", workspace, file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stop the background loader threads.
+     */
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+}
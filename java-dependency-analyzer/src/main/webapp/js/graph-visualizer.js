@@ -13,6 +13,7 @@ class GraphVisualizer {
         this.edges = [];
         this.nodeMap = new Map();
         this.showLabels = true;
+        this.colorMode = 'dependencies'; // or 'community'
         
         // Interaction state
         this.draggedNode = null;
@@ -23,6 +24,16 @@ class GraphVisualizer {
         this.isPanning = false;
         this.lastMouseX = 0;
         this.lastMouseY = 0;
+
+        // Viewport mode: nodes come from the server a view at a time, at their layout positions
+        this.viewportMode = false;
+        this.worldBounds = null;
+        this.fitScale = 1;
+        this.onViewChange = null;
+        this.viewChangeTimer = null;
+
+        // Diff overlay: classes and dependencies added or moved since a base graph
+        this.diff = null;
         
         this.init();
     }
@@ -76,6 +87,7 @@ class GraphVisualizer {
             console.warn('No graph data');
             return;
         }
+        this.viewportMode = false;
 
         this.nodes = [];
         this.edges = [];
@@ -86,9 +98,29 @@ class GraphVisualizer {
         const centerY = this.canvas.height / 2;
         const radius = Math.min(centerX, centerY) * 0.7;
 
+        // Size of the dependency cycle each class is part of
+        const cycleSizes = new Map();
+        for (const cycle of graphData.cycles || []) {
+            for (const id of cycle.nodes) {
+                cycleSizes.set(id, cycle.nodes.length);
+            }
+        }
+
+        // Size by PageRank relative to the top class, so hubs stand out rather than classes with many fields
+        let maxPageRank = 0;
+        for (const nodeData of graphData.nodes) {
+            maxPageRank = Math.max(maxPageRank, nodeData.pageRank || 0);
+        }
+
+        // Start classes of the same community next to each other on the circle
+        const slots = graphData.nodes.map((nodeData, index) => index);
+        slots.sort((a, b) => ((graphData.nodes[a].community ?? -1) - (graphData.nodes[b].community ?? -1)) || a - b);
+        const slotOf = new Array(slots.length);
+        slots.forEach((index, slot) => { slotOf[index] = slot; });
+
         graphData.nodes.forEach((nodeData, index) => {
             // Arrange in a circle initially
-            const angle = (2 * Math.PI * index) / graphData.nodes.length;
+            const angle = (2 * Math.PI * slotOf[index]) / graphData.nodes.length;
             const node = {
                 id: nodeData.id,
                 name: nodeData.name || nodeData.id.split('.').pop(),
@@ -97,9 +129,16 @@ class GraphVisualizer {
                 y: centerY + radius * Math.sin(angle),
                 vx: 0,
                 vy: 0,
-                radius: 20 + Math.min((nodeData.dependencyCount || 0) * 3, 15),
-                color: this.getNodeColor(nodeData.dependencyCount || 0),
-                dependencyCount: nodeData.dependencyCount || 0
+                radius: maxPageRank > 0
+                    ? 15 + 25 * Math.sqrt((nodeData.pageRank || 0) / maxPageRank)
+                    : 20 + Math.min((nodeData.dependencyCount || 0) * 3, 15),
+                color: this.colorFor(nodeData.dependencyCount || 0, nodeData.community ?? -1),
+                dependencyCount: nodeData.dependencyCount || 0,
+                dependentCount: nodeData.dependentCount || 0,
+                community: nodeData.community ?? -1,
+                pageRank: nodeData.pageRank || 0,
+                betweenness: nodeData.betweenness || 0,
+                cycleSize: cycleSizes.get(nodeData.id) || 0
             };
             this.nodes.push(node);
             this.nodeMap.set(nodeData.id, node);
@@ -122,6 +161,11 @@ class GraphVisualizer {
 
         console.log('Created', this.nodes.length, 'nodes and', this.edges.length, 'edges');
 
+        // Point the diff overlay at the new nodes
+        if (this.diff) {
+            this.setDiffOverlay(this.diff.summary);
+        }
+
         // Update stats
         this.updateStats(this.nodes.length, this.edges.length);
 
@@ -129,6 +173,117 @@ class GraphVisualizer {
         this.runForceSimulation();
     }
 
+    /**
+     * Switch to viewport mode for a graph the server only sent a summary of.
+     * Zoom 1 fits the whole layout in the canvas; onViewChange receives the visible
+     * layout-space box whenever the camera settles.
+     */
+    enterViewportMode(summary, onViewChange) {
+        const margin = 50;
+        const b = summary.bounds;
+        this.viewportMode = true;
+        this.worldBounds = b;
+        this.fitScale = Math.min(
+            (this.canvas.width - 2 * margin) / ((b.maxX - b.minX) || 1),
+            (this.canvas.height - 2 * margin) / ((b.maxY - b.minY) || 1));
+        this.onViewChange = onViewChange;
+        this.nodes = [];
+        this.edges = [];
+        this.nodeMap.clear();
+        this.updateStats(summary.nodeCount, summary.edgeCount);
+        this.resetCamera();
+    }
+
+    /**
+     * Add one page of a viewport answer; page 0 replaces what is shown.
+     */
+    renderViewportPage(data) {
+        if (data.page === 0) {
+            this.nodes = [];
+            this.edges = [];
+            this.nodeMap.clear();
+        }
+
+        const margin = 50;
+        const b = this.worldBounds;
+        for (const nodeData of data.nodes) {
+            const classCount = nodeData.classCount || 1;
+            const screenRadius = data.aggregated
+                ? 10 + Math.min(Math.sqrt(classCount) * 2, 30)
+                : 8 + Math.min((nodeData.dependencyCount || 0), 10);
+            const node = {
+                id: nodeData.id,
+                name: data.aggregated ? nodeData.name + ' (' + classCount + ')' : nodeData.name,
+                fullName: nodeData.id,
+                x: margin + (nodeData.x - b.minX) * this.fitScale,
+                y: margin + (nodeData.y - b.minY) * this.fitScale,
+                vx: 0,
+                vy: 0,
+                radius: screenRadius / this.scale,
+                color: this.getNodeColor(nodeData.dependencyCount || 0),
+                dependencyCount: nodeData.dependencyCount || 0
+            };
+            this.nodes.push(node);
+            this.nodeMap.set(node.id, node);
+        }
+
+        for (const edgeData of data.edges) {
+            const source = this.nodeMap.get(edgeData.source);
+            const target = this.nodeMap.get(edgeData.target);
+            if (source && target) {
+                this.edges.push({ source: source, target: target, fieldName: edgeData.fieldName });
+            }
+        }
+        this.updateStats(this.nodes.length, this.edges.length);
+    }
+
+    /**
+     * Report the visible layout-space box once the camera has been still for a moment.
+     */
+    notifyViewChange() {
+        if (!this.viewportMode || !this.onViewChange) {
+            return;
+        }
+        clearTimeout(this.viewChangeTimer);
+        this.viewChangeTimer = setTimeout(() => {
+            const margin = 50;
+            const b = this.worldBounds;
+            const toWorld = (screen, offset, min) => min + ((screen - offset) / this.scale - margin) / this.fitScale;
+            this.onViewChange({
+                minX: toWorld(0, this.offsetX, b.minX),
+                minY: toWorld(0, this.offsetY, b.minY),
+                maxX: toWorld(this.canvas.width, this.offsetX, b.minX),
+                maxY: toWorld(this.canvas.height, this.offsetY, b.minY),
+                zoom: this.scale
+            });
+        }, 150);
+    }
+
+    colorFor(dependencyCount, community) {
+        return this.colorMode === 'community' ? this.getCommunityColor(community) : this.getNodeColor(dependencyCount);
+    }
+
+    /**
+     * Spread community hues by the golden angle so neighbouring ids get distinct colours.
+     */
+    getCommunityColor(community) {
+        if (community < 0) return '#7f8c8d';
+        const hue = (community * 137.508) % 360;
+        const f = (n) => {
+            const k = (n + hue / 30) % 12;
+            const c = 0.55 - 0.3 * Math.max(-1, Math.min(k - 3, 9 - k, 1));
+            return Math.round(255 * c).toString(16).padStart(2, '0');
+        };
+        return '#' + f(0) + f(8) + f(4);
+    }
+
+    toggleColorMode() {
+        this.colorMode = this.colorMode === 'community' ? 'dependencies' : 'community';
+        for (const node of this.nodes) {
+            node.color = this.colorFor(node.dependencyCount, node.community ?? -1);
+        }
+    }
+
     getNodeColor(count) {
         if (count === 0) return '#e74c3c';  // Red
         if (count < 3) return '#9b59b6';    // Purple
@@ -216,6 +371,11 @@ class GraphVisualizer {
         for (const edge of this.edges) {
             this.drawEdge(edge);
         }
+        if (this.diff) {
+            for (const edge of this.diff.removedEdges) {
+                this.drawEdge(edge);
+            }
+        }
 
         // Draw nodes on top
         for (const node of this.nodes) {
@@ -230,6 +390,8 @@ class GraphVisualizer {
 
     drawEdge(edge) {
         const ctx = this.ctx;
+        // In viewport mode sizes stay constant on screen regardless of zoom
+        const unit = this.viewportMode ? 1 / this.scale : 1;
         const source = edge.source;
         const target = edge.target;
 
@@ -253,13 +415,17 @@ class GraphVisualizer {
         
         const isHighlighted = this.hoveredNode && 
             (edge.source === this.hoveredNode || edge.target === this.hoveredNode);
-        
-        ctx.strokeStyle = isHighlighted ? '#00ffff' : '#3498db';
-        ctx.lineWidth = isHighlighted ? 3 : 2;
+        const diffColor = this.diffEdgeColor(edge);
+        const color = isHighlighted ? '#00ffff' : (diffColor || '#3498db');
+
+        ctx.strokeStyle = color;
+        ctx.lineWidth = (isHighlighted || diffColor ? 3 : 2) * unit;
+        ctx.setLineDash(edge.removed ? [6 * unit, 4 * unit] : []);
         ctx.stroke();
+        ctx.setLineDash([]);
 
         // Draw arrow
-        const arrowSize = 10;
+        const arrowSize = 10 * unit;
         const arrowAngle = Math.atan2(endY - startY, endX - startX);
         
         ctx.beginPath();
@@ -273,18 +439,19 @@ class GraphVisualizer {
             endY - arrowSize * Math.sin(arrowAngle + Math.PI / 6)
         );
         ctx.closePath();
-        ctx.fillStyle = isHighlighted ? '#00ffff' : '#3498db';
+        ctx.fillStyle = color;
         ctx.fill();
     }
 
     drawNode(node) {
         const ctx = this.ctx;
+        const unit = this.viewportMode ? 1 / this.scale : 1;
         const isHovered = node === this.hoveredNode;
 
         // Draw glow for hovered node
         if (isHovered) {
             ctx.beginPath();
-            ctx.arc(node.x, node.y, node.radius + 8, 0, Math.PI * 2);
+            ctx.arc(node.x, node.y, node.radius + 8 * unit, 0, Math.PI * 2);
             ctx.fillStyle = 'rgba(0, 255, 255, 0.3)';
             ctx.fill();
         }
@@ -303,14 +470,15 @@ class GraphVisualizer {
         ctx.fillStyle = gradient;
         ctx.fill();
 
-        // Border
-        ctx.strokeStyle = isHovered ? '#00ffff' : '#ffffff';
-        ctx.lineWidth = isHovered ? 3 : 2;
+        // Border, red for classes in a dependency cycle; the diff overlay takes precedence
+        const diffColor = this.diffNodeColor(node);
+        ctx.strokeStyle = isHovered ? '#00ffff' : (diffColor || (node.cycleSize ? '#ff4d4d' : '#ffffff'));
+        ctx.lineWidth = (isHovered || diffColor || node.cycleSize ? 3 : 2) * unit;
         ctx.stroke();
 
         // Draw label
         if (this.showLabels || isHovered) {
-            ctx.font = 'bold 12px Arial';
+            ctx.font = 'bold ' + (12 * unit) + 'px Arial';
             ctx.textAlign = 'center';
             ctx.textBaseline = 'middle';
             
@@ -318,15 +486,61 @@ class GraphVisualizer {
             const textWidth = ctx.measureText(node.name).width;
             ctx.fillStyle = 'rgba(0, 0, 0, 0.7)';
             ctx.fillRect(
-                node.x - textWidth/2 - 4,
-                node.y + node.radius + 8,
-                textWidth + 8,
-                16
+                node.x - textWidth/2 - 4 * unit,
+                node.y + node.radius + 8 * unit,
+                textWidth + 8 * unit,
+                16 * unit
             );
             
             ctx.fillStyle = '#ffffff';
-            ctx.fillText(node.name, node.x, node.y + node.radius + 16);
+            ctx.fillText(node.name, node.x, node.y + node.radius + 16 * unit);
+        }
+    }
+
+    /**
+     * Overlay a graph-diff from the server: added classes and dependencies in green, moved
+     * classes in amber, and removed dependencies between classes still shown as dashed red
+     * lines. Pass null to remove the overlay.
+     */
+    setDiffOverlay(diff) {
+        if (!diff) {
+            this.diff = null;
+            return;
         }
+        const movedTo = new Map();
+        for (const move of diff.movedNodes) {
+            movedTo.set(move.from, move.to);
+        }
+        const removedEdges = [];
+        for (const edge of diff.removedEdges) {
+            const source = this.nodeMap.get(movedTo.get(edge.source) || edge.source);
+            const target = this.nodeMap.get(movedTo.get(edge.target) || edge.target);
+            if (source && target) {
+                removedEdges.push({ source: source, target: target, fieldName: edge.fieldName, removed: true });
+            }
+        }
+        this.diff = {
+            base: diff.requestId,
+            addedNodes: new Set(diff.addedNodes.map(node => node.id)),
+            movedFrom: new Map(diff.movedNodes.map(move => [move.to, move.from])),
+            addedEdges: new Set(diff.addedEdges.map(edge => edgeKey(edge))),
+            removedEdges: removedEdges,
+            summary: diff
+        };
+    }
+
+    diffNodeColor(node) {
+        if (!this.diff) return null;
+        if (this.diff.addedNodes.has(node.id)) return '#2ecc71';
+        if (this.diff.movedFrom.has(node.id)) return '#f1c40f';
+        return null;
+    }
+
+    diffEdgeColor(edge) {
+        if (!this.diff) return null;
+        if (edge.removed) return '#ff4d4d';
+        const key = edgeKey({ source: edge.source.id, target: edge.target.id, fieldName: edge.fieldName });
+        return this.diff.addedEdges.has(key) ? '#2ecc71' : null;
     }
 
     lightenColor(color, percent) {
@@ -341,22 +555,24 @@ class GraphVisualizer {
     drawLegend() {
         const ctx = this.ctx;
         const x = 20;
-        const y = this.canvas.height - 100;
+        const y = this.canvas.height - 116;
         
         ctx.fillStyle = 'rgba(0, 0, 0, 0.7)';
-        ctx.fillRect(x - 10, y - 10, 180, 90);
+        ctx.fillRect(x - 10, y - 10, 180, 106);
         
         ctx.font = 'bold 12px Arial';
         ctx.fillStyle = '#ffffff';
         ctx.textAlign = 'left';
-        ctx.fillText('Dependency Count:', x, y);
+        ctx.fillText(this.colorMode === 'community' ? 'Community:' : 'Dependency Count:', x, y);
         
-        const colors = [
-            { color: '#e74c3c', label: '0 deps' },
-            { color: '#9b59b6', label: '1-2 deps' },
-            { color: '#f39c12', label: '3-5 deps' },
-            { color: '#27ae60', label: '6+ deps' }
-        ];
+        const colors = this.colorMode === 'community'
+            ? [0, 1, 2, 3].map(c => ({ color: this.getCommunityColor(c), label: c === 0 ? 'Community 0 (largest)' : 'Community ' + c }))
+            : [
+                { color: '#e74c3c', label: '0 deps' },
+                { color: '#9b59b6', label: '1-2 deps' },
+                { color: '#f39c12', label: '3-5 deps' },
+                { color: '#27ae60', label: '6+ deps' }
+            ];
         
         colors.forEach((item, i) => {
             const cy = y + 20 + i * 16;
@@ -369,6 +585,10 @@ class GraphVisualizer {
             ctx.font = '11px Arial';
             ctx.fillText(item.label, x + 20, cy + 4);
         });
+
+        ctx.fillStyle = '#cccccc';
+        ctx.font = '11px Arial';
+        ctx.fillText('Size: PageRank', x, y + 20 + colors.length * 16 + 4);
     }
 
     // Mouse handlers
@@ -410,6 +630,9 @@ class GraphVisualizer {
     }
 
     onMouseUp(e) {
+        if (this.isPanning) {
+            this.notifyViewChange();
+        }
         this.draggedNode = null;
         this.isPanning = false;
     }
@@ -418,7 +641,12 @@ class GraphVisualizer {
         e.preventDefault();
         const delta = e.deltaY > 0 ? 0.9 : 1.1;
         this.scale *= delta;
-        this.scale = Math.max(0.2, Math.min(3, this.scale));
+        if (this.viewportMode) {
+            this.scale = Math.max(0.5, Math.min(500, this.scale));
+            this.notifyViewChange();
+        } else {
+            this.scale = Math.max(0.2, Math.min(3, this.scale));
+        }
     }
 
     onDoubleClick(e) {
@@ -450,6 +678,7 @@ class GraphVisualizer {
         this.offsetX = 0;
         this.offsetY = 0;
         this.scale = 1;
+        this.notifyViewChange();
     }
 
     toggleLabels() {
@@ -460,10 +689,24 @@ class GraphVisualizer {
         const el = document.getElementById('hover-info');
         if (el) {
             el.innerHTML = '<strong>' + node.name + '</strong><br>' +
-                node.fullName + '<br>Dependencies: ' + node.dependencyCount;
+                node.fullName + '<br>Dependencies: ' + node.dependencyCount +
+                (node.pageRank ? '<br>Dependents: ' + node.dependentCount +
+                    '<br>PageRank: ' + node.pageRank.toExponential(2) +
+                    '<br>Betweenness: ' + node.betweenness.toFixed(4) : '') +
+                (node.community >= 0 ? '<br>Community: ' + node.community : '') +
+                (node.cycleSize > 1 ? '<br>In a cycle of ' + node.cycleSize + ' classes' : '') +
+                (node.cycleSize === 1 ? '<br>Depends on itself' : '') +
+                this.diffInfo(node);
         }
     }
 
+    diffInfo(node) {
+        if (!this.diff) return '';
+        if (this.diff.addedNodes.has(node.id)) return '<br>Added since ' + this.diff.base;
+        if (this.diff.movedFrom.has(node.id)) return '<br>Moved from ' + this.diff.movedFrom.get(node.id);
+        return '';
+    }
+
     clearHoverInfo() {
         const el = document.getElementById('hover-info');
         if (el) el.textContent = 'Hover over a node to see details';
@@ -22,7 +22,15 @@ document.addEventListener('DOMContentLoaded', function() {
 
     // Setup WebSocket
     const wsProtocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
-    const wsUrl = wsProtocol + '//' + window.location.host + '/ws/graph';
+    // ?workspace=<id> selects a workspace other than the default one
+    const params = new URLSearchParams(window.location.search);
+    const workspace = params.get('workspace');
+    // ?diff=<id> overlays the changes since the graph of workspace <id>
+    const diffBase = params.get('diff');
+    // The graph id and version the diff was last requested for; the overlay survives re-renders
+    let diffRequestedFor = null;
+    const wsUrl = wsProtocol + '//' + window.location.host + '/ws/graph'
+        + (workspace ? '/' + encodeURIComponent(workspace) : '');
     console.log('WebSocket URL:', wsUrl);
 
     // Create WebSocket client
@@ -41,8 +49,34 @@ document.addEventListener('DOMContentLoaded', function() {
         if (visualizer) {
             visualizer.renderGraph(graphData);
         }
+        const graphVersion = wsClient.graphId + '@' + wsClient.version;
+        if (diffBase && graphVersion !== diffRequestedFor) {
+            diffRequestedFor = graphVersion;
+            wsClient.requestDiff(diffBase);
+        }
+    }, function(summary) {
+        // Too large to send whole: explore by viewport
+        hideLoading();
+        if (visualizer) {
+            visualizer.enterViewportMode(summary, function(view) {
+                wsClient.requestViewport(view);
+            });
+        }
+    }, function(page) {
+        if (visualizer) {
+            visualizer.renderViewportPage(page);
+        }
     });
 
+    wsClient.onDiffReceived = function(diff) {
+        console.log('Diff against', diff.requestId + ':', diff.addedNodes.length, 'classes added,',
+            diff.removedNodes.length, 'removed,', diff.movedNodes.length, 'moved;',
+            diff.addedEdges.length, 'dependencies added,', diff.removedEdges.length, 'removed');
+        if (visualizer) {
+            visualizer.setDiffOverlay(diff);
+        }
+    };
+
     wsClient.connect();
 
     // Setup controls
@@ -101,6 +135,13 @@ function setupControls() {
             if (visualizer) visualizer.toggleLabels();
         });
     }
+
+    const colorBtn = document.getElementById('toggle-colors');
+    if (colorBtn) {
+        colorBtn.addEventListener('click', function() {
+            if (visualizer) visualizer.toggleColorMode();
+        });
+    }
 }
 
 window.addEventListener('beforeunload', function() {
@@ -1,35 +1,96 @@
 /**
  * WebSocket client for receiving graph data.
+ *
+ * Offers the binary graph format first and falls back to JSON; the server picks one
+ * through the WebSocket subprotocol.
+ *
+ * The client keeps the last graph it received with its id and version. On (re)connect it
+ * sends that version in a sync message, and the server answers with only the missing
+ * changes as a delta, or with a full snapshot if it cannot.
+ *
+ * Graphs too large to send whole arrive as a graph-summary instead. The client then asks
+ * for what the camera shows with viewport queries, loading pages in order.
+ *
+ * Package-level views ask for a package graph (class counts per package and dependency counts
+ * per package pair) with requestPackageGraph instead of aggregating the edge list here.
+ *
+ * requestDiff compares the graph of another workspace (e.g. the main branch) with this one;
+ * the server answers with a graph-diff for the viewer to overlay.
  */
+const GRAPH_BINARY_PROTOCOL = 'graph-binary.v1';
+const GRAPH_JSON_PROTOCOL = 'graph-json.v1';
+const GRAPH_BINARY_MAGIC = 0x4247444A; // "JDGB" little-endian
+const MAX_VIEWPORT_PAGES = 10;
+
 class WebSocketClient {
-    constructor(url, onGraphReceived) {
+    constructor(url, onGraphReceived, onSummaryReceived, onViewportReceived) {
         this.url = url;
         this.onGraphReceived = onGraphReceived;
+        this.onSummaryReceived = onSummaryReceived || function() {};
+        this.onViewportReceived = onViewportReceived || function() {};
         this.ws = null;
         this.reconnectAttempts = 0;
         this.maxReconnects = 5;
+
+        // Local copy of the graph, kept up to date with deltas
+        this.graphId = null;
+        this.version = -1;
+        this.nodes = new Map();
+        this.edges = new Map();
+
+        // Viewport mode, for graphs the server only sends a summary of
+        this.viewportMode = false;
+        this.viewport = null;
+        this.viewportRequestId = 0;
+
+        // Package graph answers, by request id
+        this.onPackageGraphReceived = function() {};
+        this.packageRequestId = 0;
+
+        // Graph diff answers
+        this.onDiffReceived = function() {};
     }
 
     connect() {
-        console.log('Connecting to WebSocket:', this.url);
+        const url = this.url + (this.url.indexOf('?') >= 0 ? '&' : '?') + 'sync=1';
+        console.log('Connecting to WebSocket:', url);
 
         try {
-            this.ws = new WebSocket(this.url);
+            this.ws = new WebSocket(url, [GRAPH_BINARY_PROTOCOL, GRAPH_JSON_PROTOCOL]);
+            this.ws.binaryType = 'arraybuffer';
 
             this.ws.onopen = () => {
-                console.log('WebSocket connected');
+                console.log('WebSocket connected, protocol:', this.ws.protocol || '(none)');
                 this.reconnectAttempts = 0;
                 this.updateStatus(true);
+                this.requestSync();
             };
 
             this.ws.onmessage = (event) => {
+                if (event.data instanceof ArrayBuffer) {
+                    this.handleBinaryMessage(event.data);
+                    return;
+                }
+
                 console.log('WebSocket message received, length:', event.data.length);
                 try {
                     const data = JSON.parse(event.data);
                     console.log('Parsed data type:', data.type);
                     
                     if (data.type === 'graph') {
-                        this.onGraphReceived(data);
+                        this.applySnapshot(data);
+                    } else if (data.type === 'delta') {
+                        this.applyDelta(data);
+                    } else if (data.type === 'graph-summary') {
+                        this.applySummary(data);
+                    } else if (data.type === 'viewport') {
+                        this.applyViewportPage(data);
+                    } else if (data.type === 'package-graph') {
+                        this.onPackageGraphReceived(data);
+                    } else if (data.type === 'graph-diff') {
+                        this.onDiffReceived(data);
+                    } else if (data.type === 'diff-error') {
+                        console.warn('Diff failed:', data.message);
                     }
                 } catch (error) {
                     console.error('Error parsing WebSocket message:', error);
@@ -58,6 +119,193 @@ class WebSocketClient {
         }
     }
 
+    handleBinaryMessage(buffer) {
+        console.log('WebSocket binary message received, bytes:', buffer.byteLength);
+        try {
+            const start = performance.now();
+            const data = decodeBinaryGraph(buffer);
+            console.log('Decoded binary graph in', (performance.now() - start).toFixed(1), 'ms');
+            this.applySnapshot(data);
+        } catch (error) {
+            console.error('Error decoding binary graph:', error);
+        }
+    }
+
+    /**
+     * Tell the server which graph version we already have, or -1 for a full snapshot.
+     */
+    requestSync(fromScratch) {
+        if (!this.ws || this.ws.readyState !== WebSocket.OPEN) {
+            return;
+        }
+        this.ws.send(JSON.stringify({
+            type: 'sync',
+            graphId: fromScratch ? null : this.graphId,
+            version: fromScratch ? -1 : this.version
+        }));
+    }
+
+    applySnapshot(data) {
+        this.viewportMode = false;
+        this.graphId = data.graphId || null;
+        this.version = typeof data.version === 'number' ? data.version : -1;
+        this.nodes = new Map();
+        this.edges = new Map();
+        this.cycles = data.cycles || []; // as of this snapshot; deltas do not update them
+        this.communityCount = data.communityCount || 0;
+        for (const node of data.nodes) {
+            this.nodes.set(node.id, node);
+        }
+        for (const edge of data.edges) {
+            this.edges.set(edgeKey(edge), edge);
+        }
+        this.onGraphReceived(data);
+    }
+
+    applyDelta(delta) {
+        if (delta.graphId !== this.graphId || delta.fromVersion > this.version) {
+            // Missed changes in between; start over from a full snapshot
+            console.warn('Delta', delta.fromVersion, '->', delta.toVersion,
+                'does not follow local version', this.version, '- resyncing');
+            this.requestSync(true);
+            return;
+        }
+
+        if (this.viewportMode) {
+            // No local copy to patch; reload what the camera shows
+            this.version = Math.max(this.version, delta.toVersion);
+            if (this.viewport) {
+                this.requestViewport(this.viewport);
+            }
+            return;
+        }
+
+        for (const change of delta.changes) {
+            if (change.version <= this.version) {
+                continue; // already applied
+            }
+            switch (change.op) {
+                case 'node-added':
+                case 'node-moved': {
+                    const existing = this.nodes.get(change.id);
+                    if (existing) {
+                        existing.x = change.x;
+                        existing.y = change.y;
+                        existing.z = change.z;
+                    } else {
+                        this.nodes.set(change.id, {
+                            id: change.id, name: change.name, fullName: change.id,
+                            x: change.x, y: change.y, z: change.z,
+                            dependencyCount: 0, dependentCount: 0
+                        });
+                    }
+                    break;
+                }
+                case 'node-removed':
+                    this.nodes.delete(change.id);
+                    break;
+                case 'edge-added':
+                    this.edges.set(edgeKey(change), {
+                        source: change.source, target: change.target, fieldName: change.fieldName
+                    });
+                    break;
+                case 'edge-removed':
+                    this.edges.delete(edgeKey(change));
+                    break;
+            }
+            this.version = change.version;
+        }
+        this.version = Math.max(this.version, delta.toVersion);
+        console.log('Applied delta with', delta.changes.length, 'changes, now at version', this.version);
+        this.onGraphReceived(this.toGraphData());
+    }
+
+    applySummary(summary) {
+        console.log('Graph summary received:', summary.nodeCount, 'nodes; switching to viewport mode');
+        this.viewportMode = true;
+        this.graphId = summary.graphId;
+        this.version = summary.version;
+        this.nodes = new Map();
+        this.edges = new Map();
+        this.onSummaryReceived(summary);
+    }
+
+    /**
+     * Ask for the nodes and edges inside a view box, given as {minX, minY, maxX, maxY, zoom}.
+     * Answers to earlier requests that are still in flight are dropped.
+     */
+    requestViewport(view, page) {
+        if (!this.ws || this.ws.readyState !== WebSocket.OPEN) {
+            return;
+        }
+        if (!page) {
+            this.viewport = view;
+            this.viewportRequestId++;
+        }
+        this.ws.send(JSON.stringify(Object.assign({
+            type: 'viewport',
+            requestId: String(this.viewportRequestId),
+            page: page || 0
+        }, view)));
+    }
+
+    applyViewportPage(data) {
+        if (data.requestId !== String(this.viewportRequestId)) {
+            return; // the camera has moved on
+        }
+        this.onViewportReceived(data);
+        if (data.page + 1 < data.pageCount && data.page + 1 < MAX_VIEWPORT_PAGES) {
+            this.requestViewport(this.viewport, data.page + 1);
+        }
+    }
+
+    /**
+     * Ask for the package graph with package names cut to `depth` segments (0 or omitted for
+     * full names). The answer is passed to onPackageGraphReceived.
+     */
+    requestPackageGraph(depth) {
+        if (!this.ws || this.ws.readyState !== WebSocket.OPEN) {
+            return;
+        }
+        this.packageRequestId++;
+        this.ws.send(JSON.stringify({
+            type: 'packages',
+            requestId: String(this.packageRequestId),
+            depth: depth || 0
+        }));
+    }
+
+    /**
+     * Ask for the changes from the graph of workspace `base` to this one. The answer is passed
+     * to onDiffReceived.
+     */
+    requestDiff(base) {
+        if (!this.ws || this.ws.readyState !== WebSocket.OPEN) {
+            return;
+        }
+        this.ws.send(JSON.stringify({ type: 'diff', requestId: base, base: base }));
+    }
+
+    /**
+     * Build a graph message from the local copy, recomputing the degree counts.
+     */
+    toGraphData() {
+        const nodes = Array.from(this.nodes.values());
+        for (const node of nodes) {
+            node.dependencyCount = 0;
+            node.dependentCount = 0;
+        }
+        const edges = Array.from(this.edges.values());
+        for (const edge of edges) {
+            const source = this.nodes.get(edge.source);
+            const target = this.nodes.get(edge.target);
+            if (source) source.dependencyCount++;
+            if (target) target.dependentCount++;
+        }
+        return { type: 'graph', graphId: this.graphId, version: this.version, nodes: nodes, edges: edges,
+            cycles: this.cycles || [], communityCount: this.communityCount || 0 };
+    }
+
     close() {
         if (this.ws) {
             this.ws.close();
@@ -79,3 +327,171 @@ class WebSocketClient {
         }
     }
 }
+
+function edgeKey(edge) {
+    return edge.source + '\u0000' + edge.target + '\u0000' + (edge.fieldName || '');
+}
+
+const LITTLE_ENDIAN_PLATFORM = new Uint8Array(new Uint32Array([1]).buffer)[0] === 1;
+
+/**
+ * Read `count` 32-bit values starting at `offset` as a typed array.
+ * Views the buffer directly on little-endian platforms, copies through a DataView otherwise.
+ */
+function readTypedArray(buffer, offset, count, ArrayType) {
+    if (LITTLE_ENDIAN_PLATFORM) {
+        return new ArrayType(buffer, offset, count);
+    }
+    const view = new DataView(buffer, offset, count * 4);
+    const result = new ArrayType(count);
+    for (let i = 0; i < count; i++) {
+        result[i] = ArrayType === Float32Array ? view.getFloat32(i * 4, true) : view.getInt32(i * 4, true);
+    }
+    return result;
+}
+
+/**
+ * Decode a graph in the binary format written by BinaryGraphWriter.
+ * Returns the same shape as the JSON message; the raw typed arrays are kept in `arrays`.
+ */
+function decodeBinaryGraph(buffer) {
+    const header = new DataView(buffer, 0, 36);
+    if (header.getUint32(0, true) !== GRAPH_BINARY_MAGIC) {
+        throw new Error('Not a binary graph payload');
+    }
+    const formatVersion = header.getUint32(4, true);
+    if (formatVersion < 2 || formatVersion > 6) {
+        throw new Error('Unsupported binary graph format version ' + formatVersion);
+    }
+    const nodeCount = header.getUint32(8, true);
+    const edgeCount = header.getUint32(12, true);
+    const stringCount = header.getUint32(16, true);
+    const stringBytes = header.getUint32(20, true);
+    const graphIdString = header.getUint32(24, true);
+    const graphVersion = header.getUint32(28, true) + header.getUint32(32, true) * 4294967296;
+    let offset = 36;
+
+    // String table
+    const stringOffsets = readTypedArray(buffer, offset, stringCount + 1, Int32Array);
+    offset += (stringCount + 1) * 4;
+    const blob = new Uint8Array(buffer, offset, stringBytes);
+    offset += (stringBytes + 3) & ~3;
+    const decoder = new TextDecoder('utf-8');
+    const strings = new Array(stringCount);
+    for (let i = 0; i < stringCount; i++) {
+        strings[i] = decoder.decode(blob.subarray(stringOffsets[i], stringOffsets[i + 1]));
+    }
+
+    // Node and edge arrays
+    const ids = readTypedArray(buffer, offset, nodeCount, Int32Array);
+    offset += nodeCount * 4;
+    const names = readTypedArray(buffer, offset, nodeCount, Int32Array);
+    offset += nodeCount * 4;
+    const positions = readTypedArray(buffer, offset, nodeCount * 3, Float32Array);
+    offset += nodeCount * 12;
+    const outDegree = readTypedArray(buffer, offset, nodeCount, Int32Array);
+    offset += nodeCount * 4;
+    const inDegree = readTypedArray(buffer, offset, nodeCount, Int32Array);
+    offset += nodeCount * 4;
+    let scc = null;
+    if (formatVersion >= 3) {
+        scc = readTypedArray(buffer, offset, nodeCount, Int32Array);
+        offset += nodeCount * 4;
+    }
+    let pageRank = null;
+    let betweenness = null;
+    if (formatVersion >= 4) {
+        pageRank = readTypedArray(buffer, offset, nodeCount, Float32Array);
+        offset += nodeCount * 4;
+        betweenness = readTypedArray(buffer, offset, nodeCount, Float32Array);
+        offset += nodeCount * 4;
+    }
+    let community = null;
+    let communityCount = 0;
+    if (formatVersion >= 5) {
+        community = readTypedArray(buffer, offset, nodeCount, Int32Array);
+        offset += nodeCount * 4;
+        for (let i = 0; i < nodeCount; i++) {
+            communityCount = Math.max(communityCount, community[i] + 1);
+        }
+    }
+    let sources = null;
+    if (formatVersion >= 6) {
+        sources = readTypedArray(buffer, offset, nodeCount, Int32Array);
+        offset += nodeCount * 4;
+    }
+    const edgeSource = readTypedArray(buffer, offset, edgeCount, Int32Array);
+    offset += edgeCount * 4;
+    const edgeTarget = readTypedArray(buffer, offset, edgeCount, Int32Array);
+    offset += edgeCount * 4;
+    const edgeField = readTypedArray(buffer, offset, edgeCount, Int32Array);
+
+    const nodes = new Array(nodeCount);
+    for (let i = 0; i < nodeCount; i++) {
+        const id = strings[ids[i]];
+        nodes[i] = {
+            id: id,
+            name: strings[names[i]],
+            fullName: id,
+            x: positions[i * 3],
+            y: positions[i * 3 + 1],
+            z: positions[i * 3 + 2],
+            dependencyCount: outDegree[i],
+            dependentCount: inDegree[i],
+            pageRank: pageRank ? pageRank[i] : 0,
+            betweenness: betweenness ? betweenness[i] : 0,
+            scc: scc ? scc[i] : -1,
+            community: community ? community[i] : -1,
+            sourceUri: sources && sources[i] >= 0 ? strings[sources[i]] : null
+        };
+    }
+
+    const edges = new Array(edgeCount);
+    for (let i = 0; i < edgeCount; i++) {
+        edges[i] = {
+            source: nodes[edgeSource[i]].id,
+            target: nodes[edgeTarget[i]].id,
+            fieldName: strings[edgeField[i]]
+        };
+    }
+
+    return {
+        type: 'graph',
+        format: 'binary',
+        formatVersion: formatVersion,
+        graphId: strings[graphIdString],
+        version: graphVersion,
+        nodes: nodes,
+        edges: edges,
+        cycles: scc ? cyclesFromComponents(nodes, scc, edgeSource, edgeTarget) : [],
+        communityCount: communityCount,
+        arrays: { positions, outDegree, inDegree, edgeSource, edgeTarget, scc, pageRank, betweenness, community }
+    };
+}
+
+/**
+ * Rebuild the JSON "cycles" list from per-node components: components shared by several
+ * nodes, or holding a node that depends on itself. Largest first, like the server sends them.
+ */
+function cyclesFromComponents(nodes, scc, edgeSource, edgeTarget) {
+    const members = new Map();
+    for (let i = 0; i < nodes.length; i++) {
+        if (!members.has(scc[i])) {
+            members.set(scc[i], []);
+        }
+        members.get(scc[i]).push(nodes[i].id);
+    }
+    const selfLoops = new Set();
+    for (let i = 0; i < edgeSource.length; i++) {
+        if (edgeSource[i] === edgeTarget[i]) {
+            selfLoops.add(scc[edgeSource[i]]);
+        }
+    }
+    const cycles = [];
+    for (const [component, ids] of members) {
+        if (ids.length > 1 || selfLoops.has(component)) {
+            cycles.push({ scc: component, nodes: ids.sort() });
+        }
+    }
+    return cycles.sort((a, b) => b.nodes.length - a.nodes.length || a.scc - b.scc);
+}
@@ -0,0 +1,81 @@
+package com.analyzer.graph;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Random dependency graphs for tests, and a plain breadth-first search to check answers against.
+ */
+public final class TestGraphs {
+    private TestGraphs() {
+    }
+
+    /**
+     * Create a graph of classes {@code p<i % 5>.C<i>} with random dependencies. An acyclic
+     * graph only has dependencies from a class to classes with a smaller number.
+     */
+    public static DependencyGraph random(long seed, int nodeCount, int edgeCount, boolean acyclic) {
+        Random random = new Random(seed);
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode[] nodes = new ClassNode[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = node(i);
+            nodes[i].setX(random.nextDouble() * 1000);
+            nodes[i].setY(random.nextDouble() * 1000);
+            nodes[i].setZ(random.nextDouble() * 1000);
+            graph.addNode(nodes[i]);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int from = random.nextInt(nodeCount);
+            int to = random.nextInt(nodeCount);
+            if (acyclic) {
+                if (from == to) {
+                    continue;
+                }
+                if (from < to) {
+                    int swap = from;
+                    from = to;
+                    to = swap;
+                }
+            }
+            graph.addEdge(new DependencyEdge(nodes[from], nodes[to], "f" + e));
+        }
+        return graph;
+    }
+
+    public static ClassNode node(int i) {
+        return new ClassNode("C" + i, "p" + (i % 5) + ".C" + i);
+    }
+
+    /**
+     * Get the classes each class reaches along its dependencies, itself included.
+     */
+    public static Map<String, Set<String>> reachable(DependencyGraph graph) {
+        Map<String, Set<String>> targets = new HashMap<>();
+        for (DependencyEdge edge : graph.getEdges()) {
+            targets.computeIfAbsent(edge.getSource().getFullyQualifiedName(), k -> new HashSet<>())
+                    .add(edge.getTarget().getFullyQualifiedName());
+        }
+        Map<String, Set<String>> result = new HashMap<>();
+        for (ClassNode node : graph.getNodes()) {
+            Set<String> seen = new HashSet<>();
+            Deque<String> queue = new ArrayDeque<>();
+            seen.add(node.getFullyQualifiedName());
+            queue.add(node.getFullyQualifiedName());
+            while (!queue.isEmpty()) {
+                for (String next : targets.getOrDefault(queue.poll(), Set.of())) {
+                    if (seen.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+            result.put(node.getFullyQualifiedName(), seen);
+        }
+        return result;
+    }
+}
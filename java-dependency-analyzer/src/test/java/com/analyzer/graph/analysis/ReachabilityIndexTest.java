@@ -0,0 +1,189 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReachabilityIndexTest {
+    private static final long BITSETS = ReachabilityIndex.DEFAULT_MAX_BITSET_BYTES;
+    private static final long INTERVALS = 0;
+
+    @Test
+    void bitsetsMatchSearchOnAcyclicGraphs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            check(TestGraphs.random(seed, 80, 160, true), BITSETS, true);
+        }
+    }
+
+    @Test
+    void intervalLabelsMatchSearchOnAcyclicGraphs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            check(TestGraphs.random(seed, 80, 160, true), INTERVALS, false);
+        }
+    }
+
+    @Test
+    void bitsetsMatchSearchOnCyclicGraphs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            check(TestGraphs.random(seed, 80, 120, false), BITSETS, true);
+        }
+    }
+
+    @Test
+    void intervalLabelsMatchSearchOnCyclicGraphs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            check(TestGraphs.random(seed, 80, 120, false), INTERVALS, false);
+        }
+    }
+
+    @Test
+    void addedDependencyIsMergedIntoBitsets() {
+        DependencyGraph graph = chain(6); // C5 -> C4 -> ... -> C0
+        ClassNode extra = TestGraphs.node(6);
+        graph.addNode(extra);
+        graph.addEdge(new DependencyEdge(extra, graph.getNode("p0.C0"), "f"));
+        ReachabilityIndex index = graph.getReachabilityIndex(BITSETS);
+        assertFalse(index.dependsOn("p0.C5", "p1.C6"));
+
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C0"), graph.getNode("p4.C4"), "g")); // closes a cycle
+        graph.removeEdge(new DependencyEdge(graph.getNode("p0.C0"), graph.getNode("p4.C4"), "g"));
+        ReachabilityIndex rebuilt = graph.getReachabilityIndex(BITSETS);
+        assertNotSame(index, rebuilt);
+
+        graph.addEdge(new DependencyEdge(graph.getNode("p2.C2"), extra, "h"));
+        ReachabilityIndex updated = graph.getReachabilityIndex(BITSETS);
+        assertSame(rebuilt, updated, "an edge between known classes is applied in place");
+        assertEquals(graph.getVersion(), updated.getVersion());
+        assertTrue(updated.dependsOn("p0.C5", "p1.C6"));
+        assertTrue(updated.dependsOn("p3.C3", "p1.C6"));
+        assertFalse(updated.dependsOn("p1.C1", "p1.C6"));
+        checkAgainstSearch(graph, updated);
+    }
+
+    @Test
+    void cycleClosingDependencyRebuildsTheIndex() {
+        DependencyGraph graph = chain(6);
+        ReachabilityIndex index = graph.getReachabilityIndex(BITSETS);
+        int components = index.getComponents().getComponentCount();
+
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C0"), graph.getNode("p3.C3"), "back"));
+        ReachabilityIndex rebuilt = graph.getReachabilityIndex(BITSETS);
+        assertNotSame(index, rebuilt);
+        assertEquals(components - 3, rebuilt.getComponents().getComponentCount());
+        assertTrue(rebuilt.dependsOn("p0.C0", "p2.C2"));
+        assertFalse(rebuilt.dependsOn("p0.C0", "p4.C4"));
+        checkAgainstSearch(graph, rebuilt);
+    }
+
+    @Test
+    void partlyAppliedChangesAreReplacedByRebuild() {
+        DependencyGraph graph = TestGraphs.random(7, 60, 90, true);
+        graph.getReachabilityIndex(BITSETS);
+        // The first additions can be merged in place, the last one closes a cycle
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C50"), graph.getNode("p1.C1"), "a"));
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C40"), graph.getNode("p2.C2"), "b"));
+        graph.addEdge(new DependencyEdge(graph.getNode("p1.C1"), graph.getNode("p0.C50"), "c"));
+        checkAgainstSearch(graph, graph.getReachabilityIndex(BITSETS));
+    }
+
+    @Test
+    void intervalModeAcceptsOnlyImpliedDependencies() {
+        DependencyGraph graph = chain(6);
+        ReachabilityIndex index = graph.getReachabilityIndex(INTERVALS);
+        assertFalse(index.isBitsetMode());
+
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C5"), graph.getNode("p0.C0"), "implied"));
+        assertSame(index, graph.getReachabilityIndex(INTERVALS));
+
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C0"), TestGraphs.node(9), "new"));
+        ReachabilityIndex rebuilt = graph.getReachabilityIndex(INTERVALS);
+        assertNotSame(index, rebuilt);
+        checkAgainstSearch(graph, rebuilt);
+    }
+
+    @Test
+    void randomAdditionsKeepAnswersCorrect() {
+        for (long mode : new long[] {BITSETS, INTERVALS}) {
+            DependencyGraph graph = TestGraphs.random(11, 50, 60, true);
+            java.util.Random random = new java.util.Random(mode);
+            ClassNode[] nodes = graph.getNodes().toArray(new ClassNode[0]);
+            for (int step = 0; step < 40; step++) {
+                ClassNode from = nodes[random.nextInt(nodes.length)];
+                ClassNode to = nodes[random.nextInt(nodes.length)];
+                graph.addEdge(new DependencyEdge(from, to, "step" + step));
+                checkAgainstSearch(graph, graph.getReachabilityIndex(mode));
+            }
+        }
+    }
+
+    /** C(i) depends on C(i - 1). */
+    private static DependencyGraph chain(int length) {
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode previous = null;
+        for (int i = 0; i < length; i++) {
+            ClassNode node = TestGraphs.node(i);
+            graph.addNode(node);
+            if (previous != null) {
+                graph.addEdge(new DependencyEdge(node, previous, "f"));
+            }
+            previous = node;
+        }
+        return graph;
+    }
+
+    private static void check(DependencyGraph graph, long maxBitsetBytes, boolean bitsets) {
+        ReachabilityIndex index = ReachabilityIndex.build(graph.getComponents(), maxBitsetBytes);
+        assertEquals(bitsets, index.isBitsetMode());
+        checkAgainstSearch(graph, index);
+    }
+
+    private static void checkAgainstSearch(DependencyGraph graph, ReachabilityIndex index) {
+        Map<String, Set<String>> reachable = TestGraphs.reachable(graph);
+        for (ClassNode from : graph.getNodes()) {
+            for (ClassNode to : graph.getNodes()) {
+                String a = from.getFullyQualifiedName();
+                String b = to.getFullyQualifiedName();
+                assertEquals(reachable.get(a).contains(b), index.dependsOn(a, b), a + " -> " + b);
+            }
+        }
+        for (ClassNode node : graph.getNodes()) {
+            int component = index.componentOf(node.getFullyQualifiedName());
+            Set<Integer> expectedAncestors = new HashSet<>();
+            Set<Integer> expectedDescendants = new HashSet<>();
+            for (ClassNode other : graph.getNodes()) {
+                int otherComponent = index.componentOf(other.getFullyQualifiedName());
+                if (otherComponent == component) {
+                    continue;
+                }
+                if (reachable.get(other.getFullyQualifiedName()).contains(node.getFullyQualifiedName())) {
+                    expectedAncestors.add(otherComponent);
+                }
+                if (reachable.get(node.getFullyQualifiedName()).contains(other.getFullyQualifiedName())) {
+                    expectedDescendants.add(otherComponent);
+                }
+            }
+            assertEquals(expectedAncestors, toSet(index.ancestorComponents(component)), "ancestors of " + node);
+            assertEquals(expectedDescendants, toSet(index.descendantComponents(component)), "descendants of " + node);
+        }
+    }
+
+    private static Set<Integer> toSet(int[] values) {
+        Set<Integer> set = new HashSet<>();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,137 @@
+package com.analyzer.graph.analysis;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.TestGraphs;
+import com.analyzer.graph.index.AdjacencyIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StronglyConnectedComponentsTest {
+
+    @Test
+    void componentsMatchMutualReachabilityOnCyclicGraphs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            check(TestGraphs.random(seed, 120, 180, false));
+        }
+    }
+
+    @Test
+    void acyclicGraphsHaveOneComponentPerClass() {
+        for (long seed = 1; seed <= 5; seed++) {
+            DependencyGraph graph = TestGraphs.random(seed, 120, 300, true);
+            StronglyConnectedComponents components = check(graph);
+            assertEquals(graph.getNodeCount(), components.getComponentCount());
+            assertEquals(0, components.getCycleCount());
+        }
+    }
+
+    @Test
+    void selfDependencyIsACycleOfOne() {
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode a = TestGraphs.node(0);
+        ClassNode b = TestGraphs.node(1);
+        graph.addNode(a);
+        graph.addNode(b);
+        graph.addEdge(new DependencyEdge(a, a, "self"));
+        graph.addEdge(new DependencyEdge(a, b, "b"));
+
+        StronglyConnectedComponents components = check(graph);
+        assertEquals(2, components.getComponentCount());
+        assertTrue(components.isCyclic(components.componentOf("p0.C0")));
+        assertFalse(components.isCyclic(components.componentOf("p1.C1")));
+        assertEquals(List.of(List.of(a)), components.getCycles());
+    }
+
+    @Test
+    void cyclesAreListedLargestFirstInNameOrder() {
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode[] nodes = new ClassNode[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = TestGraphs.node(i);
+            graph.addNode(nodes[i]);
+        }
+        graph.addEdge(new DependencyEdge(nodes[0], nodes[1], "f"));
+        graph.addEdge(new DependencyEdge(nodes[1], nodes[0], "f"));
+        graph.addEdge(new DependencyEdge(nodes[4], nodes[2], "f"));
+        graph.addEdge(new DependencyEdge(nodes[2], nodes[3], "f"));
+        graph.addEdge(new DependencyEdge(nodes[3], nodes[4], "f"));
+
+        StronglyConnectedComponents components = check(graph);
+        assertEquals(List.of(List.of(nodes[2], nodes[3], nodes[4]), List.of(nodes[0], nodes[1])),
+                components.getCycles());
+    }
+
+    @Test
+    void longChainsDoNotOverflowTheStack() {
+        int n = 200_000;
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode previous = null;
+        for (int i = 0; i < n; i++) {
+            ClassNode node = TestGraphs.node(i);
+            graph.addNode(node);
+            if (previous != null) {
+                graph.addEdge(new DependencyEdge(previous, node, "next"));
+            }
+            previous = node;
+        }
+        graph.addEdge(new DependencyEdge(previous, graph.getNode("p0.C0"), "first"));
+
+        StronglyConnectedComponents components = graph.getComponents();
+        assertEquals(1, components.getComponentCount());
+        assertEquals(n, components.size(0));
+        assertTrue(components.isCyclic(0));
+    }
+
+    /**
+     * Check the components of a graph against a breadth-first search: two classes share a
+     * component exactly when each reaches the other, every dependency has a component id no
+     * larger than its dependent's, and a component is a cycle exactly when it has more than one
+     * class or a class that depends on itself.
+     */
+    private static StronglyConnectedComponents check(DependencyGraph graph) {
+        StronglyConnectedComponents components = graph.getComponents();
+        AdjacencyIndex index = components.getIndex();
+        Map<String, Set<String>> reachable = TestGraphs.reachable(graph);
+        int n = index.getNodeCount();
+        for (int u = 0; u < n; u++) {
+            String from = index.getNode(u).getFullyQualifiedName();
+            for (int v = 0; v < n; v++) {
+                String to = index.getNode(v).getFullyQualifiedName();
+                boolean mutual = reachable.get(from).contains(to) && reachable.get(to).contains(from);
+                assertEquals(mutual, components.componentOf(u) == components.componentOf(v), from + " / " + to);
+            }
+        }
+
+        int members = 0;
+        for (int c = 0; c < components.getComponentCount(); c++) {
+            members += components.size(c);
+            boolean selfLoop = false;
+            for (int k = 0; k < components.size(c); k++) {
+                int v = components.member(c, k);
+                assertEquals(c, components.componentOf(v));
+                for (int e = 0; e < index.outDegree(v); e++) {
+                    selfLoop |= index.outTarget(v, e) == v;
+                }
+            }
+            assertEquals(components.size(c) > 1 || selfLoop, components.isCyclic(c), "component " + c);
+        }
+        assertEquals(n, members);
+
+        for (int v = 0; v < n; v++) {
+            for (int e = 0; e < index.outDegree(v); e++) {
+                assertTrue(components.componentOf(index.outTarget(v, e)) <= components.componentOf(v),
+                        "dependencies have smaller component ids");
+            }
+        }
+        return components;
+    }
+}
@@ -0,0 +1,159 @@
+package com.analyzer.graph.diff;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraphDiffTest {
+
+    @Test
+    void identicalGraphsHaveNoDifferences() {
+        GraphDiff diff = GraphDiff.compute(TestGraphs.random(1, 200, 400, false), TestGraphs.random(1, 200, 400, false));
+        assertTrue(diff.isEmpty(), diff.toString());
+    }
+
+    @Test
+    void randomChangesMatchSetDifferences() {
+        for (long seed = 1; seed <= 5; seed++) {
+            DependencyGraph base = TestGraphs.random(seed, 200, 400, false);
+            DependencyGraph graph = TestGraphs.random(seed, 200, 400, false);
+            Random random = new Random(seed);
+            for (int i = 0; i < 10; i++) {
+                graph.removeNode(TestGraphs.node(random.nextInt(200)).getFullyQualifiedName());
+            }
+            List<DependencyEdge> edges = new ArrayList<>(graph.getEdges());
+            for (int i = 0; i < 20; i++) {
+                graph.removeEdge(edges.get(random.nextInt(edges.size())));
+            }
+            List<ClassNode> nodes = new ArrayList<>(graph.getNodes());
+            for (int i = 200; i < 210; i++) {
+                ClassNode node = TestGraphs.node(i);
+                graph.addNode(node);
+                graph.addEdge(new DependencyEdge(node, nodes.get(random.nextInt(nodes.size())), "new"));
+                graph.addEdge(new DependencyEdge(nodes.get(random.nextInt(nodes.size())), node, "new"));
+            }
+            for (int i = 0; i < 20; i++) {
+                graph.addEdge(new DependencyEdge(nodes.get(random.nextInt(nodes.size())),
+                        nodes.get(random.nextInt(nodes.size())), "added" + i));
+            }
+
+            GraphDiff diff = GraphDiff.compute(base, graph);
+            assertEquals(sorted(minus(graph.getNodes(), base.getNodes())), names(diff.getAddedNodes()));
+            assertEquals(sorted(minus(base.getNodes(), graph.getNodes())), names(diff.getRemovedNodes()));
+            assertEquals(minus(graph.getEdges(), base.getEdges()), new HashSet<>(diff.getAddedEdges()));
+            assertEquals(minus(base.getEdges(), graph.getEdges()), new HashSet<>(diff.getRemovedEdges()));
+            assertTrue(diff.getMovedNodes().isEmpty());
+        }
+    }
+
+    @Test
+    void movedClassKeepsItsDependencies() {
+        DependencyGraph base = new DependencyGraph();
+        ClassNode a = new ClassNode("A", "com.old.A");
+        ClassNode b = new ClassNode("B", "com.old.B");
+        ClassNode c = new ClassNode("C", "com.other.C");
+        add(base, a, b, c);
+        base.addEdge(new DependencyEdge(a, c, "c"));
+        base.addEdge(new DependencyEdge(c, a, "a"));
+        base.addEdge(new DependencyEdge(b, c, "c"));
+
+        DependencyGraph graph = new DependencyGraph();
+        ClassNode movedA = new ClassNode("A", "com.fresh.A");
+        ClassNode c2 = new ClassNode("C", "com.other.C");
+        ClassNode b2 = new ClassNode("B", "com.old.B");
+        add(graph, movedA, b2, c2);
+        graph.addEdge(new DependencyEdge(movedA, c2, "c"));
+        graph.addEdge(new DependencyEdge(c2, movedA, "a"));
+        graph.addEdge(new DependencyEdge(b2, movedA, "a"));
+
+        GraphDiff diff = GraphDiff.compute(base, graph);
+        assertEquals(1, diff.getMovedNodes().size());
+        assertEquals("com.old.A", diff.getMovedNodes().get(0).getFrom().getFullyQualifiedName());
+        assertEquals("com.fresh.A", diff.getMovedNodes().get(0).getTo().getFullyQualifiedName());
+        assertTrue(diff.getAddedNodes().isEmpty());
+        assertTrue(diff.getRemovedNodes().isEmpty());
+        assertTrue(diff.getMovedPackages().isEmpty(), "com.old still has B");
+        assertEquals(List.of(new DependencyEdge(b2, movedA, "a")), diff.getAddedEdges());
+        assertEquals(List.of(new DependencyEdge(b, c, "c")), diff.getRemovedEdges());
+    }
+
+    @Test
+    void packageWhoseClassesAllMovedIsReported() {
+        DependencyGraph base = new DependencyGraph();
+        add(base, new ClassNode("A", "com.old.A"), new ClassNode("B", "com.old.B"), new ClassNode("C", "com.other.C"));
+        DependencyGraph graph = new DependencyGraph();
+        add(graph, new ClassNode("A", "com.fresh.A"), new ClassNode("B", "com.fresh.B"), new ClassNode("C", "com.other.C"));
+
+        GraphDiff diff = GraphDiff.compute(base, graph);
+        assertEquals(2, diff.getMovedNodes().size());
+        assertEquals(1, diff.getMovedPackages().size());
+        GraphDiff.PackageMove move = diff.getMovedPackages().get(0);
+        assertEquals("com.old", move.getFrom());
+        assertEquals("com.fresh", move.getTo());
+        assertEquals(2, move.getClassCount());
+    }
+
+    @Test
+    void ambiguousNamesAreNotMoves() {
+        DependencyGraph base = new DependencyGraph();
+        add(base, new ClassNode("A", "com.old.A"));
+        DependencyGraph graph = new DependencyGraph();
+        add(graph, new ClassNode("A", "com.one.A"), new ClassNode("A", "com.two.A"));
+
+        GraphDiff diff = GraphDiff.compute(base, graph);
+        assertTrue(diff.getMovedNodes().isEmpty());
+        assertEquals(List.of("com.old.A"), names(diff.getRemovedNodes()));
+        assertEquals(List.of("com.one.A", "com.two.A"), names(diff.getAddedNodes()));
+    }
+
+    @Test
+    void timeLimitIsEnforced() throws TimeoutException {
+        DependencyGraph base = TestGraphs.random(1, 20_000, 40_000, false);
+        DependencyGraph graph = TestGraphs.random(2, 20_000, 40_000, false);
+        assertThrows(TimeoutException.class, () -> GraphDiff.compute(base, graph, 0, TimeUnit.NANOSECONDS));
+
+        GraphDiff diff = GraphDiff.compute(base, graph, 1, TimeUnit.MINUTES);
+        assertEquals(GraphDiff.compute(base, graph).getAddedEdges(), diff.getAddedEdges());
+    }
+
+    private static void add(DependencyGraph graph, ClassNode... nodes) {
+        for (ClassNode node : nodes) {
+            graph.addNode(node);
+        }
+    }
+
+    private static <T> Set<T> minus(Iterable<T> items, Iterable<T> removed) {
+        Set<T> result = new HashSet<>();
+        items.forEach(result::add);
+        removed.forEach(result::remove);
+        return result;
+    }
+
+    private static List<String> sorted(Set<ClassNode> nodes) {
+        List<String> result = names(nodes);
+        result.sort(null);
+        return result;
+    }
+
+    private static List<String> names(Iterable<ClassNode> nodes) {
+        List<String> result = new ArrayList<>();
+        for (ClassNode node : nodes) {
+            result.add(node.getFullyQualifiedName());
+        }
+        return result;
+    }
+}
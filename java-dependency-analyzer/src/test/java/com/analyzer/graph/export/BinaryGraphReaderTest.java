@@ -0,0 +1,162 @@
+package com.analyzer.graph.export;
+
+import com.analyzer.graph.ClassNode;
+import com.analyzer.graph.DependencyEdge;
+import com.analyzer.graph.DependencyGraph;
+import com.analyzer.graph.TestGraphs;
+import com.analyzer.graph.index.AdjacencyIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryGraphReaderTest {
+
+    @Test
+    void graphSurvivesRoundTrip() throws IOException {
+        DependencyGraph graph = analysedGraph();
+        DependencyGraph read = new BinaryGraphReader().read(new ByteArrayInputStream(write(graph)));
+
+        assertEquals(graph.getNodeCount(), read.getNodeCount());
+        assertEquals(graph.getEdges(), read.getEdges());
+        for (ClassNode node : graph.getNodes()) {
+            ClassNode copy = read.getNode(node.getFullyQualifiedName());
+            assertNotNull(copy, node.getFullyQualifiedName());
+            assertEquals(node.getName(), copy.getName());
+            assertEquals((float) node.getX(), (float) copy.getX());
+            assertEquals((float) node.getY(), (float) copy.getY());
+            assertEquals((float) node.getZ(), (float) copy.getZ());
+            assertEquals(node.getSourceUri(), copy.getSourceUri());
+            assertEquals(node.getComponentId(), copy.getComponentId());
+            assertEquals((float) node.getPageRank(), (float) copy.getPageRank());
+            assertEquals((float) node.getBetweenness(), (float) copy.getBetweenness());
+            assertEquals(node.getCommunityId(), copy.getCommunityId());
+            assertEquals(graph.getDependencyCount(node), read.getDependencyCount(copy));
+            assertEquals(dependents(graph, node), copy.getDependentCount());
+        }
+    }
+
+    @Test
+    void indexSurvivesRoundTrip() throws IOException {
+        DependencyGraph graph = analysedGraph();
+        AdjacencyIndex index = new BinaryGraphReader().readIndex(new ByteArrayInputStream(write(graph)));
+
+        assertEquals(graph.getId(), index.getGraphId());
+        assertEquals(graph.getVersion(), index.getVersion());
+        assertEquals(graph.getNodeCount(), index.getNodeCount());
+        Set<DependencyEdge> edges = new HashSet<>();
+        for (int v = 0; v < index.getNodeCount(); v++) {
+            assertEquals(v, index.indexOf(index.getNode(v).getFullyQualifiedName()));
+            for (int k = 0; k < index.outDegree(v); k++) {
+                edges.add(new DependencyEdge(index.getNode(v), index.getNode(index.outTarget(v, k)),
+                        index.outField(v, k)));
+            }
+        }
+        assertEquals(graph.getEdges(), edges);
+    }
+
+    @Test
+    void emptyGraphSurvivesRoundTrip() throws IOException {
+        DependencyGraph read = new BinaryGraphReader().read(new ByteArrayInputStream(write(new DependencyGraph())));
+        assertEquals(0, read.getNodeCount());
+        assertEquals(0, read.getEdgeCount());
+    }
+
+    @Test
+    void corruptCountsAreRejected() throws IOException {
+        byte[] bytes = write(TestGraphs.random(3, 50, 100, false));
+        for (int offset : new int[]{8, 12, 16, 20}) { // node, edge, string and string byte counts
+            for (int count : new int[]{-1, Integer.MIN_VALUE, Integer.MAX_VALUE, bytes.length}) {
+                byte[] corrupt = bytes.clone();
+                ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, count);
+                assertRejected(corrupt);
+            }
+        }
+    }
+
+    @Test
+    void edgeEndpointsOutOfRangeAreRejected() throws IOException {
+        DependencyGraph graph = TestGraphs.random(3, 50, 100, false);
+        byte[] bytes = write(graph);
+        int sources = bytes.length - graph.getEdgeCount() * 12;
+        int fields = bytes.length - graph.getEdgeCount() * 4;
+        for (int offset : new int[]{sources, fields}) {
+            for (int index : new int[]{-1, 1_000_000}) {
+                byte[] corrupt = bytes.clone();
+                ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, index);
+                assertRejected(corrupt);
+            }
+        }
+    }
+
+    @Test
+    void truncatedOrGarbledSnapshotsFailWithIOException() throws IOException {
+        byte[] bytes = write(TestGraphs.random(3, 50, 100, false));
+        for (int length = 0; length < bytes.length; length += 7) {
+            assertRejected(Arrays.copyOf(bytes, length));
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            byte[] garbled = bytes.clone();
+            int offset = 8 + random.nextInt(garbled.length - 8);
+            garbled[offset] = (byte) random.nextInt(256);
+            try {
+                new BinaryGraphReader().read(new ByteArrayInputStream(garbled));
+                new BinaryGraphReader().readIndex(new ByteArrayInputStream(garbled));
+            } catch (IOException e) {
+                // Expected for most corruptions; anything else fails the test
+            }
+        }
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        assertThrows(IOException.class, () -> new BinaryGraphReader().read(new ByteArrayInputStream(bytes)));
+        assertThrows(IOException.class, () -> new BinaryGraphReader().readIndex(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * A random graph with a dependency without field name, source files on some classes and
+     * the analytics stamped as the analysis pipeline does.
+     */
+    private static DependencyGraph analysedGraph() {
+        DependencyGraph graph = TestGraphs.random(7, 300, 900, false);
+        int i = 0;
+        for (ClassNode node : graph.getNodes()) {
+            if (i++ % 3 == 0) {
+                node.setSourceUri("file:///src/" + node.getFullyQualifiedName().replace('.', '/') + ".java");
+            }
+        }
+        graph.addEdge(new DependencyEdge(graph.getNode("p0.C0"), graph.getNode("p1.C1"), null));
+        graph.getComponents();
+        graph.getCentrality();
+        graph.getCommunities();
+        return graph;
+    }
+
+    private static int dependents(DependencyGraph graph, ClassNode node) {
+        int count = 0;
+        for (DependencyEdge edge : graph.getEdges()) {
+            if (edge.getTarget().equals(node)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] write(DependencyGraph graph) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryGraphWriter().write(graph, out);
+        return out.toByteArray();
+    }
+}